@@ -1,8 +1,21 @@
 package qn.app.kidsafe_android;
 
+import com.google.firebase.database.Exclude;
+
+import java.util.Comparator;
+import java.util.Objects;
+
 public class BlockedUrl {
+
+    /** Display order of the list: newest addedAt first, ties by key like Firebase */
+    public static final Comparator<BlockedUrl> NEWEST_FIRST = (a, b) -> {
+        int byTime = Long.compare(b.getAddedAt(), a.getAddedAt());
+        return byTime != 0 ? byTime : b.getId().compareTo(a.getId());
+    };
+
     private String id;
-    private String url;
+    private String url;     // URL, or the keyword / wildcard text for pattern entries
+    private String type;    // "url" (default when missing), "keyword", "wildcard"
     private long addedAt;
     private String addedBy;
     private String status;
@@ -35,6 +48,19 @@ public class BlockedUrl {
         this.url = url;
     }
 
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    @Exclude
+    public boolean isPattern() {
+        return "keyword".equals(type) || "wildcard".equals(type);
+    }
+
     public long getAddedAt() {
         return addedAt;
     }
@@ -59,11 +85,26 @@ public class BlockedUrl {
         this.status = status;
     }
 
+    /**
+     * Whether {@code other} is the same entry with the same fields, e.g. the same child
+     * delivered again
+     */
+    public boolean hasSameContent(BlockedUrl other) {
+        return other != null
+                && Objects.equals(id, other.id)
+                && Objects.equals(url, other.url)
+                && Objects.equals(type, other.type)
+                && addedAt == other.addedAt
+                && Objects.equals(addedBy, other.addedBy)
+                && Objects.equals(status, other.status);
+    }
+
     @Override
     public String toString() {
         return "BlockedUrl{" +
                 "id='" + id + '\'' +
                 ", url='" + url + '\'' +
+                ", type='" + type + '\'' +
                 ", addedAt=" + addedAt +
                 ", addedBy='" + addedBy + '\'' +
                 ", status='" + status + '\'' +
@@ -0,0 +1,477 @@
+package qn.app.kidsafe_android;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads blockedUrls newest first, one page at a time, and keeps only a window of them.
+ *
+ * Entries added after the screen opened arrive through a live query on
+ * addedAt >= boundary. Older entries are loaded in pages of
+ * orderByChild("addedAt").endBefore(cursor).limitToLast(pageSize), where the cursor
+ * is the oldest entry loaded so far. At most maxPages pages stay attached: loading one
+ * more at the bottom releases the top one, whose query is detached and whose rows leave
+ * the model. Scrolling back up attaches the released range again, with startAt/endBefore
+ * on its old bounds, and releases the bottom page. Rows and listeners are bounded by the
+ * head plus maxPages pages however far the list is scrolled; edits and deletes of the
+ * attached rows are live.
+ *
+ * The model may already hold entries from the local store. Paging follows its own
+ * cursor, not the model's last row, and each loaded page removes the entries in its
+ * range that it did not return: they were deleted while the app was not listening.
+ *
+ * suspend() detaches the queries but keeps the boundary and the loaded pages; resume()
+ * attaches them again. The head then returns only what was added since the boundary, and
+ * every page is checked once for entries deleted in the meantime. Unchanged children
+ * are not reported again.
+ */
+public class BlockedUrlPager {
+
+    private static final String TAG = "BlockedUrlPager";
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int DEFAULT_MAX_PAGES = 6;
+
+    public interface Listener {
+        void onUrlLoaded(BlockedUrl blockedUrl);
+        void onUrlRemoved(String key);
+        void onPageLoaded(int loadedCount, boolean endReached);
+        void onError(DatabaseError error);
+    }
+
+    private final DatabaseReference blockedUrlsRef;
+    private final KeyedList<BlockedUrl> model;
+    private final Listener listener;
+    private final int pageSize;
+    private final int maxPages;
+
+    /** An attached query and the part of the list it covers */
+    private static final class Window {
+        final Query query;
+        final ChildEventListener listener;
+        final boolean head;
+        final BlockedUrl newest;    // exclusive; null = the boundary
+        BlockedUrl oldest;          // inclusive; null = no lower limit
+        boolean loaded;
+        int releasedRows;           // rows it held when it was released
+
+        Window(Query query, ChildEventListener listener, boolean head, BlockedUrl newest) {
+            this.query = query;
+            this.listener = listener;
+            this.head = head;
+            this.newest = newest;
+        }
+    }
+
+    // The head, then the attached pages from the top down
+    private final List<Window> windows = new ArrayList<>();
+    // Pages released above the attached ones, the nearest on top
+    private final Deque<Window> releasedAbove = new ArrayDeque<>();
+
+    private double boundary = Double.NaN;
+    private boolean loading;
+    private boolean endReached;
+    private BlockedUrl cursor;      // oldest entry of the bottom page, null before the first
+    private int releasedCount;
+    private int generation;
+
+    public BlockedUrlPager(DatabaseReference blockedUrlsRef, KeyedList<BlockedUrl> model, Listener listener) {
+        this(blockedUrlsRef, model, listener, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    public BlockedUrlPager(DatabaseReference blockedUrlsRef, KeyedList<BlockedUrl> model, Listener listener,
+                           int pageSize, int maxPages) {
+        this.blockedUrlsRef = blockedUrlsRef;
+        this.model = model;
+        this.listener = listener;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+    }
+
+    /**
+     * Attach the live head query and load the first page
+     */
+    public void start() {
+        final int startGeneration = ++generation;
+        loading = true;
+
+        // Server time splits "new since open" from "paged history" without overlap
+        blockedUrlsRef.getDatabase().getReference(".info/serverTimeOffset")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        if (startGeneration != generation) return;
+                        Double offset = snapshot.getValue(Double.class);
+                        boundary = System.currentTimeMillis() + (offset != null ? offset : 0);
+
+                        attach(blockedUrlsRef.orderByChild("addedAt").startAt(boundary), true, null, 0).loaded = true;
+                        loading = false;
+                        loadNextPage();
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        loading = false;
+                        listener.onError(error);
+                    }
+                });
+    }
+
+    /**
+     * Load the page after the oldest entry loaded so far, releasing the top page when
+     * more than maxPages would be attached. No-op while a page is loading or once the end
+     * of the list is reached.
+     */
+    public void loadNextPage() {
+        if (loading || endReached || Double.isNaN(boundary)) return;
+        loading = true;
+
+        BlockedUrl oldest = cursor;
+        Query page = endBefore(blockedUrlsRef.orderByChild("addedAt"), oldest).limitToLast(pageSize);
+        Window window = attach(page, false, oldest, windows.size());
+
+        final int pageGeneration = generation;
+        // Fires after the page's child events, from the same data - nothing is downloaded twice
+        page.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (pageGeneration != generation) return;
+                loading = false;
+                BlockedUrl pageOldest = null;
+                Set<String> keys = new HashSet<>();
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    if (pageOldest == null) {
+                        pageOldest = parseBlockedUrl(child);
+                    }
+                    keys.add(child.getKey());
+                }
+                boolean lastPage = snapshot.getChildrenCount() < pageSize;
+                window.oldest = lastPage ? null : pageOldest;
+                window.loaded = true;
+                removeMissing(window, keys);
+                // A cursor that does not move would load the same page forever
+                endReached = lastPage || pageOldest == null
+                        || (oldest != null && BlockedUrl.NEWEST_FIRST.compare(pageOldest, oldest) <= 0);
+                cursor = pageOldest;
+                if (windows.size() - 1 > maxPages) {
+                    releaseTop();
+                }
+                Log.d(TAG, "🔥 Page loaded: " + snapshot.getChildrenCount() + " children, " + model.size() + " rows");
+                listener.onPageLoaded(getLoadedCount(), endReached);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                loading = false;
+                listener.onError(error);
+            }
+        });
+    }
+
+    /**
+     * Attach the page released nearest above the attached ones again, releasing the
+     * bottom page when more than maxPages would be attached. No-op while a page is
+     * loading or when no page above was released.
+     */
+    public void loadPreviousPage() {
+        if (loading || releasedAbove.isEmpty()) return;
+        loading = true;
+
+        // Left on the stack until it is back, a suspend() in between keeps it there
+        Window released = releasedAbove.peek();
+        Query range = endBefore(startAt(blockedUrlsRef.orderByChild("addedAt"), released.oldest), released.newest);
+        Window window = attach(range, false, released.newest, 1);
+        window.oldest = released.oldest;
+
+        final int pageGeneration = generation;
+        range.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (pageGeneration != generation) return;
+                loading = false;
+                releasedAbove.pop();
+                releasedCount -= released.releasedRows;
+                Set<String> keys = new HashSet<>();
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    keys.add(child.getKey());
+                }
+                window.loaded = true;
+                removeMissing(window, keys);
+                if (windows.size() - 1 > maxPages) {
+                    releaseBottom();
+                }
+                Log.d(TAG, "🔥 Page attached again: " + snapshot.getChildrenCount() + " children, " + model.size() + " rows");
+                listener.onPageLoaded(getLoadedCount(), endReached);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                loading = false;
+                listener.onError(error);
+            }
+        });
+    }
+
+    public boolean isEndReached() {
+        return endReached;
+    }
+
+    /**
+     * Rows in the model plus the rows of the pages released above them
+     */
+    public int getLoadedCount() {
+        return model.size() + releasedCount;
+    }
+
+    /**
+     * Model position where the pages released above would go back, right below the rows
+     * of the head; -1 when none was released
+     */
+    public int getReleasedPosition() {
+        if (releasedAbove.isEmpty()) return -1;
+        int position = 0;
+        for (BlockedUrl blockedUrl : model.getItems()) {
+            if (blockedUrl.getAddedAt() < boundary) break;
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Whether a row for {@code blockedUrl} belongs in the model: it is in the range of the
+     * head or of the attached pages, or nothing is attached yet
+     */
+    public boolean covers(BlockedUrl blockedUrl) {
+        if (Double.isNaN(boundary) || blockedUrl.getAddedAt() >= boundary) return true;
+        if (windows.size() < 2) return false;
+        Window top = windows.get(1);
+        Window bottom = windows.get(windows.size() - 1);
+        return (top.newest == null || BlockedUrl.NEWEST_FIRST.compare(blockedUrl, top.newest) > 0)
+                && (bottom.oldest == null || BlockedUrl.NEWEST_FIRST.compare(blockedUrl, bottom.oldest) <= 0);
+    }
+
+    /**
+     * Detach every query but keep the loaded pages for resume(). A page still loading is
+     * dropped and loaded again on the next loadNextPage() or loadPreviousPage().
+     */
+    public void suspend() {
+        generation++;
+        loading = false;
+        List<Window> kept = new ArrayList<>();
+        for (Window window : windows) {
+            window.query.removeEventListener(window.listener);
+            if (window.loaded) kept.add(window);
+        }
+        windows.clear();
+        windows.addAll(kept);
+    }
+
+    /**
+     * Attach the queries kept by suspend() again and remove the entries deleted meanwhile
+     */
+    public void resume() {
+        if (Double.isNaN(boundary)) {
+            // Suspended before the boundary was known
+            stop();
+            start();
+            return;
+        }
+        final int resumeGeneration = generation;
+        for (Window window : windows) {
+            window.query.addChildEventListener(window.listener);
+            // Served by the same listen as the child events
+            window.query.addListenerForSingleValueEvent(new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    if (resumeGeneration != generation) return;
+                    Set<String> keys = new HashSet<>();
+                    for (DataSnapshot child : snapshot.getChildren()) {
+                        keys.add(child.getKey());
+                    }
+                    removeMissing(window, keys);
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    listener.onError(error);
+                }
+            });
+        }
+        Log.d(TAG, "🔥 Resumed " + windows.size() + " queries");
+    }
+
+    /**
+     * Detach every query and forget the released pages. The model is left as is.
+     */
+    public void stop() {
+        generation++;
+        for (Window window : windows) {
+            window.query.removeEventListener(window.listener);
+        }
+        windows.clear();
+        releasedAbove.clear();
+        releasedCount = 0;
+        loading = false;
+        endReached = false;
+        cursor = null;
+        boundary = Double.NaN;
+    }
+
+    /**
+     * Detach the top page and drop its rows; loadPreviousPage() brings it back
+     */
+    private void releaseTop() {
+        Window top = windows.remove(1);
+        top.query.removeEventListener(top.listener);
+        List<String> keys = new ArrayList<>();
+        for (BlockedUrl blockedUrl : model.getItems()) {
+            if (inRange(top, blockedUrl)) keys.add(blockedUrl.getId());
+        }
+        // Still in the store and the engine, only the rows go
+        for (String key : keys) {
+            model.remove(key);
+        }
+        top.releasedRows = keys.size();
+        releasedCount += keys.size();
+        releasedAbove.push(top);
+    }
+
+    /**
+     * Detach the bottom page and drop every row below the one above it; loadNextPage()
+     * continues from there
+     */
+    private void releaseBottom() {
+        Window bottom = windows.remove(windows.size() - 1);
+        bottom.query.removeEventListener(bottom.listener);
+        // Not the last page: there was one below it
+        BlockedUrl oldest = windows.get(windows.size() - 1).oldest;
+        List<String> keys = new ArrayList<>();
+        List<BlockedUrl> items = model.getItems();
+        for (int i = items.size() - 1; i >= 0 && BlockedUrl.NEWEST_FIRST.compare(items.get(i), oldest) > 0; i--) {
+            keys.add(items.get(i).getId());
+        }
+        for (String key : keys) {
+            model.remove(key);
+        }
+        cursor = oldest;
+        endReached = false;
+    }
+
+    /**
+     * Remove the model entries in the range of {@code window} that are not in {@code keys}
+     */
+    private void removeMissing(Window window, Set<String> keys) {
+        List<String> missing = new ArrayList<>();
+        for (BlockedUrl blockedUrl : model.getItems()) {
+            if (inRange(window, blockedUrl) && !keys.contains(blockedUrl.getId())) {
+                missing.add(blockedUrl.getId());
+            }
+        }
+        for (String key : missing) {
+            if (model.remove(key) != null) {
+                listener.onUrlRemoved(key);
+            }
+        }
+    }
+
+    /**
+     * The head covers addedAt &gt;= boundary; a page covers entries older than its newest
+     * (the boundary when null) and at least as new as its oldest (no limit when null)
+     */
+    private boolean inRange(Window window, BlockedUrl blockedUrl) {
+        if (window.head) return blockedUrl.getAddedAt() >= boundary;
+        boolean belowTop = window.newest == null ? blockedUrl.getAddedAt() < boundary
+                : BlockedUrl.NEWEST_FIRST.compare(blockedUrl, window.newest) > 0;
+        return belowTop && (window.oldest == null || BlockedUrl.NEWEST_FIRST.compare(blockedUrl, window.oldest) <= 0);
+    }
+
+    /**
+     * Entries older than {@code newest}, or than the boundary when null
+     */
+    private Query endBefore(Query query, BlockedUrl newest) {
+        if (newest == null) return query.endBefore(boundary);
+        if (newest.getAddedAt() > 0) return query.endBefore(newest.getAddedAt(), newest.getId());
+        // Legacy entries without addedAt sort first, by key
+        return query.endBefore((String) null, newest.getId());
+    }
+
+    /**
+     * Entries at least as new as {@code oldest}
+     */
+    private static Query startAt(Query query, BlockedUrl oldest) {
+        if (oldest.getAddedAt() > 0) return query.startAt(oldest.getAddedAt(), oldest.getId());
+        return query.startAt((String) null, oldest.getId());
+    }
+
+    private Window attach(Query query, boolean head, BlockedUrl newest, int index) {
+        ChildEventListener childListener = new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) {
+                BlockedUrl blockedUrl = parseBlockedUrl(snapshot);
+                // A resumed query delivers what it had already delivered
+                if (blockedUrl != null && !blockedUrl.hasSameContent(model.get(blockedUrl.getId()))) {
+                    model.addSorted(blockedUrl.getId(), blockedUrl, BlockedUrl.NEWEST_FIRST);
+                    listener.onUrlLoaded(blockedUrl);
+                }
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, String previousChildName) {
+                BlockedUrl blockedUrl = parseBlockedUrl(snapshot);
+                if (blockedUrl != null && !blockedUrl.hasSameContent(model.get(blockedUrl.getId()))) {
+                    model.set(blockedUrl.getId(), blockedUrl);
+                    listener.onUrlLoaded(blockedUrl);
+                }
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                if (model.remove(snapshot.getKey()) != null) {
+                    listener.onUrlRemoved(snapshot.getKey());
+                }
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) {
+                // Order is kept by the model
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "❌ Firebase onCancelled: " + error.getMessage(), error.toException());
+                listener.onError(error);
+            }
+        };
+        query.addChildEventListener(childListener);
+        Window window = new Window(query, childListener, head, newest);
+        windows.add(index, window);
+        return window;
+    }
+
+    private BlockedUrl parseBlockedUrl(DataSnapshot snapshot) {
+        try {
+            BlockedUrl blockedUrl = SnapshotMapper.readBlockedUrl(snapshot.getKey(), snapshot.getValue());
+            if (blockedUrl == null) {
+                Log.w(TAG, "⚠️ Failed to parse URL from snapshot: " + snapshot.getKey());
+            }
+            return blockedUrl;
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error parsing blocked URL from snapshot: " + snapshot.getKey(), e);
+            return null;
+        }
+    }
+}
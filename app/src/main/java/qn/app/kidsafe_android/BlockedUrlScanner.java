@@ -0,0 +1,50 @@
+package qn.app.kidsafe_android;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+
+/**
+ * Walks the whole blockedUrls node in key order, one bounded page at a time.
+ * For worker threads only: every page is awaited synchronously.
+ */
+public final class BlockedUrlScanner {
+
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    public interface Visitor {
+        void visit(BlockedUrl blockedUrl);
+    }
+
+    private BlockedUrlScanner() {
+    }
+
+    /**
+     * @return number of entries visited
+     */
+    public static int scan(DatabaseReference blockedUrlsRef, int pageSize, Visitor visitor) throws Exception {
+        String lastKey = null;
+        int visited = 0;
+        while (true) {
+            Query page = blockedUrlsRef.orderByKey();
+            if (lastKey != null) {
+                page = page.startAfter(lastKey);
+            }
+            DataSnapshot snapshot = Tasks.await(page.limitToFirst(pageSize).get());
+
+            for (DataSnapshot child : snapshot.getChildren()) {
+                lastKey = child.getKey();
+                BlockedUrl blockedUrl = SnapshotMapper.readBlockedUrl(lastKey, child.getValue());
+                if (blockedUrl != null) {
+                    visitor.visit(blockedUrl);
+                    visited++;
+                }
+            }
+
+            if (snapshot.getChildrenCount() < pageSize) {
+                return visited;
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package qn.app.kidsafe_android;
+
+import android.app.Application;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.firebase.database.DatabaseError;
+
+/**
+ * State of MainActivity that outlives a configuration change: the subscription to the
+ * family's blocked URLs and the connection, and what the screen shows about them.
+ * A recreated activity observes the same state object and pages, nothing is loaded or
+ * parsed again.
+ */
+public class BlockedUrlsViewModel extends AndroidViewModel {
+
+    private static final String TAG = "BlockedUrlsViewModel";
+
+    /** Counts for the subtitle and the refresh indicator */
+    public static final class Status {
+        private final int loadedCount;
+        private final boolean endReached;
+        private final boolean refreshing;
+
+        Status(int loadedCount, boolean endReached, boolean refreshing) {
+            this.loadedCount = loadedCount;
+            this.endReached = endReached;
+            this.refreshing = refreshing;
+        }
+
+        public int getLoadedCount() {
+            return loadedCount;
+        }
+
+        /** False while the bottom of the list is not loaded: the count is a lower bound */
+        public boolean isEndReached() {
+            return endReached;
+        }
+
+        public boolean isRefreshing() {
+            return refreshing;
+        }
+    }
+
+    private final FamilyRepository repository;
+    private final MutableLiveData<FamilyRepository.BlockedUrls> blockedUrls = new MutableLiveData<>();
+    private final MutableLiveData<Status> status = new MutableLiveData<>(new Status(0, false, false));
+    // Shown once: the screen clears it with onMessageShown()
+    private final MutableLiveData<String> message = new MutableLiveData<>();
+
+    private SharedNode.Subscription blockedUrlsSubscription;
+    private SharedNode.Subscription connectedSubscription;
+    private boolean firstPageShown;
+
+    private final BlockedUrlPager.Listener pagerListener = new BlockedUrlPager.Listener() {
+        @Override
+        public void onUrlLoaded(BlockedUrl blockedUrl) {
+            updateStatus(isRefreshing());
+        }
+
+        @Override
+        public void onUrlRemoved(String key) {
+            Log.d(TAG, "🔥 Removed URL: " + key);
+            updateStatus(isRefreshing());
+        }
+
+        @Override
+        public void onPageLoaded(int loadedCount, boolean endReached) {
+            updateStatus(false);
+            if (!firstPageShown && loadedCount > 0) {
+                firstPageShown = true;
+                message.setValue("Đã tải " + loadedCount + " URL");
+            }
+        }
+
+        @Override
+        public void onError(DatabaseError error) {
+            updateStatus(false);
+            message.setValue("Lỗi tải dữ liệu: " + error.getMessage());
+        }
+    };
+
+    public BlockedUrlsViewModel(@NonNull Application application) {
+        super(application);
+        repository = ((KidSafeApplication) application).getFamilyRepository();
+    }
+
+    /**
+     * Subscribe for {@code userUid}; later calls, e.g. from a recreated activity, are no-ops
+     */
+    public void start(String userUid) {
+        if (blockedUrlsSubscription != null) return;
+        // Delivered right away: a fresh state that starts loading, or the pages already loaded
+        blockedUrlsSubscription = repository.observeBlockedUrls(userUid, (state, replayed) -> {
+            FamilyRepository.BlockedUrls previous = blockedUrls.getValue();
+            if (previous != null) {
+                previous.removePagerListener(pagerListener);
+            }
+            state.addPagerListener(pagerListener);
+            if (replayed) {
+                // Loaded for an earlier screen, nothing is downloaded
+                firstPageShown = true;
+            }
+            blockedUrls.setValue(state);
+            updateStatus(!replayed && state.getModel().size() == 0);
+        });
+
+        connectedSubscription = repository.observeConnected(new SharedNode.Observer<Boolean>() {
+            @Override
+            public void onValue(Boolean connected, boolean replayed) {
+                Log.d(TAG, "🔥 Firebase connected: " + connected);
+                if (connected && !replayed) {
+                    message.setValue("✅ Kết nối Firebase thành công");
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                Log.e(TAG, "🔥 Firebase connection error: " + error);
+            }
+        });
+    }
+
+    public LiveData<FamilyRepository.BlockedUrls> getBlockedUrls() {
+        return blockedUrls;
+    }
+
+    public LiveData<Status> getStatus() {
+        return status;
+    }
+
+    public LiveData<String> getMessage() {
+        return message;
+    }
+
+    public void onMessageShown() {
+        message.setValue(null);
+    }
+
+    /**
+     * Loaded pages stay live; a refresh reloads from the newest entry to pick up anything
+     * beyond them that changed
+     */
+    public void refresh() {
+        FamilyRepository.BlockedUrls state = blockedUrls.getValue();
+        if (state == null) return;
+        updateStatus(true);
+        state.reload();
+    }
+
+    public void loadNextPage() {
+        FamilyRepository.BlockedUrls state = blockedUrls.getValue();
+        if (state != null) {
+            state.getPager().loadNextPage();
+        }
+    }
+
+    /** Bring back the page released nearest above the rows shown */
+    public void loadPreviousPage() {
+        FamilyRepository.BlockedUrls state = blockedUrls.getValue();
+        if (state != null) {
+            state.getPager().loadPreviousPage();
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        // The repository detaches a listener once no screen uses it
+        FamilyRepository.BlockedUrls state = blockedUrls.getValue();
+        if (state != null) {
+            state.removePagerListener(pagerListener);
+        }
+        if (blockedUrlsSubscription != null) {
+            blockedUrlsSubscription.close();
+        }
+        if (connectedSubscription != null) {
+            connectedSubscription.close();
+        }
+    }
+
+    private boolean isRefreshing() {
+        Status current = status.getValue();
+        return current != null && current.isRefreshing();
+    }
+
+    private void updateStatus(boolean refreshing) {
+        FamilyRepository.BlockedUrls state = blockedUrls.getValue();
+        int count = state != null ? state.getPager().getLoadedCount() : 0;
+        boolean endReached = state == null || state.getPager().isEndReached();
+        status.setValue(new Status(count, endReached, refreshing));
+    }
+}
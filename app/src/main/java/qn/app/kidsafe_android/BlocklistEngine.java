@@ -0,0 +1,301 @@
+package qn.app.kidsafe_android;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Answers "is this host / URL blocked?" for one family.
+ *
+ * The memory-mapped BlocklistSnapshot of the last full list is searched directly: its
+ * sorted hosts answer in a binary search per domain level, so setting one never walks
+ * it. Entries received live go through a HostBloomFilter first, so the common "not
+ * blocked" answer costs a few hash probes, and only possible hits reach their DomainTrie.
+ * Keywords and wildcards are matched by a UrlPatternMatcher (URL lookups only).
+ *
+ * Live entries are applied incrementally with {@link #put} / {@link #remove}; the filter
+ * is only rebuilt when it outgrows its size. A host that a live event removed or paused
+ * is no longer blocked by its snapshot entry, until a new snapshot is set.
+ * Not thread-safe, confine to one thread.
+ */
+public class BlocklistEngine {
+
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    private static final int MIN_EXPECTED_HOSTS = 1024;
+
+    private final DomainTrie trie = new DomainTrie();
+    private final double falsePositiveRate;
+    private BlocklistSnapshot snapshot;
+    private HostBloomFilter filter;
+
+    private final Set<String> liveIds = new HashSet<>();
+    // Blocked URL id -> host added to the filter for it, so removals undo exactly that
+    private final Map<String, String> filteredHosts = new HashMap<>();
+    private final Map<String, BlockedUrl> patternEntries = new HashMap<>();
+    // Blocked URL id -> host of each live entry for a whole host, active or not
+    private final Map<String, String> liveHosts = new HashMap<>();
+    // Hosts whose snapshot entry is out of date: removed or paused since it was written
+    private final Set<String> overridden = new HashSet<>();
+    private UrlPatternMatcher patterns = UrlPatternMatcher.empty();
+    private boolean patternsDirty;
+
+    // Bumped whenever the set of blocked hosts changes, for VerdictCache
+    private int generation;
+
+    public BlocklistEngine() {
+        this(DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    public BlocklistEngine(double falsePositiveRate) {
+        this.falsePositiveRate = falsePositiveRate;
+        rebuildFilter();
+    }
+
+    /**
+     * Use a snapshot of the full list (null to drop it). Constant time: the filter only
+     * holds the live hosts.
+     */
+    public void setSnapshot(BlocklistSnapshot snapshot) {
+        this.snapshot = snapshot;
+        overridden.clear();
+        generation++;
+    }
+
+    /**
+     * Bring the live entries in line with a complete list
+     */
+    public void update(List<BlockedUrl> urls) {
+        Set<String> seen = new HashSet<>();
+        for (BlockedUrl blockedUrl : urls) {
+            if (blockedUrl.getId() == null) continue;
+            seen.add(blockedUrl.getId());
+            put(blockedUrl);
+        }
+        List<String> removed = new ArrayList<>();
+        for (String id : liveIds) {
+            if (!seen.contains(id)) removed.add(id);
+        }
+        for (String id : removed) {
+            remove(id);
+        }
+    }
+
+    /**
+     * Add or update a single entry
+     */
+    public void put(BlockedUrl blockedUrl) {
+        String id = blockedUrl.getId();
+        if (id == null || blockedUrl.getUrl() == null) return;
+        liveIds.add(id);
+        trie.put(blockedUrl);
+
+        boolean active = "active".equals(blockedUrl.getStatus());
+        String wholeHost = !blockedUrl.isPattern() && UrlCanonicalizer.pathOf(blockedUrl.getUrl()).isEmpty()
+                ? UrlCanonicalizer.hostOf(blockedUrl.getUrl()) : null;
+        String liveHost = wholeHost != null ? liveHosts.put(id, wholeHost) : liveHosts.remove(id);
+        if (liveHost != null && !liveHost.equals(wholeHost)) {
+            // The entry no longer blocks the host it did
+            override(liveHost);
+        }
+        if (wholeHost != null) {
+            if (!active) {
+                override(wholeHost);
+            } else if (overridden.remove(wholeHost)) {
+                generation++;
+            }
+        }
+
+        if (blockedUrl.isPattern()) {
+            unfilter(id);
+            patternEntries.put(id, blockedUrl);
+            patternsDirty = true;
+            return;
+        }
+        if (patternEntries.remove(id) != null) {
+            patternsDirty = true;
+        }
+
+        String host = active ? wholeHost : null;
+        String previous = filteredHosts.get(id);
+        if (host != null ? host.equals(previous) : previous == null) return;
+
+        unfilter(id);
+        if (host != null && !host.isEmpty()) {
+            filteredHosts.put(id, host);
+            filter.add(host);
+            generation++;
+            if (filter.isOverCapacity()) {
+                rebuildFilter();
+            }
+        }
+    }
+
+    /**
+     * Remove an entry, also when only the snapshot held it
+     */
+    public void remove(BlockedUrl blockedUrl) {
+        String id = blockedUrl.getId();
+        if (id != null) remove(id);
+        if (blockedUrl.getUrl() != null && !blockedUrl.isPattern()
+                && UrlCanonicalizer.pathOf(blockedUrl.getUrl()).isEmpty()) {
+            override(UrlCanonicalizer.hostOf(blockedUrl.getUrl()));
+        }
+    }
+
+    /**
+     * Remove the entry with the given Firebase key
+     */
+    public void remove(String id) {
+        liveIds.remove(id);
+        trie.remove(id);
+        unfilter(id);
+        String host = liveHosts.remove(id);
+        if (host != null) override(host);
+        if (patternEntries.remove(id) != null) {
+            patternsDirty = true;
+        }
+    }
+
+    public void clear() {
+        trie.clear();
+        liveIds.clear();
+        filteredHosts.clear();
+        liveHosts.clear();
+        overridden.clear();
+        patternEntries.clear();
+        patterns = UrlPatternMatcher.empty();
+        patternsDirty = false;
+        generation++;
+        rebuildFilter();
+    }
+
+    /**
+     * True when exactly this URL is among the live entries, for duplicate checks
+     */
+    public boolean containsUrl(String url) {
+        return trie.containsUrl(url);
+    }
+
+    /**
+     * True when the host or one of its parent domains is blocked
+     */
+    public boolean isHostBlocked(String host) {
+        if (snapshot != null) {
+            byte[] ascii = host.getBytes(StandardCharsets.US_ASCII);
+            if (snapshotBlocks(ascii, 0, ascii.length)) return true;
+        }
+        if (!filter.mightBlock(host)) return false;
+        if (trie.isBlocked(host)) return true;
+        filter.recordFalsePositive();
+        return false;
+    }
+
+    /**
+     * Same as {@link #isHostBlocked(String)} for an ASCII host in a byte array,
+     * e.g. a DNS question or TLS SNI. Misses do not allocate.
+     */
+    public boolean isHostBlocked(byte[] host, int offset, int length) {
+        if (snapshotBlocks(host, offset, length)) return true;
+        if (!filter.mightBlock(host, offset, length)) return false;
+        // The trie is keyed by lower-case strings
+        String name = new String(host, offset, length, StandardCharsets.US_ASCII).toLowerCase();
+        if (trie.isBlocked(name)) return true;
+        filter.recordFalsePositive();
+        return false;
+    }
+
+    /**
+     * {@link #isHostBlocked(byte[], int, int)} through a cache of earlier verdicts
+     */
+    public boolean isHostBlocked(byte[] host, int offset, int length, VerdictCache cache) {
+        int cached = cache.get(host, offset, length, generation);
+        if (cached != VerdictCache.MISS) {
+            return cached == VerdictCache.BLOCKED;
+        }
+        boolean blocked = isHostBlocked(host, offset, length);
+        cache.put(host, offset, length, generation, blocked);
+        return blocked;
+    }
+
+    /**
+     * Host check plus keyword and wildcard entries, for a URL as stored or canonicalized.
+     * Entries with a path are not matched here, DNS and SNI only ever see the host.
+     */
+    public boolean isUrlBlocked(String url) {
+        return isHostBlocked(UrlCanonicalizer.hostOf(url)) || getPatterns().matchesUrl(url);
+    }
+
+    /**
+     * Changes whenever a host lookup could give a different answer. Pattern entries only
+     * affect URL lookups and do not change it.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    public HostBloomFilter getFilter() {
+        return filter;
+    }
+
+    public int size() {
+        return trie.size() + (snapshot != null ? snapshot.size() : 0);
+    }
+
+    private UrlPatternMatcher getPatterns() {
+        if (patternsDirty) {
+            patterns = UrlPatternMatcher.compile(new ArrayList<>(patternEntries.values()));
+            patternsDirty = false;
+        }
+        return patterns;
+    }
+
+    /**
+     * The snapshot's answer, leaving out the hosts live events overrode. Reads no more
+     * than the binary searches touch, so a cold snapshot is paged in lazily.
+     */
+    private boolean snapshotBlocks(byte[] host, int offset, int length) {
+        if (snapshot == null) return false;
+        if (overridden.isEmpty()) return snapshot.isBlocked(host, offset, length);
+        // The host, then each parent domain
+        int end = offset + length;
+        for (int start = offset; start < end; start++) {
+            if (start != offset && host[start - 1] != '.') continue;
+            if (snapshot.isBlockedExactly(host, start, end - start)
+                    && !overridden.contains(new String(host, start, end - start, StandardCharsets.US_ASCII).toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void override(String host) {
+        if (snapshot != null && !host.isEmpty() && overridden.add(host)) {
+            generation++;
+        }
+    }
+
+    private void unfilter(String id) {
+        String host = filteredHosts.remove(id);
+        if (host != null) {
+            filter.remove(host);
+            generation++;
+        }
+    }
+
+    private void rebuildFilter() {
+        int expected = filteredHosts.size();
+        // Headroom so a growing list does not rebuild on every few adds
+        HostBloomFilter previous = filter;
+        filter = new HostBloomFilter(Math.max(MIN_EXPECTED_HOSTS, expected * 2), falsePositiveRate);
+        if (previous != null) {
+            filter.inheritCounters(previous);
+        }
+        for (String host : filteredHosts.values()) {
+            filter.add(host);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package qn.app.kidsafe_android;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ServerValue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams a hosts file, plain domain list or AdBlock-style filter list into blockedUrls.
+ * Lines are read one at a time, normalized with UrlCanonicalizer, deduplicated against the
+ * existing list (scanned page by page) and committed in bounded multi-location updates,
+ * so neither the file nor the per-URL maps are ever held in memory as a whole.
+ * The complete list is seen here anyway, so the import also rewrites the blocklist snapshot,
+ * with the batches that were committed when it fails part way.
+ *
+ * Pause the screen's paging (BlockedUrls.beginBulkWrite) for the duration: every imported
+ * child is newer than the live head's boundary.
+ */
+public class BlocklistImporter {
+
+    private static final String TAG = "BlocklistImporter";
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    // A batch not acknowledged by then fails the import; Firebase still retries it
+    private static final long COMMIT_TIMEOUT_SECONDS = 60;
+
+    public interface ProgressListener {
+        void onProgress(int linesRead, int imported, int skipped);
+        void onComplete(int linesRead, int imported, int skipped);
+        /**
+         * @param imported URLs of the batches committed before the failure; the snapshot
+         *                 was rewritten with them
+         */
+        void onError(Exception e, int imported);
+    }
+
+    private final DatabaseReference familyRef;
+    private final Map<String, Object> syncStatus;
+    private final File snapshotFile;
+    private final int batchSize;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private volatile boolean cancelled;
+
+    /**
+     * @param familyRef  kidsafe/families/&lt;uid&gt;
+     * @param syncStatus syncStatus node written together with every batch
+     * @param snapshotFile BlocklistSnapshot rewritten when the import completes, or null
+     */
+    public BlocklistImporter(DatabaseReference familyRef, Map<String, Object> syncStatus, File snapshotFile) {
+        this(familyRef, syncStatus, snapshotFile, DEFAULT_BATCH_SIZE);
+    }
+
+    public BlocklistImporter(DatabaseReference familyRef, Map<String, Object> syncStatus, File snapshotFile, int batchSize) {
+        this.familyRef = familyRef;
+        this.syncStatus = syncStatus;
+        this.snapshotFile = snapshotFile;
+        this.batchSize = batchSize;
+    }
+
+    public void start(InputStream input, ProgressListener listener) {
+        executor.execute(() -> {
+            try {
+                runImport(input, listener);
+            } finally {
+                executor.shutdown();
+            }
+        });
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void runImport(InputStream input, ProgressListener listener) {
+        DatabaseReference blockedUrlsRef = familyRef.child("blockedUrls");
+        DomainTrie seen = new DomainTrie();
+        BlocklistSnapshot.Builder snapshot = new BlocklistSnapshot.Builder();
+        Map<String, Object> batch = new HashMap<>();
+        // Added to the snapshot once their batch is committed
+        List<BlockedUrl> pending = new ArrayList<>();
+        List<String> hosts = new ArrayList<>();
+        boolean scanned = false;
+        int linesRead = 0;
+        int imported = 0;
+        int skipped = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            // The screen only holds the pages it shows, so read the existing list here
+            BlockedUrlScanner.scan(blockedUrlsRef, BlockedUrlScanner.DEFAULT_PAGE_SIZE, blockedUrl -> {
+                seen.put(blockedUrl);
+                snapshot.add(blockedUrl);
+            });
+            scanned = true;
+
+            String line;
+            while (!cancelled && (line = reader.readLine()) != null) {
+                linesRead++;
+                hosts.clear();
+                BlocklistLineParser.parseLine(line, hosts);
+
+                for (String candidate : hosts) {
+                    UrlCanonicalizer.CanonicalUrl canonical = UrlCanonicalizer.canonicalize(candidate);
+                    if (canonical == null || seen.containsUrl(canonical.getUrl())) {
+                        skipped++;
+                        continue;
+                    }
+
+                    String key = blockedUrlsRef.push().getKey();
+                    BlockedUrl blockedUrl = new BlockedUrl(canonical.getUrl(), 0, "parent_android", "active");
+                    blockedUrl.setId(key);
+                    seen.put(blockedUrl);
+                    pending.add(blockedUrl);
+
+                    Map<String, Object> urlData = new HashMap<>();
+                    urlData.put("url", blockedUrl.getUrl());
+                    urlData.put("addedAt", ServerValue.TIMESTAMP);
+                    urlData.put("addedBy", blockedUrl.getAddedBy());
+                    urlData.put("status", blockedUrl.getStatus());
+                    batch.put("blockedUrls/" + key, urlData);
+
+                    if (batch.size() >= batchSize) {
+                        imported += commit(batch, pending, snapshot);
+                        postProgress(listener, linesRead, imported, skipped);
+                    }
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                imported += commit(batch, pending, snapshot);
+            }
+
+            writeSnapshot(snapshot);
+
+            Log.d(TAG, "✅ Import finished: " + imported + " imported, " + skipped + " skipped, " + linesRead + " lines");
+            final int finalLines = linesRead;
+            final int finalImported = imported;
+            final int finalSkipped = skipped;
+            mainHandler.post(() -> listener.onComplete(finalLines, finalImported, finalSkipped));
+
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Import failed after " + imported + " URLs", e);
+            // Only a complete scan lists every existing entry
+            if (scanned) {
+                try {
+                    writeSnapshot(snapshot);
+                } catch (Exception snapshotError) {
+                    Log.e(TAG, "❌ Failed to write the snapshot", snapshotError);
+                }
+            }
+            final int finalImported = imported;
+            mainHandler.post(() -> listener.onError(e, finalImported));
+        }
+    }
+
+    /**
+     * Writes one batch and the syncStatus stamp in a single atomic update,
+     * blocking this worker thread so at most one batch is in flight. Once it is
+     * acknowledged its entries go to the snapshot and both are cleared.
+     *
+     * @return the number of URLs committed
+     */
+    private int commit(Map<String, Object> batch, List<BlockedUrl> pending, BlocklistSnapshot.Builder snapshot)
+            throws Exception {
+        Map<String, Object> update = new HashMap<>(batch);
+        update.put("syncStatus", syncStatus);
+        Tasks.await(familyRef.updateChildren(update), COMMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        for (BlockedUrl blockedUrl : pending) {
+            snapshot.add(blockedUrl);
+        }
+        int committed = batch.size();
+        batch.clear();
+        pending.clear();
+        return committed;
+    }
+
+    private void writeSnapshot(BlocklistSnapshot.Builder snapshot) throws Exception {
+        if (snapshotFile == null) return;
+        snapshot.writeTo(snapshotFile);
+        Log.d(TAG, "✅ Snapshot written: " + snapshot.size() + " entries");
+    }
+
+    private void postProgress(ProgressListener listener, int linesRead, int imported, int skipped) {
+        mainHandler.post(() -> listener.onProgress(linesRead, imported, skipped));
+    }
+}
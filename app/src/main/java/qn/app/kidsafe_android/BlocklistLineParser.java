@@ -0,0 +1,162 @@
+package qn.app.kidsafe_android;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recognizes the common blocklist formats: hosts files ("0.0.0.0 example.com"),
+ * plain domain or URL lists and AdBlock-style network filters ("||example.com^").
+ * IP literals and the loopback / broadcast names of a stock hosts file are not hosts
+ * to block and are skipped.
+ *
+ * An imported entry blocks its whole host, so AdBlock rules that block less are skipped
+ * rather than widened: rules with a path, a wildcard or an option that narrows them
+ * (domain=, third-party, resource types...).
+ */
+public final class BlocklistLineParser {
+
+    // The standard header of hosts files, e.g. "127.0.0.1 localhost.localdomain"
+    private static final Set<String> LOCAL_NAMES = new HashSet<>(Arrays.asList(
+            "localhost", "localhost.localdomain", "local", "broadcasthost", "localhost4",
+            "localhost4.localdomain4", "localhost6", "localhost6.localdomain6", "ip6-localhost",
+            "ip6-loopback", "ip6-localnet", "ip6-mcastprefix", "ip6-allnodes", "ip6-allrouters",
+            "ip6-allhosts"));
+    // AdBlock options that still block every request to the host
+    private static final Set<String> WHOLE_HOST_OPTIONS = new HashSet<>(Arrays.asList(
+            "important", "all", "document", "doc"));
+
+    private BlocklistLineParser() {
+    }
+
+    /**
+     * Extract the hosts or URLs named by one line of a hosts file, plain list or AdBlock filter.
+     * Comments, headers, exceptions, cosmetic and regex rules are ignored.
+     */
+    public static void parseLine(String line, List<String> out) {
+        int start = 0;
+        int end = line.length();
+        while (start < end && line.charAt(start) <= ' ') start++;
+        if (start == end) return;
+
+        char first = line.charAt(start);
+        if (first == '#' || first == '!' || first == '[' || first == ';') return;
+
+        // AdBlock: ||example.com^ or ||example.com^$important
+        if (line.startsWith("||", start)) {
+            int hostEnd = start + 2;
+            while (hostEnd < end) {
+                char c = line.charAt(hostEnd);
+                if (c == '^' || c == '$' || c == '|') break;
+                // Blocks part of the host, or an unknown set of hosts
+                if (c == '/' || c == '*') return;
+                hostEnd++;
+            }
+            if (hostEnd == start + 2) return;
+
+            int rest = hostEnd;
+            if (rest < end && line.charAt(rest) == '^') rest++;
+            if (rest < end && line.charAt(rest) == '|') rest++;
+            if (rest < end && line.charAt(rest) == '$') {
+                if (!blocksWholeHost(line, rest + 1, end)) return;
+                rest = end;
+            }
+            while (rest < end && line.charAt(rest) <= ' ') rest++;
+            if (rest == end) {
+                addHost(line.substring(start + 2, hostEnd), out);
+            }
+            return;
+        }
+        if (line.startsWith("@@", start) || line.indexOf("##", start) >= 0 || line.indexOf("#@#", start) >= 0) {
+            return;
+        }
+
+        int comment = line.indexOf('#', start);
+        if (comment >= 0) {
+            end = comment;
+        }
+
+        // Hosts file: "0.0.0.0 a.com b.com", otherwise one domain or URL per line
+        int tokenStart = -1;
+        boolean firstToken = true;
+        boolean hostsLine = false;
+        for (int i = start; i <= end; i++) {
+            boolean separator = i == end || line.charAt(i) <= ' ';
+            if (!separator) {
+                if (tokenStart < 0) tokenStart = i;
+                continue;
+            }
+            if (tokenStart < 0) continue;
+
+            String token = line.substring(tokenStart, i);
+            tokenStart = -1;
+            if (firstToken) {
+                firstToken = false;
+                // Any address, e.g. "255.255.255.255 broadcasthost" or "fe80::1%lo0 localhost"
+                if (isIpLiteral(token)) {
+                    hostsLine = true;
+                    continue;
+                }
+            }
+            addHost(token, out);
+            if (!hostsLine) {
+                // A plain line holds a single entry
+                return;
+            }
+        }
+    }
+
+    /**
+     * True when every option of "$a,b,c" (from {@code start} to {@code end}) leaves the
+     * rule blocking the whole host
+     */
+    private static boolean blocksWholeHost(String line, int start, int end) {
+        for (String option : line.substring(start, end).split(",")) {
+            if (!WHOLE_HOST_OPTIONS.contains(option.trim().toLowerCase())) return false;
+        }
+        return true;
+    }
+
+    private static void addHost(String token, List<String> out) {
+        if (isIpLiteral(token) || LOCAL_NAMES.contains(token.toLowerCase())) return;
+        out.add(token);
+    }
+
+    /**
+     * Dotted IPv4 ("0.0.0.0") or IPv6 ("::1", "[fe80::1]", "fe80::1%lo0")
+     */
+    static boolean isIpLiteral(String token) {
+        if (token.startsWith("[") && token.endsWith("]")) {
+            token = token.substring(1, token.length() - 1);
+        }
+        int zone = token.indexOf('%');
+        if (zone >= 0) token = token.substring(0, zone);
+        if (token.isEmpty()) return false;
+
+        if (token.indexOf(':') >= 0) {
+            for (int i = 0; i < token.length(); i++) {
+                char c = token.charAt(i);
+                boolean hex = (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+                // IPv4-mapped tails ("::ffff:1.2.3.4") keep their dots
+                if (!hex && c != ':' && c != '.') return false;
+            }
+            return true;
+        }
+        int dots = 0;
+        int digits = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '.') {
+                if (digits == 0) return false;
+                dots++;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && digits < 3) {
+                digits++;
+            } else {
+                return false;
+            }
+        }
+        return dots == 3 && digits > 0;
+    }
+}
@@ -0,0 +1,335 @@
+package qn.app.kidsafe_android;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Read-only, memory-mapped copy of the compiled blocklist.
+ *
+ * Entries are stored sorted by their reversed host ("m.facebook.com" -> "moc.koobecaf.m"),
+ * followed by the path for path entries, so a lookup is a binary search over the mapped
+ * bytes and parent domains are prefixes of the key. Nothing is parsed or allocated per
+ * entry when the file is opened, a million-entry list costs the page cache, not the heap.
+ *
+ * File layout (big endian):
+ * <pre>
+ *   int magic "KSBL", int version, int count, int addedByCount
+ *   addedByCount x (u16 length, UTF-8 bytes)    interned addedBy values
+ *   count x int                                 record offsets, in key order
+ *   count x (u8 flags, u8 addedBy, u16 length, key bytes)
+ * </pre>
+ * Keyword and wildcard entries are not stored, they are compiled by UrlPatternMatcher.
+ */
+public final class BlocklistSnapshot {
+
+    private static final int MAGIC = 0x4B53424C; // "KSBL"
+    private static final int VERSION = 1;
+    private static final int FLAG_ACTIVE = 1;
+    private static final int RECORD_HEADER = 4;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int indexStart;
+    private final String[] addedBy;
+
+    private BlocklistSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.remaining() < 16 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a blocklist snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported snapshot version " + buffer.getInt(4));
+        }
+        count = buffer.getInt(8);
+        addedBy = new String[buffer.getInt(12)];
+        int position = 16;
+        for (int i = 0; i < addedBy.length; i++) {
+            int length = buffer.getShort(position) & 0xFFFF;
+            byte[] bytes = new byte[length];
+            for (int b = 0; b < length; b++) {
+                bytes[b] = buffer.get(position + 2 + b);
+            }
+            addedBy[i] = new String(bytes, StandardCharsets.UTF_8);
+            position += 2 + length;
+        }
+        indexStart = position;
+    }
+
+    /**
+     * Map a snapshot file written by {@link Builder#writeTo(File)}
+     */
+    public static BlocklistSnapshot open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BlocklistSnapshot(mapped);
+        }
+    }
+
+    /**
+     * @return the snapshot, or null when the file is missing or unreadable
+     */
+    public static BlocklistSnapshot openIfExists(File file) {
+        if (!file.isFile()) return null;
+        try {
+            return open(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Snapshot file of one family, e.g. in Context.getFilesDir()
+     */
+    public static File fileFor(File directory, String userUid) {
+        return new File(directory, "blocklist-" + userUid + ".snap");
+    }
+
+    static BlocklistSnapshot wrap(byte[] bytes) throws IOException {
+        return new BlocklistSnapshot(ByteBuffer.wrap(bytes));
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * True when exactly this URL (host and path) is in the snapshot, active or not
+     */
+    public boolean containsUrl(String url) {
+        byte[] key = keyOf(UrlCanonicalizer.hostOf(url), UrlCanonicalizer.pathOf(url));
+        return key != null && search(key, 0, key.length, false) >= 0;
+    }
+
+    /**
+     * True when the host or any of its parent domains is blocked by an active entry,
+     * e.g. "m.facebook.com" is blocked by "facebook.com".
+     */
+    public boolean isBlocked(String host) {
+        byte[] ascii = host.getBytes(StandardCharsets.US_ASCII);
+        return isBlocked(ascii, 0, ascii.length);
+    }
+
+    /**
+     * Same as {@link #isBlocked(String)} for an ASCII host name in a byte array, as found in
+     * DNS queries or a TLS ClientHello. Case-insensitive, does not allocate.
+     */
+    public boolean isBlocked(byte[] host, int offset, int length) {
+        // Reversed, the host and each parent domain are prefixes ending at a label boundary
+        for (int prefix = 1; prefix <= length; prefix++) {
+            if (prefix == length || host[offset + length - 1 - prefix] == '.') {
+                int record = search(host, offset + length - prefix, prefix, true);
+                if (record >= 0 && (buffer.get(record) & FLAG_ACTIVE) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True when an active entry blocks exactly this host, not through a parent domain.
+     * Case-insensitive, does not allocate.
+     */
+    public boolean isBlockedExactly(byte[] host, int offset, int length) {
+        int record = search(host, offset, length, true);
+        return record >= 0 && (buffer.get(record) & FLAG_ACTIVE) != 0;
+    }
+
+    /**
+     * addedBy of the entry for this exact URL, or null
+     */
+    public String getAddedBy(String url) {
+        byte[] key = keyOf(UrlCanonicalizer.hostOf(url), UrlCanonicalizer.pathOf(url));
+        int record = key != null ? search(key, 0, key.length, false) : -1;
+        if (record < 0) return null;
+        int index = buffer.get(record + 1) & 0xFF;
+        return index < addedBy.length ? addedBy[index] : null;
+    }
+
+    /**
+     * Binary search for a key. With {@code reversed}, the key is bytes[end - 1] down to
+     * bytes[offset], lower-cased on the fly.
+     *
+     * @return offset of the matching record, or -1
+     */
+    private int search(byte[] bytes, int offset, int length, boolean reversed) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int record = buffer.getInt(indexStart + mid * 4);
+            int cmp = compare(record, bytes, offset, length, reversed);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    private int compare(int record, byte[] bytes, int offset, int length, boolean reversed) {
+        int keyLength = buffer.getShort(record + 2) & 0xFFFF;
+        int keyStart = record + RECORD_HEADER;
+        int common = Math.min(keyLength, length);
+        for (int i = 0; i < common; i++) {
+            int a = buffer.get(keyStart + i) & 0xFF;
+            int b = (reversed ? bytes[offset + length - 1 - i] : bytes[offset + i]) & 0xFF;
+            if (reversed && b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (a != b) return a - b;
+        }
+        return keyLength - length;
+    }
+
+    /**
+     * Sort key of an entry: reversed host, then path. Null for hosts that are not ASCII
+     * (canonical hosts are punycode) or keys too long for the record header.
+     */
+    static byte[] keyOf(String host, String path) {
+        if (host.isEmpty()) return null;
+        int length = host.length() + path.length();
+        if (length > 0xFFFF) return null;
+        byte[] key = new byte[length];
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(host.length() - 1 - i);
+            if (c >= 128) return null;
+            key[i] = (byte) c;
+        }
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        if (pathBytes.length != path.length()) {
+            key = Arrays.copyOf(key, host.length() + pathBytes.length);
+        }
+        System.arraycopy(pathBytes, 0, key, host.length(), pathBytes.length);
+        return key;
+    }
+
+    /**
+     * Collects entries, e.g. while scanning blockedUrls page by page, and writes them
+     * as a snapshot. Holds one small record per entry instead of a BlockedUrl.
+     */
+    public static final class Builder {
+
+        private final List<byte[]> records = new ArrayList<>();
+        private final List<String> addedByValues = new ArrayList<>();
+
+        /**
+         * Add a URL entry. Keyword/wildcard entries and unparseable URLs are ignored.
+         */
+        public void add(BlockedUrl blockedUrl) {
+            if (blockedUrl.isPattern() || blockedUrl.getUrl() == null) return;
+            String url = blockedUrl.getUrl();
+            byte[] key = keyOf(UrlCanonicalizer.hostOf(url), UrlCanonicalizer.pathOf(url));
+            if (key == null) return;
+
+            byte[] record = new byte[RECORD_HEADER + key.length];
+            record[0] = (byte) ("active".equals(blockedUrl.getStatus()) ? FLAG_ACTIVE : 0);
+            record[1] = (byte) intern(blockedUrl.getAddedBy());
+            record[2] = (byte) (key.length >>> 8);
+            record[3] = (byte) key.length;
+            System.arraycopy(key, 0, record, RECORD_HEADER, key.length);
+            records.add(record);
+        }
+
+        public int size() {
+            return records.size();
+        }
+
+        /**
+         * Write to a temporary file next to {@code file} and rename it over, so a reader
+         * never maps a half-written snapshot.
+         */
+        public void writeTo(File file) throws IOException {
+            File temp = new File(file.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024))) {
+                write(out);
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Cannot replace " + file);
+            }
+        }
+
+        byte[] toByteArray() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                write(out);
+            }
+            return bytes.toByteArray();
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            records.sort(KEY_ORDER);
+            // Duplicate keys keep the first record, active entries sort first
+            List<byte[]> unique = new ArrayList<>(records.size());
+            for (byte[] record : records) {
+                if (unique.isEmpty() || compareKeys(unique.get(unique.size() - 1), record) != 0) {
+                    unique.add(record);
+                }
+            }
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(unique.size());
+            out.writeInt(addedByValues.size());
+            int position = 16;
+            for (String value : addedByValues) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+                position += 2 + bytes.length;
+            }
+
+            position += unique.size() * 4;
+            for (byte[] record : unique) {
+                out.writeInt(position);
+                position += record.length;
+            }
+            for (byte[] record : unique) {
+                out.write(record);
+            }
+        }
+
+        private int intern(String value) {
+            String text = value != null ? value : "";
+            int index = addedByValues.indexOf(text);
+            if (index >= 0) return index;
+            if (addedByValues.size() == 255) return 255; // unknown, read back as null
+            addedByValues.add(text);
+            return addedByValues.size() - 1;
+        }
+
+        private static final Comparator<byte[]> KEY_ORDER = (a, b) -> {
+            int cmp = compareKeys(a, b);
+            return cmp != 0 ? cmp : (b[0] & FLAG_ACTIVE) - (a[0] & FLAG_ACTIVE);
+        };
+
+        private static int compareKeys(byte[] a, byte[] b) {
+            int common = Math.min(a.length, b.length);
+            for (int i = RECORD_HEADER; i < common; i++) {
+                int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+                if (cmp != 0) return cmp;
+            }
+            return a.length - b.length;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package qn.app.kidsafe_android;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs every active break_rule as a state machine per profile:
+ * <pre>
+ *   IDLE --use--> USING --breakInterval of continuous use--> ON_BREAK
+ *   ON_BREAK --breakDuration--> USING (still in use) or IDLE, continuous use reset
+ *   USING --stop--> IDLE; an idle pause as long as the break also resets continuous use
+ * </pre>
+ * Use during a break does not shorten it. A rule without profileId applies to every
+ * profile. All deadlines live in one TimerWheel with 1 s ticks, so hundreds of rules and
+ * profiles cost O(1) per tick instead of one scheduled task each.
+ *
+ * Times are epoch millis passed in by the caller. Not thread-safe.
+ */
+public class BreakRuleEngine {
+
+    public static final String DEFAULT_PROFILE = "";
+    static final long TICK_MS = 1000;
+
+    static final int IDLE = 0;
+    static final int USING = 1;
+    static final int ON_BREAK = 2;
+
+    private final TimerWheel wheel = new TimerWheel(0);
+    private final Map<String, Profile> profiles = new HashMap<>();
+    private List<TimeRule> breakRules = new ArrayList<>();
+
+    private static final class Profile {
+        final String id;
+        boolean inUse;
+        final List<BreakState> states = new ArrayList<>();
+
+        Profile(String id) {
+            this.id = id;
+        }
+    }
+
+    /** One rule applied to one profile */
+    private final class BreakState extends TimerWheel.Timer {
+        final Profile profile;
+        final String ruleId;
+        final long intervalMs;
+        final long durationMs;
+
+        int state = IDLE;
+        long continuousBefore;      // continuous use before the current segment
+        long segmentStart;          // start of the current use, while USING
+        long deadlineMillis;        // what the wheel timer stands for
+        long breakEnd;
+
+        BreakState(Profile profile, TimeRule rule) {
+            this.profile = profile;
+            this.ruleId = rule.getId();
+            this.intervalMs = rule.getBreakIntervalMinutes() * 60_000L;
+            this.durationMs = rule.getBreakDurationMinutes() * 60_000L;
+        }
+
+        boolean sameRule(TimeRule rule) {
+            return ruleId != null && ruleId.equals(rule.getId())
+                    && intervalMs == rule.getBreakIntervalMinutes() * 60_000L
+                    && durationMs == rule.getBreakDurationMinutes() * 60_000L;
+        }
+
+        long continuousMillis(long now) {
+            return continuousBefore + (state == USING ? Math.max(0, now - segmentStart) : 0);
+        }
+
+        @Override
+        void onExpired(long tick) {
+            // Act at the exact deadline, even when the wheel is advanced late
+            long at = deadlineMillis;
+            if (state == USING) {
+                state = ON_BREAK;
+                continuousBefore = 0;
+                breakEnd = at + durationMs;
+                arm(this, breakEnd);
+            } else if (state == ON_BREAK) {
+                continuousBefore = 0;
+                if (profile.inUse) {
+                    begin(this, at);
+                } else {
+                    state = IDLE;
+                }
+            } else {
+                // A pause as long as a break
+                continuousBefore = 0;
+            }
+        }
+    }
+
+    /**
+     * New rule list from timeRules. States of unchanged rules carry over.
+     */
+    public void setRules(List<TimeRule> rules, long now) {
+        advance(now);
+        breakRules = new ArrayList<>();
+        for (TimeRule rule : rules) {
+            if (rule.isActive() && "break_rule".equals(rule.getRuleType())
+                    && rule.getBreakIntervalMinutes() > 0 && rule.getBreakDurationMinutes() > 0) {
+                breakRules.add(rule);
+            }
+        }
+        for (Profile profile : profiles.values()) {
+            rebuild(profile, now);
+        }
+    }
+
+    public void onUsageStart(String profileId, long now) {
+        advance(now);
+        Profile profile = profile(profileId, now);
+        if (profile.inUse) return;
+        profile.inUse = true;
+        for (BreakState s : profile.states) {
+            if (s.state == IDLE) {
+                begin(s, now);
+            }
+        }
+    }
+
+    public void onUsageStop(String profileId, long now) {
+        advance(now);
+        Profile profile = profiles.get(key(profileId));
+        if (profile == null || !profile.inUse) return;
+        profile.inUse = false;
+        for (BreakState s : profile.states) {
+            if (s.state == USING) {
+                s.continuousBefore += Math.max(0, now - s.segmentStart);
+                s.state = IDLE;
+                arm(s, now + s.durationMs);
+            }
+        }
+    }
+
+    /**
+     * Fire every deadline up to {@code now}
+     */
+    public void advance(long now) {
+        long tick = now / TICK_MS;
+        if (tick >= wheel.getCurrentTick()) {
+            wheel.advance(tick);
+        }
+    }
+
+    public boolean isInUse(String profileId) {
+        Profile profile = profiles.get(key(profileId));
+        return profile != null && profile.inUse;
+    }
+
+    public boolean isOnBreak(String profileId) {
+        return getBreakEndMillis(profileId) >= 0;
+    }
+
+    /**
+     * End of the longest break running for the profile, -1 when none
+     */
+    public long getBreakEndMillis(String profileId) {
+        Profile profile = profiles.get(key(profileId));
+        if (profile == null) return -1;
+        long end = -1;
+        for (BreakState s : profile.states) {
+            if (s.state == ON_BREAK) end = Math.max(end, s.breakEnd);
+        }
+        return end;
+    }
+
+    /**
+     * Continuous use counted towards the next break of the strictest rule
+     */
+    public long getContinuousUsageMillis(String profileId, long now) {
+        Profile profile = profiles.get(key(profileId));
+        if (profile == null) return 0;
+        long most = 0;
+        for (BreakState s : profile.states) {
+            most = Math.max(most, s.continuousMillis(now));
+        }
+        return most;
+    }
+
+    /**
+     * When the next break starts or ends (epoch millis), -1 when nothing is pending
+     */
+    public long nextWakeMillis() {
+        long deadline = wheel.nextDeadline();
+        return deadline < 0 ? -1 : deadline * TICK_MS;
+    }
+
+    int getTimerCount() {
+        return wheel.size();
+    }
+
+    private Profile profile(String profileId, long now) {
+        String key = key(profileId);
+        Profile profile = profiles.get(key);
+        if (profile == null) {
+            profile = new Profile(key);
+            profiles.put(key, profile);
+            rebuild(profile, now);
+        }
+        return profile;
+    }
+
+    private void rebuild(Profile profile, long now) {
+        List<BreakState> previous = new ArrayList<>(profile.states);
+        profile.states.clear();
+        for (TimeRule rule : breakRules) {
+            String ruleProfile = key(rule.getProfileId());
+            if (!ruleProfile.isEmpty() && !ruleProfile.equals(profile.id)) continue;
+
+            BreakState kept = null;
+            for (BreakState old : previous) {
+                if (old.sameRule(rule)) {
+                    kept = old;
+                    break;
+                }
+            }
+            if (kept != null) {
+                previous.remove(kept);
+                profile.states.add(kept);
+                continue;
+            }
+            BreakState state = new BreakState(profile, rule);
+            profile.states.add(state);
+            if (profile.inUse) {
+                begin(state, now);
+            }
+        }
+        for (BreakState dropped : previous) {
+            wheel.cancel(dropped);
+        }
+    }
+
+    private void begin(BreakState s, long now) {
+        s.state = USING;
+        s.segmentStart = now;
+        arm(s, now + s.intervalMs - s.continuousBefore);
+    }
+
+    private void arm(BreakState s, long deadlineMillis) {
+        s.deadlineMillis = deadlineMillis;
+        // Round up, a break never starts before its time
+        wheel.schedule(s, (deadlineMillis + TICK_MS - 1) / TICK_MS);
+    }
+
+    private static String key(String profileId) {
+        return profileId == null ? DEFAULT_PROFILE : profileId;
+    }
+}
@@ -0,0 +1,136 @@
+package qn.app.kidsafe_android;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Answers DNS queries for blocked names locally.
+ *
+ * Each query is parsed in place with a reused DnsQuery. Its name is looked up in a
+ * VerdictCache, then checked against the BlocklistEngine (Bloom filter first, so allowed
+ * names cost a few hash probes). When blocked, a response is written into the caller's
+ * buffer: NXDOMAIN, or a sinkhole answer of 0.0.0.0 / :: for A / AAAA. Nothing is
+ * allocated per query once the cache is warm.
+ *
+ * Single-threaded, like the engine it reads: run it on the thread that owns the packets.
+ */
+public class DnsFilter {
+
+    public enum Mode {
+        NXDOMAIN,
+        SINKHOLE
+    }
+
+    public static final int VERDICT_FORWARD = 0;
+    public static final int VERDICT_BLOCKED = 1;
+    public static final int VERDICT_MALFORMED = 2;
+
+    private static final int SINKHOLE_TTL = 60;
+    private static final int RCODE_NXDOMAIN = 3;
+
+    private final BlocklistEngine engine;
+    private final Mode mode;
+    private final VerdictCache cache;
+    private final DnsQuery query = new DnsQuery();
+
+    private long queryCount;
+    private long blockedCount;
+    private long malformedCount;
+
+    public DnsFilter(BlocklistEngine engine, Mode mode) {
+        this(engine, mode, new VerdictCache());
+    }
+
+    public DnsFilter(BlocklistEngine engine, Mode mode, VerdictCache cache) {
+        this.engine = engine;
+        this.mode = mode;
+        this.cache = cache;
+    }
+
+    /**
+     * Check one query packet, from {@code packet} position to limit (not consumed).
+     * For {@link #VERDICT_BLOCKED} the response is written to {@code response}, which is
+     * cleared first and left flipped, ready to be sent. Other verdicts leave it untouched
+     * and the query should be forwarded (or dropped when malformed).
+     */
+    public int filter(ByteBuffer packet, ByteBuffer response) {
+        queryCount++;
+        if (!query.parse(packet)) {
+            malformedCount++;
+            return VERDICT_MALFORMED;
+        }
+        if (query.getQuestionClass() != DnsQuery.CLASS_IN
+                || !engine.isHostBlocked(query.getName(), 0, query.getNameLength(), cache)) {
+            return VERDICT_FORWARD;
+        }
+
+        blockedCount++;
+        writeResponse(response);
+        return VERDICT_BLOCKED;
+    }
+
+    public VerdictCache getCache() {
+        return cache;
+    }
+
+    /**
+     * The query of the last {@link #filter} call
+     */
+    public DnsQuery getLastQuery() {
+        return query;
+    }
+
+    public long getQueryCount() {
+        return queryCount;
+    }
+
+    public long getBlockedCount() {
+        return blockedCount;
+    }
+
+    public long getMalformedCount() {
+        return malformedCount;
+    }
+
+    private void writeResponse(ByteBuffer out) {
+        int type = query.getQuestionType();
+        boolean answer = mode == Mode.SINKHOLE && (type == DnsQuery.TYPE_A || type == DnsQuery.TYPE_AAAA);
+        int rcode = mode == Mode.NXDOMAIN ? RCODE_NXDOMAIN : 0;
+        // QR, opcode and RD copied from the query, RA set
+        int flags = 0x8000 | (query.getFlags() & 0x7900) | 0x0080 | rcode;
+
+        out.clear();
+        out.putShort((short) query.getId());
+        out.putShort((short) flags);
+        out.putShort((short) 1);            // QDCOUNT
+        out.putShort((short) (answer ? 1 : 0));
+        out.putShort((short) 0);            // NSCOUNT
+        out.putShort((short) 0);            // ARCOUNT, EDNS is not echoed
+
+        // Question re-encoded from the parsed name, so compression in the query cannot leak through
+        byte[] name = query.getName();
+        int labelStart = 0;
+        for (int i = 0; i <= query.getNameLength(); i++) {
+            if (i == query.getNameLength() || name[i] == '.') {
+                out.put((byte) (i - labelStart));
+                out.put(name, labelStart, i - labelStart);
+                labelStart = i + 1;
+            }
+        }
+        out.put((byte) 0);
+        out.putShort((short) query.getQuestionType());
+        out.putShort((short) query.getQuestionClass());
+
+        if (answer) {
+            out.putShort((short) 0xC00C);   // name: pointer to the question at offset 12
+            out.putShort((short) type);
+            out.putShort((short) DnsQuery.CLASS_IN);
+            out.putInt(SINKHOLE_TTL);
+            int addressLength = type == DnsQuery.TYPE_A ? 4 : 16;
+            out.putShort((short) addressLength);
+            for (int i = 0; i < addressLength; i++) {
+                out.put((byte) 0);
+            }
+        }
+        out.flip();
+    }
+}
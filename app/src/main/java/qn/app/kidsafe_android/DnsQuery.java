@@ -0,0 +1,138 @@
+package qn.app.kidsafe_android;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable, allocation-free view of the question of a DNS query (RFC 1035 wire format).
+ *
+ * {@link #parse(ByteBuffer)} reads the header and the first question straight from the
+ * buffer, without moving its position. The name is copied, dotted and without the final
+ * root label ("www.youtube.com"), into a scratch array owned by this object, so one
+ * instance can parse any number of packets without creating Strings.
+ */
+public final class DnsQuery {
+
+    public static final int HEADER_LENGTH = 12;
+    public static final int MAX_NAME_LENGTH = 253;
+
+    public static final int TYPE_A = 1;
+    public static final int TYPE_AAAA = 28;
+    public static final int CLASS_IN = 1;
+
+    private static final int MAX_POINTERS = 16;
+
+    private final byte[] name = new byte[MAX_NAME_LENGTH];
+    private int nameLength;
+    private int id;
+    private int flags;
+    private int questionType;
+    private int questionClass;
+    private int questionStart;
+    private int questionEnd;
+
+    /**
+     * Parse a standard query from buffer[position, limit).
+     *
+     * @return false for responses, other opcodes, no question, or malformed packets
+     */
+    public boolean parse(ByteBuffer packet) {
+        int base = packet.position();
+        int limit = packet.limit();
+        if (limit - base < HEADER_LENGTH) return false;
+
+        id = packet.getShort(base) & 0xFFFF;
+        flags = packet.getShort(base + 2) & 0xFFFF;
+        int questions = packet.getShort(base + 4) & 0xFFFF;
+        boolean isResponse = (flags & 0x8000) != 0;
+        int opcode = (flags >>> 11) & 0xF;
+        if (isResponse || opcode != 0 || questions == 0) return false;
+
+        questionStart = base + HEADER_LENGTH;
+        int offset = questionStart;
+        int end = -1;       // end of the name in the packet, set at the first pointer
+        int pointers = 0;
+        nameLength = 0;
+
+        while (true) {
+            if (offset >= limit) return false;
+            int length = packet.get(offset) & 0xFF;
+
+            if ((length & 0xC0) == 0xC0) {
+                // Compression pointer, unusual in a query but legal
+                if (offset + 1 >= limit || ++pointers > MAX_POINTERS) return false;
+                if (end < 0) end = offset + 2;
+                offset = base + (((length & 0x3F) << 8) | (packet.get(offset + 1) & 0xFF));
+                continue;
+            }
+            if ((length & 0xC0) != 0) return false;
+
+            offset++;
+            if (length == 0) break;
+            if (offset + length > limit) return false;
+            if (nameLength > 0) {
+                if (nameLength >= MAX_NAME_LENGTH) return false;
+                name[nameLength++] = '.';
+            }
+            if (nameLength + length > MAX_NAME_LENGTH) return false;
+            for (int i = 0; i < length; i++) {
+                byte b = packet.get(offset + i);
+                // A dot inside a label would make the dotted name ambiguous
+                if (b == '.') return false;
+                name[nameLength++] = b;
+            }
+            offset += length;
+        }
+
+        if (end < 0) end = offset;
+        if (end + 4 > limit) return false;
+        questionType = packet.getShort(end) & 0xFFFF;
+        questionClass = packet.getShort(end + 2) & 0xFFFF;
+        questionEnd = end + 4;
+        return true;
+    }
+
+    /**
+     * Dotted question name, valid until the next parse. Do not modify.
+     */
+    public byte[] getName() {
+        return name;
+    }
+
+    public int getNameLength() {
+        return nameLength;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public int getQuestionType() {
+        return questionType;
+    }
+
+    public int getQuestionClass() {
+        return questionClass;
+    }
+
+    /** Offset of the question section in the parsed buffer */
+    public int getQuestionStart() {
+        return questionStart;
+    }
+
+    /** Offset just after QTYPE and QCLASS of the first question */
+    public int getQuestionEnd() {
+        return questionEnd;
+    }
+
+    /** For logging only, allocates */
+    @Override
+    public String toString() {
+        return new String(name, 0, nameLength, StandardCharsets.US_ASCII)
+                + " type " + questionType;
+    }
+}
@@ -0,0 +1,213 @@
+package qn.app.kidsafe_android;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reversed-label trie over the blocked URL list.
+ * "m.facebook.com" is stored as com -> facebook -> m, so exact, subdomain and
+ * duplicate lookups cost O(labels) no matter how many URLs the family blocks.
+ */
+public class DomainTrie {
+
+    private final Node root = new Node();
+
+    // Blocked URL id -> URL as it was indexed, so updates and removals can find the old entry
+    private final Map<String, String> indexedUrls = new HashMap<>();
+    private final Map<String, Boolean> indexedActive = new HashMap<>();
+
+    private static class Node {
+        Map<String, Node> children;
+        Map<String, Integer> paths;  // path -> number of entries ("" = whole host)
+        int activeHostEntries;       // active entries that block the whole host
+
+        boolean isEmpty() {
+            return (children == null || children.isEmpty())
+                    && (paths == null || paths.isEmpty())
+                    && activeHostEntries == 0;
+        }
+    }
+
+    /**
+     * Bring the trie in line with the latest list from Firebase.
+     * Only entries that were added, removed or changed since the last call touch the trie.
+     */
+    public void update(List<BlockedUrl> urls) {
+        Set<String> seen = new HashSet<>();
+        for (BlockedUrl blockedUrl : urls) {
+            if (blockedUrl.getId() == null) continue;
+            seen.add(blockedUrl.getId());
+            put(blockedUrl);
+        }
+
+        List<String> removed = new ArrayList<>();
+        for (String id : indexedUrls.keySet()) {
+            if (!seen.contains(id)) {
+                removed.add(id);
+            }
+        }
+        for (String id : removed) {
+            remove(id);
+        }
+    }
+
+    /**
+     * Add or update a single entry
+     */
+    public void put(BlockedUrl blockedUrl) {
+        String id = blockedUrl.getId();
+        String url = blockedUrl.getUrl();
+        if (id == null || url == null) return;
+        if (blockedUrl.isPattern()) {
+            // Keywords and wildcards live in UrlPatternMatcher
+            remove(id);
+            return;
+        }
+
+        boolean active = "active".equals(blockedUrl.getStatus());
+        String previousUrl = indexedUrls.get(id);
+        if (previousUrl != null) {
+            if (previousUrl.equals(url) && indexedActive.get(id) == active) {
+                return;
+            }
+            remove(id);
+        }
+
+        String host = UrlCanonicalizer.hostOf(url);
+        if (host.isEmpty()) return;
+
+        Node node = root;
+        int end = host.length();
+        while (end > 0) {
+            int start = host.lastIndexOf('.', end - 1) + 1;
+            String label = host.substring(start, end);
+            if (node.children == null) {
+                node.children = new HashMap<>();
+            }
+            Node child = node.children.get(label);
+            if (child == null) {
+                child = new Node();
+                node.children.put(label, child);
+            }
+            node = child;
+            end = start - 1;
+        }
+
+        String path = UrlCanonicalizer.pathOf(url);
+        if (node.paths == null) {
+            node.paths = new HashMap<>();
+        }
+        Integer count = node.paths.get(path);
+        node.paths.put(path, count == null ? 1 : count + 1);
+        if (active && path.isEmpty()) {
+            node.activeHostEntries++;
+        }
+
+        indexedUrls.put(id, url);
+        indexedActive.put(id, active);
+    }
+
+    /**
+     * Remove the entry with the given Firebase key
+     */
+    public void remove(String id) {
+        String url = indexedUrls.remove(id);
+        Boolean active = indexedActive.remove(id);
+        if (url == null) return;
+
+        String host = UrlCanonicalizer.hostOf(url);
+        if (host.isEmpty()) return;
+
+        List<Node> trail = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        Node node = root;
+        int end = host.length();
+        while (end > 0 && node != null) {
+            int start = host.lastIndexOf('.', end - 1) + 1;
+            String label = host.substring(start, end);
+            trail.add(node);
+            labels.add(label);
+            node = node.children != null ? node.children.get(label) : null;
+            end = start - 1;
+        }
+        if (node == null || node.paths == null) return;
+
+        String path = UrlCanonicalizer.pathOf(url);
+        Integer count = node.paths.get(path);
+        if (count == null) return;
+        if (count <= 1) {
+            node.paths.remove(path);
+        } else {
+            node.paths.put(path, count - 1);
+        }
+        if (Boolean.TRUE.equals(active) && path.isEmpty()) {
+            node.activeHostEntries--;
+        }
+
+        // Prune nodes that no longer lead to any entry
+        for (int i = trail.size() - 1; i >= 0 && node.isEmpty(); i--) {
+            Node parent = trail.get(i);
+            parent.children.remove(labels.get(i));
+            node = parent;
+        }
+    }
+
+    public void clear() {
+        root.children = null;
+        root.paths = null;
+        indexedUrls.clear();
+        indexedActive.clear();
+    }
+
+    /**
+     * True when exactly this URL (host and path) is already in the list
+     */
+    public boolean containsUrl(String url) {
+        Node node = find(UrlCanonicalizer.hostOf(url));
+        return node != null && node.paths != null && node.paths.containsKey(UrlCanonicalizer.pathOf(url));
+    }
+
+    /**
+     * True when the host itself is blocked by an active entry
+     */
+    public boolean containsHost(String host) {
+        Node node = find(host);
+        return node != null && node.activeHostEntries > 0;
+    }
+
+    /**
+     * True when the host or any of its parent domains is blocked by an active entry,
+     * e.g. "m.facebook.com" is blocked by "facebook.com".
+     */
+    public boolean isBlocked(String host) {
+        Node node = root;
+        int end = host.length();
+        while (end > 0) {
+            int start = host.lastIndexOf('.', end - 1) + 1;
+            node = node.children != null ? node.children.get(host.substring(start, end)) : null;
+            if (node == null) return false;
+            if (node.activeHostEntries > 0) return true;
+            end = start - 1;
+        }
+        return false;
+    }
+
+    public int size() {
+        return indexedUrls.size();
+    }
+
+    private Node find(String host) {
+        Node node = root;
+        int end = host.length();
+        while (end > 0 && node != null) {
+            int start = host.lastIndexOf('.', end - 1) + 1;
+            node = node.children != null ? node.children.get(host.substring(start, end)) : null;
+            end = start - 1;
+        }
+        return host.isEmpty() ? null : node;
+    }
+}
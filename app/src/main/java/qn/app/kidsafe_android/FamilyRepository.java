@@ -0,0 +1,904 @@
+package qn.app.kidsafe_android;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseException;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide access to kidsafe/families/&lt;uid&gt;, owned by KidSafeApplication.
+ *
+ * Every node has at most one Firebase listener, shared by all screens that observe it
+ * (see SharedNode). The decoded state - parsed rule list, the window of loaded URL pages,
+ * the family's BlocklistEngine, sync stamp - lives here rather than in the activities, so
+ * a screen that is recreated or reopened gets it back without another download.
+ *
+ * blockedUrls and timeRules are local-first: screens read them from the family's
+ * FamilyStore, which shows the last known state at once, online or not, and which
+ * Firebase events update. Local writes go to the store's log first, are visible right
+ * away and are sent to Firebase in the background.
+ *
+ * SUSPEND_AFTER_MS after the app went to the background every listener is suspended, so
+ * family changes are no longer streamed (writes still go out). Back in the foreground
+ * the listeners are attached again with disk persistence on, so Firebase checks the
+ * cached data by hash and sends only what changed, and the blocked URL pager asks for
+ * entries added since its boundary only.
+ *
+ * Main thread only.
+ */
+public class FamilyRepository {
+
+    private static final String TAG = "FamilyRepository";
+    public static final String DATABASE_URL = "https://kidsafe-control-default-rtdb.asia-southeast1.firebasedatabase.app/";
+    // Covers a rotation or a quick back and forth between screens
+    private static final long LINGER_MS = 30_000;
+    // A quick switch to another app and back keeps streaming
+    private static final long SUSPEND_AFTER_MS = 60_000;
+
+    /** A parsed timeRules node and its display rows */
+    public static final class TimeRules {
+        private final List<TimeRuleRow> rows;
+        private final List<TimeRule> rules;
+
+        TimeRules(List<TimeRuleRow> rows) {
+            this.rows = rows;
+            List<TimeRule> rules = new ArrayList<>(rows.size());
+            for (TimeRuleRow row : rows) {
+                rules.add(row.getRule());
+            }
+            this.rules = Collections.unmodifiableList(rules);
+        }
+
+        /** Unmodifiable */
+        public List<TimeRule> getRules() {
+            return rules;
+        }
+
+        /** Unmodifiable; one per rule, formatted on the parse executor */
+        public List<TimeRuleRow> getRows() {
+            return rows;
+        }
+    }
+
+    /**
+     * The window of blockedUrls rows a screen shows: the newest entries known locally at
+     * first, then the pages the pager keeps attached. The family's BlocklistEngine covers
+     * every entry, whether it has a row or not. Pager and model events are forwarded to
+     * every registered screen after the store and the engine are updated.
+     *
+     * The store is read and the seed's rows are formatted on the parse executor; only
+     * the finished lists reach the main thread. Rows then follow the model one item at a
+     * time.
+     */
+    public static final class BlockedUrls {
+        private final FamilyStore store;
+        private final KeyedList<BlockedUrl> model = new KeyedList<>();
+        private final KeyedList<UrlRow> rows = new KeyedList<>();
+        // For single-item edits; seeds get their own on the parse executor
+        private final DateTimeFormatter dateFormat = RowFormat.dateFormat();
+        private final BlocklistEngine engine;
+        private final VerdictCache verdicts;
+        private final BlockedUrlPager pager;
+        private final List<BlockedUrlPager.Listener> pagerListeners = new ArrayList<>();
+        private final List<KeyedList.Listener> modelListeners = new ArrayList<>();
+        private final KeyedList.Listener modelFanOut;
+        private final Executor parseExecutor;
+        private final Executor mainThread;
+        // Bumped by every reload and by close(), so only the latest seed is shown
+        private int reloads;
+        private boolean reloading;
+        private boolean suspended;
+        private int bulkWrites;
+        private boolean closed;
+
+        BlockedUrls(DatabaseReference blockedUrlsRef, FamilyStore store, BlocklistEngine engine, VerdictCache verdicts,
+                    List<BlockedUrl> seed, List<UrlRow> seedRows, Executor parseExecutor, Executor mainThread) {
+            this.store = store;
+            this.engine = engine;
+            this.verdicts = verdicts;
+            this.parseExecutor = parseExecutor;
+            this.mainThread = mainThread;
+            modelFanOut = new KeyedList.Listener() {
+                @Override
+                public void onItemInserted(int position) {
+                    List<BlockedUrl> items = model.getItems();
+                    BlockedUrl blockedUrl = items.get(position);
+                    String previousKey = position > 0 ? items.get(position - 1).getId() : null;
+                    rows.add(blockedUrl.getId(), previousKey, UrlRow.of(blockedUrl, dateFormat));
+                    for (KeyedList.Listener listener : modelListeners) listener.onItemInserted(position);
+                }
+
+                @Override
+                public void onItemChanged(int position) {
+                    BlockedUrl blockedUrl = model.getItems().get(position);
+                    rows.set(blockedUrl.getId(), UrlRow.of(blockedUrl, dateFormat));
+                    for (KeyedList.Listener listener : modelListeners) listener.onItemChanged(position);
+                }
+
+                @Override
+                public void onItemRemoved(int position) {
+                    rows.remove(rows.getItems().get(position).getId());
+                    for (KeyedList.Listener listener : modelListeners) listener.onItemRemoved(position);
+                }
+
+                @Override
+                public void onReset() {
+                    for (KeyedList.Listener listener : modelListeners) listener.onReset();
+                }
+            };
+            // The newest cached entries are shown before the first page arrives
+            rows.replaceAll(seedRows, UrlRow::getId);
+            model.replaceAll(seed, BlockedUrl::getId);
+            model.setListener(modelFanOut);
+            pager = new BlockedUrlPager(blockedUrlsRef, model, new BlockedUrlPager.Listener() {
+                @Override
+                public void onUrlLoaded(BlockedUrl blockedUrl) {
+                    String path = pathOf(blockedUrl.getId());
+                    saveRemote(path, SnapshotMapper.writeBlockedUrl(blockedUrl));
+                    if (store.hasPending(path)) {
+                        // A local edit still in flight wins over the server copy
+                        show(blockedUrl.getId());
+                    } else {
+                        loaded(blockedUrl);
+                    }
+                }
+
+                @Override
+                public void onUrlRemoved(String key) {
+                    String path = pathOf(key);
+                    // The engine needs its host, the page may not have held it
+                    BlockedUrl previous = SnapshotMapper.readBlockedUrl(key, store.get(path));
+                    saveRemote(path, null);
+                    if (store.hasPending(path)) {
+                        show(key);
+                    } else {
+                        removed(key, previous);
+                    }
+                }
+
+                @Override
+                public void onPageLoaded(int loadedCount, boolean endReached) {
+                    try {
+                        store.flush();
+                    } catch (IOException e) {
+                        Log.e(TAG, "❌ Failed to save blocked URLs", e);
+                    }
+                    for (BlockedUrlPager.Listener listener : pagerListeners) listener.onPageLoaded(loadedCount, endReached);
+                }
+
+                @Override
+                public void onError(DatabaseError error) {
+                    for (BlockedUrlPager.Listener listener : pagerListeners) listener.onError(error);
+                }
+            });
+        }
+
+        public KeyedList<BlockedUrl> getModel() {
+            return model;
+        }
+
+        /**
+         * Live read-only view, one display row per model item at the same position
+         */
+        public List<UrlRow> getRows() {
+            return rows.getItems();
+        }
+
+        public BlocklistEngine getEngine() {
+            return engine;
+        }
+
+        /**
+         * Verdicts of the engine for DnsFilter and SniFilter. Every pager or model event
+         * that changes a host's verdict goes through the engine and bumps its generation,
+         * which drops the cached verdicts at once.
+         */
+        public VerdictCache getVerdictCache() {
+            return verdicts;
+        }
+
+        public BlockedUrlPager getPager() {
+            return pager;
+        }
+
+        public void addPagerListener(BlockedUrlPager.Listener listener) {
+            pagerListeners.add(listener);
+        }
+
+        public void removePagerListener(BlockedUrlPager.Listener listener) {
+            pagerListeners.remove(listener);
+        }
+
+        public void addModelListener(KeyedList.Listener listener) {
+            modelListeners.add(listener);
+        }
+
+        public void removeModelListener(KeyedList.Listener listener) {
+            modelListeners.remove(listener);
+        }
+
+        /**
+         * Drop the loaded pages and load again from the newest entry, starting from what
+         * the store holds. The model is refilled as one reset, observers rebind their
+         * whole list.
+         */
+        public void reload() {
+            if (closed) return;
+            pager.stop();
+            reloading = true;
+            final int reload = ++reloads;
+            parseExecutor.execute(() -> {
+                List<BlockedUrl> seed = store.getNewestBlockedUrls(BlockedUrlPager.DEFAULT_PAGE_SIZE);
+                List<UrlRow> seedRows = rowsOf(seed);
+                mainThread.execute(() -> {
+                    if (reload != reloads) return;
+                    reloading = false;
+                    rows.replaceAll(seedRows, UrlRow::getId);
+                    model.replaceAll(seed, BlockedUrl::getId);
+                    // A stopped pager starts over on resume() or endBulkWrite()
+                    if (!suspended && bulkWrites == 0) pager.start();
+                });
+            });
+        }
+
+        /**
+         * Detach the pages while a bulk write such as an import runs. Every child it adds
+         * lands above the head's boundary and would otherwise stream through the head one
+         * at a time on the main thread. The engine is not updated meanwhile; the writer
+         * brings it up to date (an import rewrites the snapshot).
+         */
+        public void beginBulkWrite() {
+            bulkWrites++;
+            pager.stop();
+        }
+
+        /**
+         * Load again from the newest entry once the last bulk write is done
+         */
+        public void endBulkWrite() {
+            if (bulkWrites == 0) return;
+            if (--bulkWrites == 0) reload();
+        }
+
+        void suspend() {
+            suspended = true;
+            pager.suspend();
+        }
+
+        void resume() {
+            suspended = false;
+            if (!reloading && bulkWrites == 0) pager.resume();
+        }
+
+        void close() {
+            closed = true;
+            reloads++;
+            reloading = false;
+            pager.stop();
+        }
+
+        /**
+         * Make the row of {@code key} and the engine match the store. No row is added
+         * for an entry outside the attached pages.
+         */
+        void show(String key) {
+            BlockedUrl blockedUrl = SnapshotMapper.readBlockedUrl(key, store.get(pathOf(key)));
+            if (blockedUrl == null) {
+                removed(key, model.remove(key));
+            } else {
+                if (model.get(key) != null || pager.covers(blockedUrl)) {
+                    model.addSorted(key, blockedUrl, BlockedUrl.NEWEST_FIRST);
+                }
+                loaded(blockedUrl);
+            }
+        }
+
+        private void loaded(BlockedUrl blockedUrl) {
+            engine.put(blockedUrl);
+            for (BlockedUrlPager.Listener listener : pagerListeners) listener.onUrlLoaded(blockedUrl);
+        }
+
+        private void removed(String key, BlockedUrl previous) {
+            if (previous != null) {
+                engine.remove(previous);
+            } else {
+                engine.remove(key);
+            }
+            for (BlockedUrlPager.Listener listener : pagerListeners) listener.onUrlRemoved(key);
+        }
+
+        private void saveRemote(String path, Object value) {
+            try {
+                store.putRemote(path, value);
+            } catch (IOException e) {
+                Log.e(TAG, "❌ Failed to save blocked URL " + path, e);
+            }
+        }
+
+        private static String pathOf(String key) {
+            return FamilyStore.BLOCKED_URLS + "/" + key;
+        }
+
+        /** Parse executor */
+        static List<UrlRow> rowsOf(List<BlockedUrl> seed) {
+            DateTimeFormatter dateFormat = RowFormat.dateFormat();
+            List<UrlRow> rows = new ArrayList<>(seed.size());
+            for (BlockedUrl blockedUrl : seed) {
+                rows.add(UrlRow.of(blockedUrl, dateFormat));
+            }
+            return rows;
+        }
+    }
+
+    /** Everything kept per family */
+    private static final class Family {
+        // Opened on the parse executor; tasks queued there after the open may read it
+        volatile FamilyStore store;
+        // Built with the store from its entries and the last blocklist snapshot, main
+        // thread after that
+        BlocklistEngine engine;
+        // Keyed to the engine's generation, so it outlives the screens like the engine
+        final VerdictCache verdicts = new VerdictCache();
+        final Map<Long, TaskCompletionSource<Void>> results = new HashMap<>();
+        Outbox outbox;
+        TimeRulesSource timeRules;
+        BlockedUrls blockedUrls;
+        private boolean open;
+        private final List<Consumer<FamilyStore>> waiting = new ArrayList<>();
+
+        /**
+         * Run {@code action} on the main thread once the store is open: right away when it
+         * is, otherwise in the order the calls were made
+         */
+        void whenOpen(Consumer<FamilyStore> action) {
+            if (open) {
+                action.accept(store);
+            } else {
+                waiting.add(action);
+            }
+        }
+
+        void opened() {
+            open = true;
+            for (Consumer<FamilyStore> action : waiting) {
+                action.accept(store);
+            }
+            waiting.clear();
+        }
+    }
+
+    private final File filesDir;
+    private final FirebaseDatabase database;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final SharedNode.Delay delay = new SharedNode.Delay() {
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            handler.postDelayed(task, delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            handler.removeCallbacks(task);
+        }
+    };
+    // Stores are opened, and rule snapshots saved and parsed here, off the UI thread
+    private final ExecutorService parseExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, SharedNode<?>> nodes = new HashMap<>();
+    private final Map<String, Family> families = new HashMap<>();
+    // Taken with the first outbox, to retry at once when the connection is back
+    private SharedNode.Subscription connectedSubscription;
+    private final Runnable suspendTask = this::suspendListeners;
+    private boolean suspended;
+
+    public FamilyRepository(Context context) {
+        filesDir = context.getApplicationContext().getFilesDir();
+        database = FirebaseDatabase.getInstance(DATABASE_URL);
+        try {
+            // Must come before any other use of this instance. The default instance that
+            // KidSafeApplication configures is not the one the app reads.
+            database.setPersistenceEnabled(true);
+        } catch (DatabaseException e) {
+            Log.w(TAG, "⚠️ Firebase persistence not enabled: " + e.getMessage());
+        }
+    }
+
+    /**
+     * An activity became visible: attach the suspended listeners again
+     */
+    public void onAppForeground() {
+        handler.removeCallbacks(suspendTask);
+        if (!suspended) return;
+        suspended = false;
+        for (SharedNode<?> node : new ArrayList<>(nodes.values())) {
+            node.resume();
+        }
+    }
+
+    /**
+     * No activity is visible any more: suspend the listeners after a grace period
+     */
+    public void onAppBackground() {
+        handler.removeCallbacks(suspendTask);
+        handler.postDelayed(suspendTask, SUSPEND_AFTER_MS);
+    }
+
+    private void suspendListeners() {
+        Log.d(TAG, "🔥 In the background, suspending " + nodes.size() + " listeners");
+        suspended = true;
+        String connected = database.getReference(".info/connected").toString();
+        for (Map.Entry<String, SharedNode<?>> entry : nodes.entrySet()) {
+            // Local state of the client, it costs no traffic and drives the outbox
+            if (!entry.getKey().equals(connected)) {
+                entry.getValue().suspend();
+            }
+        }
+    }
+
+    public DatabaseReference getFamilyRef(String uid) {
+        return database.getReference("kidsafe").child("families").child(uid);
+    }
+
+    public SharedNode.Subscription observeTimeRules(String uid, SharedNode.Observer<TimeRules> observer) {
+        Family family = family(uid);
+        DatabaseReference ref = getFamilyRef(uid).child(FamilyStore.TIME_RULES);
+        return this.<TimeRules>node(ref.toString(), () -> {
+            family.timeRules = new TimeRulesSource(ref, family);
+            return family.timeRules;
+        }).subscribe(observer);
+    }
+
+    public SharedNode.Subscription observeBlockedUrls(String uid, SharedNode.Observer<BlockedUrls> observer) {
+        Family family = family(uid);
+        DatabaseReference ref = getFamilyRef(uid).child(FamilyStore.BLOCKED_URLS);
+        return this.<BlockedUrls>node(ref.toString(), () -> new SharedNode.Source<BlockedUrls>() {
+            // Bumped by every attach and detach, so a seed read for an earlier attach is dropped
+            private int attachments;
+
+            @Override
+            public void attach(SharedNode<BlockedUrls> node) {
+                final int attachment = ++attachments;
+                family.whenOpen(store -> parseExecutor.execute(() -> {
+                    List<BlockedUrl> seed = store.getNewestBlockedUrls(BlockedUrlPager.DEFAULT_PAGE_SIZE);
+                    List<UrlRow> seedRows = BlockedUrls.rowsOf(seed);
+                    handler.post(() -> {
+                        if (attachment != attachments) return;
+                        family.blockedUrls = new BlockedUrls(ref, store, family.engine, family.verdicts,
+                                seed, seedRows, parseExecutor, handler::post);
+                        family.blockedUrls.getPager().start();
+                        if (node.isSuspended()) {
+                            family.blockedUrls.suspend();
+                        }
+                        node.publish(family.blockedUrls);
+                    });
+                }));
+            }
+
+            @Override
+            public void detach() {
+                attachments++;
+                if (family.blockedUrls == null) return;
+                family.blockedUrls.close();
+                family.blockedUrls = null;
+            }
+
+            @Override
+            public void suspend() {
+                if (family.blockedUrls != null) {
+                    family.blockedUrls.suspend();
+                }
+            }
+
+            @Override
+            public void resume(SharedNode<BlockedUrls> node) {
+                // Same state object, the pager reports what changed
+                if (family.blockedUrls != null) {
+                    family.blockedUrls.resume();
+                }
+            }
+        }).subscribe(observer);
+    }
+
+    /**
+     * The syncStatus stamp written with every change, as a raw map (empty when missing)
+     */
+    public SharedNode.Subscription observeSyncStatus(String uid, SharedNode.Observer<Map<String, Object>> observer) {
+        DatabaseReference ref = getFamilyRef(uid).child("syncStatus");
+        return this.<Map<String, Object>>node(ref.toString(), () -> valueSource(ref, FamilyRepository::asMap))
+                .subscribe(observer);
+    }
+
+    public SharedNode.Subscription observeConnected(SharedNode.Observer<Boolean> observer) {
+        DatabaseReference ref = database.getReference(".info/connected");
+        return this.<Boolean>node(ref.toString(), () -> valueSource(ref,
+                snapshot -> Boolean.TRUE.equals(snapshot.getValue()))).subscribe(observer);
+    }
+
+    /**
+     * Write {@code value} (null deletes) at {@code path} under the family node, e.g.
+     * "timeRules/&lt;id&gt;". It is saved to the outbox and shown on every open screen
+     * before this returns (once the family's store is open, as soon as it is), then sent
+     * to Firebase together with the syncStatus stamp, retried until it is committed.
+     *
+     * @return a task that completes once Firebase committed the write (right away when it
+     * cancelled out an earlier one), and fails only if it could not be saved locally
+     */
+    public Task<Void> write(String uid, String userEmail, String path, Object value) {
+        Family family = family(uid);
+        TaskCompletionSource<Void> result = new TaskCompletionSource<>();
+        family.whenOpen(store -> {
+            long seq;
+            try {
+                seq = outbox(uid, userEmail).enqueue(path, value);
+            } catch (IOException e) {
+                Log.e(TAG, "❌ Failed to save " + path, e);
+                result.setException(e);
+                return;
+            }
+            if (seq == Outbox.NO_OP) {
+                result.setResult(null);
+            } else {
+                family.results.put(seq, result);
+            }
+            refresh(family, path);
+        });
+        return result.getTask();
+    }
+
+    /**
+     * Show the store's state of {@code path} on the open screens and in the engine
+     */
+    private static void refresh(Family family, String path) {
+        if (path.startsWith(FamilyStore.TIME_RULES + "/")) {
+            if (family.timeRules != null) family.timeRules.refresh();
+        } else if (path.startsWith(FamilyStore.BLOCKED_URLS + "/")) {
+            String key = path.substring(FamilyStore.BLOCKED_URLS.length() + 1);
+            if (family.blockedUrls != null) {
+                family.blockedUrls.show(key);
+                return;
+            }
+            // No screen open, the engine still follows
+            BlockedUrl blockedUrl = SnapshotMapper.readBlockedUrl(key, family.store.get(path));
+            if (blockedUrl != null) {
+                family.engine.put(blockedUrl);
+            } else {
+                family.engine.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Send every local write that Firebase has not committed yet, e.g. the ones left over
+     * when the process was killed
+     */
+    public void replicate(String uid, String userEmail) {
+        family(uid).whenOpen(store -> outbox(uid, userEmail).drain());
+    }
+
+    /**
+     * The family's blocklist snapshot was rewritten, e.g. by BlocklistImporter: map it
+     * off the UI thread, then swap it into the engine
+     */
+    public void reloadBlocklistSnapshot(String uid) {
+        Family family = family(uid);
+        File file = BlocklistSnapshot.fileFor(filesDir, uid);
+        parseExecutor.execute(() -> {
+            BlocklistSnapshot snapshot = BlocklistSnapshot.openIfExists(file);
+            // Queued after the open, so the engine exists by then
+            handler.post(() -> family.engine.setSnapshot(snapshot));
+        });
+    }
+
+    /**
+     * Queue depth, retries and commit latency of the family's outbox, null before the
+     * first write or replicate()
+     */
+    public Outbox.Stats getOutboxStats(String uid) {
+        Family family = families.get(uid);
+        return family != null && family.outbox != null ? family.outbox.getStats() : null;
+    }
+
+    private Outbox outbox(String uid, String userEmail) {
+        Family family = family(uid);
+        if (family.outbox == null) {
+            FamilyWriteBatcher batcher = new FamilyWriteBatcher(getFamilyRef(uid), userEmail);
+            family.outbox = new Outbox(family.store,
+                    (path, value, attempt, callback) -> {
+                        // A refused batch doesn't say which of its writes was refused, so
+                        // retries go alone and only those are judged
+                        Task<Void> sent = attempt == 1 ? batcher.set(path, value) : batcher.setAlone(path, value);
+                        sent.addOnSuccessListener(aVoid -> callback.onSuccess())
+                                .addOnFailureListener(e -> {
+                                    if (attempt > 1 && e instanceof FamilyWriteBatcher.CommitException
+                                            && ((FamilyWriteBatcher.CommitException) e).isPermanent()) {
+                                        callback.onRejected(e);
+                                    } else {
+                                        callback.onFailure(e);
+                                    }
+                                });
+                    },
+                    new Outbox.Listener() {
+                        @Override
+                        public void onCommitted(FamilyStore.Op op, long latencyMillis) {
+                            Log.d(TAG, "✅ Committed " + op.getPath() + " in " + latencyMillis + "ms, "
+                                    + family.outbox.getStats());
+                            TaskCompletionSource<Void> result = family.results.remove(op.getSeq());
+                            if (result != null) result.setResult(null);
+                        }
+
+                        @Override
+                        public void onFailed(FamilyStore.Op op, int attempts, long retryInMillis, Exception e) {
+                            Log.w(TAG, "⚠️ Failed to send " + op.getPath() + " (attempt " + attempts
+                                    + "), retrying in " + retryInMillis + "ms", e);
+                        }
+
+                        @Override
+                        public void onRejected(FamilyStore.Op op, Exception e) {
+                            Log.e(TAG, "❌ Firebase refused " + op.getPath() + ", dropping the local edit", e);
+                            TaskCompletionSource<Void> result = family.results.remove(op.getSeq());
+                            if (result != null) result.setException(e);
+                            // Back to what Firebase has
+                            refresh(family, op.getPath());
+                        }
+                    }, delay);
+            if (connectedSubscription == null) {
+                // .info/connected is local state of the client, no traffic
+                connectedSubscription = observeConnected((connected, replayed) -> {
+                    if (!connected) return;
+                    for (Family each : families.values()) {
+                        if (each.outbox != null) each.outbox.retryNow();
+                    }
+                });
+            }
+        }
+        return family.outbox;
+    }
+
+    private Family family(String uid) {
+        Family family = families.get(uid);
+        if (family == null) {
+            Family created = new Family();
+            families.put(uid, created);
+            // Replaying the log reads the whole file
+            parseExecutor.execute(() -> {
+                created.store = openStore(uid);
+                created.engine = openEngine(uid, created.store);
+                handler.post(created::opened);
+            });
+            family = created;
+        }
+        return family;
+    }
+
+    /**
+     * An engine over every entry of the family's store and its blocklist snapshot, when
+     * one was written. Later changes reach it through BlockedUrls or refresh().
+     */
+    private BlocklistEngine openEngine(String uid, FamilyStore store) {
+        // On the parse executor, so the rows only ever need a page of the store
+        BlocklistEngine engine = new BlocklistEngine();
+        BlocklistSnapshot snapshot = BlocklistSnapshot.openIfExists(BlocklistSnapshot.fileFor(filesDir, uid));
+        if (snapshot != null) {
+            engine.setSnapshot(snapshot);
+            Log.d(TAG, "✅ Blocklist snapshot loaded: " + snapshot.size() + " entries");
+        }
+        engine.update(store.getBlockedUrls());
+        return engine;
+    }
+
+    /**
+     * A store that cannot be read is started over, Firebase fills it again
+     */
+    private FamilyStore openStore(String uid) {
+        // On the parse executor
+        File file = FamilyStore.fileFor(filesDir, uid);
+        try {
+            return FamilyStore.open(file);
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Unreadable family store, starting over", e);
+            if (!file.delete()) {
+                Log.w(TAG, "⚠️ Cannot delete " + file);
+            }
+        }
+        try {
+            return FamilyStore.open(file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open " + file, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> SharedNode<T> node(String key, Supplier<SharedNode.Source<T>> source) {
+        SharedNode<T> node = (SharedNode<T>) nodes.get(key);
+        if (node == null) {
+            node = new SharedNode<>(source.get(), delay, LINGER_MS);
+            nodes.put(key, node);
+        }
+        return node;
+    }
+
+    /**
+     * Whole-node listener for small nodes, decoded on the main thread
+     */
+    private static <T> SharedNode.Source<T> valueSource(Query query, Function<DataSnapshot, T> decode) {
+        return new SharedNode.Source<T>() {
+            private ValueEventListener listener;
+
+            @Override
+            public void attach(SharedNode<T> node) {
+                listener = new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        node.publish(decode.apply(snapshot));
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "❌ Firebase onCancelled: " + error.getMessage(), error.toException());
+                        node.fail(error.getMessage());
+                    }
+                };
+                query.addValueEventListener(listener);
+            }
+
+            @Override
+            public void detach() {
+                if (listener == null) return;
+                query.removeEventListener(listener);
+                listener = null;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(DataSnapshot snapshot) {
+        Object value = snapshot.getValue();
+        return value instanceof Map ? (Map<String, Object>) value : Collections.emptyMap();
+    }
+
+    /**
+     * timeRules is read as a whole. Every snapshot is saved to the store on the parse
+     * executor, then the rows are built from the store through a SnapshotParsePipeline, so
+     * only the finished rows reach the main thread. A newer snapshot or refresh() cancels
+     * building rows, never the save. The adapter diffs the rows against what it shows.
+     */
+    private final class TimeRulesSource implements SharedNode.Source<TimeRules> {
+        private final DatabaseReference ref;
+        private final Family family;
+        private ValueEventListener listener;
+        private SnapshotParsePipeline<Void, TimeRuleRow, Void> pipeline;
+
+        TimeRulesSource(DatabaseReference ref, Family family) {
+            this.ref = ref;
+            this.family = family;
+        }
+
+        @Override
+        public void attach(SharedNode<TimeRules> node) {
+            // Both run on the parse executor after the store was opened there
+            pipeline = new SnapshotParsePipeline<>(parseExecutor, handler::post,
+                    (unused, sink) -> buildRows(family.store, sink), (previous, current) -> null,
+                    (rows, unused) -> {
+                        // e.g. the disk copy confirmed by the first snapshot, or a resume
+                        TimeRules current = node.getValue();
+                        if (!sameRules(current, rows)) {
+                            node.publish(new TimeRules(rows));
+                        }
+                    });
+            // What is on disk first, superseded by the snapshot if that is faster
+            pipeline.submit(null);
+            listen(node);
+        }
+
+        @Override
+        public void suspend() {
+            ref.removeEventListener(listener);
+            listener = null;
+        }
+
+        @Override
+        public void resume(SharedNode<TimeRules> node) {
+            listen(node);
+        }
+
+        private void listen(SharedNode<TimeRules> node) {
+            listener = new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                    Log.d(TAG, "🔥 Firebase onDataChange - Time Rules count: " + dataSnapshot.getChildrenCount());
+                    parseExecutor.execute(() -> saveTimeRules(family.store, dataSnapshot));
+                    pipeline.submit(null);
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError databaseError) {
+                    Log.e(TAG, "❌ Firebase onCancelled: " + databaseError.getMessage(), databaseError.toException());
+                    node.fail(databaseError.getMessage());
+                }
+            };
+            ref.addValueEventListener(listener);
+        }
+
+        @Override
+        public void detach() {
+            if (listener != null) {
+                ref.removeEventListener(listener);
+            }
+            pipeline.cancel();
+            listener = null;
+            pipeline = null;
+        }
+
+        /** Publish the store's rules again after a local write */
+        void refresh() {
+            if (pipeline != null) {
+                pipeline.submit(null);
+            }
+        }
+    }
+
+    private static boolean sameRules(TimeRules current, List<TimeRuleRow> rows) {
+        if (current == null || current.getRules().size() != rows.size()) return false;
+        for (int i = 0; i < rows.size(); i++) {
+            TimeRule rule = rows.get(i).getRule();
+            TimeRule shown = current.getRules().get(i);
+            if (!Objects.equals(rule.getId(), shown.getId()) || !rule.hasSameContent(shown)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs on the parse executor, never cancelled: a snapshot that is not shown is still
+     * the server's latest state
+     */
+    private static void saveTimeRules(FamilyStore store, DataSnapshot dataSnapshot) {
+        Map<String, Object> children = new HashMap<>();
+        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+            children.put(snapshot.getKey(), snapshot.getValue());
+        }
+        try {
+            store.replaceRemote(FamilyStore.TIME_RULES, children);
+            store.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Failed to save time rules", e);
+        }
+    }
+
+    /**
+     * Runs on the parse executor: emits the rows of the rules as the store shows them,
+     * local edits in flight included
+     */
+    private static void buildRows(FamilyStore store, SnapshotParsePipeline.Sink<TimeRuleRow> sink) {
+        DateTimeFormatter dateFormat = RowFormat.dateFormat();
+        for (TimeRule timeRule : store.getTimeRules()) {
+            if (!sink.add(TimeRuleRow.of(timeRule, dateFormat))) return;
+        }
+    }
+}
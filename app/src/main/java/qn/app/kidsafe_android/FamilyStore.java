@@ -0,0 +1,637 @@
+package qn.app.kidsafe_android;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk copy of a family's blockedUrls and timeRules, the source every screen reads.
+ *
+ * Values are kept raw, as {@code snapshot.getValue()} returns them, keyed by their path
+ * under the family node ("timeRules/&lt;id&gt;"). Two layers:
+ * <ul>
+ *   <li>base - the last state received from Firebase</li>
+ *   <li>pending - local writes not yet acknowledged by Firebase, in order. They win over
+ *   base until acknowledged, so a remote event can't undo an edit still in flight.</li>
+ * </ul>
+ * Both are rebuilt from an append-only log of CRC-framed records when the store is
+ * opened; a torn tail is cut off. Local writes are flushed before write() returns,
+ * remote ones when flush() is called. Once the log holds far more records than live
+ * entries it is rewritten as one record per entry.
+ *
+ * File layout (big endian):
+ * <pre>
+ *   int magic "KSFS", int version
+ *   records: int length, payload, int crc32(payload)
+ *   payload: u8 type, i64 seq, i64 time, UTF path, value
+ *   value:   u8 tag, then String (UTF) | i64 | f64 | u8 | int n + n values | int n + n (UTF key, value)
+ * </pre>
+ * Thread-safe.
+ */
+public final class FamilyStore {
+
+    public static final String BLOCKED_URLS = "blockedUrls";
+    public static final String TIME_RULES = "timeRules";
+    static final int MIN_COMPACT_RECORDS = 512;
+
+    private static final int MAGIC = 0x4B534653; // "KSFS"
+    private static final int VERSION = 1;
+    private static final int HEADER = 8;
+
+    private static final byte REMOTE = 1;   // value received from Firebase, null = removed
+    private static final byte LOCAL = 2;    // local write waiting for Firebase
+    private static final byte ACK = 3;      // seq acknowledged by Firebase
+    private static final byte DISCARD = 4;  // seq superseded before it reached Firebase
+
+    private static final byte T_NULL = 0;
+    private static final byte T_STRING = 1;
+    private static final byte T_LONG = 2;
+    private static final byte T_DOUBLE = 3;
+    private static final byte T_BOOLEAN = 4;
+    private static final byte T_LIST = 5;
+    private static final byte T_MAP = 6;
+
+    /** A local write still to be sent to Firebase */
+    public static final class Op {
+        private final long seq;
+        private final long time;
+        private final String path;
+        private final Object value;
+
+        Op(long seq, long time, String path, Object value) {
+            this.seq = seq;
+            this.time = time;
+            this.path = path;
+            this.value = value;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /** As written, ServerValue placeholders included; null deletes */
+        public Object getValue() {
+            return value;
+        }
+    }
+
+    private final File file;
+    private final TreeMap<String, Object> base = new TreeMap<>();
+    private final TreeMap<Long, Op> pending = new TreeMap<>();
+    private final Map<String, Long> latestPending = new HashMap<>();
+    private OutputStream log;
+    private long nextSeq = 1;
+    private int records;
+
+    private FamilyStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Replay the log at {@code file} (created when missing) and keep appending to it
+     */
+    public static FamilyStore open(File file) throws IOException {
+        FamilyStore store = new FamilyStore(file);
+        store.replay();
+        return store;
+    }
+
+    /**
+     * Store file of one family, e.g. in Context.getFilesDir()
+     */
+    public static File fileFor(File directory, String userUid) {
+        return new File(directory, "family-" + userUid + ".store");
+    }
+
+    /**
+     * Record a local write of {@code value} (null deletes) at {@code path}. It is visible
+     * right away and stays pending until {@link #acknowledge(long)}.
+     *
+     * @return the sequence number to acknowledge
+     */
+    public synchronized long write(String path, Object value, long now) throws IOException {
+        Op op = new Op(nextSeq++, now, path, value);
+        append(LOCAL, op.seq, now, path, value);
+        log.flush();
+        addPending(op);
+        compactIfNeeded();
+        return op.seq;
+    }
+
+    /**
+     * Firebase committed the write {@code seq}: it becomes part of base
+     */
+    public synchronized void acknowledge(long seq) throws IOException {
+        Op op = pending.get(seq);
+        if (op == null) return;
+        append(ACK, seq, 0, "", null);
+        log.flush();
+        applyAck(op);
+        compactIfNeeded();
+    }
+
+    /**
+     * Drop the write {@code seq} without applying it, e.g. an add followed by a delete
+     * that Firebase never saw
+     */
+    public synchronized void discard(long seq) throws IOException {
+        Op op = pending.get(seq);
+        if (op == null) return;
+        append(DISCARD, seq, 0, "", null);
+        log.flush();
+        removePending(op);
+        compactIfNeeded();
+    }
+
+    /**
+     * A child as received from Firebase, null when it was removed. Not flushed.
+     */
+    public synchronized void putRemote(String path, Object value) throws IOException {
+        value = normalize(value, 0);
+        if (Objects.equals(base.get(path), value)) return;
+        append(REMOTE, 0, 0, path, value);
+        setBase(path, value);
+        compactIfNeeded();
+    }
+
+    /**
+     * A whole collection as received from Firebase: children missing from
+     * {@code children} are removed. Not flushed.
+     */
+    public synchronized void replaceRemote(String collection, Map<String, ?> children) throws IOException {
+        List<String> removed = new ArrayList<>();
+        for (String path : prefixed(base, collection).keySet()) {
+            if (!children.containsKey(path.substring(collection.length() + 1))) {
+                removed.add(path);
+            }
+        }
+        for (String path : removed) {
+            putRemote(path, null);
+        }
+        for (Map.Entry<String, ?> child : children.entrySet()) {
+            putRemote(collection + "/" + child.getKey(), child.getValue());
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        log.flush();
+    }
+
+    /**
+     * Visible value at {@code path}: the latest pending write, else base
+     */
+    public synchronized Object get(String path) {
+        Long seq = latestPending.get(path);
+        return seq != null ? visible(pending.get(seq)) : base.get(path);
+    }
+
+    /**
+     * Visible children of {@code collection} by key, in key order
+     */
+    public synchronized Map<String, Object> getChildren(String collection) {
+        Map<String, Object> children = new TreeMap<>();
+        int start = collection.length() + 1;
+        for (Map.Entry<String, Object> entry : prefixed(base, collection).entrySet()) {
+            children.put(entry.getKey().substring(start), entry.getValue());
+        }
+        for (Op op : pending.values()) {
+            if (isChildOf(op.path, collection)) {
+                Object value = visible(op);
+                if (value == null) {
+                    children.remove(op.path.substring(start));
+                } else {
+                    children.put(op.path.substring(start), value);
+                }
+            }
+        }
+        return children;
+    }
+
+    public List<BlockedUrl> getBlockedUrls() {
+        List<BlockedUrl> urls = new ArrayList<>();
+        for (Map.Entry<String, Object> child : getChildren(BLOCKED_URLS).entrySet()) {
+            BlockedUrl blockedUrl = SnapshotMapper.readBlockedUrl(child.getKey(), child.getValue());
+            if (blockedUrl != null) urls.add(blockedUrl);
+        }
+        return urls;
+    }
+
+    /**
+     * The {@code limit} newest visible blocked URLs, in BlockedUrl.NEWEST_FIRST order.
+     * Entries are ranked by their stored addedAt; only the ones returned are decoded.
+     */
+    public synchronized List<BlockedUrl> getNewestBlockedUrls(int limit) {
+        List<BlockedUrl> urls = new ArrayList<>();
+        if (limit <= 0) return urls;
+        // The oldest entry kept is on top, a newer one replaces it
+        PriorityQueue<Map.Entry<String, Object>> kept = new PriorityQueue<>(limit + 1,
+                (a, b) -> compareNewestFirst(b.getKey(), b.getValue(), a.getKey(), a.getValue()));
+        for (Map.Entry<String, Object> entry : prefixed(base, BLOCKED_URLS).entrySet()) {
+            if (!latestPending.containsKey(entry.getKey())) {
+                keepIfNewer(kept, limit, entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<String, Long> entry : latestPending.entrySet()) {
+            if (isChildOf(entry.getKey(), BLOCKED_URLS)) {
+                keepIfNewer(kept, limit, entry.getKey(), visible(pending.get(entry.getValue())));
+            }
+        }
+        int start = BLOCKED_URLS.length() + 1;
+        while (!kept.isEmpty()) {
+            Map.Entry<String, Object> entry = kept.poll();
+            urls.add(SnapshotMapper.readBlockedUrl(entry.getKey().substring(start), entry.getValue()));
+        }
+        Collections.reverse(urls);
+        return urls;
+    }
+
+    /**
+     * In key order, like the children of the timeRules snapshot
+     */
+    public List<TimeRule> getTimeRules() {
+        List<TimeRule> rules = new ArrayList<>();
+        for (Map.Entry<String, Object> child : getChildren(TIME_RULES).entrySet()) {
+            TimeRule rule = SnapshotMapper.readTimeRule(child.getKey(), child.getValue());
+            if (rule != null) rules.add(rule);
+        }
+        return rules;
+    }
+
+    /**
+     * Local writes not acknowledged yet, oldest first
+     */
+    public synchronized List<Op> getPending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * True while a local write to {@code path} waits for Firebase; remote values there are
+     * recorded but not visible
+     */
+    public synchronized boolean hasPending(String path) {
+        return latestPending.containsKey(path);
+    }
+
+    /**
+     * The latest local write to {@code path} waiting for Firebase, or null
+     */
+    public synchronized Op getLatestPending(String path) {
+        Long seq = latestPending.get(path);
+        return seq != null ? pending.get(seq) : null;
+    }
+
+    /**
+     * Whether Firebase has a value at {@code path}, as far as this store has seen
+     */
+    public synchronized boolean hasRemote(String path) {
+        return base.containsKey(path);
+    }
+
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    int getRecordCount() {
+        return records;
+    }
+
+    private void addPending(Op op) {
+        pending.put(op.seq, op);
+        latestPending.put(op.path, op.seq);
+    }
+
+    private void applyAck(Op op) {
+        removePending(op);
+        setBase(op.path, visible(op));
+    }
+
+    private void removePending(Op op) {
+        pending.remove(op.seq);
+        Long latest = latestPending.get(op.path);
+        if (latest == null || latest != op.seq) return;
+        latestPending.remove(op.path);
+        // An older write to the same path becomes the visible one again
+        for (Op older : pending.headMap(op.seq, false).descendingMap().values()) {
+            if (older.path.equals(op.path)) {
+                latestPending.put(older.path, older.seq);
+                break;
+            }
+        }
+    }
+
+    private void setBase(String path, Object value) {
+        if (value == null) {
+            base.remove(path);
+        } else {
+            base.put(path, value);
+        }
+    }
+
+    private static void keepIfNewer(PriorityQueue<Map.Entry<String, Object>> kept, int limit,
+                                    String path, Object value) {
+        // Anything else is no entry, see SnapshotMapper.readBlockedUrl
+        if (!(value instanceof Map)) return;
+        if (kept.size() == limit) {
+            Map.Entry<String, Object> oldest = kept.peek();
+            if (compareNewestFirst(path, value, oldest.getKey(), oldest.getValue()) >= 0) return;
+            kept.poll();
+        }
+        kept.add(new AbstractMap.SimpleImmutableEntry<>(path, value));
+    }
+
+    /**
+     * BlockedUrl.NEWEST_FIRST on stored values; paths share their prefix, so they compare
+     * like the keys
+     */
+    private static int compareNewestFirst(String pathA, Object a, String pathB, Object b) {
+        int byTime = Long.compare(addedAt(b), addedAt(a));
+        return byTime != 0 ? byTime : pathB.compareTo(pathA);
+    }
+
+    private static long addedAt(Object value) {
+        Object addedAt = ((Map<?, ?>) value).get("addedAt");
+        return addedAt instanceof Number ? ((Number) addedAt).longValue() : 0;
+    }
+
+    private static boolean isChildOf(String path, String collection) {
+        return path.length() > collection.length() + 1
+                && path.startsWith(collection)
+                && path.charAt(collection.length()) == '/';
+    }
+
+    private static Map<String, Object> prefixed(TreeMap<String, Object> map, String collection) {
+        // '0' follows '/' in ASCII, so this is every "collection/..." key
+        return map.subMap(collection + "/", collection + "0");
+    }
+
+    /**
+     * The value as Firebase will store it, with {".sv": "timestamp"} resolved to the
+     * time of the write
+     */
+    private static Object visible(Op op) {
+        return normalize(op.value, op.time);
+    }
+
+    /**
+     * The value as Firebase reads it back: whole numbers as Long, fractions as Double,
+     * {".sv": "timestamp"} as {@code now}
+     */
+    static Object normalize(Object value, long now) {
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            if (map.size() == 1 && "timestamp".equals(map.get(".sv"))) {
+                return now;
+            }
+            Map<String, Object> resolved = new HashMap<>();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                resolved.put(String.valueOf(entry.getKey()), normalize(entry.getValue(), now));
+            }
+            return resolved;
+        }
+        if (value instanceof List) {
+            List<Object> resolved = new ArrayList<>();
+            for (Object item : (List<?>) value) {
+                resolved.add(normalize(item, now));
+            }
+            return resolved;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        }
+        return value;
+    }
+
+    private void replay() throws IOException {
+        long validLength = 0;
+        long fileLength = file.length();
+        if (fileLength > 0) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a family store: " + file);
+                }
+                validLength = HEADER;
+                CRC32 crc = new CRC32();
+                while (true) {
+                    int length = in.readInt();
+                    if (length <= 0 || length > fileLength - validLength) break;
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload, 0, length);
+                    if (in.readInt() != (int) crc.getValue()) break;
+                    apply(payload);
+                    validLength += 8 + length;
+                    records++;
+                }
+            } catch (EOFException endOfLog) {
+                // A torn last record is dropped
+            }
+        }
+
+        if (validLength == 0) {
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+        } else if (validLength < fileLength) {
+            // Later appends must not land behind garbage
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        log = new BufferedOutputStream(new FileOutputStream(file, true), 8192);
+        compactIfNeeded();
+    }
+
+    private void apply(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        long seq = in.readLong();
+        long time = in.readLong();
+        String path = in.readUTF();
+        Object value = readValue(in);
+        switch (type) {
+            case REMOTE:
+                setBase(path, value);
+                break;
+            case LOCAL:
+                addPending(new Op(seq, time, path, value));
+                nextSeq = Math.max(nextSeq, seq + 1);
+                break;
+            case ACK:
+                Op op = pending.get(seq);
+                if (op != null) applyAck(op);
+                break;
+            case DISCARD:
+                Op discarded = pending.get(seq);
+                if (discarded != null) removePending(discarded);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void append(byte type, long seq, long time, String path, Object value) throws IOException {
+        byte[] payload = encode(type, seq, time, path, value);
+        writeRecord(log, payload);
+        records++;
+    }
+
+    private static void writeRecord(OutputStream out, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(payload.length);
+        data.write(payload);
+        data.writeInt((int) crc.getValue());
+    }
+
+    private static byte[] encode(byte type, long seq, long time, String path, Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        out.writeLong(seq);
+        out.writeLong(time);
+        out.writeUTF(path);
+        writeValue(out, value);
+        return bytes.toByteArray();
+    }
+
+    private void compactIfNeeded() throws IOException {
+        int live = base.size() + pending.size();
+        if (records > MIN_COMPACT_RECORDS && records > 4 * live) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the log as base plus the pending writes, via a temp file
+     */
+    private void compact() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            for (Map.Entry<String, Object> entry : base.entrySet()) {
+                writeRecord(out, encode(REMOTE, 0, 0, entry.getKey(), entry.getValue()));
+            }
+            for (Op op : pending.values()) {
+                writeRecord(out, encode(LOCAL, op.seq, op.time, op.path, op.value));
+            }
+        }
+        log.close();
+        boolean replaced = tmp.renameTo(file);
+        // Appends go on in whichever file is in place; the old log still holds everything
+        log = new BufferedOutputStream(new FileOutputStream(file, true), 8192);
+        if (!replaced) {
+            tmp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+        records = base.size() + pending.size();
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(T_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(T_STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(T_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(T_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            out.writeByte(T_LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(T_LIST);
+            out.writeInt(list.size());
+            for (Object item : list) {
+                writeValue(out, item);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(T_MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                out.writeUTF(String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            throw new IOException("Cannot store " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case T_NULL:
+                return null;
+            case T_STRING:
+                return in.readUTF();
+            case T_LONG:
+                return in.readLong();
+            case T_DOUBLE:
+                return in.readDouble();
+            case T_BOOLEAN:
+                return in.readBoolean();
+            case T_LIST: {
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(Math.min(size, 1024));
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case T_MAP: {
+                int size = in.readInt();
+                Map<String, Object> map = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    String key = in.readUTF();
+                    map.put(key, readValue(in));
+                }
+                return map;
+            }
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+}
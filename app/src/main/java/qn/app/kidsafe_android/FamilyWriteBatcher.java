@@ -0,0 +1,159 @@
+package qn.app.kidsafe_android;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseException;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ServerValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Folds data mutations under kidsafe/families/&lt;uid&gt; and the syncStatus stamp into one
+ * atomic multi-path update. Mutations made within a short window are coalesced into a
+ * single commit, so the PC client sees one listener fire per burst of edits.
+ * A failed commit fails every task in it with a {@link CommitException}.
+ * Must be used from the main thread.
+ */
+public class FamilyWriteBatcher {
+
+    private static final String TAG = "FamilyWriteBatcher";
+    private static final long DEFAULT_WINDOW_MS = 300;
+
+    private final DatabaseReference familyRef;
+    private final String userEmail;
+    private final long windowMs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flushRunnable = this::flush;
+
+    private Map<String, Object> pending = new HashMap<>();
+    private TaskCompletionSource<Void> pendingResult;
+
+    /**
+     * Why Firebase did not commit an update
+     */
+    public static final class CommitException extends Exception {
+        private final boolean permanent;
+
+        CommitException(DatabaseError error) {
+            super(error.getMessage(), error.toException());
+            // Security rules deny the write, validation included; the rest is transient
+            permanent = error.getCode() == DatabaseError.PERMISSION_DENIED;
+        }
+
+        CommitException(DatabaseException invalid) {
+            super(invalid.getMessage(), invalid);
+            permanent = true;
+        }
+
+        /** Sending the same update again would fail the same way */
+        public boolean isPermanent() {
+            return permanent;
+        }
+    }
+
+    public FamilyWriteBatcher(DatabaseReference familyRef, String userEmail) {
+        this(familyRef, userEmail, DEFAULT_WINDOW_MS);
+    }
+
+    public FamilyWriteBatcher(DatabaseReference familyRef, String userEmail, long windowMs) {
+        this.familyRef = familyRef;
+        this.userEmail = userEmail;
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * Queue a write of {@code value} (null deletes) at {@code path}, relative to the family node.
+     *
+     * @return a task that completes when the batch containing this write is committed
+     */
+    public Task<Void> set(String path, Object value) {
+        if (conflictsWithPending(path)) {
+            // Firebase rejects an update that contains both a path and its ancestor
+            flush();
+        }
+
+        pending.put(path, value);
+        if (pendingResult == null) {
+            pendingResult = new TaskCompletionSource<>();
+            handler.postDelayed(flushRunnable, windowMs);
+        }
+        return pendingResult.getTask();
+    }
+
+    /**
+     * Commit a write of {@code value} at {@code path} right away, in an update of its own,
+     * so that a failure belongs to this write alone
+     */
+    public Task<Void> setAlone(String path, Object value) {
+        Map<String, Object> update = new HashMap<>();
+        update.put(path, value);
+        TaskCompletionSource<Void> result = new TaskCompletionSource<>();
+        commit(update, result);
+        return result.getTask();
+    }
+
+    /**
+     * Commit everything queued so far right away
+     */
+    public void flush() {
+        handler.removeCallbacks(flushRunnable);
+        if (pendingResult == null) return;
+
+        Map<String, Object> update = pending;
+        TaskCompletionSource<Void> result = pendingResult;
+        pending = new HashMap<>();
+        pendingResult = null;
+
+        commit(update, result);
+    }
+
+    private void commit(Map<String, Object> update, TaskCompletionSource<Void> result) {
+        update.put("syncStatus", buildSyncStatus(userEmail));
+        Log.d(TAG, "🔥 Committing " + (update.size() - 1) + " change(s) with syncStatus");
+
+        try {
+            familyRef.updateChildren(update, (error, ref) -> {
+                if (error == null) {
+                    result.setResult(null);
+                } else {
+                    result.setException(new CommitException(error));
+                }
+            });
+        } catch (DatabaseException e) {
+            // A value or key Firebase can't store, thrown before anything is sent
+            Log.e(TAG, "❌ Invalid update", e);
+            result.setException(new CommitException(e));
+        }
+    }
+
+    /**
+     * The syncStatus node the PC client watches for changes
+     */
+    public static Map<String, Object> buildSyncStatus(String userEmail) {
+        Map<String, Object> syncData = new HashMap<>();
+        syncData.put("lastUpdated", ServerValue.TIMESTAMP);
+        syncData.put("updatedBy", "parent_android");
+        syncData.put("status", "online");
+        if (userEmail != null) {
+            syncData.put("userEmail", userEmail);
+        }
+        return syncData;
+    }
+
+    private boolean conflictsWithPending(String path) {
+        for (String queued : pending.keySet()) {
+            if (queued.equals(path)) continue;
+            if (queued.startsWith(path + "/") || path.startsWith(queued + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
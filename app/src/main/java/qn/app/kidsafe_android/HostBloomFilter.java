@@ -0,0 +1,219 @@
+package qn.app.kidsafe_android;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counting Bloom filter over blocked host names, used as a fast "not blocked" answer in
+ * front of the exact lookups.
+ *
+ * A host and each of its parent domains are probed ("m.facebook.com", "facebook.com",
+ * "com"), so a host that is not blocked costs a few hash probes and never reaches the
+ * trie or the snapshot. Counters are 4 bits wide, hosts can be removed as well as added,
+ * a counter that reached 15 is never decremented again.
+ *
+ * Hashing is ASCII case-insensitive and identical for String and byte[] hosts.
+ * Not thread-safe for writes; the hit/miss counters can be read from any thread.
+ */
+public final class HostBloomFilter {
+
+    private static final int MAX_COUNT = 15;
+
+    private final long[] counters;  // 16 counters of 4 bits per long
+    private final int counterCount;
+    private final int hashCount;
+    private final int expectedHosts;
+    private final double falsePositiveRate;
+    private int size;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * @param expectedHosts     number of hosts the filter is sized for
+     * @param falsePositiveRate target rate at that size, e.g. 0.01
+     */
+    public HostBloomFilter(int expectedHosts, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be in (0, 1)");
+        }
+        this.expectedHosts = Math.max(expectedHosts, 16);
+        this.falsePositiveRate = falsePositiveRate;
+
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-this.expectedHosts * Math.log(falsePositiveRate) / (ln2 * ln2));
+        counterCount = (int) Math.min(Math.max(bits, 64), Integer.MAX_VALUE - 64);
+        hashCount = Math.max(1, Math.min(16, (int) Math.round((double) counterCount / this.expectedHosts * ln2)));
+        counters = new long[(counterCount + 15) / 16];
+    }
+
+    public void add(String host) {
+        long hash = hash(host, 0, host.length());
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(hash, i);
+            int count = counter(index);
+            if (count < MAX_COUNT) {
+                setCounter(index, count + 1);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Remove a host that was added before. Removing a host that was never added
+     * corrupts the filter.
+     */
+    public void remove(String host) {
+        long hash = hash(host, 0, host.length());
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(hash, i);
+            int count = counter(index);
+            if (count > 0 && count < MAX_COUNT) {
+                setCounter(index, count - 1);
+            }
+        }
+        size--;
+    }
+
+    /**
+     * False when neither the host nor any parent domain can be in the filter
+     */
+    public boolean mightBlock(String host) {
+        return record(probeSuffixes(host, 0, host.length()));
+    }
+
+    /**
+     * Same as {@link #mightBlock(String)} for an ASCII host in a byte array. Does not allocate.
+     */
+    public boolean mightBlock(byte[] host, int offset, int length) {
+        return record(probeSuffixes(host, offset, length));
+    }
+
+    /**
+     * Called by the owner when a positive answer turned out not to be blocked
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * Carry the hit/miss statistics over when a filter is rebuilt
+     */
+    void inheritCounters(HostBloomFilter previous) {
+        hits.add(previous.getHitCount());
+        misses.add(previous.getMissCount());
+        falsePositives.add(previous.getFalsePositiveCount());
+    }
+
+    private boolean record(boolean hit) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return hit;
+    }
+
+    private boolean probeSuffixes(CharSequence host, int offset, int length) {
+        for (int start = offset + length - 1; start >= offset; start--) {
+            if (start == offset || host.charAt(start - 1) == '.') {
+                if (probe(hash(host, start, offset + length))) return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean probeSuffixes(byte[] host, int offset, int length) {
+        for (int start = offset + length - 1; start >= offset; start--) {
+            if (start == offset || host[start - 1] == '.') {
+                if (probe(hash(host, start, offset + length))) return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean probe(long hash) {
+        for (int i = 0; i < hashCount; i++) {
+            if (counter(index(hash, i)) == 0) return false;
+        }
+        return true;
+    }
+
+    /** Positive answers, including false positives */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /** Definite "not blocked" answers */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getFalsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getExpectedHosts() {
+        return expectedHosts;
+    }
+
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * True once more hosts were added than the filter was sized for, so the
+     * false-positive rate is above target and the owner should rebuild it larger
+     */
+    public boolean isOverCapacity() {
+        return size > expectedHosts;
+    }
+
+    private int counter(int index) {
+        return (int) (counters[index >>> 4] >>> ((index & 15) << 2)) & 0xF;
+    }
+
+    private void setCounter(int index, int value) {
+        int shift = (index & 15) << 2;
+        long word = counters[index >>> 4];
+        counters[index >>> 4] = (word & ~(0xFL << shift)) | ((long) value << shift);
+    }
+
+    private int index(long hash, int i) {
+        // Kirsch-Mitzenmacher: two halves of one 64-bit hash give all probe positions
+        int combined = (int) hash + i * (int) (hash >>> 32);
+        return (combined & Integer.MAX_VALUE) % counterCount;
+    }
+
+    private static long hash(CharSequence text, int start, int end) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            h = (h ^ lower(text.charAt(i))) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long hash(byte[] text, int start, int end) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            h = (h ^ lower(text[i] & 0xFF)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static int lower(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
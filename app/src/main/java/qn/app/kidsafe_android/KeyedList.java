@@ -0,0 +1,205 @@
+package qn.app.kidsafe_android;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Ordered list of Firebase children keyed by their push ID.
+ * Child add/change/remove events are applied in place and reported as single-item
+ * changes, so one edit never re-parses or rebinds the whole list.
+ *
+ * Items are stored bottom to top and positions are mapped in reverse: the top of the
+ * list, where a newest-first list gets its new children, is the end of the arrays, so an
+ * insert or remove there shifts nothing. Edits further down shift the rows below them.
+ */
+public class KeyedList<T> {
+
+    public interface Listener {
+        void onItemInserted(int position);
+        void onItemChanged(int position);
+        void onItemRemoved(int position);
+        /** Everything was replaced, rebind the whole list */
+        void onReset();
+    }
+
+    // Bottom to top: display position p is index size - 1 - p
+    private final List<T> items = new ArrayList<>();
+    private final List<String> keys = new ArrayList<>();
+    // Key -> index in the arrays
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final List<T> readOnlyItems = new AbstractList<T>() {
+        @Override
+        public T get(int position) {
+            return items.get(items.size() - 1 - position);
+        }
+
+        @Override
+        public int size() {
+            return items.size();
+        }
+    };
+
+    // Cached indexes below this one are known to be valid
+    private int validUpTo;
+    private Listener listener;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Insert a child right after {@code previousKey} (null means first), as reported by
+     * ChildEventListener.onChildAdded. An existing key is treated as a change.
+     */
+    public void add(String key, String previousKey, T item) {
+        if (indexOf(key) >= 0) {
+            set(key, item);
+            return;
+        }
+
+        int position;
+        if (previousKey == null) {
+            position = 0;
+        } else if (!keys.isEmpty() && previousKey.equals(keys.get(0))) {
+            position = keys.size();
+        } else {
+            int previous = indexOf(previousKey);
+            position = previous >= 0 ? previous + 1 : keys.size();
+        }
+
+        insertAt(position, key, item);
+    }
+
+    /**
+     * Insert a child at its position in {@code order}, for lists assembled from several
+     * queries (e.g. pages). An existing key is treated as a change.
+     *
+     * @return true when the key was new
+     */
+    public boolean addSorted(String key, T item, Comparator<? super T> order) {
+        if (indexOf(key) >= 0) {
+            set(key, item);
+            return false;
+        }
+
+        int low = 0;
+        int high = items.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (order.compare(readOnlyItems.get(mid), item) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        insertAt(low, key, item);
+        return true;
+    }
+
+    public void set(String key, T item) {
+        int position = indexOf(key);
+        if (position < 0) return;
+
+        items.set(items.size() - 1 - position, item);
+        if (listener != null) {
+            listener.onItemChanged(position);
+        }
+    }
+
+    public T remove(String key) {
+        int position = indexOf(key);
+        if (position < 0) return null;
+
+        int index = items.size() - 1 - position;
+        T removed = items.remove(index);
+        keys.remove(index);
+        indexes.remove(key);
+        validUpTo = Math.min(validUpTo, index);
+
+        if (listener != null) {
+            listener.onItemRemoved(position);
+        }
+        return removed;
+    }
+
+    private void insertAt(int position, String key, T item) {
+        int index = items.size() - position;
+        items.add(index, item);
+        keys.add(index, key);
+        indexes.put(key, index);
+        if (index < keys.size() - 1) {
+            validUpTo = Math.min(validUpTo, index);
+        } else if (validUpTo == index) {
+            validUpTo = keys.size();
+        }
+
+        if (listener != null) {
+            listener.onItemInserted(position);
+        }
+    }
+
+    /**
+     * Replace the whole list with {@code newItems}, in display order, as one reset
+     */
+    public void replaceAll(List<? extends T> newItems, Function<? super T, String> keyOf) {
+        clear();
+        for (int i = newItems.size() - 1; i >= 0; i--) {
+            T item = newItems.get(i);
+            String key = keyOf.apply(item);
+            indexes.put(key, items.size());
+            items.add(item);
+            keys.add(key);
+        }
+        validUpTo = keys.size();
+        if (listener != null) {
+            listener.onReset();
+        }
+    }
+
+    public void clear() {
+        items.clear();
+        keys.clear();
+        indexes.clear();
+        validUpTo = 0;
+    }
+
+    public T getLast() {
+        return items.isEmpty() ? null : items.get(0);
+    }
+
+    public T get(String key) {
+        int position = indexOf(key);
+        return position >= 0 ? readOnlyItems.get(position) : null;
+    }
+
+    public int indexOf(String key) {
+        Integer cached = indexes.get(key);
+        if (cached == null) return -1;
+        if (cached >= validUpTo) {
+            // Indexes above an insert or remove lower down are re-indexed lazily, once
+            for (int i = validUpTo; i < keys.size(); i++) {
+                indexes.put(keys.get(i), i);
+            }
+            validUpTo = keys.size();
+            cached = indexes.get(key);
+        }
+        return keys.size() - 1 - cached;
+    }
+
+    /**
+     * Live read-only view, suitable as the backing list of an adapter
+     */
+    public List<T> getItems() {
+        return readOnlyItems;
+    }
+
+    public int size() {
+        return items.size();
+    }
+}
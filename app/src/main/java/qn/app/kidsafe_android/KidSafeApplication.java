@@ -1,12 +1,21 @@
 package qn.app.kidsafe_android;
 
+import android.app.Activity;
 import android.app.Application;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.database.FirebaseDatabase;
 
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * KidSafe Application class
  * Ensures Firebase is properly configured for production use
@@ -14,6 +23,18 @@ import com.google.firebase.database.FirebaseDatabase;
 public class KidSafeApplication extends Application {
     
     private static final String TAG = "KidSafeApplication";
+    // A broadcast receiver holding the process with goAsync() has about 10 seconds
+    private static final long RULES_WAIT_MS = 9_000;
+    
+    private FamilyRepository familyRepository;
+    private int startedActivities;
+    private TimeRuleScheduler timeRuleScheduler;
+    private UsageTracker usageTracker;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // The scheduler's rules, for as long as someone is logged in
+    private SharedNode.Subscription rulesSubscription;
+    private String enforcedUid;
+    private final List<Runnable> waitingForRules = new ArrayList<>();
     
     @Override
     public void onCreate() {
@@ -21,6 +42,108 @@ public class KidSafeApplication extends Application {
         
         // Initialize Firebase for production
         initializeFirebaseProduction();
+        
+        // Measure screen time for daily limits
+        usageTracker = new UsageTracker(this, getTimeRuleScheduler(), getFamilyRepository());
+        usageTracker.start();
+        
+        // Family listeners only stream while the app is visible
+        registerActivityLifecycleCallbacks(new ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityStarted(Activity activity) {
+                if (startedActivities++ == 0) {
+                    getFamilyRepository().onAppForeground();
+                }
+            }
+            
+            @Override
+            public void onActivityStopped(Activity activity) {
+                // A configuration change stops and starts again, no need to react to it
+                if (--startedActivities == 0 && !activity.isChangingConfigurations()) {
+                    getFamilyRepository().onAppBackground();
+                }
+            }
+            
+            @Override
+            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            }
+            
+            @Override
+            public void onActivityResumed(Activity activity) {
+            }
+            
+            @Override
+            public void onActivityPaused(Activity activity) {
+            }
+            
+            @Override
+            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            }
+            
+            @Override
+            public void onActivityDestroyed(Activity activity) {
+            }
+        });
+        
+        LocalAuthService localAuth = new LocalAuthService(this);
+        if (localAuth.isLoggedIn()) {
+            // Local edits the previous process could not send yet
+            getFamilyRepository().replicate(localAuth.getCurrentUserUID(), localAuth.getCurrentUserEmail());
+            // Also after a reboot or when woken by the alarm, with no screen open
+            startEnforcement(localAuth.getCurrentUserUID());
+        }
+    }
+    
+    /**
+     * Keep the time rule scheduler fed with the family's rules whether or not a screen
+     * shows them. The first rules come from the local store, so enforcement goes on right
+     * after a restart, offline included. No-op when already enforcing {@code uid}.
+     */
+    public void startEnforcement(String uid) {
+        if (uid == null || uid.equals(enforcedUid)) return;
+        // Switching accounts: the other family's rules stay until these are read
+        if (rulesSubscription != null) rulesSubscription.close();
+        enforcedUid = uid;
+        rulesSubscription = getFamilyRepository().observeTimeRules(uid, (timeRules, replayed) -> {
+            getTimeRuleScheduler().setRules(timeRules.getRules());
+            runWaitingForRules();
+        });
+    }
+    
+    /**
+     * Logged out: no rules are enforced any more
+     */
+    public void stopEnforcement() {
+        if (rulesSubscription != null) {
+            rulesSubscription.close();
+            rulesSubscription = null;
+        }
+        enforcedUid = null;
+        getTimeRuleScheduler().setRules(Collections.emptyList());
+        runWaitingForRules();
+    }
+    
+    /**
+     * Run {@code action} once the scheduler has the family's rules (and armed its alarm),
+     * at the latest after RULES_WAIT_MS
+     */
+    public void whenTimeRulesApplied(Runnable action) {
+        if (enforcedUid == null || getTimeRuleScheduler().hasRules()) {
+            action.run();
+            return;
+        }
+        waitingForRules.add(action);
+        handler.postDelayed(() -> {
+            if (waitingForRules.remove(action)) action.run();
+        }, RULES_WAIT_MS);
+    }
+    
+    private void runWaitingForRules() {
+        List<Runnable> actions = new ArrayList<>(waitingForRules);
+        waitingForRules.clear();
+        for (Runnable action : actions) {
+            action.run();
+        }
     }
     
     /**
@@ -50,4 +173,29 @@ public class KidSafeApplication extends Application {
             Log.e(TAG, "❌ Failed to initialize Firebase", e);
         }
     }
+    
+    /**
+     * Shared Firebase listeners and the local family store for every screen
+     */
+    public FamilyRepository getFamilyRepository() {
+        if (familyRepository == null) {
+            familyRepository = new FamilyRepository(this);
+        }
+        return familyRepository;
+    }
+    
+    /**
+     * Process-wide scheduler for the time rules, armed on AlarmManager
+     */
+    public TimeRuleScheduler getTimeRuleScheduler() {
+        if (timeRuleScheduler == null) {
+            timeRuleScheduler = new TimeRuleScheduler(Clock.systemDefaultZone(),
+                    TimeRuleAlarmReceiver.createAlarm(this));
+        }
+        return timeRuleScheduler;
+    }
+    
+    public UsageTracker getUsageTracker() {
+        return usageTracker;
+    }
 }
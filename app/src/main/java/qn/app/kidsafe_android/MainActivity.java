@@ -3,19 +3,23 @@ package qn.app.kidsafe_android;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.Log;
-import android.util.Patterns;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.EditText;
+import android.widget.RadioGroup;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
@@ -24,35 +28,36 @@ import com.google.android.material.floatingactionbutton.ExtendedFloatingActionBu
 import com.google.android.material.snackbar.Snackbar;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ServerValue;
-import com.google.firebase.database.ValueEventListener;
 
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 
 public class MainActivity extends AppCompatActivity {
     
     private static final String TAG = "MainActivity";
+    private static final int PREFETCH_DISTANCE = 15;
     
     private RecyclerView recyclerView;
     private UrlAdapter urlAdapter;
     private List<BlockedUrl> urlList;
+    // Holds the subscription: loaded pages survive the activity being recreated
+    private BlockedUrlsViewModel viewModel;
+    private FamilyRepository.BlockedUrls blockedUrls;
+    private BlocklistEngine blocklistEngine;
     private SwipeRefreshLayout swipeRefreshLayout;
     private ExtendedFloatingActionButton fab;
     
     // Firebase
     private FirebaseAuth mAuth;
-    private FirebaseDatabase firebaseDatabase;
+    private FamilyRepository repository;
     private DatabaseReference blockedUrlsRef;
-    private ValueEventListener urlsListener;
+    private BlockedUrlPager urlPager;
+    private String userUid;
+    private String userEmail;
     
     // Local Auth Service (fallback)
     private LocalAuthService localAuth;
@@ -60,6 +65,10 @@ public class MainActivity extends AppCompatActivity {
     
     // Current user
     private FirebaseUser currentUser;
+    
+    // Hosts file / filter list picker for bulk import
+    private final ActivityResultLauncher<String[]> importLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::startImport);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -124,42 +133,22 @@ public class MainActivity extends AppCompatActivity {
     
     private void initFirebase() {
         try {
-            // Initialize Firebase Database with custom URL
-            String databaseUrl = "https://kidsafe-control-default-rtdb.asia-southeast1.firebasedatabase.app/";
-            firebaseDatabase = FirebaseDatabase.getInstance(databaseUrl);
+            repository = ((KidSafeApplication) getApplication()).getFamilyRepository();
             
             // Use user UID as family ID for data isolation
-            String userUid = useLocalAuth ? localAuth.getCurrentUserUID() : currentUser.getUid();
+            userUid = useLocalAuth ? localAuth.getCurrentUserUID() : currentUser.getUid();
             Log.d(TAG, "🔥 Initializing Firebase with UID: " + userUid);
-            Log.d(TAG, "🔥 Firebase database URL: " + databaseUrl);
+            Log.d(TAG, "🔥 Firebase database URL: " + FamilyRepository.DATABASE_URL);
             
             String firebasePath = "kidsafe/families/" + userUid + "/blockedUrls";
             Log.d(TAG, "🔥 Firebase path: " + firebasePath);
             
-            blockedUrlsRef = firebaseDatabase.getReference("kidsafe")
-                    .child("families")
-                    .child(userUid)
-                    .child("blockedUrls");
-                    
-            // Test Firebase connection
-            blockedUrlsRef.getDatabase().getReference(".info/connected")
-                    .addValueEventListener(new ValueEventListener() {
-                        @Override
-                        public void onDataChange(@NonNull DataSnapshot snapshot) {
-                            boolean connected = snapshot.getValue(Boolean.class);
-                            Log.d(TAG, "🔥 Firebase connected: " + connected);
-                            if (connected) {
-                                runOnUiThread(() -> {
-                                    Toast.makeText(MainActivity.this, "✅ Kết nối Firebase thành công", Toast.LENGTH_SHORT).show();
-                                });
-                            }
-                        }
-
-                        @Override
-                        public void onCancelled(@NonNull DatabaseError error) {
-                            Log.e(TAG, "🔥 Firebase connection error: " + error.getMessage());
-                        }
-                    });
+            blockedUrlsRef = repository.getFamilyRef(userUid).child("blockedUrls");
+            
+            userEmail = useLocalAuth ? localAuth.getCurrentUserEmail() : currentUser.getEmail();
+            
+            // Just logged in: the family's time rules are enforced from now on
+            ((KidSafeApplication) getApplication()).startEnforcement(userUid);
                     
         } catch (Exception e) {
             Log.e(TAG, "❌ Failed to initialize Firebase", e);
@@ -168,11 +157,25 @@ public class MainActivity extends AppCompatActivity {
     }
     
     private void setupRecyclerView() {
-        urlList = new ArrayList<>();
-        urlAdapter = new UrlAdapter(urlList, this::showDeleteConfirmDialog);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
         
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        recyclerView.setAdapter(urlAdapter);
+        // Fetch the next page while the user is still a few rows away from the end, and a
+        // released page while they are a few rows away from where it goes back
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                if (urlAdapter == null) return;
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= urlAdapter.getItemCount() - PREFETCH_DISTANCE) {
+                    viewModel.loadNextPage();
+                } else if (dy < 0) {
+                    int released = urlPager.getReleasedPosition();
+                    if (released >= 0 && layoutManager.findFirstVisibleItemPosition() <= released + PREFETCH_DISTANCE) {
+                        viewModel.loadPreviousPage();
+                    }
+                }
+            }
+        });
     }
     
     private void setupListeners() {
@@ -190,62 +193,36 @@ public class MainActivity extends AppCompatActivity {
     }
     
     private void loadBlockedUrls() {
-        urlsListener = new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                Log.d(TAG, "🔥 Firebase onDataChange - Snapshot exists: " + dataSnapshot.exists());
-                Log.d(TAG, "🔥 Firebase onDataChange - Children count: " + dataSnapshot.getChildrenCount());
-                
-                urlList.clear();
-                int loadedCount = 0;
-                
-                for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                    try {
-                        Log.d(TAG, "🔥 Processing snapshot key: " + snapshot.getKey());
-                        Log.d(TAG, "🔥 Snapshot value: " + snapshot.getValue());
-                        
-                        BlockedUrl blockedUrl = snapshot.getValue(BlockedUrl.class);
-                        if (blockedUrl != null) {
-                            blockedUrl.setId(snapshot.getKey());
-                            urlList.add(blockedUrl);
-                            loadedCount++;
-                            Log.d(TAG, "✅ Loaded URL: " + blockedUrl.getUrl());
-                        } else {
-                            Log.w(TAG, "⚠️ Failed to parse URL from snapshot: " + snapshot.getKey());
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "❌ Error parsing blocked URL from snapshot: " + snapshot.getKey(), e);
-                    }
-                }
-                
-                Log.d(TAG, "🔥 Total URLs loaded: " + loadedCount);
-                urlAdapter.notifyDataSetChanged();
-                swipeRefreshLayout.setRefreshing(false);
-                
-                // Update subtitle
-                updateSubtitle();
-                
-                if (loadedCount > 0) {
-                    Toast.makeText(MainActivity.this, "Đã tải " + loadedCount + " URL", Toast.LENGTH_SHORT).show();
-                }
-            }
-            
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                Log.e(TAG, "❌ Firebase onCancelled: " + databaseError.getMessage(), databaseError.toException());
-                Toast.makeText(MainActivity.this, 
-                    "Lỗi tải dữ liệu: " + databaseError.getMessage(), 
-                    Toast.LENGTH_LONG).show();
-                swipeRefreshLayout.setRefreshing(false);
+        viewModel = new ViewModelProvider(this).get(BlockedUrlsViewModel.class);
+        viewModel.start(userUid);
+        // After a configuration change this is the state the previous activity showed
+        viewModel.getBlockedUrls().observe(this, state -> {
+            if (blockedUrls != null) {
+                blockedUrls.removeModelListener(urlAdapter);
             }
-        };
-        
-        blockedUrlsRef.addValueEventListener(urlsListener);
+            blockedUrls = state;
+            blocklistEngine = state.getEngine();
+            urlPager = state.getPager();
+            urlList = state.getModel().getItems();
+            // Rows were formatted by the state, a new activity builds none
+            urlAdapter = new UrlAdapter(urlList, state.getRows(), this::showDeleteConfirmDialog);
+            recyclerView.setAdapter(urlAdapter);
+            // Rows follow the model one item at a time
+            state.addModelListener(urlAdapter);
+        });
+        viewModel.getStatus().observe(this, this::updateSubtitle);
+        viewModel.getMessage().observe(this, message -> {
+            if (message == null) return;
+            Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+            viewModel.onMessageShown();
+        });
     }
     
-    private void updateSubtitle() {
+    private void updateSubtitle(BlockedUrlsViewModel.Status status) {
+        swipeRefreshLayout.setRefreshing(status.isRefreshing());
         if (getSupportActionBar() != null) {
-            String subtitle = urlList.size() + " trang web bị chặn";
+            // Only loaded pages are counted until the end of the list is reached
+            String subtitle = status.getLoadedCount() + (status.isEndReached() ? "" : "+") + " trang web bị chặn";
             getSupportActionBar().setSubtitle(subtitle);
         }
     }
@@ -256,6 +233,7 @@ public class MainActivity extends AppCompatActivity {
         View dialogView = inflater.inflate(R.layout.dialog_add_url, null);
         
         EditText editTextUrl = dialogView.findViewById(R.id.editTextUrl);
+        RadioGroup radioGroupType = dialogView.findViewById(R.id.radioGroupType);
         
         builder.setView(dialogView)
                 .setTitle("Thêm trang web cần chặn")
@@ -268,7 +246,10 @@ public class MainActivity extends AppCompatActivity {
         dialog.setOnShowListener(dialogInterface -> {
             dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(v -> {
                 String url = editTextUrl.getText().toString().trim();
-                if (validateAndAddUrl(url)) {
+                int checkedType = radioGroupType.getCheckedRadioButtonId();
+                String type = checkedType == R.id.radioTypeKeyword ? "keyword"
+                        : checkedType == R.id.radioTypeWildcard ? "wildcard" : "url";
+                if (validateAndAddUrl(url, type)) {
                     dialog.dismiss();
                 }
             });
@@ -277,92 +258,110 @@ public class MainActivity extends AppCompatActivity {
         dialog.show();
     }
     
-    private boolean validateAndAddUrl(String inputUrl) {
+    private boolean validateAndAddUrl(String inputUrl, String type) {
         if (TextUtils.isEmpty(inputUrl)) {
             Toast.makeText(this, "Vui lòng nhập URL", Toast.LENGTH_SHORT).show();
             return false;
         }
         
+        if (!"url".equals(type)) {
+            return validateAndAddPattern(inputUrl, type);
+        }
+        
         // Clean and validate URL
-        String cleanUrl = cleanUrl(inputUrl);
-        if (!isValidUrl(cleanUrl)) {
+        UrlCanonicalizer.CanonicalUrl canonical = UrlCanonicalizer.canonicalize(inputUrl);
+        if (canonical == null) {
             Toast.makeText(this, "URL không hợp lệ", Toast.LENGTH_SHORT).show();
             return false;
         }
+        String cleanUrl = canonical.getUrl();
         
-        // Check if URL already exists
-        for (BlockedUrl existing : urlList) {
-            if (existing.getUrl().equals(cleanUrl)) {
-                Toast.makeText(this, "URL này đã có trong danh sách", Toast.LENGTH_SHORT).show();
-                return false;
-            }
+        // Check if URL already exists; the engine arrives with the list state
+        if (blocklistEngine != null && blocklistEngine.containsUrl(cleanUrl)) {
+            Toast.makeText(this, "URL này đã có trong danh sách", Toast.LENGTH_SHORT).show();
+            return false;
         }
         
-        addUrlToFirebase(cleanUrl);
+        if (urlPager == null || !urlPager.isEndReached()) {
+            // No state yet or not every page is loaded, ask the server (uses the ".indexOn": "url" rule)
+            blockedUrlsRef.orderByChild("url").equalTo(cleanUrl).limitToFirst(1).get()
+                    .addOnSuccessListener(snapshot -> {
+                        if (snapshot.exists()) {
+                            Toast.makeText(this, "URL này đã có trong danh sách", Toast.LENGTH_SHORT).show();
+                        } else {
+                            addUrlToFirebase(cleanUrl, "url");
+                        }
+                    })
+                    .addOnFailureListener(e -> addUrlToFirebase(cleanUrl, "url"));
+            return true;
+        }
+        
+        addUrlToFirebase(cleanUrl, "url");
         return true;
     }
     
-    private String cleanUrl(String inputUrl) {
-        String url = inputUrl.toLowerCase().trim();
-        
-        // Remove protocols if present
-        if (url.startsWith("http://")) {
-            url = url.substring(7);
-        } else if (url.startsWith("https://")) {
-            url = url.substring(8);
+    /**
+     * Keywords and wildcards are matched against host + path, so they are stored
+     * lower case and without scheme. Canonical URLs are ASCII (hosts in punycode), so a
+     * pattern with other characters could never match and is refused. Patterns are not
+     * in the domain trie, the duplicate check always goes to the server.
+     */
+    private boolean validateAndAddPattern(String input, String type) {
+        String pattern = input.toLowerCase().replaceFirst("^[a-z]+://", "");
+        if (pattern.contains(" ")) {
+            Toast.makeText(this, "Mẫu không được chứa khoảng trắng", Toast.LENGTH_SHORT).show();
+            return false;
         }
-        
-        // Remove www if present
-        if (url.startsWith("www.")) {
-            url = url.substring(4);
+        if (pattern.chars().anyMatch(c -> c >= 128)) {
+            Toast.makeText(this, "Mẫu chỉ được chứa chữ không dấu, số và ký hiệu", Toast.LENGTH_LONG).show();
+            return false;
         }
-        
-        // Add https protocol for validation
-        return "https://" + url;
-    }
-    
-    private boolean isValidUrl(String url) {
-        try {
-            new URL(url);
-            return Patterns.WEB_URL.matcher(url).matches();
-        } catch (MalformedURLException e) {
+        if ("keyword".equals(type) && pattern.length() < 3) {
+            Toast.makeText(this, "Từ khóa phải có ít nhất 3 ký tự", Toast.LENGTH_SHORT).show();
+            return false;
+        }
+        if ("wildcard".equals(type) && pattern.indexOf('*') < 0 && pattern.indexOf('?') < 0) {
+            Toast.makeText(this, "Mẫu phải chứa * hoặc ?", Toast.LENGTH_SHORT).show();
             return false;
         }
+        
+        blockedUrlsRef.orderByChild("url").equalTo(pattern).limitToFirst(1).get()
+                .addOnSuccessListener(snapshot -> {
+                    if (snapshot.exists()) {
+                        Toast.makeText(this, "Mẫu này đã có trong danh sách", Toast.LENGTH_SHORT).show();
+                    } else {
+                        addUrlToFirebase(pattern, type);
+                    }
+                })
+                .addOnFailureListener(e -> addUrlToFirebase(pattern, type));
+        return true;
     }
     
-    private void addUrlToFirebase(String url) {
+    private void addUrlToFirebase(String url, String type) {
         try {
             Log.d(TAG, "Adding URL to Firebase: " + url);
             
-            Map<String, Object> urlData = new HashMap<>();
-            urlData.put("url", url);
+            BlockedUrl blockedUrl = new BlockedUrl(url, 0, "parent_android", "active");
+            blockedUrl.setType(type);
+            Map<String, Object> urlData = SnapshotMapper.writeBlockedUrl(blockedUrl);
             urlData.put("addedAt", ServerValue.TIMESTAMP);
-            urlData.put("addedBy", "parent_android");
-            urlData.put("status", "active");
-            
-            // Get user UID for proper path
-            String userUid = useLocalAuth ? localAuth.getCurrentUserUID() : 
-                           (currentUser != null ? currentUser.getUid() : "anonymous");
             
             Log.d(TAG, "Using UID for Firebase path: " + userUid);
             
-            DatabaseReference newUrlRef = blockedUrlsRef.push();
-            String pushId = newUrlRef.getKey();
+            String pushId = blockedUrlsRef.push().getKey();
             Log.d(TAG, "Generated push ID: " + pushId);
             
-            newUrlRef.setValue(urlData)
-                    .addOnSuccessListener(aVoid -> {
-                        Log.d(TAG, "✅ Successfully added URL to Firebase: " + url);
-                        Snackbar.make(recyclerView, "Đã thêm URL: " + formatUrlForDisplay(url), 
-                                Snackbar.LENGTH_LONG).show();
-                        updateSyncStatus();
-                    })
+            // Shown from the local store at once, sent to Firebase in the background
+            repository.write(userUid, userEmail, "blockedUrls/" + pushId, urlData)
+                    .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ Successfully added URL to Firebase: " + url))
                     .addOnFailureListener(e -> {
                         Log.e(TAG, "❌ Failed to add URL to Firebase: " + url, e);
                         Toast.makeText(MainActivity.this, 
                             "Lỗi thêm URL: " + e.getMessage(), 
                             Toast.LENGTH_LONG).show();
                     });
+            Snackbar.make(recyclerView, "Đã thêm: " + ("url".equals(type) ? UrlCanonicalizer.toDisplay(url) : url), 
+                    Snackbar.LENGTH_LONG).show();
                     
         } catch (Exception e) {
             Log.e(TAG, "Exception in addUrlToFirebase: " + url, e);
@@ -374,70 +373,89 @@ public class MainActivity extends AppCompatActivity {
         new AlertDialog.Builder(this)
                 .setTitle("Xác nhận xóa")
                 .setMessage("Bạn có chắc muốn xóa URL này khỏi danh sách chặn?\n\n" + 
-                           formatUrlForDisplay(blockedUrl.getUrl()))
+                           UrlRow.displayText(blockedUrl))
                 .setPositiveButton("Xóa", (dialog, which) -> deleteUrl(blockedUrl))
                 .setNegativeButton("Hủy", null)
                 .show();
     }
     
     private void deleteUrl(BlockedUrl blockedUrl) {
-        blockedUrlsRef.child(blockedUrl.getId()).removeValue()
-                .addOnSuccessListener(aVoid -> {
-                    Snackbar.make(recyclerView, "Đã xóa URL khỏi danh sách chặn", 
-                            Snackbar.LENGTH_SHORT).show();
-                    updateSyncStatus();
-                })
+        repository.write(userUid, userEmail, "blockedUrls/" + blockedUrl.getId(), null)
                 .addOnFailureListener(e -> {
                     Toast.makeText(MainActivity.this, 
                         "Lỗi xóa URL: " + e.getMessage(), 
                         Toast.LENGTH_SHORT).show();
                 });
+        Snackbar.make(recyclerView, "Đã xóa URL khỏi danh sách chặn", 
+                Snackbar.LENGTH_SHORT).show();
     }
     
-    private void updateSyncStatus() {
-        // Determine UID and email based on auth mode
-        String userUid = useLocalAuth ? localAuth.getCurrentUserUID() : (currentUser != null ? currentUser.getUid() : null);
-        String userEmail = useLocalAuth ? localAuth.getCurrentUserEmail() : (currentUser != null ? currentUser.getEmail() : null);
-
-        if (userUid == null || firebaseDatabase == null) {
-            Log.w(TAG, "updateSyncStatus skipped: missing userUid or firebaseDatabase");
+    private void startImport(Uri uri) {
+        if (uri == null || blockedUrlsRef == null) return;
+        
+        InputStream input;
+        try {
+            input = getContentResolver().openInputStream(uri);
+        } catch (FileNotFoundException e) {
+            Toast.makeText(this, "Không mở được tệp: " + e.getMessage(), Toast.LENGTH_LONG).show();
             return;
         }
-
-        DatabaseReference syncStatusRef = firebaseDatabase.getReference("kidsafe")
-                .child("families")
-                .child(userUid)
-                .child("syncStatus");
-
-        Map<String, Object> syncData = new HashMap<>();
-        syncData.put("lastUpdated", ServerValue.TIMESTAMP);
-        syncData.put("updatedBy", "parent_android");
-        syncData.put("status", "online");
-        if (userEmail != null) {
-            syncData.put("userEmail", userEmail);
+        if (input == null) return;
+        
+        String userEmail = useLocalAuth ? localAuth.getCurrentUserEmail() : (currentUser != null ? currentUser.getEmail() : null);
+        String userUid = useLocalAuth ? localAuth.getCurrentUserUID() : (currentUser != null ? currentUser.getUid() : "anonymous");
+        BlocklistImporter importer = new BlocklistImporter(blockedUrlsRef.getParent(),
+                FamilyWriteBatcher.buildSyncStatus(userEmail),
+                BlocklistSnapshot.fileFor(getFilesDir(), userUid));
+        
+        // Imported children would all stream through the live head of the list
+        FamilyRepository.BlockedUrls importTarget = blockedUrls;
+        if (importTarget != null) {
+            importTarget.beginBulkWrite();
         }
+        
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("Nhập danh sách chặn")
+                .setMessage("Đang đọc tệp...")
+                .setCancelable(false)
+                .setNegativeButton("Dừng", (dialog, which) -> importer.cancel())
+                .show();
+        
+        importer.start(input, new BlocklistImporter.ProgressListener() {
+            @Override
+            public void onProgress(int linesRead, int imported, int skipped) {
+                progressDialog.setMessage("Đã đọc " + linesRead + " dòng\nĐã thêm " + imported + " URL, bỏ qua " + skipped);
+            }
+
+            @Override
+            public void onComplete(int linesRead, int imported, int skipped) {
+                progressDialog.dismiss();
+                // The import rewrote the snapshot with the whole list
+                repository.reloadBlocklistSnapshot(userUid);
+                if (importTarget != null) {
+                    importTarget.endBulkWrite();
+                }
+                Snackbar.make(recyclerView, "Đã nhập " + imported + " URL (bỏ qua " + skipped + ")",
+                        Snackbar.LENGTH_LONG).show();
+            }
 
-        syncStatusRef.setValue(syncData);
+            @Override
+            public void onError(Exception e, int imported) {
+                progressDialog.dismiss();
+                // Rewritten with the batches committed so far
+                repository.reloadBlocklistSnapshot(userUid);
+                if (importTarget != null) {
+                    importTarget.endBulkWrite();
+                }
+                Toast.makeText(MainActivity.this,
+                        "Lỗi nhập danh sách sau " + imported + " URL: " + e.getMessage(),
+                        Toast.LENGTH_LONG).show();
+            }
+        });
     }
     
     private void refreshData() {
-        // Firebase automatically refreshes due to ValueEventListener
-        // Just show refreshing animation for user feedback
-        swipeRefreshLayout.setRefreshing(true);
-    }
-    
-    private String formatUrlForDisplay(String url) {
-        if (url == null) return "";
-        
-        // Remove protocol for cleaner display
-        String displayUrl = url;
-        if (displayUrl.startsWith("https://")) {
-            displayUrl = displayUrl.substring(8);
-        } else if (displayUrl.startsWith("http://")) {
-            displayUrl = displayUrl.substring(7);
-        }
-        
-        return displayUrl;
+        viewModel.refresh();
     }
     
     private void goToLoginActivity() {
@@ -460,6 +478,9 @@ public class MainActivity extends AppCompatActivity {
         if (id == R.id.menu_logout) {
             showLogoutDialog();
             return true;
+        } else if (id == R.id.menu_import_blocklist) {
+            importLauncher.launch(new String[]{"text/*", "application/octet-stream"});
+            return true;
         } else if (id == R.id.menu_time_management) {
             // Open Time Management Activity
             Intent intent = new Intent(this, TimeManagementActivity.class);
@@ -486,11 +507,6 @@ public class MainActivity extends AppCompatActivity {
     
     private void performLogout() {
         try {
-            // Remove Firebase listener
-            if (urlsListener != null && blockedUrlsRef != null) {
-                blockedUrlsRef.removeEventListener(urlsListener);
-            }
-            
             // Clear local auth if using local auth
             if (useLocalAuth && localAuth != null) {
                 localAuth.clearSavedCredentials();
@@ -503,6 +519,8 @@ public class MainActivity extends AppCompatActivity {
                 Log.d(TAG, "✅ Firebase sign out completed");
             }
             
+            ((KidSafeApplication) getApplication()).stopEnforcement();
+            
             // Show success message
             Toast.makeText(this, "Đã đăng xuất thành công", Toast.LENGTH_SHORT).show();
             
@@ -521,9 +539,10 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // Remove Firebase listener to prevent memory leaks
-        if (urlsListener != null && blockedUrlsRef != null) {
-            blockedUrlsRef.removeEventListener(urlsListener);
+        // The view model keeps the subscriptions, and releases them once this screen is finished
+        if (blockedUrls != null) {
+            blockedUrls.removeModelListener(urlAdapter);
+            blockedUrls = null;
         }
     }
 }
\ No newline at end of file
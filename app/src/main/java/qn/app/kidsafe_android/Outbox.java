@@ -0,0 +1,375 @@
+package qn.app.kidsafe_android;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Sends the pending writes of a FamilyStore to Firebase until each one is committed or
+ * rejected.
+ *
+ * The store's log is the queue, so nothing is lost when a send fails or the process dies;
+ * an op leaves it only when Firebase acknowledged it, refused it for good (e.g. the rules
+ * deny it), or a later write made it pointless.
+ * The op's sequence number is its idempotency key: it is never in flight twice, and a
+ * resend after a lost acknowledgement sets the same value at the same path again.
+ *
+ * <ul>
+ *   <li>At most {@code window} ops are in flight, and one per path, so writes to a path
+ *   land in order.</li>
+ *   <li>A failed op waits base * 2^(attempts - 1), capped, with the upper half jittered so
+ *   clients that lost the connection together don't retry together.</li>
+ *   <li>An op that a later write to its path supersedes before it was sent is discarded;
+ *   an add followed by a delete of something Firebase never saw sends nothing.</li>
+ * </ul>
+ * Main thread only.
+ */
+public final class Outbox {
+
+    /** Returned by enqueue() when the write cancelled out and nothing is sent */
+    public static final long NO_OP = 0;
+
+    static final long BASE_DELAY_MS = 1_000;
+    static final long MAX_DELAY_MS = 5 * 60_000;
+    static final int DEFAULT_WINDOW = 4;
+
+    /** Sends one write; callbacks are expected on the main thread */
+    public interface Transport {
+        /**
+         * @param attempt 1 for the first send of the op; a retry should be sent on its own,
+         *                so that a rejection can be told apart from its neighbours'
+         */
+        void send(String path, Object value, int attempt, Callback callback);
+    }
+
+    public interface Callback {
+        void onSuccess();
+
+        /** Worth trying again, e.g. offline */
+        void onFailure(Exception e);
+
+        /** Would fail the same way every time: the op is dropped */
+        void onRejected(Exception e);
+    }
+
+    public interface Listener {
+        void onCommitted(FamilyStore.Op op, long latencyMillis);
+
+        /** The op stays queued and is sent again after {@code retryInMillis} */
+        default void onFailed(FamilyStore.Op op, int attempts, long retryInMillis, Exception e) {
+        }
+
+        /** The op was dropped from the store; its path shows what Firebase has again */
+        default void onRejected(FamilyStore.Op op, Exception e) {
+        }
+    }
+
+    /** Counters since the outbox was created */
+    public static final class Stats {
+        private final int queueDepth;
+        private final int inFlight;
+        private final long committed;
+        private final long retries;
+        private final int maxAttempts;
+        private final long lastLatencyMillis;
+        private final long meanLatencyMillis;
+        private final long maxLatencyMillis;
+
+        Stats(int queueDepth, int inFlight, long committed, long retries, int maxAttempts,
+              long lastLatencyMillis, long meanLatencyMillis, long maxLatencyMillis) {
+            this.queueDepth = queueDepth;
+            this.inFlight = inFlight;
+            this.committed = committed;
+            this.retries = retries;
+            this.maxAttempts = maxAttempts;
+            this.lastLatencyMillis = lastLatencyMillis;
+            this.meanLatencyMillis = meanLatencyMillis;
+            this.maxLatencyMillis = maxLatencyMillis;
+        }
+
+        /** Ops not committed yet, in flight included */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public long getCommitted() {
+            return committed;
+        }
+
+        /** Sends beyond the first of each op */
+        public long getRetries() {
+            return retries;
+        }
+
+        /** Highest attempt count among the queued ops */
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        /** From the local write to the acknowledgement, across restarts */
+        public long getLastLatencyMillis() {
+            return lastLatencyMillis;
+        }
+
+        public long getMeanLatencyMillis() {
+            return meanLatencyMillis;
+        }
+
+        public long getMaxLatencyMillis() {
+            return maxLatencyMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "depth=" + queueDepth + " inFlight=" + inFlight + " committed=" + committed
+                    + " retries=" + retries + " maxAttempts=" + maxAttempts
+                    + " latency last/mean/max=" + lastLatencyMillis + "/" + meanLatencyMillis
+                    + "/" + maxLatencyMillis + "ms";
+        }
+    }
+
+    private static final class Entry {
+        final FamilyStore.Op op;
+        int attempts;
+        long notBefore;
+        boolean inFlight;
+
+        Entry(FamilyStore.Op op) {
+            this.op = op;
+        }
+    }
+
+    private final FamilyStore store;
+    private final Transport transport;
+    private final Listener listener;
+    private final SharedNode.Delay delay;
+    private final LongSupplier clock;
+    private final Random random;
+    private final int window;
+    private final Map<Long, Entry> entries = new HashMap<>();
+    // Handed to the transport at some point; ops found in the log may have been, too
+    private final Set<Long> dispatched = new HashSet<>();
+    private final Runnable retryTask = () -> {
+        retryAt = Long.MAX_VALUE;
+        drain();
+    };
+
+    private int inFlight;
+    private boolean draining;
+    private boolean drainAgain;
+    private long retryAt = Long.MAX_VALUE;
+    private long committed;
+    private long retries;
+    private long lastLatency;
+    private long totalLatency;
+    private long maxLatency;
+
+    public Outbox(FamilyStore store, Transport transport, Listener listener, SharedNode.Delay delay) {
+        this(store, transport, listener, delay, System::currentTimeMillis, new Random(), DEFAULT_WINDOW);
+    }
+
+    Outbox(FamilyStore store, Transport transport, Listener listener, SharedNode.Delay delay,
+           LongSupplier clock, Random random, int window) {
+        this.store = store;
+        this.transport = transport;
+        this.listener = listener;
+        this.delay = delay;
+        this.clock = clock;
+        this.random = random;
+        this.window = window;
+        for (FamilyStore.Op op : store.getPending()) {
+            dispatched.add(op.getSeq());
+        }
+    }
+
+    /**
+     * Record a write of {@code value} (null deletes) at {@code path} in the store and
+     * start sending it
+     *
+     * @return the op's sequence number, or NO_OP when it cancelled out an earlier write
+     */
+    public long enqueue(String path, Object value) throws IOException {
+        FamilyStore.Op previous = store.getLatestPending(path);
+        // Written first: a crash in between leaves both ops, which is still correct
+        long seq = store.write(path, value, clock.getAsLong());
+        if (previous != null && !dispatched.contains(previous.getSeq())) {
+            store.discard(previous.getSeq());
+            entries.remove(previous.getSeq());
+            if (value == null && !store.hasRemote(path) && !hasOtherPending(path, seq)) {
+                store.discard(seq);
+                return NO_OP;
+            }
+        }
+        drain();
+        return seq;
+    }
+
+    /**
+     * Send what is due, e.g. after the app started
+     */
+    public void drain() {
+        if (draining) {
+            drainAgain = true;
+            return;
+        }
+        draining = true;
+        try {
+            do {
+                drainAgain = false;
+                drainOnce();
+            } while (drainAgain);
+        } finally {
+            draining = false;
+        }
+    }
+
+    /**
+     * Send every queued op now, without waiting for its backoff, e.g. once the connection
+     * is back
+     */
+    public void retryNow() {
+        for (Entry entry : entries.values()) {
+            entry.notBefore = 0;
+        }
+        drain();
+    }
+
+    public Stats getStats() {
+        int maxAttempts = 0;
+        for (Entry entry : entries.values()) {
+            maxAttempts = Math.max(maxAttempts, entry.attempts);
+        }
+        return new Stats(store.getPending().size(), inFlight, committed, retries, maxAttempts,
+                lastLatency, committed > 0 ? totalLatency / committed : 0, maxLatency);
+    }
+
+    private void drainOnce() {
+        long now = clock.getAsLong();
+        List<FamilyStore.Op> ops = store.getPending();
+        Map<String, Long> latest = new HashMap<>();
+        Set<String> busy = new HashSet<>();
+        for (FamilyStore.Op op : ops) {
+            latest.put(op.getPath(), op.getSeq());
+            Entry entry = entries.get(op.getSeq());
+            if (entry != null && entry.inFlight) busy.add(op.getPath());
+        }
+
+        long nextRetry = Long.MAX_VALUE;
+        for (FamilyStore.Op op : ops) {
+            Entry entry = entries.get(op.getSeq());
+            if (entry == null) {
+                entry = new Entry(op);
+                entries.put(op.getSeq(), entry);
+            }
+            if (entry.inFlight) continue;
+            if (latest.get(op.getPath()) != op.getSeq()) {
+                // The later write sets the path anyway
+                if (!busy.contains(op.getPath())) discard(op.getSeq());
+                continue;
+            }
+            if (busy.contains(op.getPath())) continue;
+            if (entry.notBefore > now) {
+                nextRetry = Math.min(nextRetry, entry.notBefore);
+                continue;
+            }
+            if (inFlight >= window) break;
+            send(entry);
+            busy.add(op.getPath());
+        }
+        scheduleRetry(nextRetry, now);
+    }
+
+    private void send(Entry entry) {
+        FamilyStore.Op op = entry.op;
+        entry.inFlight = true;
+        entry.attempts++;
+        if (entry.attempts > 1) retries++;
+        inFlight++;
+        dispatched.add(op.getSeq());
+        transport.send(op.getPath(), op.getValue(), entry.attempts, new Callback() {
+            @Override
+            public void onSuccess() {
+                entry.inFlight = false;
+                inFlight--;
+                entries.remove(op.getSeq());
+                try {
+                    store.acknowledge(op.getSeq());
+                } catch (IOException e) {
+                    // Still pending in the log and sent again later; setting the same
+                    // value twice is harmless
+                }
+                long latency = Math.max(0, clock.getAsLong() - op.getTime());
+                committed++;
+                lastLatency = latency;
+                totalLatency += latency;
+                maxLatency = Math.max(maxLatency, latency);
+                listener.onCommitted(op, latency);
+                drain();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                entry.inFlight = false;
+                inFlight--;
+                long wait = backoff(entry.attempts, random);
+                entry.notBefore = clock.getAsLong() + wait;
+                listener.onFailed(op, entry.attempts, wait, e);
+                drain();
+            }
+
+            @Override
+            public void onRejected(Exception e) {
+                entry.inFlight = false;
+                inFlight--;
+                discard(op.getSeq());
+                listener.onRejected(op, e);
+                drain();
+            }
+        });
+    }
+
+    private boolean hasOtherPending(String path, long seq) {
+        for (FamilyStore.Op op : store.getPending()) {
+            if (op.getSeq() != seq && op.getPath().equals(path)) return true;
+        }
+        return false;
+    }
+
+    private void discard(long seq) {
+        entries.remove(seq);
+        try {
+            store.discard(seq);
+        } catch (IOException e) {
+            // Kept and discarded again on the next drain
+        }
+    }
+
+    private void scheduleRetry(long at, long now) {
+        if (at == retryAt) return;
+        delay.removeCallbacks(retryTask);
+        retryAt = at;
+        if (at != Long.MAX_VALUE) {
+            delay.postDelayed(retryTask, at - now);
+        }
+    }
+
+    /**
+     * Wait before attempt {@code attempts + 1}: half of base * 2^(attempts - 1) (capped)
+     * plus a random share of the other half
+     */
+    static long backoff(int attempts, Random random) {
+        long ceiling = BASE_DELAY_MS << Math.min(Math.max(attempts - 1, 0), 20);
+        ceiling = Math.min(ceiling, MAX_DELAY_MS);
+        long half = ceiling / 2;
+        return half + (long) (random.nextDouble() * (ceiling - half));
+    }
+}
@@ -0,0 +1,37 @@
+package qn.app.kidsafe_android;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Shared pieces of the list row models
+ */
+final class RowFormat {
+
+    private RowFormat() {
+    }
+
+    /**
+     * Formatter for "dd/MM/yyyy HH:mm" in the current zone; immutable, so one is made per
+     * batch of rows and may be used from any thread
+     */
+    static DateTimeFormatter dateFormat() {
+        return DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm", Locale.getDefault())
+                .withZone(ZoneId.systemDefault());
+    }
+
+    /**
+     * RecyclerView item id for a Firebase key (64-bit FNV-1a). Push IDs are 20 random
+     * characters, so two keys of one list sharing an id is not a practical concern.
+     */
+    static long stableId(String key) {
+        if (key == null) return 0;
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,175 @@
+package qn.app.kidsafe_android;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One underlying listener shared by every subscriber of a database node.
+ *
+ * The source is attached when the first subscriber arrives and detached LINGER after the
+ * last one left, so a screen that is recreated or reopened shortly after picks up the
+ * decoded value that is already in memory instead of downloading the node again. Each
+ * new subscriber gets the last value right away (replayed = true), then every change.
+ *
+ * While the app is in the background the node can be suspended: the source stops
+ * listening but subscribers and the value are kept, and resume() lets the source catch
+ * up from where it was instead of starting over.
+ *
+ * Main thread only.
+ */
+public final class SharedNode<T> {
+
+    public interface Source<T> {
+        /** Start listening; report through node.publish() / node.fail() */
+        void attach(SharedNode<T> node);
+
+        /** Stop listening and drop the state; may follow suspend() */
+        void detach();
+
+        /** Stop listening but keep what is needed to catch up in resume() */
+        default void suspend() {
+            detach();
+        }
+
+        /** Listen again after suspend(), publishing only if something changed */
+        default void resume(SharedNode<T> node) {
+            attach(node);
+        }
+    }
+
+    public interface Observer<T> {
+        /**
+         * @param replayed true when this is the value cached before the observer subscribed,
+         *                 not a change
+         */
+        void onValue(T value, boolean replayed);
+
+        default void onError(String message) {
+        }
+    }
+
+    public interface Subscription {
+        /** Idempotent */
+        void close();
+    }
+
+    /** Posts a task on the main thread, android.os.Handler in the app */
+    public interface Delay {
+        void postDelayed(Runnable task, long delayMillis);
+
+        void removeCallbacks(Runnable task);
+    }
+
+    private final Source<T> source;
+    private final Delay delay;
+    private final long lingerMillis;
+    private final List<Observer<T>> observers = new ArrayList<>();
+    private final Runnable detachTask = this::detachIfUnused;
+
+    private boolean attached;
+    private boolean suspended;
+    private boolean hasValue;
+    private T value;
+
+    public SharedNode(Source<T> source, Delay delay, long lingerMillis) {
+        this.source = source;
+        this.delay = delay;
+        this.lingerMillis = lingerMillis;
+    }
+
+    public Subscription subscribe(Observer<T> observer) {
+        observers.add(observer);
+        delay.removeCallbacks(detachTask);
+        if (suspended) {
+            resume();
+        } else if (!attached) {
+            attached = true;
+            source.attach(this);
+        }
+        if (hasValue) {
+            observer.onValue(value, true);
+        }
+        return new Subscription() {
+            private boolean closed;
+
+            @Override
+            public void close() {
+                if (closed) return;
+                closed = true;
+                observers.remove(observer);
+                if (observers.isEmpty()) {
+                    delay.postDelayed(detachTask, lingerMillis);
+                }
+            }
+        };
+    }
+
+    public void publish(T value) {
+        this.value = value;
+        hasValue = true;
+        // Observers may unsubscribe from the callback
+        for (Observer<T> observer : new ArrayList<>(observers)) {
+            observer.onValue(value, false);
+        }
+    }
+
+    public void fail(String message) {
+        for (Observer<T> observer : new ArrayList<>(observers)) {
+            observer.onError(message);
+        }
+    }
+
+    /**
+     * Stop the source listening, keeping subscribers and the value. No-op unless attached.
+     */
+    public void suspend() {
+        if (!attached) return;
+        attached = false;
+        suspended = true;
+        source.suspend();
+    }
+
+    /**
+     * Undo suspend(); a node nobody subscribes to any more is released instead
+     */
+    public void resume() {
+        if (!suspended) return;
+        suspended = false;
+        if (observers.isEmpty()) {
+            release();
+            return;
+        }
+        attached = true;
+        source.resume(this);
+    }
+
+    public boolean isAttached() {
+        return attached;
+    }
+
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    public int getSubscriberCount() {
+        return observers.size();
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    private void detachIfUnused() {
+        if (!observers.isEmpty() || !(attached || suspended)) return;
+        attached = false;
+        suspended = false;
+        release();
+    }
+
+    private void release() {
+        source.detach();
+        // Nothing keeps it current any more
+        hasValue = false;
+        value = null;
+    }
+}
@@ -0,0 +1,181 @@
+package qn.app.kidsafe_android;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written conversion between the raw value of a Realtime Database child
+ * ({@code snapshot.getValue()}: maps, lists, String, Long, Double, Boolean) and the models.
+ *
+ * One pass over the child's map with a switch on the key, instead of the reflective
+ * bean mapper behind {@code getValue(Class)}. Property names match what the bean mapper
+ * uses, so existing data and the PC client are unaffected. Unknown properties are
+ * ignored and a wrongly typed value leaves the field at its default instead of failing
+ * the whole child.
+ */
+public final class SnapshotMapper {
+
+    private SnapshotMapper() {
+    }
+
+    /**
+     * @return the entry keyed {@code key}, or null when {@code value} is not an object
+     */
+    public static BlockedUrl readBlockedUrl(String key, Object value) {
+        if (!(value instanceof Map)) return null;
+        BlockedUrl blockedUrl = new BlockedUrl();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            Object field = entry.getValue();
+            switch (String.valueOf(entry.getKey())) {
+                case "url":
+                    blockedUrl.setUrl(asString(field));
+                    break;
+                case "type":
+                    blockedUrl.setType(asString(field));
+                    break;
+                case "addedAt":
+                    blockedUrl.setAddedAt(asLong(field));
+                    break;
+                case "addedBy":
+                    blockedUrl.setAddedBy(asString(field));
+                    break;
+                case "status":
+                    blockedUrl.setStatus(asString(field));
+                    break;
+                default:
+                    break;
+            }
+        }
+        blockedUrl.setId(key);
+        return blockedUrl;
+    }
+
+    /**
+     * Properties to write for a new entry. The type is left out for plain URLs, so
+     * entries written before patterns existed and new ones look the same.
+     */
+    public static Map<String, Object> writeBlockedUrl(BlockedUrl blockedUrl) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("url", blockedUrl.getUrl());
+        if (blockedUrl.isPattern()) {
+            data.put("type", blockedUrl.getType());
+        }
+        data.put("addedAt", blockedUrl.getAddedAt());
+        data.put("addedBy", blockedUrl.getAddedBy());
+        data.put("status", blockedUrl.getStatus());
+        return data;
+    }
+
+    /**
+     * @return the rule keyed {@code key}, or null when {@code value} is not an object
+     */
+    public static TimeRule readTimeRule(String key, Object value) {
+        if (!(value instanceof Map)) return null;
+        TimeRule rule = new TimeRule();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            Object field = entry.getValue();
+            switch (String.valueOf(entry.getKey())) {
+                case "profileId":
+                    rule.setProfileId(asString(field));
+                    break;
+                case "name":
+                    rule.setName(asString(field));
+                    break;
+                case "description":
+                    rule.setDescription(asString(field));
+                    break;
+                case "ruleType":
+                    rule.setRuleType(asString(field));
+                    break;
+                case "startTime":
+                    rule.setStartTime(asString(field));
+                    break;
+                case "endTime":
+                    rule.setEndTime(asString(field));
+                    break;
+                case "days":
+                    rule.setDays(asIntList(field));
+                    break;
+                case "dailyLimitMinutes":
+                    rule.setDailyLimitMinutes((int) asLong(field));
+                    break;
+                case "breakIntervalMinutes":
+                    rule.setBreakIntervalMinutes((int) asLong(field));
+                    break;
+                case "breakDurationMinutes":
+                    rule.setBreakDurationMinutes((int) asLong(field));
+                    break;
+                case "active":
+                    rule.setActive(Boolean.TRUE.equals(field));
+                    break;
+                case "createdAt":
+                    rule.setCreatedAt(asLong(field));
+                    break;
+                case "updatedAt":
+                    rule.setUpdatedAt(asLong(field));
+                    break;
+                default:
+                    break;
+            }
+        }
+        rule.setId(key);
+        return rule;
+    }
+
+    public static Map<String, Object> writeTimeRule(TimeRule rule) {
+        Map<String, Object> data = new HashMap<>();
+        if (rule.getProfileId() != null) {
+            data.put("profileId", rule.getProfileId());
+        }
+        data.put("name", rule.getName());
+        data.put("description", rule.getDescription());
+        data.put("ruleType", rule.getRuleType());
+        data.put("startTime", rule.getStartTime());
+        data.put("endTime", rule.getEndTime());
+        data.put("days", rule.getDays());
+        data.put("dailyLimitMinutes", rule.getDailyLimitMinutes());
+        data.put("breakIntervalMinutes", rule.getBreakIntervalMinutes());
+        data.put("breakDurationMinutes", rule.getBreakDurationMinutes());
+        data.put("active", rule.isActive());
+        data.put("createdAt", rule.getCreatedAt());
+        data.put("updatedAt", rule.getUpdatedAt());
+        return data;
+    }
+
+    private static String asString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static long asLong(Object value) {
+        // Whole numbers arrive as Long, anything with a fraction as Double
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    /**
+     * Arrays come back as a List, or as a Map keyed "0", "1", ... when they have holes
+     */
+    private static List<Integer> asIntList(Object value) {
+        List<Integer> result = new ArrayList<>();
+        Iterable<?> items;
+        if (value instanceof List) {
+            items = (List<?>) value;
+        } else if (value instanceof Map) {
+            items = ((Map<?, ?>) value).values();
+        } else {
+            return result;
+        }
+        for (Object item : items) {
+            if (item instanceof Number) {
+                result.add(((Number) item).intValue());
+            }
+        }
+        if (value instanceof Map) {
+            // Map order is not the array order
+            Collections.sort(result);
+        }
+        return result;
+    }
+}
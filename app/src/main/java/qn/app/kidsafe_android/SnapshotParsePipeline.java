@@ -0,0 +1,100 @@
+package qn.app.kidsafe_android;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns raw snapshots into immutable model lists off the UI thread.
+ *
+ * submit() only bumps a generation counter and queues the snapshot. The parse and the
+ * diff against the last published list run on the background executor; only the finished
+ * list and its diff are posted to the main executor. A newer submit() makes every older
+ * one stale: a queued parse returns without starting, a running parse stops at its next
+ * item, and a result already posted is dropped on arrival.
+ *
+ * submit(), cancel() and the callback belong to the main thread.
+ *
+ * @param <S> raw snapshot
+ * @param <T> model
+ * @param <D> diff between two published lists
+ */
+public final class SnapshotParsePipeline<S, T, D> {
+
+    public interface Parser<S, T> {
+        /** Emit the models of {@code raw} in order; stop as soon as the sink returns false */
+        void parse(S raw, Sink<T> sink);
+    }
+
+    public interface Sink<T> {
+        /** @return false once a newer snapshot was submitted */
+        boolean add(T item);
+    }
+
+    public interface Differ<T, D> {
+        D diff(List<T> previous, List<T> current);
+    }
+
+    public interface Callback<T, D> {
+        void onResult(List<T> items, D diff);
+    }
+
+    private final Executor background;
+    private final Executor main;
+    private final Parser<S, T> parser;
+    private final Differ<T, D> differ;
+    private final Callback<T, D> callback;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile List<T> published = Collections.emptyList();
+
+    public SnapshotParsePipeline(Executor background, Executor main, Parser<S, T> parser,
+                                 Differ<T, D> differ, Callback<T, D> callback) {
+        this.background = background;
+        this.main = main;
+        this.parser = parser;
+        this.differ = differ;
+        this.callback = callback;
+    }
+
+    public void submit(S raw) {
+        long current = generation.incrementAndGet();
+        background.execute(() -> run(raw, current));
+    }
+
+    /** Drop whatever is in flight, e.g. when the screen goes away */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /** The list last handed to the callback */
+    public List<T> getItems() {
+        return published;
+    }
+
+    private boolean isStale(long current) {
+        return current != generation.get();
+    }
+
+    private void run(S raw, long current) {
+        if (isStale(current)) return;
+        // Nothing else can be published before this result: anything older is stale by now
+        List<T> previous = published;
+        List<T> items = new ArrayList<>();
+        parser.parse(raw, item -> {
+            if (isStale(current)) return false;
+            items.add(item);
+            return true;
+        });
+        if (isStale(current)) return;
+
+        List<T> result = Collections.unmodifiableList(items);
+        D diff = differ.diff(previous, result);
+        main.execute(() -> {
+            if (isStale(current)) return;
+            published = result;
+            callback.onResult(result, diff);
+        });
+    }
+}
@@ -0,0 +1,140 @@
+package qn.app.kidsafe_android;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds the server_name (SNI) of a TLS ClientHello, in place.
+ *
+ * {@link #extract(ByteBuffer)} walks the record and handshake headers, skips the session
+ * id, cipher suites and compression methods, then scans the extensions for server_name
+ * (RFC 6066). The host is not copied: its position and length in the buffer are reported.
+ * Every length field is checked against what is actually there, so truncated or hostile
+ * input ends in a status code, never an exception.
+ *
+ * Only the first record is read. A ClientHello split across records (large post-quantum
+ * key shares) still yields the SNI when the extension falls in the first record.
+ */
+public final class SniExtractor {
+
+    public static final int FOUND = 0;
+    public static final int NO_SNI = 1;
+    public static final int NOT_CLIENT_HELLO = 2;
+    public static final int INCOMPLETE = 3;
+    public static final int MALFORMED = 4;
+
+    private static final int RECORD_HANDSHAKE = 0x16;
+    private static final int HANDSHAKE_CLIENT_HELLO = 0x01;
+    private static final int EXTENSION_SERVER_NAME = 0x0000;
+    private static final int NAME_TYPE_HOST = 0;
+    private static final int RECORD_HEADER = 5;
+
+    private int hostOffset;
+    private int hostLength;
+
+    /**
+     * Look for the SNI in buffer[position, limit); the position is not moved.
+     *
+     * @return FOUND (see {@link #getHostOffset()}), NO_SNI, NOT_CLIENT_HELLO,
+     * INCOMPLETE when the data ends before the extension, or MALFORMED
+     */
+    public int extract(ByteBuffer buffer) {
+        hostOffset = -1;
+        hostLength = 0;
+        int p = buffer.position();
+        int limit = buffer.limit();
+
+        if (limit - p < RECORD_HEADER) return INCOMPLETE;
+        if ((buffer.get(p) & 0xFF) != RECORD_HANDSHAKE || buffer.get(p + 1) != 3) return NOT_CLIENT_HELLO;
+        int recordEnd = p + RECORD_HEADER + u16(buffer, p + 3);
+        int end = Math.min(recordEnd, limit);
+        p += RECORD_HEADER;
+
+        if (end - p < 4) return truncated(p + 4, recordEnd);
+        if ((buffer.get(p) & 0xFF) != HANDSHAKE_CLIENT_HELLO) return NOT_CLIENT_HELLO;
+        p += 4;                                     // type + u24 length
+
+        p += 2 + 32;                                // client_version + random
+        if (p + 1 > end) return truncated(p + 1, recordEnd);
+        p += 1 + (buffer.get(p) & 0xFF);            // session_id
+        if (p + 2 > end) return truncated(p + 2, recordEnd);
+        p += 2 + u16(buffer, p);                    // cipher_suites
+        if (p + 1 > end) return truncated(p + 1, recordEnd);
+        p += 1 + (buffer.get(p) & 0xFF);            // compression_methods
+        if (p == recordEnd) return NO_SNI;          // no extensions at all (TLS 1.0 style)
+        if (p + 2 > end) return truncated(p + 2, recordEnd);
+
+        int extensionsEnd = p + 2 + u16(buffer, p);
+        if (extensionsEnd > recordEnd) return MALFORMED;
+        p += 2;
+
+        while (p + 4 <= Math.min(extensionsEnd, end)) {
+            int type = u16(buffer, p);
+            int length = u16(buffer, p + 2);
+            p += 4;
+            if (p + length > extensionsEnd) return MALFORMED;
+            if (type == EXTENSION_SERVER_NAME) {
+                if (p + length > end) return INCOMPLETE;
+                return readServerName(buffer, p, p + length);
+            }
+            p += length;
+        }
+        return extensionsEnd <= end ? NO_SNI : INCOMPLETE;
+    }
+
+    private int readServerName(ByteBuffer buffer, int p, int end) {
+        if (p + 2 > end) return MALFORMED;
+        int listEnd = p + 2 + u16(buffer, p);
+        if (listEnd > end) return MALFORMED;
+        p += 2;
+
+        while (p + 3 <= listEnd) {
+            int nameType = buffer.get(p) & 0xFF;
+            int length = u16(buffer, p + 1);
+            p += 3;
+            if (p + length > listEnd) return MALFORMED;
+            if (nameType == NAME_TYPE_HOST) {
+                // A trailing dot is legal in DNS but not in SNI; accept it anyway
+                int nameLength = length > 0 && buffer.get(p + length - 1) == '.' ? length - 1 : length;
+                if (!isHostName(buffer, p, nameLength)) return MALFORMED;
+                hostOffset = p;
+                hostLength = nameLength;
+                return FOUND;
+            }
+            p += length;
+        }
+        return NO_SNI;
+    }
+
+    /**
+     * Data ran out before {@code needed}: fine if the record continues, broken if not
+     */
+    private static int truncated(int needed, int recordEnd) {
+        return needed > recordEnd ? MALFORMED : INCOMPLETE;
+    }
+
+    /**
+     * Absolute index of the host name in the buffer given to the last extract()
+     */
+    public int getHostOffset() {
+        return hostOffset;
+    }
+
+    public int getHostLength() {
+        return hostLength;
+    }
+
+    private static boolean isHostName(ByteBuffer buffer, int offset, int length) {
+        if (length == 0 || length > DnsQuery.MAX_NAME_LENGTH) return false;
+        for (int i = 0; i < length; i++) {
+            int c = buffer.get(offset + i) & 0xFF;
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '.' || c == '_';
+            if (!valid) return false;
+        }
+        return true;
+    }
+
+    private static int u16(ByteBuffer buffer, int index) {
+        return buffer.getShort(index) & 0xFFFF;
+    }
+}
@@ -0,0 +1,64 @@
+package qn.app.kidsafe_android;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decides whether an HTTPS connection may go ahead from the SNI of its ClientHello.
+ *
+ * Uses the same VerdictCache and BlocklistEngine as DnsFilter, so a host blocked by
+ * name is blocked whether the app resolved it through us or not. Heap buffers are read
+ * in place; direct buffers are copied into one reused scratch array. Nothing is
+ * allocated per connection once the cache is warm.
+ *
+ * Single-threaded, like the engine it reads.
+ */
+public class SniFilter {
+
+    public static final int VERDICT_ALLOW = 0;
+    public static final int VERDICT_BLOCK = 1;
+    /** No SNI (yet): incomplete, malformed, or not a ClientHello. See {@link #getLastStatus()}. */
+    public static final int VERDICT_UNKNOWN = 2;
+
+    private final BlocklistEngine engine;
+    private final VerdictCache cache;
+    private final SniExtractor extractor = new SniExtractor();
+    private final byte[] scratch = new byte[DnsQuery.MAX_NAME_LENGTH];
+    private int lastStatus;
+
+    public SniFilter(BlocklistEngine engine, VerdictCache cache) {
+        this.engine = engine;
+        this.cache = cache;
+    }
+
+    /**
+     * Check the first bytes a client sent on a TLS connection, from position to limit
+     * (not consumed)
+     */
+    public int check(ByteBuffer clientHello) {
+        lastStatus = extractor.extract(clientHello);
+        if (lastStatus != SniExtractor.FOUND) return VERDICT_UNKNOWN;
+
+        byte[] host;
+        int offset;
+        int length = extractor.getHostLength();
+        if (clientHello.hasArray()) {
+            host = clientHello.array();
+            offset = clientHello.arrayOffset() + extractor.getHostOffset();
+        } else {
+            host = scratch;
+            offset = 0;
+            for (int i = 0; i < length; i++) {
+                scratch[i] = clientHello.get(extractor.getHostOffset() + i);
+            }
+        }
+
+        return engine.isHostBlocked(host, offset, length, cache) ? VERDICT_BLOCK : VERDICT_ALLOW;
+    }
+
+    /**
+     * SniExtractor status of the last check
+     */
+    public int getLastStatus() {
+        return lastStatus;
+    }
+}
@@ -20,8 +20,8 @@ import android.widget.TextView;
 import android.widget.TimePicker;
 import android.widget.Toast;
 
-import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
@@ -29,17 +29,15 @@ import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ServerValue;
-import com.google.firebase.database.ValueEventListener;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -50,14 +48,20 @@ public class TimeManagementActivity extends AppCompatActivity {
     private RecyclerView recyclerView;
     private TimeRuleAdapter timeRuleAdapter;
     private List<TimeRule> timeRuleList;
+    // Recompiled only when timeRules change
+    private TimeRuleScheduler scheduler;
+    private final TimeRuleScheduler.Listener accessListener = (allowed, next) -> updateSubtitle();
     private SwipeRefreshLayout swipeRefreshLayout;
     private FloatingActionButton fab;
     
     // Firebase
     private FirebaseAuth mAuth;
-    private FirebaseDatabase firebaseDatabase;
+    private FamilyRepository repository;
     private DatabaseReference timeRulesRef;
-    private ValueEventListener rulesListener;
+    // Holds the subscription and the parsed rules across configuration changes
+    private TimeRulesViewModel viewModel;
+    private String userUid;
+    private String userEmail;
     
     // Local Auth Service (fallback)
     private LocalAuthService localAuth;
@@ -101,6 +105,9 @@ public class TimeManagementActivity extends AppCompatActivity {
             userEmail = currentUser.getEmail();
         }
         
+        scheduler = ((KidSafeApplication) getApplication()).getTimeRuleScheduler();
+        scheduler.addListener(accessListener);
+        
         initViews();
         initFirebase();
         setupRecyclerView();
@@ -129,22 +136,19 @@ public class TimeManagementActivity extends AppCompatActivity {
     
     private void initFirebase() {
         try {
-            // Initialize Firebase Database with custom URL
-            String databaseUrl = "https://kidsafe-control-default-rtdb.asia-southeast1.firebasedatabase.app/";
-            firebaseDatabase = FirebaseDatabase.getInstance(databaseUrl);
+            repository = ((KidSafeApplication) getApplication()).getFamilyRepository();
             
             // Use user UID as family ID for data isolation
-            String userUid = useLocalAuth ? localAuth.getCurrentUserUID() : currentUser.getUid();
+            userUid = useLocalAuth ? localAuth.getCurrentUserUID() : currentUser.getUid();
             Log.d(TAG, "🔥 Initializing Firebase with UID: " + userUid);
             
             // Use structured path for proper data organization and PC compatibility
             String firebasePath = "kidsafe/families/" + userUid + "/timeRules";
             Log.d(TAG, "🔥 Firebase path: " + firebasePath);
             
-            timeRulesRef = firebaseDatabase.getReference("kidsafe")
-                    .child("families")
-                    .child(userUid)
-                    .child("timeRules");
+            timeRulesRef = repository.getFamilyRef(userUid).child("timeRules");
+            
+            userEmail = useLocalAuth ? localAuth.getCurrentUserEmail() : currentUser.getEmail();
                     
         } catch (Exception e) {
             Log.e(TAG, "❌ Failed to initialize Firebase", e);
@@ -153,8 +157,9 @@ public class TimeManagementActivity extends AppCompatActivity {
     }
     
     private void setupRecyclerView() {
-        timeRuleList = new ArrayList<>();
-        timeRuleAdapter = new TimeRuleAdapter(timeRuleList, this::showDeleteConfirmDialog, this::showEditRuleDialog);
+        timeRuleList = Collections.emptyList();
+        timeRuleAdapter = new TimeRuleAdapter(this::showDeleteConfirmDialog, this::showEditRuleDialog,
+                this::setTimeRuleActive);
         
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.setAdapter(timeRuleAdapter);
@@ -175,60 +180,34 @@ public class TimeManagementActivity extends AppCompatActivity {
     }
     
     private void loadTimeRules() {
-        rulesListener = new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                Log.d(TAG, "🔥 Firebase onDataChange - Time Rules count: " + dataSnapshot.getChildrenCount());
-                
-                timeRuleList.clear();
-                int loadedCount = 0;
-                
-                for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                    try {
-                        Log.d(TAG, "🔥 Processing time rule snapshot key: " + snapshot.getKey());
-                        
-                        TimeRule timeRule = snapshot.getValue(TimeRule.class);
-                        if (timeRule != null) {
-                            timeRule.setId(snapshot.getKey());
-                            timeRuleList.add(timeRule);
-                            loadedCount++;
-                            Log.d(TAG, "✅ Loaded time rule: " + timeRule.getName());
-                        } else {
-                            Log.w(TAG, "⚠️ Failed to parse time rule from snapshot: " + snapshot.getKey());
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "❌ Error parsing time rule from snapshot: " + snapshot.getKey(), e);
-                    }
-                }
-                
-                Log.d(TAG, "🔥 Total time rules loaded: " + loadedCount);
-                timeRuleAdapter.notifyDataSetChanged();
-                swipeRefreshLayout.setRefreshing(false);
-                
-                // Update subtitle
-                updateSubtitle();
-                
-                if (loadedCount > 0) {
-                    Toast.makeText(TimeManagementActivity.this, "Đã tải " + loadedCount + " quy tắc", Toast.LENGTH_SHORT).show();
-                }
-            }
-            
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                Log.e(TAG, "❌ Firebase onCancelled: " + databaseError.getMessage(), databaseError.toException());
-                Toast.makeText(TimeManagementActivity.this, 
-                    "Lỗi tải dữ liệu: " + databaseError.getMessage(), 
-                    Toast.LENGTH_LONG).show();
-                swipeRefreshLayout.setRefreshing(false);
-            }
-        };
+        String userUid = useLocalAuth ? localAuth.getCurrentUserUID() : currentUser.getUid();
+        viewModel = new ViewModelProvider(this).get(TimeRulesViewModel.class);
+        viewModel.start(userUid);
+        viewModel.getTimeRules().observe(this, this::onTimeRulesLoaded);
+        viewModel.getMessage().observe(this, message -> {
+            if (message == null) return;
+            Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+            swipeRefreshLayout.setRefreshing(false);
+            viewModel.onMessageShown();
+        });
+    }
+    
+    private void onTimeRulesLoaded(FamilyRepository.TimeRules timeRules) {
+        // Diffed against the shown cards, a recreated screen starts from none
+        timeRuleAdapter.submitList(timeRules.getRows());
+        timeRuleList = timeRules.getRules();
+        swipeRefreshLayout.setRefreshing(false);
         
-        timeRulesRef.addValueEventListener(rulesListener);
+        // Update subtitle
+        updateSubtitle();
     }
     
     private void updateSubtitle() {
         if (getSupportActionBar() != null) {
             String subtitle = timeRuleList.size() + " quy tắc thời gian";
+            if (scheduler.getSchedule().hasSchedule()) {
+                subtitle += scheduler.isAllowed() ? " · đang trong giờ truy cập" : " · ngoài giờ truy cập";
+            }
             getSupportActionBar().setSubtitle(subtitle);
         }
     }
@@ -405,38 +384,24 @@ public class TimeManagementActivity extends AppCompatActivity {
         try {
             Log.d(TAG, "Adding time rule to Firebase: " + timeRule.getName());
             
-            Map<String, Object> ruleData = new HashMap<>();
-            ruleData.put("name", timeRule.getName());
-            ruleData.put("description", timeRule.getDescription());
-            ruleData.put("ruleType", timeRule.getRuleType());
-            ruleData.put("startTime", timeRule.getStartTime());
-            ruleData.put("endTime", timeRule.getEndTime());
-            ruleData.put("days", timeRule.getDays());
-            ruleData.put("dailyLimitMinutes", timeRule.getDailyLimitMinutes());
-            ruleData.put("breakIntervalMinutes", timeRule.getBreakIntervalMinutes());
-            ruleData.put("breakDurationMinutes", timeRule.getBreakDurationMinutes());
-            ruleData.put("active", timeRule.isActive());
+            Map<String, Object> ruleData = SnapshotMapper.writeTimeRule(timeRule);
             ruleData.put("createdAt", ServerValue.TIMESTAMP);
             ruleData.put("updatedAt", ServerValue.TIMESTAMP);
             ruleData.put("addedBy", "parent_android");
             
-            DatabaseReference newRuleRef = timeRulesRef.push();
-            String pushId = newRuleRef.getKey();
+            String pushId = timeRulesRef.push().getKey();
             Log.d(TAG, "Generated push ID: " + pushId);
             
-            newRuleRef.setValue(ruleData)
-                    .addOnSuccessListener(aVoid -> {
-                        Log.d(TAG, "✅ Successfully added time rule to Firebase: " + timeRule.getName());
-                        Toast.makeText(TimeManagementActivity.this, 
-                            "Đã thêm quy tắc: " + timeRule.getName(), 
-                            Toast.LENGTH_LONG).show();
-                    })
+            // Shown from the local store at once, sent to Firebase in the background
+            repository.write(userUid, userEmail, "timeRules/" + pushId, ruleData)
+                    .addOnSuccessListener(aVoid -> Log.d(TAG, "✅ Successfully added time rule to Firebase: " + timeRule.getName()))
                     .addOnFailureListener(e -> {
                         Log.e(TAG, "❌ Failed to add time rule to Firebase: " + timeRule.getName(), e);
                         Toast.makeText(TimeManagementActivity.this, 
                             "Lỗi thêm quy tắc: " + e.getMessage(), 
                             Toast.LENGTH_LONG).show();
                     });
+            Toast.makeText(this, "Đã thêm quy tắc: " + timeRule.getName(), Toast.LENGTH_LONG).show();
                     
         } catch (Exception e) {
             Log.e(TAG, "Exception in addTimeRuleToFirebase: " + timeRule.getName(), e);
@@ -449,6 +414,20 @@ public class TimeManagementActivity extends AppCompatActivity {
         Toast.makeText(this, "Chỉnh sửa quy tắc: " + timeRule.getName(), Toast.LENGTH_SHORT).show();
     }
     
+    private void setTimeRuleActive(TimeRule timeRule, boolean active) {
+        Map<String, Object> ruleData = SnapshotMapper.writeTimeRule(timeRule);
+        ruleData.put("active", active);
+        ruleData.put("updatedAt", ServerValue.TIMESTAMP);
+        // The list is rebuilt from the store with the new state, the switch follows it
+        repository.write(userUid, userEmail, "timeRules/" + timeRule.getId(), ruleData)
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "❌ Failed to update time rule: " + timeRule.getName(), e);
+                    Toast.makeText(TimeManagementActivity.this,
+                        "Lỗi cập nhật quy tắc: " + e.getMessage(),
+                        Toast.LENGTH_SHORT).show();
+                });
+    }
+    
     private void showDeleteConfirmDialog(TimeRule timeRule) {
         new AlertDialog.Builder(this)
                 .setTitle("Xác nhận xóa")
@@ -460,17 +439,13 @@ public class TimeManagementActivity extends AppCompatActivity {
     }
     
     private void deleteTimeRule(TimeRule timeRule) {
-        timeRulesRef.child(timeRule.getId()).removeValue()
-                .addOnSuccessListener(aVoid -> {
-                    Toast.makeText(TimeManagementActivity.this, 
-                        "Đã xóa quy tắc: " + timeRule.getName(), 
-                        Toast.LENGTH_SHORT).show();
-                })
+        repository.write(userUid, userEmail, "timeRules/" + timeRule.getId(), null)
                 .addOnFailureListener(e -> {
                     Toast.makeText(TimeManagementActivity.this, 
                         "Lỗi xóa quy tắc: " + e.getMessage(), 
                         Toast.LENGTH_SHORT).show();
                 });
+        Toast.makeText(this, "Đã xóa quy tắc: " + timeRule.getName(), Toast.LENGTH_SHORT).show();
     }
     
     private void refreshData() {
@@ -507,7 +482,42 @@ public class TimeManagementActivity extends AppCompatActivity {
     }
     
     private void showUsageStats() {
-        Toast.makeText(this, "Thống kê sử dụng sẽ được hiển thị ở đây", Toast.LENGTH_SHORT).show();
+        UsageLedger ledger = ((KidSafeApplication) getApplication()).getUsageTracker().getLedger();
+        if (ledger == null) {
+            Toast.makeText(this, "Chưa có dữ liệu sử dụng", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
+        long now = System.currentTimeMillis();
+        StringBuilder message = new StringBuilder();
+        message.append("Hôm nay: ").append(ledger.getUsedTodayMillis(now) / 60_000).append(" phút\n");
+        
+        int limit = 0;
+        for (TimeRule rule : timeRuleList) {
+            if (rule.isActive() && "daily_limit".equals(rule.getRuleType()) && rule.getDailyLimitMinutes() > 0
+                    && (limit == 0 || rule.getDailyLimitMinutes() < limit)) {
+                limit = rule.getDailyLimitMinutes();
+            }
+        }
+        if (limit > 0) {
+            message.append("Còn lại: ").append(ledger.getRemainingMillis(limit, now) / 60_000)
+                    .append(" / ").append(limit).append(" phút\n");
+        }
+        
+        message.append("\n");
+        LocalDate today = LocalDate.now();
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("dd/MM");
+        for (int i = 1; i < UsageLedger.DAYS_KEPT; i++) {
+            LocalDate day = today.minusDays(i);
+            message.append(format.format(day)).append(": ")
+                    .append(ledger.getUsedMillis(day) / 60_000).append(" phút\n");
+        }
+        
+        new AlertDialog.Builder(this)
+                .setTitle("📊 Thống kê sử dụng")
+                .setMessage(message.toString().trim())
+                .setPositiveButton("Đóng", null)
+                .show();
     }
     
     public void setupTimePickerButton(Button button, final TextView targetTextView) {
@@ -531,9 +541,8 @@ public class TimeManagementActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // Remove Firebase listener to prevent memory leaks
-        if (rulesListener != null && timeRulesRef != null) {
-            timeRulesRef.removeEventListener(rulesListener);
+        if (scheduler != null) {
+            scheduler.removeListener(accessListener);
         }
     }
 }
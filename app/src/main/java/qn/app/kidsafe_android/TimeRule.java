@@ -2,6 +2,7 @@ package qn.app.kidsafe_android;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class TimeRule {
     private String id;
@@ -222,6 +223,26 @@ public class TimeRule {
         return sb.toString();
     }
 
+    /**
+     * Whether a row showing {@code other} would look the same as one showing this rule
+     */
+    public boolean hasSameContent(TimeRule other) {
+        return other != null
+                && Objects.equals(profileId, other.profileId)
+                && Objects.equals(name, other.name)
+                && Objects.equals(description, other.description)
+                && Objects.equals(ruleType, other.ruleType)
+                && Objects.equals(startTime, other.startTime)
+                && Objects.equals(endTime, other.endTime)
+                && Objects.equals(days, other.days)
+                && dailyLimitMinutes == other.dailyLimitMinutes
+                && breakIntervalMinutes == other.breakIntervalMinutes
+                && breakDurationMinutes == other.breakDurationMinutes
+                && isActive == other.isActive
+                && createdAt == other.createdAt
+                && updatedAt == other.updatedAt;
+    }
+
     @Override
     public String toString() {
         return "TimeRule{" +
@@ -1,6 +1,5 @@
 package qn.app.kidsafe_android;
 
-import android.graphics.Color;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -9,27 +8,47 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
+/**
+ * Shows TimeRuleRow lists built off the UI thread; binding a card only assigns values
+ * the row already holds.
+ */
 public class TimeRuleAdapter extends RecyclerView.Adapter<TimeRuleAdapter.TimeRuleViewHolder> {
     
-    private List<TimeRule> timeRuleList;
+    // Diffs each submitted list against the shown one on a background thread; a list
+    // submitted while an older diff runs supersedes it
+    private final AsyncListDiffer<TimeRuleRow> differ = new AsyncListDiffer<>(this, TimeRuleRow.DIFF_CALLBACK);
     private OnTimeRuleClickListener deleteListener;
     private OnTimeRuleClickListener editListener;
+    private OnTimeRuleToggleListener toggleListener;
     
     public interface OnTimeRuleClickListener {
         void onTimeRuleClick(TimeRule timeRule);
     }
     
-    public TimeRuleAdapter(List<TimeRule> timeRuleList, OnTimeRuleClickListener deleteListener, OnTimeRuleClickListener editListener) {
-        this.timeRuleList = timeRuleList;
+    public interface OnTimeRuleToggleListener {
+        /** The card shows the new state once the list built from the store does */
+        void onTimeRuleToggled(TimeRule timeRule, boolean active);
+    }
+    
+    public TimeRuleAdapter(OnTimeRuleClickListener deleteListener, OnTimeRuleClickListener editListener,
+                           OnTimeRuleToggleListener toggleListener) {
         this.deleteListener = deleteListener;
         this.editListener = editListener;
+        this.toggleListener = toggleListener;
+        // Unchanged cards keep their views, even across a full rebind
+        setHasStableIds(true);
+    }
+    
+    /**
+     * Show {@code rows}; only the cards that were added, moved or changed are rebound
+     */
+    public void submitList(List<TimeRuleRow> rows) {
+        differ.submitList(rows);
     }
     
     @NonNull
@@ -42,13 +61,17 @@ public class TimeRuleAdapter extends RecyclerView.Adapter<TimeRuleAdapter.TimeRu
     
     @Override
     public void onBindViewHolder(@NonNull TimeRuleViewHolder holder, int position) {
-        TimeRule timeRule = timeRuleList.get(position);
-        holder.bind(timeRule);
+        holder.bind(differ.getCurrentList().get(position));
+    }
+    
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).getStableId();
     }
     
     @Override
     public int getItemCount() {
-        return timeRuleList.size();
+        return differ.getCurrentList().size();
     }
     
     class TimeRuleViewHolder extends RecyclerView.ViewHolder {
@@ -63,6 +86,7 @@ public class TimeRuleAdapter extends RecyclerView.Adapter<TimeRuleAdapter.TimeRu
         private View buttonEdit;
         private View buttonDelete;
         private View statusIndicator;
+        private boolean binding;
         
         public TimeRuleViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -78,106 +102,58 @@ public class TimeRuleAdapter extends RecyclerView.Adapter<TimeRuleAdapter.TimeRu
             buttonEdit = itemView.findViewById(R.id.buttonEditRule);
             buttonDelete = itemView.findViewById(R.id.buttonDeleteRule);
             statusIndicator = itemView.findViewById(R.id.statusIndicator);
+            
+            // Read the rule at click time, so binding sets no listener
+            buttonEdit.setOnClickListener(v -> notifyClick(editListener));
+            buttonDelete.setOnClickListener(v -> notifyClick(deleteListener));
+            // Card click for edit
+            cardView.setOnClickListener(v -> notifyClick(editListener));
+            switchActive.setOnCheckedChangeListener((buttonView, isChecked) -> {
+                int position = getBindingAdapterPosition();
+                if (binding || toggleListener == null || position == RecyclerView.NO_POSITION) return;
+                // The rule is shared with the scheduler, it is not edited in place
+                toggleListener.onTimeRuleToggled(differ.getCurrentList().get(position).getRule(), isChecked);
+            });
+        }
+        
+        private void notifyClick(OnTimeRuleClickListener listener) {
+            int position = getBindingAdapterPosition();
+            if (listener != null && position != RecyclerView.NO_POSITION) {
+                listener.onTimeRuleClick(differ.getCurrentList().get(position).getRule());
+            }
         }
         
-        public void bind(TimeRule timeRule) {
-            // Set basic info
-            textRuleName.setText(timeRule.getName());
-            textRuleType.setText(timeRule.getRuleTypeDisplayName());
+        public void bind(TimeRuleRow row) {
+            textRuleName.setText(row.getName());
+            textRuleType.setText(row.getTypeText());
             
-            // Set description or default text
-            if (timeRule.getDescription() != null && !timeRule.getDescription().isEmpty()) {
-                textRuleDescription.setText(timeRule.getDescription());
+            if (row.getDescription() != null) {
+                textRuleDescription.setText(row.getDescription());
                 textRuleDescription.setVisibility(View.VISIBLE);
             } else {
                 textRuleDescription.setVisibility(View.GONE);
             }
             
-            // Set rule summary based on type
-            textRuleSummary.setText(timeRule.getDisplaySummary());
+            textRuleSummary.setText(row.getSummary());
             
-            // Set days display for schedule rules
-            if ("access_schedule".equals(timeRule.getRuleType()) || "weekly_schedule".equals(timeRule.getRuleType())) {
-                textRuleDays.setText("📅 " + timeRule.getDaysDisplayText());
+            // Days are shown for schedule rules only
+            if (row.getDaysText() != null) {
+                textRuleDays.setText(row.getDaysText());
                 textRuleDays.setVisibility(View.VISIBLE);
             } else {
                 textRuleDays.setVisibility(View.GONE);
             }
             
-            // Set created time
-            if (timeRule.getCreatedAt() > 0) {
-                Date createdDate = new Date(timeRule.getCreatedAt());
-                SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
-                textRuleCreated.setText("Tạo: " + sdf.format(createdDate));
-            } else {
-                textRuleCreated.setText("");
-            }
+            textRuleCreated.setText(row.getCreatedText());
             
-            // Set active state
-            switchActive.setChecked(timeRule.isActive());
-            switchActive.setOnCheckedChangeListener((buttonView, isChecked) -> {
-                // TODO: Update rule active state in Firebase
-                timeRule.setActive(isChecked);
-            });
-            
-            // Set card background and status indicator based on rule type and active state
-            updateCardAppearance(timeRule);
-            
-            // Set click listeners
-            buttonEdit.setOnClickListener(v -> {
-                if (editListener != null) {
-                    editListener.onTimeRuleClick(timeRule);
-                }
-            });
-            
-            buttonDelete.setOnClickListener(v -> {
-                if (deleteListener != null) {
-                    deleteListener.onTimeRuleClick(timeRule);
-                }
-            });
-            
-            // Card click for edit
-            cardView.setOnClickListener(v -> {
-                if (editListener != null) {
-                    editListener.onTimeRuleClick(timeRule);
-                }
-            });
-        }
-        
-        private void updateCardAppearance(TimeRule timeRule) {
-            // Set status indicator color and card appearance based on rule type and active state
-            int indicatorColor;
-            int cardElevation;
-            
-            if (!timeRule.isActive()) {
-                indicatorColor = Color.GRAY;
-                cardElevation = 2;
-                cardView.setAlpha(0.7f);
-            } else {
-                cardView.setAlpha(1.0f);
-                cardElevation = 4;
-                
-                switch (timeRule.getRuleType()) {
-                    case "daily_limit":
-                        indicatorColor = Color.parseColor("#FF5722"); // Deep Orange
-                        break;
-                    case "access_schedule":
-                        indicatorColor = Color.parseColor("#2196F3"); // Blue
-                        break;
-                    case "break_rule":
-                        indicatorColor = Color.parseColor("#4CAF50"); // Green
-                        break;
-                    case "weekly_schedule":
-                        indicatorColor = Color.parseColor("#9C27B0"); // Purple
-                        break;
-                    default:
-                        indicatorColor = Color.parseColor("#607D8B"); // Blue Grey
-                        break;
-                }
-            }
+            // Not a user toggle
+            binding = true;
+            switchActive.setChecked(row.isActive());
+            binding = false;
             
-            statusIndicator.setBackgroundColor(indicatorColor);
-            cardView.setCardElevation(cardElevation);
+            statusIndicator.setBackgroundColor(row.getIndicatorColor());
+            cardView.setCardElevation(row.getElevation());
+            cardView.setAlpha(row.getAlpha());
         }
     }
 }
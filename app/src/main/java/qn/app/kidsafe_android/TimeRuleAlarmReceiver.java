@@ -0,0 +1,87 @@
+package qn.app.kidsafe_android;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.util.Log;
+
+import java.time.Clock;
+
+/**
+ * Wakes the TimeRuleScheduler at the next allowed/blocked transition, and when the user
+ * changes the clock or the time zone. After a reboot or an app update, when AlarmManager
+ * has dropped the alarm, it keeps the process alive until the application re-armed it
+ * from the stored rules.
+ */
+public class TimeRuleAlarmReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "TimeRuleAlarmReceiver";
+    static final String ACTION_TRANSITION = "qn.app.kidsafe_android.action.TIME_RULE_TRANSITION";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (action == null) return;
+        KidSafeApplication app = (KidSafeApplication) context.getApplicationContext();
+        TimeRuleScheduler scheduler = app.getTimeRuleScheduler();
+
+        switch (action) {
+            case ACTION_TRANSITION:
+                Log.d(TAG, "🔥 Time rule transition");
+                scheduler.onAlarm();
+                // In a fresh process the rules are still being read from the store
+                PendingResult transition = goAsync();
+                app.whenTimeRulesApplied(transition::finish);
+                break;
+            case Intent.ACTION_TIMEZONE_CHANGED:
+            case Intent.ACTION_TIME_CHANGED:
+                Log.d(TAG, "🔥 Clock changed: " + action);
+                app.getUsageTracker().onZoneChanged();
+                scheduler.setClock(Clock.systemDefaultZone());
+                break;
+            case Intent.ACTION_BOOT_COMPLETED:
+            case Intent.ACTION_MY_PACKAGE_REPLACED:
+                Log.d(TAG, "🔥 Re-arming time rules after " + action);
+                // KidSafeApplication.onCreate already subscribed to the rules
+                PendingResult pending = goAsync();
+                app.whenTimeRulesApplied(pending::finish);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * One AlarmManager alarm, replaced on every arm()
+     */
+    static TimeRuleScheduler.Alarm createAlarm(Context context) {
+        Context appContext = context.getApplicationContext();
+        AlarmManager alarmManager = (AlarmManager) appContext.getSystemService(Context.ALARM_SERVICE);
+        Intent intent = new Intent(appContext, TimeRuleAlarmReceiver.class).setAction(ACTION_TRANSITION);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(appContext, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        return new TimeRuleScheduler.Alarm() {
+            @Override
+            public void arm(long triggerAtMillis) {
+                boolean exact = Build.VERSION.SDK_INT < Build.VERSION_CODES.S
+                        || alarmManager.canScheduleExactAlarms();
+                if (exact) {
+                    alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, pendingIntent);
+                } else {
+                    // Without the exact alarm permission the system may deliver it a bit late
+                    alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, pendingIntent);
+                }
+                Log.d(TAG, "✅ Next time rule transition at " + triggerAtMillis + (exact ? "" : " (inexact)"));
+            }
+
+            @Override
+            public void cancel() {
+                alarmManager.cancel(pendingIntent);
+            }
+        };
+    }
+}
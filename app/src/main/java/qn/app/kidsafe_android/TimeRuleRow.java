@@ -0,0 +1,161 @@
+package qn.app.kidsafe_android;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+
+/**
+ * What one time rule card shows. Built on the parse executor when the list is read from
+ * the store, so binding a card only assigns values; TimeRuleAdapter diffs the lists.
+ */
+public final class TimeRuleRow {
+
+    // ARGB, as Color.parseColor would return them
+    static final int COLOR_INACTIVE = 0xFF888888;        // Color.GRAY
+    static final int COLOR_DAILY_LIMIT = 0xFFFF5722;     // Deep Orange
+    static final int COLOR_ACCESS_SCHEDULE = 0xFF2196F3; // Blue
+    static final int COLOR_BREAK_RULE = 0xFF4CAF50;      // Green
+    static final int COLOR_WEEKLY_SCHEDULE = 0xFF9C27B0; // Purple
+    static final int COLOR_OTHER = 0xFF607D8B;           // Blue Grey
+
+    /** Same item: same Firebase key; same content: the card would look the same */
+    static final DiffUtil.ItemCallback<TimeRuleRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<TimeRuleRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull TimeRuleRow oldRow, @NonNull TimeRuleRow newRow) {
+            return oldRow.id != null && oldRow.id.equals(newRow.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull TimeRuleRow oldRow, @NonNull TimeRuleRow newRow) {
+            return oldRow.hasSameContent(newRow);
+        }
+    };
+
+    private final TimeRule rule;
+    private final String id;
+    private final long stableId;
+    private final String name;
+    private final String typeText;
+    private final String description;
+    private final String summary;
+    private final String daysText;
+    private final String createdText;
+    private final boolean active;
+    private final int indicatorColor;
+    private final int elevation;
+    private final float alpha;
+
+    private TimeRuleRow(TimeRule rule, DateTimeFormatter dateFormat) {
+        this.rule = rule;
+        id = rule.getId();
+        stableId = RowFormat.stableId(id);
+        name = rule.getName();
+        typeText = rule.getRuleTypeDisplayName();
+        String text = rule.getDescription();
+        description = text != null && !text.isEmpty() ? text : null;
+        summary = rule.getDisplaySummary();
+        daysText = "access_schedule".equals(rule.getRuleType()) || "weekly_schedule".equals(rule.getRuleType())
+                ? "📅 " + rule.getDaysDisplayText()
+                : null;
+        createdText = rule.getCreatedAt() > 0
+                ? "Tạo: " + dateFormat.format(Instant.ofEpochMilli(rule.getCreatedAt()))
+                : "";
+        active = rule.isActive();
+        indicatorColor = indicatorColor(rule);
+        elevation = active ? 4 : 2;
+        alpha = active ? 1.0f : 0.7f;
+    }
+
+    static TimeRuleRow of(TimeRule rule, DateTimeFormatter dateFormat) {
+        return new TimeRuleRow(rule, dateFormat);
+    }
+
+    private static int indicatorColor(TimeRule rule) {
+        if (!rule.isActive()) return COLOR_INACTIVE;
+        switch (rule.getRuleType()) {
+            case "daily_limit":
+                return COLOR_DAILY_LIMIT;
+            case "access_schedule":
+                return COLOR_ACCESS_SCHEDULE;
+            case "break_rule":
+                return COLOR_BREAK_RULE;
+            case "weekly_schedule":
+                return COLOR_WEEKLY_SCHEDULE;
+            default:
+                return COLOR_OTHER;
+        }
+    }
+
+    /**
+     * Whether a card showing {@code other} would look the same as one showing this row
+     */
+    public boolean hasSameContent(TimeRuleRow other) {
+        return other != null
+                && Objects.equals(name, other.name)
+                && Objects.equals(typeText, other.typeText)
+                && Objects.equals(description, other.description)
+                && Objects.equals(summary, other.summary)
+                && Objects.equals(daysText, other.daysText)
+                && Objects.equals(createdText, other.createdText)
+                && active == other.active
+                && indicatorColor == other.indicatorColor;
+    }
+
+    /** For click callbacks; not to be read while binding */
+    public TimeRule getRule() {
+        return rule;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getStableId() {
+        return stableId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTypeText() {
+        return typeText;
+    }
+
+    /** Null when the card hides it */
+    public String getDescription() {
+        return description;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    /** Null for rules that apply every day */
+    public String getDaysText() {
+        return daysText;
+    }
+
+    public String getCreatedText() {
+        return createdText;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public int getIndicatorColor() {
+        return indicatorColor;
+    }
+
+    public int getElevation() {
+        return elevation;
+    }
+
+    public float getAlpha() {
+        return alpha;
+    }
+}
@@ -0,0 +1,224 @@
+package qn.app.kidsafe_android;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.zone.ZoneOffsetTransition;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Works out when access next flips between allowed and blocked, and arms one alarm for
+ * that instant instead of polling.
+ *
+ * Three kinds of rule are combined: schedule windows (WeeklySchedule, evaluated on the
+ * local wall clock so DST shifts and time zone changes are honoured), the smallest daily
+ * limit (runs out after the remaining minutes of use, resets at local midnight) and the
+ * break rules, run by BreakRuleEngine.
+ *
+ * Everything is recomputed only when the rules or usage change, when the alarm fires,
+ * or when the clock or time zone is changed. Until the first setRules() nothing is
+ * recomputed and the alarm is left as armed: a fresh process must not cancel the alarm
+ * of the previous one before the stored rules are read. Main thread only.
+ */
+public class TimeRuleScheduler {
+
+    private static final long MINUTE_MS = 60_000;
+
+    /** Where the single wake-up is armed, AlarmManager on a device */
+    public interface Alarm {
+        void arm(long triggerAtMillis);
+        void cancel();
+    }
+
+    public interface Listener {
+        void onAccessChanged(boolean allowed, long nextTransitionMillis);
+    }
+
+    /** Device usage the limits and breaks are measured against */
+    public interface Usage {
+        Usage NONE = new Usage() {
+            @Override
+            public long getUsedTodayMillis(long nowMillis) {
+                return 0;
+            }
+
+            @Override
+            public long getSessionStartMillis() {
+                return -1;
+            }
+        };
+
+        /** Time used since local midnight, up to now */
+        long getUsedTodayMillis(long nowMillis);
+
+        /** Start of the current session, -1 when the device is not in use */
+        long getSessionStartMillis();
+    }
+
+    private final Alarm alarm;
+    private final List<Listener> listeners = new ArrayList<>();
+    private Clock clock;
+    private Usage usage = Usage.NONE;
+
+    private WeeklySchedule schedule = WeeklySchedule.alwaysAllowed();
+    private int dailyLimitMinutes;      // 0 = none
+    private final BreakRuleEngine breaks = new BreakRuleEngine();
+
+    private boolean rulesKnown;
+    private boolean allowed = true;
+    private long nextTransitionMillis = -1;
+
+    public TimeRuleScheduler(Clock clock, Alarm alarm) {
+        this.clock = clock;
+        this.alarm = alarm;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * New rule list from timeRules, compiled once here
+     */
+    public void setRules(List<TimeRule> rules) {
+        schedule = WeeklySchedule.compile(rules);
+        dailyLimitMinutes = 0;
+        for (TimeRule rule : rules) {
+            if (!rule.isActive()) continue;
+            if ("daily_limit".equals(rule.getRuleType()) && rule.getDailyLimitMinutes() > 0) {
+                if (dailyLimitMinutes == 0 || rule.getDailyLimitMinutes() < dailyLimitMinutes) {
+                    dailyLimitMinutes = rule.getDailyLimitMinutes();
+                }
+            }
+        }
+        breaks.setRules(rules, clock.millis());
+        rulesKnown = true;
+        reschedule();
+    }
+
+    public void setUsage(Usage usage) {
+        this.usage = usage;
+        reschedule();
+    }
+
+    /**
+     * The wall clock or the time zone changed (ACTION_TIME_CHANGED / ACTION_TIMEZONE_CHANGED)
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+        reschedule();
+    }
+
+    /**
+     * The alarm fired
+     */
+    public void onAlarm() {
+        reschedule();
+    }
+
+    /**
+     * Usage changed in a way that moves the next transition (session started or ended)
+     */
+    public void onUsageChanged() {
+        reschedule();
+    }
+
+    public boolean isAllowed() {
+        return allowed;
+    }
+
+    /**
+     * Epoch millis of the next flip, -1 when nothing is due
+     */
+    public long getNextTransitionMillis() {
+        return nextTransitionMillis;
+    }
+
+    public WeeklySchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * Whether setRules() was called, i.e. isAllowed() reflects the family's rules
+     */
+    public boolean hasRules() {
+        return rulesKnown;
+    }
+
+    private void reschedule() {
+        if (!rulesKnown) return;
+        long now = clock.millis();
+        ZoneId zone = clock.getZone();
+        ZonedDateTime local = ZonedDateTime.ofInstant(Instant.ofEpochMilli(now), zone);
+        long next = Long.MAX_VALUE;
+
+        // Schedule windows, stepped on the local wall clock
+        boolean inWindow = schedule.isAllowedAt(WeeklySchedule.minuteOfWeek(local));
+        int minutes = schedule.minutesUntilChange(WeeklySchedule.minuteOfWeek(local));
+        if (minutes > 0) {
+            LocalDateTime flip = local.toLocalDateTime().truncatedTo(ChronoUnit.MINUTES).plusMinutes(minutes);
+            next = Math.min(next, ZonedDateTime.ofLocal(flip, zone, local.getOffset()).toInstant().toEpochMilli());
+        }
+        if (schedule.hasSchedule()) {
+            // Wake up at DST / offset changes too: the wall clock jumps, so a flip inside
+            // a skipped or repeated hour is only seen from the other side of it
+            ZoneOffsetTransition shift = zone.getRules().nextTransition(Instant.ofEpochMilli(now));
+            if (shift != null) {
+                next = Math.min(next, shift.getInstant().toEpochMilli());
+            }
+        }
+
+        // Daily limit
+        boolean limitReached = false;
+        long sessionStart = usage.getSessionStartMillis();
+        if (dailyLimitMinutes > 0) {
+            long remaining = dailyLimitMinutes * MINUTE_MS - usage.getUsedTodayMillis(now);
+            if (remaining <= 0) {
+                limitReached = true;
+                next = Math.min(next, local.toLocalDate().plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+            } else if (sessionStart >= 0) {
+                next = Math.min(next, now + remaining);
+            }
+        }
+
+        // Breaks: the device is the default profile
+        if (sessionStart >= 0 && !breaks.isInUse(BreakRuleEngine.DEFAULT_PROFILE)) {
+            breaks.onUsageStart(BreakRuleEngine.DEFAULT_PROFILE, Math.min(sessionStart, now));
+        } else if (sessionStart < 0 && breaks.isInUse(BreakRuleEngine.DEFAULT_PROFILE)) {
+            breaks.onUsageStop(BreakRuleEngine.DEFAULT_PROFILE, now);
+        }
+        breaks.advance(now);
+        boolean inBreak = breaks.isOnBreak(BreakRuleEngine.DEFAULT_PROFILE);
+        long breakWake = breaks.nextWakeMillis();
+        if (breakWake >= 0) {
+            next = Math.min(next, breakWake);
+        }
+
+        boolean nowAllowed = inWindow && !limitReached && !inBreak;
+        if (next == Long.MAX_VALUE) {
+            next = -1;
+            alarm.cancel();
+        } else {
+            // Never arm in the past, e.g. when the clock was just set back
+            next = Math.max(next, now + 1000);
+            alarm.arm(next);
+        }
+
+        boolean changed = nowAllowed != allowed;
+        allowed = nowAllowed;
+        nextTransitionMillis = next;
+        if (changed) {
+            for (Listener listener : new ArrayList<>(listeners)) {
+                listener.onAccessChanged(allowed, next);
+            }
+        }
+    }
+}
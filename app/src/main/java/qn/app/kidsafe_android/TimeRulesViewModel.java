@@ -0,0 +1,77 @@
+package qn.app.kidsafe_android;
+
+import android.app.Application;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.List;
+
+/**
+ * State of TimeManagementActivity that outlives a configuration change: the subscription
+ * to the family's time rules and the last parsed list. A recreated activity gets the same
+ * list back. The scheduler is fed by KidSafeApplication, not by this screen.
+ */
+public class TimeRulesViewModel extends AndroidViewModel {
+
+    private static final String TAG = "TimeRulesViewModel";
+
+    private final FamilyRepository repository;
+    private final MutableLiveData<FamilyRepository.TimeRules> timeRules = new MutableLiveData<>();
+    // Shown once: the screen clears it with onMessageShown()
+    private final MutableLiveData<String> message = new MutableLiveData<>();
+
+    private SharedNode.Subscription rulesSubscription;
+
+    public TimeRulesViewModel(@NonNull Application application) {
+        super(application);
+        repository = ((KidSafeApplication) application).getFamilyRepository();
+    }
+
+    /**
+     * Subscribe for {@code userUid}; later calls, e.g. from a recreated activity, are no-ops
+     */
+    public void start(String userUid) {
+        if (rulesSubscription != null) return;
+        // Shared listener, parsed off the UI thread by the repository
+        rulesSubscription = repository.observeTimeRules(userUid, new SharedNode.Observer<FamilyRepository.TimeRules>() {
+            @Override
+            public void onValue(FamilyRepository.TimeRules value, boolean replayed) {
+                List<TimeRule> rules = value.getRules();
+                Log.d(TAG, "🔥 Total time rules loaded: " + rules.size());
+                timeRules.setValue(value);
+                if (!replayed && !rules.isEmpty()) {
+                    message.setValue("Đã tải " + rules.size() + " quy tắc");
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                message.setValue("Lỗi tải dữ liệu: " + error);
+            }
+        });
+    }
+
+    public LiveData<FamilyRepository.TimeRules> getTimeRules() {
+        return timeRules;
+    }
+
+    public LiveData<String> getMessage() {
+        return message;
+    }
+
+    public void onMessageShown() {
+        message.setValue(null);
+    }
+
+    @Override
+    protected void onCleared() {
+        // The repository detaches the Firebase listener once no screen uses it
+        if (rulesSubscription != null) {
+            rulesSubscription.close();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package qn.app.kidsafe_android;
+
+/**
+ * Hierarchical timer wheel (Varghese &amp; Lauck): 4 levels of 64 slots, each level 64 times
+ * coarser than the one below, covering 64^4 ticks.
+ *
+ * Scheduling and cancelling a timer is O(1): it is linked into the slot of its deadline
+ * at the lowest level whose range reaches it. Each tick costs O(1) plus the timers that
+ * expire; when a lower level wraps around, the next slot of the level above is cascaded
+ * down. Timers are intrusive list nodes, nothing is allocated per schedule.
+ *
+ * Time is in abstract ticks supplied by the caller. Not thread-safe.
+ */
+final class TimerWheel {
+
+    static final int LEVELS = 4;
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final long MAX_DELTA = (1L << (BITS * LEVELS)) - 1;
+
+    /** A timer, linked into at most one slot */
+    abstract static class Timer {
+        private Timer prev;
+        private Timer next;
+        private long deadline;
+        private int level = -1;
+        private int slot;
+
+        /** Called from advance() once the deadline tick is reached */
+        abstract void onExpired(long tick);
+
+        final boolean isScheduled() {
+            return level >= 0;
+        }
+
+        final long getDeadline() {
+            return deadline;
+        }
+    }
+
+    private final Timer[][] slots = new Timer[LEVELS][SLOTS];
+    private long current;
+    private int size;
+
+    TimerWheel(long startTick) {
+        current = startTick;
+    }
+
+    long getCurrentTick() {
+        return current;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Arm {@code timer} for {@code deadline}, replacing an earlier schedule. A deadline at
+     * or before the current tick fires on the next advance().
+     */
+    void schedule(Timer timer, long deadline) {
+        if (timer.isScheduled()) {
+            unlink(timer);
+            size--;
+        }
+        timer.deadline = deadline;
+        place(timer);
+        size++;
+    }
+
+    void cancel(Timer timer) {
+        if (!timer.isScheduled()) return;
+        unlink(timer);
+        size--;
+    }
+
+    /**
+     * Run the wheel up to and including {@code tick}, firing due timers in deadline order
+     * (by slot). A timer may reschedule itself or others from onExpired().
+     */
+    void advance(long tick) {
+        expire(current);    // overdue timers scheduled since the last advance
+        while (current < tick) {
+            if (size == 0) {
+                current = tick;
+                return;
+            }
+            current++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((current & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) (current >>> (BITS * level)) & MASK);
+                }
+            }
+            expire(current);
+        }
+    }
+
+    /**
+     * Earliest deadline of all scheduled timers, or -1 when none. Looks at the first
+     * occupied slot of each level, so at most LEVELS x SLOTS slot checks.
+     */
+    long nextDeadline() {
+        if (size == 0) return -1;
+        long best = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = BITS * level;
+            int base = (int) (current >>> shift) & MASK;
+            // Level 0 may hold overdue timers in the current slot
+            for (int k = level == 0 ? 0 : 1; k <= SLOTS; k++) {
+                Timer head = slots[level][(base + k) & MASK];
+                if (head == null) continue;
+                for (Timer t = head; t != null; t = t.next) {
+                    best = Math.min(best, t.deadline);
+                }
+                break;
+            }
+        }
+        return best;
+    }
+
+    private void expire(long tick) {
+        Timer[] level0 = slots[0];
+        int index = (int) tick & MASK;
+        Timer timer;
+        while ((timer = level0[index]) != null) {
+            unlink(timer);
+            size--;
+            if (timer.deadline > tick) {
+                // Beyond the wheel's range when scheduled, not due yet
+                place(timer);
+                size++;
+                continue;
+            }
+            timer.onExpired(tick);
+        }
+    }
+
+    private void cascade(int level, int index) {
+        Timer timer = slots[level][index];
+        slots[level][index] = null;
+        while (timer != null) {
+            Timer next = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            timer.level = -1;
+            place(timer);
+            timer = next;
+        }
+    }
+
+    private void place(Timer timer) {
+        long delta = timer.deadline - current;
+        long target = timer.deadline;
+        if (delta < 0) {
+            target = current;
+            delta = 0;
+        } else if (delta > MAX_DELTA) {
+            target = current + MAX_DELTA;
+            delta = MAX_DELTA;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) {
+            level++;
+        }
+        int index = (int) (target >>> (BITS * level)) & MASK;
+        timer.level = level;
+        timer.slot = index;
+        Timer head = slots[level][index];
+        timer.prev = null;
+        timer.next = head;
+        if (head != null) head.prev = timer;
+        slots[level][index] = timer;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            slots[timer.level][timer.slot] = timer.next;
+        }
+        if (timer.next != null) timer.next.prev = timer.prev;
+        timer.prev = null;
+        timer.next = null;
+        timer.level = -1;
+    }
+}
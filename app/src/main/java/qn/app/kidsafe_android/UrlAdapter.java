@@ -9,27 +9,50 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
-public class UrlAdapter extends RecyclerView.Adapter<UrlAdapter.UrlViewHolder> {
-    
+/**
+ * Shows the live blocked URL list of a BlockedUrls state. The rows are formatted by the
+ * state, off the main thread for a whole seed; register the adapter as a model listener
+ * and it only reports what changed. Binding only assigns a row.
+ */
+public class UrlAdapter extends RecyclerView.Adapter<UrlAdapter.UrlViewHolder> implements KeyedList.Listener {
+
     private List<BlockedUrl> urlList;
+    private final List<UrlRow> rows;
     private OnItemClickListener listener;
-    
+
     public interface OnItemClickListener {
         void onDeleteClick(BlockedUrl blockedUrl);
     }
-    
-    public UrlAdapter(List<BlockedUrl> urlList, OnItemClickListener listener) {
+
+    public UrlAdapter(List<BlockedUrl> urlList, List<UrlRow> rows, OnItemClickListener listener) {
         this.urlList = urlList;
+        this.rows = rows;
         this.listener = listener;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public void onItemInserted(int position) {
+        notifyItemInserted(position);
+    }
+
+    @Override
+    public void onItemChanged(int position) {
+        notifyItemChanged(position);
+    }
+
+    @Override
+    public void onItemRemoved(int position) {
+        notifyItemRemoved(position);
+    }
+
+    @Override
+    public void onReset() {
+        notifyDataSetChanged();
     }
-    
+
     @NonNull
     @Override
     public UrlViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -37,82 +60,53 @@ public class UrlAdapter extends RecyclerView.Adapter<UrlAdapter.UrlViewHolder> {
                 .inflate(R.layout.item_blocked_url, parent, false);
         return new UrlViewHolder(view);
     }
-    
+
     @Override
     public void onBindViewHolder(@NonNull UrlViewHolder holder, int position) {
-        BlockedUrl blockedUrl = urlList.get(position);
-        holder.bind(blockedUrl);
+        holder.bind(rows.get(position));
     }
-    
+
+    @Override
+    public long getItemId(int position) {
+        return rows.get(position).getStableId();
+    }
+
     @Override
     public int getItemCount() {
-        return urlList.size();
+        return rows.size();
     }
-    
+
     class UrlViewHolder extends RecyclerView.ViewHolder {
         private TextView textViewUrl;
         private TextView textViewDate;
         private TextView textViewStatus;
         private ImageButton buttonDelete;
-        
+        private final int activeColor;
+        private final int pausedColor;
+
         public UrlViewHolder(@NonNull View itemView) {
             super(itemView);
             textViewUrl = itemView.findViewById(R.id.textViewUrl);
             textViewDate = itemView.findViewById(R.id.textViewDate);
             textViewStatus = itemView.findViewById(R.id.textViewStatus);
             buttonDelete = itemView.findViewById(R.id.buttonDelete);
-        }
-        
-        public void bind(BlockedUrl blockedUrl) {
-            // Format URL for display
-            textViewUrl.setText(formatUrlForDisplay(blockedUrl.getUrl()));
-            
-            // Format date
-            if (blockedUrl.getAddedAt() > 0) {
-                Date date = new Date(blockedUrl.getAddedAt());
-                SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
-                textViewDate.setText("Thêm lúc: " + sdf.format(date));
-            } else {
-                textViewDate.setText("Thêm lúc: Không rõ");
-            }
-            
-            // Status
-            if ("active".equals(blockedUrl.getStatus())) {
-                textViewStatus.setText("🛡️ Đang chặn");
-                textViewStatus.setTextColor(itemView.getContext().getColor(R.color.success_color));
-            } else {
-                textViewStatus.setText("⏸️ Tạm dừng");
-                textViewStatus.setTextColor(itemView.getContext().getColor(R.color.warning_color));
-            }
-            
-            // Delete button click
+            activeColor = itemView.getContext().getColor(R.color.success_color);
+            pausedColor = itemView.getContext().getColor(R.color.warning_color);
+
+            // Reads the entry at click time, so binding sets no listener
             buttonDelete.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onDeleteClick(blockedUrl);
+                int position = getBindingAdapterPosition();
+                if (listener != null && position != RecyclerView.NO_POSITION) {
+                    listener.onDeleteClick(urlList.get(position));
                 }
             });
         }
-        
-        private String formatUrlForDisplay(String url) {
-            try {
-                URL parsedUrl = new URL(url);
-                String domain = parsedUrl.getHost();
-                String path = parsedUrl.getPath();
-                
-                // Remove www prefix if present
-                if (domain.startsWith("www.")) {
-                    domain = domain.substring(4);
-                }
-                
-                // Return domain + path (if path is not empty or just "/")
-                if (path.length() > 1) {
-                    return domain + path;
-                } else {
-                    return domain;
-                }
-            } catch (MalformedURLException e) {
-                return url.replace("https://", "").replace("http://", "");
-            }
+
+        public void bind(UrlRow row) {
+            textViewUrl.setText(row.getText());
+            textViewDate.setText(row.getDateText());
+            textViewStatus.setText(row.getStatusText());
+            textViewStatus.setTextColor(row.isActive() ? activeColor : pausedColor);
         }
     }
 }
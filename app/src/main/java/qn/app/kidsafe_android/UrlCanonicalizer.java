@@ -0,0 +1,283 @@
+package qn.app.kidsafe_android;
+
+import java.net.IDN;
+
+/**
+ * Turns user input or list entries into the canonical form stored in Firebase
+ * ("https://" + host + path, lower case, no "www.", no default port).
+ * Works in a single pass over the input without regexes or java.net.URL,
+ * so it can be run on bulk imports of hundreds of thousands of lines.
+ */
+public final class UrlCanonicalizer {
+
+    private static final int MAX_HOST_LENGTH = 253;
+    private static final int MAX_LABEL_LENGTH = 63;
+
+    private UrlCanonicalizer() {
+    }
+
+    /**
+     * Canonical parts of a URL
+     */
+    public static final class CanonicalUrl {
+        private final String host;
+        private final int port;
+        private final String path;
+        private String url;
+        private String display;
+
+        CanonicalUrl(String host, int port, String path) {
+            this.host = host;
+            this.port = port;
+            this.path = path;
+        }
+
+        /** ASCII (punycode) host without "www." or trailing dot */
+        public String getHost() {
+            return host;
+        }
+
+        /** Non-default port, or -1 */
+        public int getPort() {
+            return port;
+        }
+
+        /** Path and query without trailing slash, "" for the whole site */
+        public String getPath() {
+            return path;
+        }
+
+        /** The form stored in blockedUrls */
+        public String getUrl() {
+            if (url == null) {
+                url = port < 0 ? "https://" + host + path : "https://" + host + ":" + port + path;
+            }
+            return url;
+        }
+
+        /** Human readable form, IDN hosts shown in Unicode */
+        public String getDisplay() {
+            if (display == null) {
+                String displayHost = host.contains("xn--") ? IDN.toUnicode(host) : host;
+                display = port < 0 ? displayHost + path : displayHost + ":" + port + path;
+            }
+            return display;
+        }
+    }
+
+    /**
+     * Canonicalize a URL or bare domain.
+     *
+     * @return the canonical URL, or null when the input is not a valid web address
+     */
+    public static CanonicalUrl canonicalize(String input) {
+        if (input == null) return null;
+
+        int start = 0;
+        int end = input.length();
+        while (start < end && input.charAt(start) <= ' ') start++;
+        while (end > start && input.charAt(end - 1) <= ' ') end--;
+        if (start == end) return null;
+
+        if (input.regionMatches(true, start, "https://", 0, 8)) {
+            start += 8;
+        } else if (input.regionMatches(true, start, "http://", 0, 7)) {
+            start += 7;
+        }
+
+        // User info ("user:pass@") ends at the last '@' before the path, as in browsers
+        for (int j = start; j < end; j++) {
+            char c = input.charAt(j);
+            if (c == '/' || c == '?' || c == '#') break;
+            if (c == '@') start = j + 1;
+        }
+
+        // Host: lower-cased, validated label by label as we go
+        StringBuilder host = new StringBuilder(Math.min(end - start, MAX_HOST_LENGTH + 1));
+        boolean nonAscii = false;
+        int labelLength = 0;
+        int labelCount = 0;
+        char previous = '.';
+        int i = start;
+        for (; i < end; i++) {
+            char c = input.charAt(i);
+            if (c == '/' || c == '?' || c == '#' || c == ':') break;
+
+            if (c == '.' || c == '。' || c == '．' || c == '｡') {
+                if (previous == '.' || previous == '-') return null;
+                host.append('.');
+                labelCount++;
+                labelLength = 0;
+                previous = '.';
+                continue;
+            }
+
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_') {
+                // Plain label character
+            } else if (c == '-') {
+                if (previous == '.') return null;
+            } else if (c > 0x7F && Character.isLetterOrDigit(c)) {
+                nonAscii = true;
+            } else {
+                return null;
+            }
+
+            if (++labelLength > MAX_LABEL_LENGTH && !nonAscii) return null;
+            host.append(c);
+            previous = c;
+        }
+
+        // Trailing dot is the DNS root, not an empty label
+        if (host.length() > 0 && previous == '.') {
+            host.setLength(host.length() - 1);
+            labelCount--;
+        } else if (previous == '-') {
+            return null;
+        }
+        if (host.length() == 0 || labelCount < 1) return null;
+
+        String hostName;
+        if (nonAscii) {
+            try {
+                hostName = IDN.toASCII(host.toString(), IDN.ALLOW_UNASSIGNED).toLowerCase();
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        } else {
+            hostName = host.toString();
+        }
+        if (hostName.length() > MAX_HOST_LENGTH) return null;
+
+        // Last label must be a real TLD, unless the whole host is an IPv4 literal
+        if (!isTld(hostName, hostName.lastIndexOf('.') + 1) && !isIpv4(hostName)) return null;
+
+        if (hostName.startsWith("www.") && hostName.indexOf('.', 4) > 0) {
+            hostName = hostName.substring(4);
+        }
+
+        // Port
+        int port = -1;
+        if (i < end && input.charAt(i) == ':') {
+            int value = 0;
+            int digits = 0;
+            for (i++; i < end; i++) {
+                char c = input.charAt(i);
+                if (c == '/' || c == '?' || c == '#') break;
+                if (c < '0' || c > '9' || ++digits > 5) return null;
+                value = value * 10 + (c - '0');
+            }
+            if (digits == 0 || value == 0 || value > 65535) return null;
+            port = (value == 80 || value == 443) ? -1 : value;
+        }
+
+        // Path and query, fragment dropped, trailing slashes trimmed
+        int fragment = input.indexOf('#', i);
+        int pathEnd = fragment >= 0 && fragment < end ? fragment : end;
+        while (pathEnd > i && input.charAt(pathEnd - 1) == '/') pathEnd--;
+        String path = "";
+        if (pathEnd > i) {
+            boolean upperCase = false;
+            for (int j = i; j < pathEnd; j++) {
+                char c = input.charAt(j);
+                if (c <= ' ') return null;
+                upperCase |= c >= 'A' && c <= 'Z';
+            }
+            String rawPath = input.substring(i, pathEnd);
+            if (upperCase) {
+                rawPath = rawPath.toLowerCase();
+            }
+            path = rawPath.charAt(0) == '/' ? rawPath : "/" + rawPath;
+        }
+
+        return new CanonicalUrl(hostName, port, path);
+    }
+
+    /**
+     * Display form of a URL already stored in blockedUrls.
+     * Cheap enough to call from RecyclerView binds.
+     */
+    public static String toDisplay(String storedUrl) {
+        if (storedUrl == null) return "";
+        String host = hostOf(storedUrl);
+        String rest = storedUrl.substring(hostEnd(storedUrl));
+        if (rest.length() == 1 && rest.charAt(0) == '/') {
+            rest = "";
+        }
+        if (host.contains("xn--")) {
+            try {
+                host = IDN.toUnicode(host);
+            } catch (IllegalArgumentException ignored) {
+                // Show the punycode form
+            }
+        }
+        return host + rest;
+    }
+
+    /**
+     * Host part of a stored URL, lower case and without "www."
+     */
+    static String hostOf(String url) {
+        String host = url.substring(schemeEnd(url), hostEnd(url)).toLowerCase();
+        return host.startsWith("www.") ? host.substring(4) : host;
+    }
+
+    /**
+     * Path part of a stored URL, without trailing slash ("" for the whole site)
+     */
+    static String pathOf(String url) {
+        int start = schemeEnd(url);
+        int slash = url.indexOf('/', start);
+        if (slash < 0) return "";
+        int end = url.length();
+        while (end > slash && url.charAt(end - 1) == '/') {
+            end--;
+        }
+        return url.substring(slash, end);
+    }
+
+    private static int schemeEnd(String url) {
+        int start = url.indexOf("://");
+        return start < 0 ? 0 : start + 3;
+    }
+
+    private static int hostEnd(String url) {
+        int end = schemeEnd(url);
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == ':' || c == '?' || c == '#') break;
+            end++;
+        }
+        return end;
+    }
+
+    private static boolean isTld(String host, int from) {
+        if (host.startsWith("xn--", from)) return host.length() - from > 4;
+        for (int i = from; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c < 'a' || c > 'z') return false;
+        }
+        return host.length() - from >= 2;
+    }
+
+    private static boolean isIpv4(String host) {
+        int parts = 0;
+        int value = -1;
+        for (int i = 0; i <= host.length(); i++) {
+            char c = i < host.length() ? host.charAt(i) : '.';
+            if (c == '.') {
+                if (value < 0 || value > 255) return false;
+                parts++;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = value < 0 ? c - '0' : value * 10 + (c - '0');
+                if (value > 255) return false;
+            } else {
+                return false;
+            }
+        }
+        return parts == 4;
+    }
+}
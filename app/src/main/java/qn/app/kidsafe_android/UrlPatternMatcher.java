@@ -0,0 +1,259 @@
+package qn.app.kidsafe_android;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Matches URLs against every active keyword and wildcard entry at once.
+ *
+ * Keywords ("casino") and the longest literal run of each wildcard ("*.bet*" -> ".bet")
+ * are compiled into one Aho-Corasick automaton with a dense transition table, so a
+ * lookup is a single pass over the URL whatever the number of patterns. A wildcard is
+ * only checked in full when its literal run was found in the URL.
+ *
+ * Matching is done against host + path, lower case, without scheme ("m.bet365.com/live").
+ * Wildcards use '*' for any run of characters and '?' for one character, and must match
+ * the whole host + path. Instances are immutable and thread-safe.
+ */
+public final class UrlPatternMatcher {
+
+    private static final int KIND_KEYWORD = 0;
+    private static final int KIND_WILDCARD = 1;
+
+    private static final UrlPatternMatcher EMPTY = compile(new ArrayList<>());
+
+    // Characters that occur in some pattern get their own class, everything else is class 0
+    private final int[] charClass = new int[128];
+    private final int classCount;
+
+    private final int[] transitions;   // state * classCount + class -> state
+    private final int[] firstPattern;  // first pattern whose literal ends at this state, -1
+    private final int[] outputLink;    // nearest proper suffix state with a pattern, -1
+    private final int[] nextPattern;   // next pattern with the same literal, -1
+
+    private final String[] patternText;
+    private final String[] patternIds;
+    private final int[] patternKind;
+    private final int[] literalFree;   // wildcards without any literal, checked every time
+
+    private UrlPatternMatcher(List<BlockedUrl> entries) {
+        List<String> texts = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        List<Integer> kinds = new ArrayList<>();
+        for (BlockedUrl entry : entries) {
+            if (!"active".equals(entry.getStatus()) || entry.getUrl() == null) continue;
+            String text = entry.getUrl().toLowerCase();
+            if ("keyword".equals(entry.getType()) && !text.isEmpty()) {
+                kinds.add(KIND_KEYWORD);
+            } else if ("wildcard".equals(entry.getType()) && !text.isEmpty()) {
+                kinds.add(KIND_WILDCARD);
+            } else {
+                continue;
+            }
+            texts.add(text);
+            ids.add(entry.getId());
+        }
+
+        int count = texts.size();
+        patternText = texts.toArray(new String[0]);
+        patternIds = ids.toArray(new String[0]);
+        patternKind = new int[count];
+        nextPattern = new int[count];
+        Arrays.fill(nextPattern, -1);
+
+        String[] literals = new String[count];
+        int classes = 1;
+        for (int p = 0; p < count; p++) {
+            patternKind[p] = kinds.get(p);
+            literals[p] = patternKind[p] == KIND_KEYWORD ? patternText[p] : longestLiteral(patternText[p]);
+            for (int i = 0; i < literals[p].length(); i++) {
+                char c = literals[p].charAt(i);
+                if (c < 128 && charClass[c] == 0) {
+                    charClass[c] = classes++;
+                }
+            }
+        }
+        classCount = classes;
+
+        // 1. Trie of all literals
+        int maxStates = 1;
+        for (String literal : literals) maxStates += literal.length();
+        int[] table = new int[maxStates * classCount];
+        int[] first = new int[maxStates];
+        Arrays.fill(first, -1);
+        int states = 1;
+        List<Integer> noLiteral = new ArrayList<>();
+
+        for (int p = 0; p < count; p++) {
+            String literal = literals[p];
+            if (literal.isEmpty()) {
+                noLiteral.add(p);
+                continue;
+            }
+            int state = 0;
+            boolean representable = true;
+            for (int i = 0; i < literal.length(); i++) {
+                char c = literal.charAt(i);
+                if (c >= 128) {
+                    representable = false;
+                    break;
+                }
+                int slot = state * classCount + charClass[c];
+                if (table[slot] == 0) {
+                    table[slot] = states++;
+                }
+                state = table[slot];
+            }
+            if (!representable) {
+                // Canonical URLs are ASCII (punycode), such a literal can never occur
+                continue;
+            }
+            nextPattern[p] = first[state];
+            first[state] = p;
+        }
+
+        // 2. Failure links by BFS, turning the trie into a full DFA
+        int[] fail = new int[states];
+        int[] output = new int[states];
+        Arrays.fill(output, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int cls = 1; cls < classCount; cls++) {
+            int child = table[cls];
+            if (child != 0) {
+                fail[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int failState = fail[state];
+            output[state] = first[failState] >= 0 ? failState : output[failState];
+            for (int cls = 1; cls < classCount; cls++) {
+                int slot = state * classCount + cls;
+                int child = table[slot];
+                int failTarget = table[failState * classCount + cls];
+                if (child != 0) {
+                    fail[child] = failTarget;
+                    queue.add(child);
+                } else {
+                    table[slot] = failTarget;
+                }
+            }
+        }
+
+        transitions = Arrays.copyOf(table, states * classCount);
+        firstPattern = Arrays.copyOf(first, states);
+        outputLink = output;
+        literalFree = new int[noLiteral.size()];
+        for (int i = 0; i < literalFree.length; i++) {
+            literalFree[i] = noLiteral.get(i);
+        }
+    }
+
+    /**
+     * Compile the active keyword and wildcard entries of the list. URL entries are ignored.
+     */
+    public static UrlPatternMatcher compile(List<BlockedUrl> entries) {
+        return new UrlPatternMatcher(entries);
+    }
+
+    public static UrlPatternMatcher empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return patternText.length;
+    }
+
+    /**
+     * Match a URL as stored in blockedUrls or produced by UrlCanonicalizer
+     */
+    public boolean matchesUrl(String url) {
+        return matches(UrlCanonicalizer.hostOf(url) + UrlCanonicalizer.pathOf(url));
+    }
+
+    public boolean matches(CharSequence hostAndPath) {
+        return findMatch(hostAndPath) >= 0;
+    }
+
+    /**
+     * @return the Firebase key of a matching entry, or null
+     */
+    public String findMatchingId(CharSequence hostAndPath) {
+        int pattern = findMatch(hostAndPath);
+        return pattern >= 0 ? patternIds[pattern] : null;
+    }
+
+    private int findMatch(CharSequence text) {
+        for (int p : literalFree) {
+            if (globMatches(patternText[p], text)) return p;
+        }
+
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int cls = c < 128 ? charClass[c] : 0;
+            state = transitions[state * classCount + cls];
+
+            int hit = firstPattern[state] >= 0 ? state : outputLink[state];
+            while (hit >= 0) {
+                for (int p = firstPattern[hit]; p >= 0; p = nextPattern[p]) {
+                    if (patternKind[p] == KIND_KEYWORD || globMatches(patternText[p], text)) {
+                        return p;
+                    }
+                }
+                hit = outputLink[hit];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Longest run of characters without '*' or '?'
+     */
+    static String longestLiteral(String glob) {
+        int bestStart = 0;
+        int bestLength = 0;
+        int start = 0;
+        for (int i = 0; i <= glob.length(); i++) {
+            if (i == glob.length() || glob.charAt(i) == '*' || glob.charAt(i) == '?') {
+                if (i - start > bestLength) {
+                    bestStart = start;
+                    bestLength = i - start;
+                }
+                start = i + 1;
+            }
+        }
+        return glob.substring(bestStart, bestStart + bestLength);
+    }
+
+    /**
+     * Glob match that backtracks to the last '*' only, never further. Worst case
+     * O(glob length × text length), e.g. "*aaaab" against a long run of 'a'; linear when
+     * the glob has no '*' or the text rarely matches past one.
+     */
+    static boolean globMatches(String glob, CharSequence text) {
+        int g = 0;
+        int t = 0;
+        int star = -1;
+        int mark = 0;
+        while (t < text.length()) {
+            if (g < glob.length() && (glob.charAt(g) == '?' || glob.charAt(g) == text.charAt(t))) {
+                g++;
+                t++;
+            } else if (g < glob.length() && glob.charAt(g) == '*') {
+                star = g++;
+                mark = t;
+            } else if (star >= 0) {
+                g = star + 1;
+                t = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (g < glob.length() && glob.charAt(g) == '*') g++;
+        return g == glob.length();
+    }
+}
@@ -0,0 +1,73 @@
+package qn.app.kidsafe_android;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * What one row of the blocked URL list shows, computed once when the entry changes so
+ * binding a recycled row only assigns text
+ */
+public final class UrlRow {
+
+    private final String id;
+    private final long stableId;
+    private final String text;
+    private final String dateText;
+    private final String statusText;
+    private final boolean active;
+
+    private UrlRow(String id, long stableId, String text, String dateText, String statusText, boolean active) {
+        this.id = id;
+        this.stableId = stableId;
+        this.text = text;
+        this.dateText = dateText;
+        this.statusText = statusText;
+        this.active = active;
+    }
+
+    static UrlRow of(BlockedUrl blockedUrl, DateTimeFormatter dateFormat) {
+        String dateText = blockedUrl.getAddedAt() > 0
+                ? "Thêm lúc: " + dateFormat.format(Instant.ofEpochMilli(blockedUrl.getAddedAt()))
+                : "Thêm lúc: Không rõ";
+        boolean active = "active".equals(blockedUrl.getStatus());
+        return new UrlRow(blockedUrl.getId(), RowFormat.stableId(blockedUrl.getId()), displayText(blockedUrl), dateText,
+                active ? "🛡️ Đang chặn" : "⏸️ Tạm dừng", active);
+    }
+
+    /**
+     * Keywords and wildcards are shown as typed, URLs in their readable (Unicode) form
+     */
+    static String displayText(BlockedUrl blockedUrl) {
+        if ("keyword".equals(blockedUrl.getType())) {
+            return "🔤 " + blockedUrl.getUrl();
+        }
+        if ("wildcard".equals(blockedUrl.getType())) {
+            return "✳️ " + blockedUrl.getUrl();
+        }
+        return UrlCanonicalizer.toDisplay(blockedUrl.getUrl());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getStableId() {
+        return stableId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getDateText() {
+        return dateText;
+    }
+
+    public String getStatusText() {
+        return statusText;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+}
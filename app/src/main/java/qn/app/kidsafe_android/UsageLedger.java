@@ -0,0 +1,346 @@
+package qn.app.kidsafe_android;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Measures device use per local day, for daily_limit rules.
+ *
+ * Session start and stop events are appended to a small binary log (9 bytes each:
+ * u8 type, i64 epoch millis) and replayed when the ledger is opened. The totals of the
+ * last {@link #DAYS_KEPT} days live in a ring of primitive counters, and the current
+ * day's boundaries are cached, so "used today" and "remaining today" are a comparison
+ * and an addition. Once the log grows past {@link #MAX_RECORDS} it is rewritten as one
+ * DAY_TOTAL record per kept day.
+ *
+ * An open session appends a CHECKPOINT now and then ({@link #checkpoint}). A session
+ * still open when the process died is counted up to its last checkpoint (or its START
+ * when it had none), and a STOP at that point is appended so it stays closed on later
+ * replays.
+ * Not thread-safe, use it from the main thread.
+ */
+public final class UsageLedger implements TimeRuleScheduler.Usage {
+
+    public static final int DAYS_KEPT = 7;
+    static final int MAX_RECORDS = 1024;
+
+    private static final byte START = 1;
+    private static final byte STOP = 2;
+    private static final byte DAY_TOTAL = 3;   // value = epochDay << 32 | used millis
+    private static final byte CHECKPOINT = 4;  // the open session was still running
+    private static final long NO_DAY = Long.MIN_VALUE;
+
+    /** Receives the days whose total changed since the last drain */
+    public interface TotalsSink {
+        void onDayTotal(LocalDate day, long usedMillis);
+    }
+
+    private final File file;
+    private ZoneId zone;
+    private OutputStream log;
+    private int records;
+    private boolean replaying;
+    private long lastEvent = -1;
+
+    private final long[] days = new long[DAYS_KEPT];     // epoch day held by each slot
+    private final long[] totals = new long[DAYS_KEPT];   // closed-session millis of that day
+    private int dirty;                                   // bit per slot
+
+    private long currentDay = NO_DAY;
+    private long dayStartMillis;
+    private long dayEndMillis;
+    private long sessionStart = -1;
+    private long segmentStart;                           // max(sessionStart, dayStartMillis)
+
+    private UsageLedger(File file, ZoneId zone) {
+        this.file = file;
+        this.zone = zone;
+        for (int i = 0; i < DAYS_KEPT; i++) {
+            days[i] = NO_DAY;
+        }
+    }
+
+    /**
+     * Replay the log at {@code file} (created when missing) and keep appending to it
+     */
+    public static UsageLedger open(File file, ZoneId zone) throws IOException {
+        UsageLedger ledger = new UsageLedger(file, zone);
+        ledger.replay();
+        if (ledger.log == null) {
+            ledger.log = new BufferedOutputStream(new FileOutputStream(file, true), 64);
+        }
+        if (ledger.sessionStart >= 0) {
+            // The process died mid-session; nothing is known after the last checkpoint
+            ledger.stop(ledger.lastEvent);
+        }
+        return ledger;
+    }
+
+    public void start(long now) throws IOException {
+        if (sessionStart >= 0) return;
+        roll(now);
+        sessionStart = now;
+        segmentStart = now;
+        dirty |= 1 << slot(currentDay);
+        append(START, now);
+    }
+
+    public void stop(long now) throws IOException {
+        if (sessionStart < 0) return;
+        roll(now);
+        addToCurrentDay(now - segmentStart);
+        sessionStart = -1;
+        append(STOP, now);
+    }
+
+    /**
+     * Record that the open session is still running at {@code now}, so a crash loses at
+     * most the time since the last call. Does nothing between sessions.
+     */
+    public void checkpoint(long now) throws IOException {
+        if (sessionStart < 0 || now <= lastEvent) return;
+        append(CHECKPOINT, now);
+    }
+
+    public boolean isInSession() {
+        return sessionStart >= 0;
+    }
+
+    @Override
+    public long getSessionStartMillis() {
+        return sessionStart;
+    }
+
+    @Override
+    public long getUsedTodayMillis(long now) {
+        roll(now);
+        long used = totals[slot(currentDay)];
+        if (sessionStart >= 0 && now > segmentStart) {
+            used += now - segmentStart;
+        }
+        return used;
+    }
+
+    /**
+     * Millis left of a {@code limitMinutes} allowance today, never negative
+     */
+    public long getRemainingMillis(int limitMinutes, long now) {
+        return Math.max(0, limitMinutes * 60_000L - getUsedTodayMillis(now));
+    }
+
+    /**
+     * Closed-session total of {@code day}, 0 when it is older than {@link #DAYS_KEPT} days
+     */
+    public long getUsedMillis(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        int slot = slot(epochDay);
+        return days[slot] == epochDay ? totals[slot] : 0;
+    }
+
+    /**
+     * The device time zone changed: days are cut at the new local midnight from now on
+     */
+    public void setZone(ZoneId zone, long now) {
+        this.zone = zone;
+        if (currentDay != NO_DAY) {
+            moveTo(currentDay);
+            roll(now);
+        }
+    }
+
+    /**
+     * Hand every day changed since the last call to {@code sink}, today including the
+     * open session, then forget them until they change again
+     */
+    public void drainDirty(long now, TotalsSink sink) {
+        roll(now);
+        int current = slot(currentDay);
+        for (int slot = 0; slot < DAYS_KEPT; slot++) {
+            if ((dirty & (1 << slot)) == 0 || days[slot] == NO_DAY) continue;
+            long used = slot == current ? getUsedTodayMillis(now) : totals[slot];
+            sink.onDayTotal(LocalDate.ofEpochDay(days[slot]), used);
+        }
+        // Today keeps growing while a session is open
+        dirty = sessionStart >= 0 ? 1 << current : 0;
+    }
+
+    /**
+     * Hand {@code day} to the next drain again, e.g. when its total could not be sent.
+     * Ignored when it is older than {@link #DAYS_KEPT} days.
+     */
+    public void markDirty(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        int slot = slot(epochDay);
+        if (days[slot] == epochDay) {
+            dirty |= 1 << slot;
+        }
+    }
+
+    public void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    /**
+     * Advance to the day containing {@code now}, splitting an open session at midnight.
+     * One comparison when still in the same day.
+     */
+    private void roll(long now) {
+        if (currentDay == NO_DAY) {
+            moveTo(epochDay(now));
+            clearSlot(currentDay);
+            return;
+        }
+        if (now < dayEndMillis && now >= dayStartMillis) return;
+
+        long target = epochDay(now);
+        if (target < currentDay) {
+            // Clock set back past midnight: keep counting on the current day
+            return;
+        }
+        if (sessionStart < 0 && target - currentDay > DAYS_KEPT) {
+            currentDay = target - DAYS_KEPT;
+        }
+        while (currentDay < target) {
+            if (sessionStart >= 0) {
+                addToCurrentDay(dayEndMillis - segmentStart);
+                segmentStart = dayEndMillis;
+            }
+            moveTo(currentDay + 1);
+            clearSlot(currentDay);
+        }
+    }
+
+    private void moveTo(long epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        currentDay = epochDay;
+        dayStartMillis = date.atStartOfDay(zone).toInstant().toEpochMilli();
+        dayEndMillis = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private void clearSlot(long epochDay) {
+        int slot = slot(epochDay);
+        if (days[slot] != epochDay) {
+            days[slot] = epochDay;
+            totals[slot] = 0;
+            dirty &= ~(1 << slot);
+        }
+    }
+
+    private void addToCurrentDay(long millis) {
+        if (millis <= 0) return;
+        int slot = slot(currentDay);
+        totals[slot] += millis;
+        dirty |= 1 << slot;
+    }
+
+    private long epochDay(long millis) {
+        return Instant.ofEpochMilli(millis).atZone(zone).toLocalDate().toEpochDay();
+    }
+
+    private static int slot(long epochDay) {
+        return (int) Math.floorMod(epochDay, (long) DAYS_KEPT);
+    }
+
+    private void replay() throws IOException {
+        if (!file.exists()) return;
+        replaying = true;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte type = in.readByte();
+                long value = in.readLong();
+                records++;
+                if (type == START) {
+                    // A crashed session whose STOP was never written ends at its last checkpoint
+                    if (sessionStart >= 0) stop(lastEvent);
+                    start(value);
+                    lastEvent = value;
+                } else if (type == STOP) {
+                    stop(value);
+                    lastEvent = value;
+                } else if (type == CHECKPOINT) {
+                    if (sessionStart >= 0) lastEvent = value;
+                } else if (type == DAY_TOTAL) {
+                    long epochDay = value >> 32;
+                    if (currentDay != NO_DAY && epochDay <= currentDay - DAYS_KEPT) continue;
+                    if (currentDay == NO_DAY || epochDay > currentDay) {
+                        moveTo(epochDay);
+                    }
+                    clearSlot(epochDay);
+                    totals[slot(epochDay)] = value & 0xFFFFFFFFL;
+                }
+            }
+        } catch (EOFException endOfLog) {
+            // A torn last record is dropped
+        } finally {
+            replaying = false;
+        }
+        if (records > MAX_RECORDS) {
+            compact();
+        }
+    }
+
+    private void append(byte type, long value) throws IOException {
+        if (replaying) return;
+        lastEvent = value;
+        log.write(type);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            log.write((int) (value >>> shift));
+        }
+        log.flush();
+        if (++records > MAX_RECORDS) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the log as the kept day totals plus the open session and its last
+     * checkpoint, via a temp file
+     */
+    private void compact() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        int written = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            for (int slot = 0; slot < DAYS_KEPT; slot++) {
+                if (days[slot] == NO_DAY) continue;
+                out.writeByte(DAY_TOTAL);
+                out.writeLong(days[slot] << 32 | totals[slot]);
+                written++;
+            }
+            if (sessionStart >= 0) {
+                out.writeByte(START);
+                out.writeLong(segmentStart);
+                written++;
+                if (lastEvent > segmentStart) {
+                    out.writeByte(CHECKPOINT);
+                    out.writeLong(lastEvent);
+                    written++;
+                }
+            }
+        }
+        close();
+        boolean replaced = tmp.renameTo(file);
+        // Appends go on in whichever file is in place; the old log still holds everything
+        if (!replaying) {
+            log = new BufferedOutputStream(new FileOutputStream(file, true), 64);
+        }
+        if (!replaced) {
+            tmp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+        records = written;
+    }
+}
@@ -0,0 +1,143 @@
+package qn.app.kidsafe_android;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.ZoneId;
+
+/**
+ * Feeds screen on/off into the UsageLedger and pushes the day totals to
+ * kidsafe/families/&lt;uid&gt;/usage/&lt;yyyy-MM-dd&gt; through the family's outbox: when the
+ * screen goes off and every FLUSH_INTERVAL_MS while it is on, never per event. The periodic flush also
+ * checkpoints the open session, so a killed process loses at most one interval of use.
+ * Screen broadcasts cannot be declared in the manifest, so use is only measured while
+ * the process is alive.
+ */
+public class UsageTracker extends BroadcastReceiver {
+
+    private static final String TAG = "UsageTracker";
+    private static final long FLUSH_INTERVAL_MS = 15 * 60 * 1000;
+
+    private final Context context;
+    private final TimeRuleScheduler scheduler;
+    private final FamilyRepository repository;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable periodicFlush = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                ledger.checkpoint(System.currentTimeMillis());
+            } catch (IOException e) {
+                Log.e(TAG, "❌ Failed to checkpoint the session", e);
+            }
+            flush();
+            handler.postDelayed(this, FLUSH_INTERVAL_MS);
+        }
+    };
+    private UsageLedger ledger;
+
+    public UsageTracker(Context context, TimeRuleScheduler scheduler, FamilyRepository repository) {
+        this.context = context.getApplicationContext();
+        this.scheduler = scheduler;
+        this.repository = repository;
+    }
+
+    /**
+     * Open the ledger and start listening to the screen
+     */
+    public void start() {
+        try {
+            ledger = UsageLedger.open(new File(context.getFilesDir(), "usage.log"), ZoneId.systemDefault());
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Cannot open usage log", e);
+            return;
+        }
+        scheduler.setUsage(ledger);
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        context.registerReceiver(this, filter);
+
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager != null && powerManager.isInteractive()) {
+            onScreenOn();
+        }
+    }
+
+    /**
+     * Null until start() succeeded
+     */
+    public UsageLedger getLedger() {
+        return ledger;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (Intent.ACTION_SCREEN_ON.equals(intent.getAction())) {
+            onScreenOn();
+        } else if (Intent.ACTION_SCREEN_OFF.equals(intent.getAction())) {
+            onScreenOff();
+        }
+    }
+
+    /**
+     * The time zone changed, days are cut at the new local midnight
+     */
+    public void onZoneChanged() {
+        if (ledger != null) {
+            ledger.setZone(ZoneId.systemDefault(), System.currentTimeMillis());
+        }
+    }
+
+    private void onScreenOn() {
+        try {
+            ledger.start(System.currentTimeMillis());
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Failed to log session start", e);
+        }
+        scheduler.onUsageChanged();
+        handler.removeCallbacks(periodicFlush);
+        handler.postDelayed(periodicFlush, FLUSH_INTERVAL_MS);
+    }
+
+    private void onScreenOff() {
+        try {
+            ledger.stop(System.currentTimeMillis());
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Failed to log session stop", e);
+        }
+        scheduler.onUsageChanged();
+        handler.removeCallbacks(periodicFlush);
+        flush();
+    }
+
+    /**
+     * Queue every day that changed since the last flush. The outbox saves each total
+     * before it is sent and retries it until Firebase commits it, so a send that fails or
+     * a process that dies does not lose it; a newer total of the same day replaces one
+     * not sent yet. A day whose total could not even be saved is sent again next time.
+     */
+    private void flush() {
+        LocalAuthService localAuth = new LocalAuthService(context);
+        if (ledger == null || !localAuth.isLoggedIn()) return;
+
+        String uid = localAuth.getCurrentUserUID();
+        String userEmail = localAuth.getCurrentUserEmail();
+        UsageLedger flushed = ledger;
+        flushed.drainDirty(System.currentTimeMillis(), (day, usedMillis) ->
+                repository.write(uid, userEmail, "usage/" + day + "/usedMinutes", usedMillis / 60_000)
+                        .addOnFailureListener(e -> {
+                            Log.e(TAG, "❌ Failed to save the usage of " + day, e);
+                            flushed.markDirty(day);
+                        }));
+    }
+}
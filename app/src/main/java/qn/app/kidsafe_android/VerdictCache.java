@@ -0,0 +1,248 @@
+package qn.app.kidsafe_android;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded LRU cache of "is this host blocked?" answers, with a time-to-live.
+ *
+ * Keys are host names, ASCII case-insensitive, looked up straight from a byte[] (DNS
+ * question, TLS SNI) or a String. Every entry remembers the BlocklistEngine generation it
+ * was computed for, so any change to the blocked hosts invalidates all verdicts at once
+ * without touching the cache. Entries are kept in flat arrays indexed by an
+ * open-addressing table; a hit does not allocate.
+ *
+ * Not thread-safe, use it on the thread that owns the engine.
+ */
+public final class VerdictCache {
+
+    public static final int MISS = -1;
+    public static final int ALLOWED = 0;
+    public static final int BLOCKED = 1;
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final long DEFAULT_TTL_MS = 5 * 60 * 1000;
+
+    private static final int NONE = -1;
+
+    private final int capacity;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    private final int[] table;          // hash slot -> entry + 1, 0 = empty
+    private final int mask;
+
+    private final byte[][] keys;
+    private final int[] keyLengths;
+    private final int[] hashes;
+    private final long[] expiresAt;
+    private final int[] generations;
+    private final boolean[] verdicts;
+    private final int[] prev;           // LRU list, head is the most recent
+    private final int[] next;
+    private int head = NONE;
+    private int tail = NONE;
+    private int size;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public VerdictCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_TTL_MS);
+    }
+
+    public VerdictCache(int capacity, long ttlMillis) {
+        this(capacity, ttlMillis, System::currentTimeMillis);
+    }
+
+    VerdictCache(int capacity, long ttlMillis, LongSupplier clock) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        table = new int[tableSize];
+        mask = tableSize - 1;
+        keys = new byte[capacity][];
+        keyLengths = new int[capacity];
+        hashes = new int[capacity];
+        expiresAt = new long[capacity];
+        generations = new int[capacity];
+        verdicts = new boolean[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+    }
+
+    /**
+     * @return BLOCKED, ALLOWED, or MISS when absent, expired or from an older generation
+     */
+    public int get(byte[] host, int offset, int length, int generation) {
+        int entry = find(host, offset, length, hash(host, offset, length));
+        if (entry == NONE || generations[entry] != generation || expiresAt[entry] <= clock.getAsLong()) {
+            misses++;
+            return MISS;
+        }
+        hits++;
+        moveToHead(entry);
+        return verdicts[entry] ? BLOCKED : ALLOWED;
+    }
+
+    public int get(String host, int generation) {
+        byte[] bytes = host.getBytes(StandardCharsets.US_ASCII);
+        return get(bytes, 0, bytes.length, generation);
+    }
+
+    public void put(byte[] host, int offset, int length, int generation, boolean blocked) {
+        int hash = hash(host, offset, length);
+        int entry = find(host, offset, length, hash);
+        if (entry == NONE) {
+            entry = size < capacity ? size++ : evictLeastRecent();
+            storeKey(entry, host, offset, length, hash);
+            insertSlot(entry);
+            linkHead(entry);
+        } else {
+            moveToHead(entry);
+        }
+        generations[entry] = generation;
+        verdicts[entry] = blocked;
+        expiresAt[entry] = clock.getAsLong() + ttlMillis;
+    }
+
+    public void put(String host, int generation, boolean blocked) {
+        byte[] bytes = host.getBytes(StandardCharsets.US_ASCII);
+        put(bytes, 0, bytes.length, generation, blocked);
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        head = NONE;
+        tail = NONE;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getHitCount() {
+        return hits;
+    }
+
+    public long getMissCount() {
+        return misses;
+    }
+
+    public long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Share of lookups answered from the cache, 0 before the first lookup
+     */
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private int find(byte[] host, int offset, int length, int hash) {
+        for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = table[slot] - 1;
+            if (hashes[entry] == hash && keyEquals(entry, host, offset, length)) {
+                return entry;
+            }
+        }
+        return NONE;
+    }
+
+    private boolean keyEquals(int entry, byte[] host, int offset, int length) {
+        if (keyLengths[entry] != length) return false;
+        byte[] key = keys[entry];
+        for (int i = 0; i < length; i++) {
+            if (key[i] != lower(host[offset + i])) return false;
+        }
+        return true;
+    }
+
+    private void storeKey(int entry, byte[] host, int offset, int length, int hash) {
+        byte[] key = keys[entry];
+        if (key == null || key.length < length) {
+            key = new byte[Math.max(length, 32)];
+            keys[entry] = key;
+        }
+        for (int i = 0; i < length; i++) {
+            key[i] = lower(host[offset + i]);
+        }
+        keyLengths[entry] = length;
+        hashes[entry] = hash;
+    }
+
+    private void insertSlot(int entry) {
+        int slot = hashes[entry] & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = entry + 1;
+    }
+
+    /**
+     * Drop the least recently used entry and return its index for reuse
+     */
+    private int evictLeastRecent() {
+        int entry = tail;
+        unlink(entry);
+        removeSlot(entry);
+        evictions++;
+        return entry;
+    }
+
+    private void removeSlot(int entry) {
+        int slot = hashes[entry] & mask;
+        while (table[slot] != entry + 1) {
+            slot = (slot + 1) & mask;
+        }
+        // Backward-shift deletion keeps linear probing chains intact without tombstones
+        int hole = slot;
+        for (int probe = (hole + 1) & mask; table[probe] != 0; probe = (probe + 1) & mask) {
+            int home = hashes[table[probe] - 1] & mask;
+            if (((probe - home) & mask) >= ((probe - hole) & mask)) {
+                table[hole] = table[probe];
+                hole = probe;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private void moveToHead(int entry) {
+        if (entry == head) return;
+        unlink(entry);
+        linkHead(entry);
+    }
+
+    private void linkHead(int entry) {
+        prev[entry] = NONE;
+        next[entry] = head;
+        if (head != NONE) prev[head] = entry;
+        head = entry;
+        if (tail == NONE) tail = entry;
+    }
+
+    private void unlink(int entry) {
+        if (prev[entry] != NONE) next[prev[entry]] = next[entry]; else head = next[entry];
+        if (next[entry] != NONE) prev[next[entry]] = prev[entry]; else tail = prev[entry];
+    }
+
+    private static int hash(byte[] host, int offset, int length) {
+        int h = 0x811c9dc5;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ lower(host[offset + i])) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+}
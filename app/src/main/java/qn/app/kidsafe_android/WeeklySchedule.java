@@ -0,0 +1,146 @@
+package qn.app.kidsafe_android;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * All active access_schedule / weekly_schedule rules of a family compiled into one
+ * minute-of-week bitmap (7 x 1440 = 10,080 bits, Sunday 00:00 first).
+ *
+ * A set bit means internet access is allowed in that minute, so "allowed at T" is one
+ * bit test. Rules are windows of allowed time; a window that ends before it starts
+ * (22:00-06:00) runs past midnight into the next day, Saturday wraps to Sunday.
+ * Without any schedule rule access is allowed all week. Immutable, compile a new one
+ * when timeRules change.
+ */
+public final class WeeklySchedule {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    private static final WeeklySchedule ALWAYS_ALLOWED = new WeeklySchedule(null);
+
+    private final long[] allowed;   // null when no rule restricts access
+
+    private WeeklySchedule(long[] allowed) {
+        this.allowed = allowed;
+    }
+
+    public static WeeklySchedule compile(List<TimeRule> rules) {
+        long[] bits = null;
+        for (TimeRule rule : rules) {
+            if (!rule.isActive() || !isSchedule(rule)) continue;
+            int start = parseMinutes(rule.getStartTime());
+            int end = parseMinutes(rule.getEndTime());
+            if (start < 0 || end < 0) continue;
+
+            if (bits == null) {
+                bits = new long[(MINUTES_PER_WEEK + 63) / 64];
+            }
+            // Same start and end means the whole day
+            int length = end > start ? end - start : end - start + MINUTES_PER_DAY;
+            List<Integer> days = rule.getDays();
+            if (days == null || days.isEmpty()) {
+                for (int day = 0; day < 7; day++) {
+                    setRange(bits, day * MINUTES_PER_DAY + start, length);
+                }
+            } else {
+                for (Integer day : days) {
+                    if (day != null && day >= 0 && day < 7) {
+                        setRange(bits, day * MINUTES_PER_DAY + start, length);
+                    }
+                }
+            }
+        }
+        return bits == null ? ALWAYS_ALLOWED : new WeeklySchedule(bits);
+    }
+
+    public static WeeklySchedule alwaysAllowed() {
+        return ALWAYS_ALLOWED;
+    }
+
+    static boolean isSchedule(TimeRule rule) {
+        return "access_schedule".equals(rule.getRuleType()) || "weekly_schedule".equals(rule.getRuleType());
+    }
+
+    /**
+     * True when at least one active schedule rule limits access
+     */
+    public boolean hasSchedule() {
+        return allowed != null;
+    }
+
+    public boolean isAllowedAt(int minuteOfWeek) {
+        return allowed == null || (allowed[minuteOfWeek >>> 6] & (1L << minuteOfWeek)) != 0;
+    }
+
+    public boolean isAllowedAt(long epochMillis, ZoneId zone) {
+        return isAllowedAt(minuteOfWeek(ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone)));
+    }
+
+    /**
+     * Minutes from {@code minuteOfWeek} until the allowed state flips, or -1 when it never
+     * does (no schedule, or the same state all week). Skips whole 64-minute words.
+     */
+    public int minutesUntilChange(int minuteOfWeek) {
+        if (allowed == null) return -1;
+        boolean current = isAllowedAt(minuteOfWeek);
+        long same = current ? -1L : 0L;
+        int step = 1;
+        while (step < MINUTES_PER_WEEK) {
+            int minute = (minuteOfWeek + step) % MINUTES_PER_WEEK;
+            if ((minute & 63) == 0 && minute + 64 <= MINUTES_PER_WEEK
+                    && step + 64 <= MINUTES_PER_WEEK && allowed[minute >>> 6] == same) {
+                step += 64;
+                continue;
+            }
+            if (isAllowedAt(minute) != current) return step;
+            step++;
+        }
+        return -1;
+    }
+
+    /**
+     * Minute of the week in local time, 0 = Sunday 00:00, the same numbering as TimeRule.days
+     */
+    public static int minuteOfWeek(ZonedDateTime time) {
+        int day = time.getDayOfWeek().getValue() % 7;   // ISO Monday=1..Sunday=7 -> Sunday=0
+        return day * MINUTES_PER_DAY + time.getHour() * 60 + time.getMinute();
+    }
+
+    /**
+     * "HH:MM" (or "H:MM", "24:00") to minutes since midnight, -1 when invalid
+     */
+    static int parseMinutes(String time) {
+        if (time == null) return -1;
+        int colon = time.indexOf(':');
+        if (colon < 1 || colon > 2 || time.length() != colon + 3) return -1;
+        int hours = 0;
+        for (int i = 0; i < colon; i++) {
+            char c = time.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            hours = hours * 10 + (c - '0');
+        }
+        char tens = time.charAt(colon + 1);
+        char ones = time.charAt(colon + 2);
+        if (tens < '0' || tens > '5' || ones < '0' || ones > '9') return -1;
+        int minutes = hours * 60 + (tens - '0') * 10 + (ones - '0');
+        if (hours > 24 || minutes > MINUTES_PER_DAY) return -1;
+        return minutes == MINUTES_PER_DAY ? 0 : minutes;
+    }
+
+    private static void setRange(long[] bits, int from, int length) {
+        for (int i = 0; i < length; ) {
+            int minute = (from + i) % MINUTES_PER_WEEK;
+            int word = minute >>> 6;
+            int bit = minute & 63;
+            // Whole words at a time where the range allows it
+            int run = Math.min(64 - bit, Math.min(length - i, MINUTES_PER_WEEK - minute));
+            long mask = run == 64 ? -1L : ((1L << run) - 1) << bit;
+            bits[word] |= mask;
+            i += run;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class BlocklistEngineTest {
+
+    private static BlockedUrl entry(String id, String url, String status) {
+        BlockedUrl blockedUrl = new BlockedUrl(url, 0, "parent_android", status);
+        blockedUrl.setId(id);
+        return blockedUrl;
+    }
+
+    @Test
+    public void liveEntriesAreAppliedIncrementally() {
+        BlocklistEngine engine = new BlocklistEngine();
+        engine.put(entry("a", "https://facebook.com", "active"));
+        assertTrue(engine.isHostBlocked("m.facebook.com"));
+
+        engine.put(entry("a", "https://facebook.com", "paused"));
+        assertFalse(engine.isHostBlocked("m.facebook.com"));
+
+        engine.put(entry("a", "https://tiktok.com", "active"));
+        engine.remove("a");
+        assertFalse(engine.isHostBlocked("tiktok.com"));
+        assertEquals(0, engine.getFilter().size());
+    }
+
+    @Test
+    public void missesAreAnsweredByTheFilter() {
+        BlocklistEngine engine = new BlocklistEngine();
+        engine.put(entry("a", "https://facebook.com", "active"));
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(engine.isHostBlocked("allowed" + i + ".org"));
+        }
+        HostBloomFilter filter = engine.getFilter();
+        assertEquals(100, filter.getMissCount() + filter.getFalsePositiveCount());
+    }
+
+    @Test
+    public void snapshotEntriesAreLookedUpWithoutTheFilter() throws Exception {
+        BlocklistSnapshot.Builder builder = new BlocklistSnapshot.Builder();
+        builder.add(entry("s", "https://roblox.com", "active"));
+        builder.add(entry("p", "https://reddit.com/r/games", "active"));
+        BlocklistEngine engine = new BlocklistEngine();
+        engine.setSnapshot(BlocklistSnapshot.wrap(builder.toByteArray()));
+
+        byte[] name = "WWW.ROBLOX.COM".getBytes(StandardCharsets.US_ASCII);
+        assertTrue(engine.isHostBlocked(name, 0, name.length));
+        assertFalse(engine.isHostBlocked("reddit.com"));
+        assertEquals(0, engine.getFilter().size());
+    }
+
+    @Test
+    public void settingASnapshotKeepsTheLiveFilter() throws Exception {
+        BlocklistSnapshot.Builder builder = new BlocklistSnapshot.Builder();
+        builder.add(entry("s", "https://roblox.com", "active"));
+        BlocklistSnapshot snapshot = BlocklistSnapshot.wrap(builder.toByteArray());
+        BlocklistEngine engine = new BlocklistEngine();
+        engine.put(entry("a", "https://facebook.com", "active"));
+        HostBloomFilter filter = engine.getFilter();
+
+        engine.setSnapshot(snapshot);
+        assertSame(filter, engine.getFilter());
+        assertEquals(1, filter.size());
+        assertTrue(engine.isHostBlocked("www.roblox.com"));
+        assertTrue(engine.isHostBlocked("facebook.com"));
+        assertFalse(engine.isHostBlocked("example.org"));
+    }
+
+    @Test
+    public void liveRemovalsAndPausesOverrideTheSnapshot() throws Exception {
+        BlocklistSnapshot.Builder builder = new BlocklistSnapshot.Builder();
+        builder.add(entry("a", "https://facebook.com", "active"));
+        builder.add(entry("b", "https://m.facebook.com", "active"));
+        builder.add(entry("c", "https://roblox.com", "active"));
+        BlocklistEngine engine = new BlocklistEngine();
+        engine.setSnapshot(BlocklistSnapshot.wrap(builder.toByteArray()));
+        engine.update(Arrays.asList(
+                entry("a", "https://facebook.com", "active"),
+                entry("b", "https://m.facebook.com", "active")));
+
+        engine.remove("a");
+        byte[] name = "WWW.FACEBOOK.COM".getBytes(StandardCharsets.US_ASCII);
+        assertFalse(engine.isHostBlocked(name, 0, name.length));
+        // Still blocked by its own entry
+        assertTrue(engine.isHostBlocked("m.facebook.com"));
+
+        int generation = engine.getGeneration();
+        engine.put(entry("b", "https://m.facebook.com", "paused"));
+        assertFalse(engine.isHostBlocked("m.facebook.com"));
+        assertNotEquals(generation, engine.getGeneration());
+
+        // Removed while only the snapshot held it, e.g. before its page was loaded
+        engine.remove(entry("c", "https://roblox.com", "active"));
+        assertFalse(engine.isHostBlocked("www.roblox.com"));
+
+        engine.put(entry("a", "https://facebook.com", "active"));
+        assertTrue(engine.isHostBlocked(name, 0, name.length));
+    }
+
+    @Test
+    public void cachedVerdictsFollowLiveEvents() throws Exception {
+        BlocklistSnapshot.Builder builder = new BlocklistSnapshot.Builder();
+        builder.add(entry("s", "https://roblox.com", "active"));
+        BlocklistEngine engine = new BlocklistEngine();
+        engine.setSnapshot(BlocklistSnapshot.wrap(builder.toByteArray()));
+        VerdictCache cache = new VerdictCache();
+        byte[] facebook = "facebook.com".getBytes(StandardCharsets.US_ASCII);
+        byte[] roblox = "roblox.com".getBytes(StandardCharsets.US_ASCII);
+
+        // Each event as BlockedUrls hands it over: page loaded, paused, removed, reloaded
+        assertFalse(engine.isHostBlocked(facebook, 0, facebook.length, cache));
+        engine.put(entry("a", "https://facebook.com", "active"));
+        assertTrue(engine.isHostBlocked(facebook, 0, facebook.length, cache));
+        engine.put(entry("a", "https://facebook.com", "paused"));
+        assertFalse(engine.isHostBlocked(facebook, 0, facebook.length, cache));
+        engine.put(entry("a", "https://facebook.com", "active"));
+        engine.update(Collections.emptyList());
+        assertFalse(engine.isHostBlocked(facebook, 0, facebook.length, cache));
+
+        assertTrue(engine.isHostBlocked(roblox, 0, roblox.length, cache));
+        engine.remove(entry("s", "https://roblox.com", "active"));
+        assertFalse(engine.isHostBlocked(roblox, 0, roblox.length, cache));
+    }
+
+    @Test
+    public void updateDropsEntriesMissingFromTheList() {
+        BlocklistEngine engine = new BlocklistEngine();
+        engine.update(Arrays.asList(
+                entry("a", "https://a.com", "active"),
+                entry("b", "https://b.com/path", "active")));
+        engine.update(Collections.singletonList(entry("a", "https://a.com", "active")));
+
+        assertTrue(engine.isHostBlocked("a.com"));
+        assertFalse(engine.containsUrl("https://b.com/path"));
+    }
+
+    @Test
+    public void patternsApplyToUrls() {
+        BlockedUrl keyword = entry("k", "casino", "active");
+        keyword.setType("keyword");
+        BlocklistEngine engine = new BlocklistEngine();
+        engine.put(keyword);
+
+        assertTrue(engine.isUrlBlocked("https://bestcasino.com/"));
+        engine.remove("k");
+        assertFalse(engine.isUrlBlocked("https://bestcasino.com/"));
+    }
+
+    @Test
+    public void filterGrowsPastItsInitialSize() {
+        BlocklistEngine engine = new BlocklistEngine();
+        for (int i = 0; i < 5000; i++) {
+            engine.put(entry("id" + i, "https://host" + i + ".com", "active"));
+        }
+        assertTrue(engine.getFilter().getExpectedHosts() >= 5000);
+        assertTrue(engine.isHostBlocked("host4999.com"));
+    }
+}
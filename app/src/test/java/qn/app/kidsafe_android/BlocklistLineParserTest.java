@@ -0,0 +1,79 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BlocklistLineParserTest {
+
+    private static List<String> parse(String line) {
+        List<String> out = new ArrayList<>();
+        BlocklistLineParser.parseLine(line, out);
+        return out;
+    }
+
+    @Test
+    public void hostsFileLines() {
+        assertEquals(Arrays.asList("ads.example.com"), parse("0.0.0.0 ads.example.com"));
+        assertEquals(Arrays.asList("a.com", "b.com"), parse("127.0.0.1\ta.com b.com  # trackers"));
+        assertEquals(Arrays.asList("tracker.net"), parse("::1 tracker.net"));
+    }
+
+    @Test
+    public void addressesAndLocalNamesAreSkipped() {
+        assertEquals(Collections.emptyList(), parse("0.0.0.0 0.0.0.0"));
+        assertEquals(Collections.emptyList(), parse("127.0.0.1 localhost.localdomain localhost"));
+        assertEquals(Collections.emptyList(), parse("255.255.255.255 broadcasthost"));
+        assertEquals(Collections.emptyList(), parse("fe80::1%lo0 localhost"));
+        assertEquals(Collections.emptyList(), parse("ff02::2 ip6-allrouters"));
+        assertEquals(Collections.emptyList(), parse("192.168.1.1"));
+        assertEquals(Collections.emptyList(), parse("||10.0.0.1^"));
+        assertEquals(Arrays.asList("ads.example.com"), parse("0.0.0.0 localhost ads.example.com"));
+        // Names that only look like addresses are kept
+        assertEquals(Arrays.asList("1.2.3.4.nip.io"), parse("1.2.3.4.nip.io"));
+        assertEquals(Arrays.asList("cafe.de"), parse("::1 cafe.de"));
+    }
+
+    @Test
+    public void plainDomainsAndUrls() {
+        assertEquals(Arrays.asList("facebook.com"), parse("  facebook.com  "));
+        assertEquals(Arrays.asList("https://youtube.com/shorts"), parse("https://youtube.com/shorts"));
+    }
+
+    @Test
+    public void adblockNetworkFilters() {
+        assertEquals(Arrays.asList("casino.com"), parse("||casino.com^"));
+        assertEquals(Arrays.asList("bet.io"), parse("||bet.io^$important"));
+        assertEquals(Collections.emptyList(), parse("||*.bet^"));
+        assertEquals(Collections.emptyList(), parse("@@||allowed.com^"));
+        assertEquals(Collections.emptyList(), parse("example.com##.banner"));
+    }
+
+    @Test
+    public void adblockRulesWithAPathAreSkipped() {
+        assertEquals(Collections.emptyList(), parse("||example.com/ads"));
+        assertEquals(Collections.emptyList(), parse("||example.com/ads^$important"));
+    }
+
+    @Test
+    public void adblockRulesWithNarrowingOptionsAreSkipped() {
+        assertEquals(Collections.emptyList(), parse("||tracker.net^$domain=news.com|blog.com"));
+        assertEquals(Collections.emptyList(), parse("||bet.io^$third-party"));
+        assertEquals(Collections.emptyList(), parse("||cdn.net^$script,image"));
+        assertEquals(Collections.emptyList(), parse("||cdn.net^extra"));
+        assertEquals(Arrays.asList("casino.com"), parse("||casino.com^$all,important"));
+    }
+
+    @Test
+    public void commentsAndHeadersAreIgnored() {
+        assertEquals(Collections.emptyList(), parse("# hosts file"));
+        assertEquals(Collections.emptyList(), parse("! Title: EasyList"));
+        assertEquals(Collections.emptyList(), parse("[Adblock Plus 2.0]"));
+        assertEquals(Collections.emptyList(), parse("   "));
+    }
+}
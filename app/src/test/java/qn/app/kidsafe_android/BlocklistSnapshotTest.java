@@ -0,0 +1,97 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class BlocklistSnapshotTest {
+
+    private static BlockedUrl entry(String url, String status) {
+        return new BlockedUrl(url, 0, "parent_android", status);
+    }
+
+    private static BlocklistSnapshot build(BlockedUrl... entries) throws Exception {
+        BlocklistSnapshot.Builder builder = new BlocklistSnapshot.Builder();
+        for (BlockedUrl entry : entries) {
+            builder.add(entry);
+        }
+        return BlocklistSnapshot.wrap(builder.toByteArray());
+    }
+
+    @Test
+    public void parentDomainBlocksSubdomains() throws Exception {
+        BlocklistSnapshot snapshot = build(
+                entry("https://facebook.com", "active"),
+                entry("https://tiktok.com", "paused"));
+
+        assertTrue(snapshot.isBlocked("facebook.com"));
+        assertTrue(snapshot.isBlocked("m.facebook.com"));
+        assertFalse(snapshot.isBlocked("notfacebook.com"));
+        assertFalse(snapshot.isBlocked("com"));
+        assertFalse(snapshot.isBlocked("tiktok.com"));
+    }
+
+    @Test
+    public void byteLookupIsCaseInsensitive() throws Exception {
+        BlocklistSnapshot snapshot = build(entry("https://youtube.com", "active"));
+        byte[] packet = "xxWWW.YouTube.COMyy".getBytes(StandardCharsets.US_ASCII);
+
+        assertTrue(snapshot.isBlocked(packet, 2, 15));
+        assertFalse(snapshot.isBlocked(packet, 2, 14));
+    }
+
+    @Test
+    public void pathEntriesDoNotBlockTheHost() throws Exception {
+        BlocklistSnapshot snapshot = build(entry("https://reddit.com/r/games", "active"));
+
+        assertFalse(snapshot.isBlocked("reddit.com"));
+        assertTrue(snapshot.containsUrl("https://reddit.com/r/games"));
+        assertFalse(snapshot.containsUrl("https://reddit.com"));
+    }
+
+    @Test
+    public void duplicatesAndPatternsAreDropped() throws Exception {
+        BlockedUrl keyword = entry("casino", "active");
+        keyword.setType("keyword");
+        BlocklistSnapshot snapshot = build(
+                entry("https://a.com", "paused"),
+                entry("https://a.com", "active"),
+                keyword);
+
+        assertEquals(1, snapshot.size());
+        assertTrue(snapshot.isBlocked("a.com"));
+        assertEquals("parent_android", snapshot.getAddedBy("https://a.com"));
+    }
+
+    @Test
+    public void writtenFileIsMappedBack() throws Exception {
+        BlocklistSnapshot.Builder builder = new BlocklistSnapshot.Builder();
+        for (int i = 0; i < 20000; i++) {
+            builder.add(entry("https://site" + i + ".example", "active"));
+        }
+        File file = File.createTempFile("blocklist", ".snap");
+        try {
+            builder.writeTo(file);
+            BlocklistSnapshot snapshot = BlocklistSnapshot.open(file);
+
+            assertEquals(20000, snapshot.size());
+            assertTrue(snapshot.isBlocked("cdn.site19999.example"));
+            assertFalse(snapshot.isBlocked("site20000.example"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void invalidFileIsRejected() throws Exception {
+        File file = File.createTempFile("blocklist", ".snap");
+        try {
+            assertNull(BlocklistSnapshot.openIfExists(file));
+        } finally {
+            file.delete();
+        }
+    }
+}
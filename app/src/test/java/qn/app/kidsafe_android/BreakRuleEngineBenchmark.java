@@ -0,0 +1,69 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Cost of a one-second tick of BreakRuleEngine with 200 profile rules plus a family rule
+ * and 500 profiles in use. Runs with the unit tests; the time is printed, not asserted.
+ */
+public class BreakRuleEngineBenchmark {
+
+    private static final long MINUTE = 60_000;
+    private static final long T = 1_715_760_000_000L;    // 2024-05-15 08:00 UTC
+    private static final int PROFILES = 500;
+    private static final int ROUNDS = 20;
+
+    private static BreakRuleEngine engine() {
+        List<TimeRule> rules = new ArrayList<>();
+        TimeRule family = TimeRule.createBreakRule("Nghỉ", 45, 15);
+        family.setId("family");
+        rules.add(family);
+        for (int p = 0; p < 200; p++) {
+            TimeRule rule = TimeRule.createBreakRule("Nghỉ", 20 + p % 40, 5);
+            rule.setId("p" + p);
+            rule.setProfileId("p" + p);
+            rules.add(rule);
+        }
+        BreakRuleEngine engine = new BreakRuleEngine();
+        engine.setRules(rules, T);
+        return engine;
+    }
+
+    /**
+     * Tick once a second for an hour, a profile starts using the device every 7 seconds
+     */
+    private static long runHour(BreakRuleEngine engine) {
+        long start = System.nanoTime();
+        for (long now = T; now <= T + 60 * MINUTE; now += 1000) {
+            long sinceStart = now - T;
+            if (sinceStart % 7_000 == 0 && sinceStart / 7_000 < PROFILES) {
+                engine.onUsageStart("p" + sinceStart / 7_000, now);
+            }
+            engine.advance(now);
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void tickCostWithHundredsOfProfiles() {
+        // The first rounds warm up the JIT
+        for (int round = 0; round < ROUNDS / 4; round++) {
+            runHour(engine());
+        }
+        long elapsed = 0;
+        int timers = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            BreakRuleEngine engine = engine();
+            elapsed += runHour(engine);
+            timers = engine.getTimerCount();
+        }
+        System.out.printf("BreakRuleEngine: %d ns per tick, %d timers%n", elapsed / (ROUNDS * 3601L), timers);
+
+        assertEquals(700, timers);
+    }
+}
@@ -0,0 +1,189 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BreakRuleEngineTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long T = 1_715_760_000_000L;    // 2024-05-15 08:00 UTC
+    private static final String KID = BreakRuleEngine.DEFAULT_PROFILE;
+
+    private static TimeRule breakRule(String id, int interval, int duration) {
+        TimeRule rule = TimeRule.createBreakRule("Nghỉ", interval, duration);
+        rule.setId(id);
+        return rule;
+    }
+
+    private static BreakRuleEngine engine(TimeRule... rules) {
+        BreakRuleEngine engine = new BreakRuleEngine();
+        engine.setRules(Arrays.asList(rules), T);
+        return engine;
+    }
+
+    @Test
+    public void breakAfterContinuousUseThenBackToUse() {
+        BreakRuleEngine engine = engine(breakRule("r1", 45, 15));
+        engine.onUsageStart(KID, T);
+        assertEquals(T + 45 * MINUTE, engine.nextWakeMillis());
+
+        engine.advance(T + 45 * MINUTE - 1);
+        assertFalse(engine.isOnBreak(KID));
+        assertEquals(45 * MINUTE - 1, engine.getContinuousUsageMillis(KID, T + 45 * MINUTE - 1));
+
+        engine.advance(T + 45 * MINUTE);
+        assertTrue(engine.isOnBreak(KID));
+        assertEquals(T + 60 * MINUTE, engine.getBreakEndMillis(KID));
+        assertEquals(T + 60 * MINUTE, engine.nextWakeMillis());
+
+        engine.advance(T + 60 * MINUTE);
+        assertFalse(engine.isOnBreak(KID));
+        assertEquals(0, engine.getContinuousUsageMillis(KID, T + 60 * MINUTE));
+        assertEquals(T + 105 * MINUTE, engine.nextWakeMillis());
+    }
+
+    @Test
+    public void shortPauseKeepsCountingContinuousUse() {
+        BreakRuleEngine engine = engine(breakRule("r1", 45, 15));
+        engine.onUsageStart(KID, T);
+        engine.onUsageStop(KID, T + 30 * MINUTE);
+        engine.onUsageStart(KID, T + 40 * MINUTE);
+
+        assertEquals(40 * MINUTE, engine.getContinuousUsageMillis(KID, T + 50 * MINUTE));
+        assertEquals(T + 55 * MINUTE, engine.nextWakeMillis());
+    }
+
+    @Test
+    public void pauseAsLongAsTheBreakResetsContinuousUse() {
+        BreakRuleEngine engine = engine(breakRule("r1", 45, 15));
+        engine.onUsageStart(KID, T);
+        engine.onUsageStop(KID, T + 30 * MINUTE);
+        engine.onUsageStart(KID, T + 50 * MINUTE);
+
+        assertEquals(0, engine.getContinuousUsageMillis(KID, T + 50 * MINUTE));
+        assertEquals(T + 95 * MINUTE, engine.nextWakeMillis());
+    }
+
+    @Test
+    public void useDuringABreakDoesNotShortenIt() {
+        BreakRuleEngine engine = engine(breakRule("r1", 45, 15));
+        engine.onUsageStart(KID, T);
+        engine.advance(T + 45 * MINUTE);
+        engine.onUsageStop(KID, T + 46 * MINUTE);
+        engine.onUsageStart(KID, T + 50 * MINUTE);
+
+        assertTrue(engine.isOnBreak(KID));
+        assertEquals(T + 60 * MINUTE, engine.getBreakEndMillis(KID));
+        engine.advance(T + 60 * MINUTE);
+        assertFalse(engine.isOnBreak(KID));
+    }
+
+    @Test
+    public void breakEndingWhileIdleLeavesTheProfileIdle() {
+        BreakRuleEngine engine = engine(breakRule("r1", 45, 15));
+        engine.onUsageStart(KID, T);
+        engine.advance(T + 45 * MINUTE);
+        engine.onUsageStop(KID, T + 50 * MINUTE);
+        engine.advance(T + 60 * MINUTE);
+
+        assertFalse(engine.isOnBreak(KID));
+        assertFalse(engine.isInUse(KID));
+        assertEquals(-1, engine.nextWakeMillis());
+        assertEquals(0, engine.getTimerCount());
+    }
+
+    @Test
+    public void lateAdvanceReplaysTheExactTimeline() {
+        BreakRuleEngine engine = engine(breakRule("r1", 45, 15));
+        engine.onUsageStart(KID, T);
+
+        // One wake-up three hours later: three full cycles happened in between
+        engine.advance(T + 170 * MINUTE);
+        assertTrue(engine.isOnBreak(KID));
+        assertEquals(T + 180 * MINUTE, engine.getBreakEndMillis(KID));
+    }
+
+    @Test
+    public void strictestRuleWins() {
+        BreakRuleEngine engine = engine(breakRule("long", 90, 30), breakRule("short", 30, 5));
+        engine.onUsageStart(KID, T);
+        assertEquals(T + 30 * MINUTE, engine.nextWakeMillis());
+        engine.advance(T + 30 * MINUTE);
+        assertTrue(engine.isOnBreak(KID));
+        assertEquals(T + 35 * MINUTE, engine.getBreakEndMillis(KID));
+    }
+
+    @Test
+    public void rulesApplyToTheirProfileOnly() {
+        TimeRule family = breakRule("family", 60, 10);
+        TimeRule an = breakRule("an", 20, 5);
+        an.setProfileId("an");
+        BreakRuleEngine engine = engine(family, an);
+        engine.onUsageStart("an", T);
+        engine.onUsageStart("binh", T);
+
+        engine.advance(T + 20 * MINUTE);
+        assertTrue(engine.isOnBreak("an"));
+        assertFalse(engine.isOnBreak("binh"));
+        engine.advance(T + 60 * MINUTE);
+        assertTrue(engine.isOnBreak("binh"));
+    }
+
+    @Test
+    public void unchangedRulesKeepTheirProgress() {
+        BreakRuleEngine engine = engine(breakRule("r1", 45, 15));
+        engine.onUsageStart(KID, T);
+
+        engine.setRules(Collections.singletonList(breakRule("r1", 45, 15)), T + 30 * MINUTE);
+        assertEquals(T + 45 * MINUTE, engine.nextWakeMillis());
+
+        // A changed interval starts over
+        engine.setRules(Collections.singletonList(breakRule("r1", 40, 15)), T + 30 * MINUTE);
+        assertEquals(T + 70 * MINUTE, engine.nextWakeMillis());
+
+        engine.setRules(Collections.emptyList(), T + 31 * MINUTE);
+        assertEquals(-1, engine.nextWakeMillis());
+        assertEquals(0, engine.getTimerCount());
+    }
+
+    @Test
+    public void hundredsOfProfilesShareOneWheel() {
+        List<TimeRule> rules = new ArrayList<>();
+        rules.add(breakRule("family", 45, 15));
+        for (int p = 0; p < 200; p++) {
+            TimeRule rule = breakRule("p" + p, 20 + p % 40, 5);
+            rule.setProfileId("p" + p);
+            rules.add(rule);
+        }
+        BreakRuleEngine engine = new BreakRuleEngine();
+        engine.setRules(rules, T);
+        // Tick once a second for an hour, a profile starts using the device every 7 seconds
+        for (long now = T; now <= T + 60 * MINUTE; now += 1000) {
+            long sinceStart = now - T;
+            if (sinceStart % 7_000 == 0 && sinceStart / 7_000 < 500) {
+                engine.onUsageStart("p" + sinceStart / 7_000, now);
+            }
+            engine.advance(now);
+        }
+        assertEquals(700, engine.getTimerCount());
+
+        long now = T + 60 * MINUTE;
+        for (int p = 0; p < 500; p++) {
+            long since = now - (T + p * 7_000L);
+            long interval = (p < 200 ? 20 + p % 40 : 45) * MINUTE;
+            long cycle = interval + (p < 200 ? 5 : 15) * MINUTE;
+            // Profiles with their own rule also run the family rule; check the family-only ones exactly
+            if (p >= 200) {
+                assertEquals("profile " + p, since % cycle >= interval, engine.isOnBreak("p" + p));
+            } else if (since % cycle >= interval) {
+                assertTrue("profile " + p, engine.isOnBreak("p" + p));
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Single-thread throughput of DnsFilter against a large list.
+ * Runs with the unit tests; the rate is printed, not asserted.
+ */
+public class DnsFilterBenchmark {
+
+    private static final int LIST_SIZE = 200_000;
+    private static final int PACKETS = 4096;
+    private static final int ROUNDS = 250;
+
+    @Test
+    public void queriesPerSecondAgainstALargeList() throws Exception {
+        BlocklistSnapshot.Builder builder = new BlocklistSnapshot.Builder();
+        for (int i = 0; i < LIST_SIZE; i++) {
+            builder.add(new BlockedUrl("https://blocked" + i + ".example", 0, "parent_android", "active"));
+        }
+        BlocklistEngine engine = new BlocklistEngine();
+        engine.setSnapshot(BlocklistSnapshot.wrap(builder.toByteArray()));
+        DnsFilter filter = new DnsFilter(engine, DnsFilter.Mode.NXDOMAIN);
+
+        // Mostly allowed names, like real traffic; every 10th query is blocked
+        Random random = new Random(42);
+        ByteBuffer[] packets = new ByteBuffer[PACKETS];
+        int blockedPackets = 0;
+        for (int i = 0; i < PACKETS; i++) {
+            boolean blocked = i % 10 == 0;
+            String name = blocked
+                    ? "cdn.blocked" + random.nextInt(LIST_SIZE) + ".example"
+                    : "api" + random.nextInt(1_000_000) + ".allowed.net";
+            packets[i] = query(i, name);
+            if (blocked) blockedPackets++;
+        }
+        ByteBuffer response = ByteBuffer.allocateDirect(512);
+
+        for (int i = 0; i < PACKETS * 20; i++) {
+            filter.filter(packets[i % PACKETS], response);
+        }
+
+        long blockedBefore = filter.getBlockedCount();
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (ByteBuffer packet : packets) {
+                filter.filter(packet, response);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long queries = (long) ROUNDS * PACKETS;
+        double perSecond = queries * 1e9 / elapsed;
+        HostBloomFilter bloom = engine.getFilter();
+        // 4096 distinct names cycle through a 1024-entry cache: the worst case for the cache
+        System.out.printf("DnsFilter: %,.0f queries/s, %.0f ns/query, bloom misses %d, false positives %d, cache hit rate %.2f%n",
+                perSecond, (double) elapsed / queries, bloom.getMissCount(), bloom.getFalsePositiveCount(),
+                filter.getCache().getHitRate());
+
+        assertEquals((long) ROUNDS * blockedPackets, filter.getBlockedCount() - blockedBefore);
+    }
+
+    static ByteBuffer query(int id, String name) {
+        ByteBuffer packet = ByteBuffer.allocate(DnsQuery.HEADER_LENGTH + name.length() + 6);
+        packet.putShort((short) id).putShort((short) 0x0100).putShort((short) 1)
+                .putShort((short) 0).putShort((short) 0).putShort((short) 0);
+        for (String label : name.split("\\.")) {
+            packet.put((byte) label.length()).put(label.getBytes(StandardCharsets.US_ASCII));
+        }
+        packet.put((byte) 0).putShort((short) DnsQuery.TYPE_A).putShort((short) DnsQuery.CLASS_IN);
+        packet.flip();
+        return packet;
+    }
+}
@@ -0,0 +1,126 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class DnsFilterTest {
+
+    // dig www.youtube.com A, with an EDNS cookie option
+    static final String YOUTUBE_A =
+            "1a2b01200001000000000001"
+            + "03777777" + "07796f7574756265" + "03636f6d" + "00" + "00010001"
+            + "0000291000000000000c000a0008c4f1e2d3b4a59687";
+
+    // Browser query with 0x20 case randomization: Ads.Example.COM AAAA
+    static final String ADS_AAAA =
+            "beef01000001000000000000"
+            + "03416473" + "074578616d706c65" + "03434f4d" + "00" + "001c0001";
+
+    static ByteBuffer hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static BlocklistEngine engine(String... urls) {
+        BlocklistEngine engine = new BlocklistEngine();
+        for (int i = 0; i < urls.length; i++) {
+            BlockedUrl blockedUrl = new BlockedUrl(urls[i], 0, "parent_android", "active");
+            blockedUrl.setId("id" + i);
+            engine.put(blockedUrl);
+        }
+        return engine;
+    }
+
+    @Test
+    public void parsesCapturedQuery() {
+        DnsQuery query = new DnsQuery();
+        assertTrue(query.parse(hex(YOUTUBE_A)));
+        assertEquals(0x1a2b, query.getId());
+        assertEquals(DnsQuery.TYPE_A, query.getQuestionType());
+        assertEquals("www.youtube.com type 1", query.toString());
+    }
+
+    @Test
+    public void blockedNameGetsNxdomain() {
+        DnsFilter filter = new DnsFilter(engine("https://youtube.com"), DnsFilter.Mode.NXDOMAIN);
+        ByteBuffer response = ByteBuffer.allocate(512);
+
+        assertEquals(DnsFilter.VERDICT_BLOCKED, filter.filter(hex(YOUTUBE_A), response));
+        assertEquals(0x1a2b, response.getShort(0) & 0xFFFF);
+        assertEquals(0x8183, response.getShort(2) & 0xFFFF);   // QR, RD, RA, NXDOMAIN
+        assertEquals(1, response.getShort(4));
+        assertEquals(0, response.getShort(6));
+        assertEquals(0, response.getShort(10));
+        assertEquals(12 + 17 + 4, response.limit());
+    }
+
+    @Test
+    public void sinkholeAnswersWithUnspecifiedAddress() {
+        DnsFilter filter = new DnsFilter(engine("https://example.com"), DnsFilter.Mode.SINKHOLE);
+        ByteBuffer response = ByteBuffer.allocate(512);
+
+        assertEquals(DnsFilter.VERDICT_BLOCKED, filter.filter(hex(ADS_AAAA), response));
+        assertEquals(0x8180, response.getShort(2) & 0xFFFF);
+        assertEquals(1, response.getShort(6));
+        int answer = 12 + 17 + 4;
+        assertEquals(0xC00C, response.getShort(answer) & 0xFFFF);
+        assertEquals(DnsQuery.TYPE_AAAA, response.getShort(answer + 2));
+        assertEquals(16, response.getShort(answer + 10));
+        assertEquals(answer + 12 + 16, response.limit());
+        // The question keeps the case the client sent
+        assertEquals('A', response.get(13));
+    }
+
+    @Test
+    public void allowedNamesAreForwarded() {
+        DnsFilter filter = new DnsFilter(engine("https://facebook.com"), DnsFilter.Mode.NXDOMAIN);
+        ByteBuffer response = ByteBuffer.allocate(512);
+
+        assertEquals(DnsFilter.VERDICT_FORWARD, filter.filter(hex(YOUTUBE_A), response));
+        assertEquals(0, response.position());
+        assertEquals(1, filter.getQueryCount());
+        assertEquals(0, filter.getBlockedCount());
+    }
+
+    @Test
+    public void malformedPacketsAreRejected() {
+        DnsFilter filter = new DnsFilter(engine("https://youtube.com"), DnsFilter.Mode.NXDOMAIN);
+        ByteBuffer response = ByteBuffer.allocate(512);
+
+        // Truncated inside the name
+        assertEquals(DnsFilter.VERDICT_MALFORMED, filter.filter(hex(YOUTUBE_A.substring(0, 40)), response));
+        // Response bit set
+        assertEquals(DnsFilter.VERDICT_MALFORMED, filter.filter(hex("1a2b81800001000000000000" + "0000010001"), response));
+        // Compression pointer pointing at itself
+        assertEquals(DnsFilter.VERDICT_MALFORMED, filter.filter(hex("1a2b01000001000000000000" + "c00c0001"), response));
+        assertEquals(3, filter.getMalformedCount());
+    }
+
+    @Test
+    public void compressedQuestionIsReEncoded() {
+        // Name "youtube.com" via a pointer to labels stored after the question
+        ByteBuffer packet = hex("000101000001000000000000" + "c012" + "00010001" + "07796f757475626503636f6d00");
+        DnsFilter filter = new DnsFilter(engine("https://youtube.com"), DnsFilter.Mode.NXDOMAIN);
+        ByteBuffer response = ByteBuffer.allocate(512);
+
+        assertEquals(DnsFilter.VERDICT_BLOCKED, filter.filter(packet, response));
+        assertEquals(7, response.get(12));
+        assertEquals(12 + 13 + 4, response.limit());
+    }
+
+    @Test
+    public void queryAtBufferOffsetIsParsedInPlace() {
+        ByteBuffer framed = hex("45000000" + ADS_AAAA);
+        framed.position(4);
+        DnsFilter filter = new DnsFilter(engine("https://example.com"), DnsFilter.Mode.NXDOMAIN);
+
+        assertEquals(DnsFilter.VERDICT_BLOCKED, filter.filter(framed, ByteBuffer.allocate(512)));
+        assertEquals(4, framed.position());
+    }
+}
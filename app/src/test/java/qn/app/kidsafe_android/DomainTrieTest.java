@@ -0,0 +1,81 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DomainTrieTest {
+
+    private static BlockedUrl url(String id, String url, String status) {
+        BlockedUrl blockedUrl = new BlockedUrl(url, 0, "parent_android", status);
+        blockedUrl.setId(id);
+        return blockedUrl;
+    }
+
+    @Test
+    public void matchesExactAndSubdomains() {
+        DomainTrie trie = new DomainTrie();
+        trie.update(Arrays.asList(url("a", "https://facebook.com", "active")));
+
+        assertTrue(trie.containsHost("facebook.com"));
+        assertTrue(trie.isBlocked("facebook.com"));
+        assertTrue(trie.isBlocked("m.facebook.com"));
+        assertFalse(trie.containsHost("m.facebook.com"));
+        assertFalse(trie.isBlocked("notfacebook.com"));
+        assertFalse(trie.isBlocked("com"));
+    }
+
+    @Test
+    public void pathEntriesOnlyCountAsDuplicates() {
+        DomainTrie trie = new DomainTrie();
+        trie.update(Arrays.asList(url("a", "https://youtube.com/gaming", "active")));
+
+        assertTrue(trie.containsUrl("https://youtube.com/gaming/"));
+        assertFalse(trie.containsUrl("https://youtube.com"));
+        assertFalse(trie.isBlocked("youtube.com"));
+    }
+
+    @Test
+    public void pausedEntriesDoNotBlock() {
+        DomainTrie trie = new DomainTrie();
+        trie.update(Arrays.asList(url("a", "https://tiktok.com", "paused")));
+
+        assertTrue(trie.containsUrl("https://tiktok.com"));
+        assertFalse(trie.isBlocked("tiktok.com"));
+    }
+
+    @Test
+    public void updateAppliesOnlyTheDelta() {
+        DomainTrie trie = new DomainTrie();
+        List<BlockedUrl> list = new ArrayList<>();
+        list.add(url("a", "https://facebook.com", "active"));
+        list.add(url("b", "https://youtube.com", "active"));
+        trie.update(list);
+        assertEquals(2, trie.size());
+
+        list.remove(0);
+        list.add(url("c", "https://roblox.com", "active"));
+        trie.update(list);
+
+        assertEquals(2, trie.size());
+        assertFalse(trie.isBlocked("facebook.com"));
+        assertTrue(trie.isBlocked("youtube.com"));
+        assertTrue(trie.isBlocked("games.roblox.com"));
+    }
+
+    @Test
+    public void sharedHostSurvivesRemovalOfOneEntry() {
+        DomainTrie trie = new DomainTrie();
+        trie.put(url("a", "https://facebook.com", "active"));
+        trie.put(url("b", "https://facebook.com/groups", "active"));
+
+        trie.remove("a");
+
+        assertFalse(trie.isBlocked("facebook.com"));
+        assertTrue(trie.containsUrl("https://facebook.com/groups"));
+    }
+}
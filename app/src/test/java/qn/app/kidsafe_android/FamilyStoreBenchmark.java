@@ -0,0 +1,62 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Time to open a FamilyStore of 5,000 blocked URLs and decode them, what a screen waits
+ * for before showing the cached list. Runs with the unit tests; the time is printed,
+ * not asserted.
+ */
+public class FamilyStoreBenchmark {
+
+    private static final long T = 1_715_760_000_000L;
+    private static final int URLS = 5_000;
+    private static final int ROUNDS = 20;
+
+    private static Map<String, Object> url(String url, long addedAt) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("url", url);
+        data.put("addedAt", addedAt);
+        data.put("addedBy", "parent_android");
+        data.put("status", "active");
+        return data;
+    }
+
+    @Test
+    public void openAndDecodeThousandsOfUrls() throws IOException {
+        File file = File.createTempFile("family", ".store");
+        file.delete();
+        try {
+            FamilyStore store = FamilyStore.open(file);
+            for (int i = 0; i < URLS; i++) {
+                store.putRemote("blockedUrls/-N" + i, url("blocked" + i + ".example", T + i));
+            }
+            store.close();
+
+            long best = Long.MAX_VALUE;
+            // The first rounds warm up the JIT
+            for (int round = 0; round < ROUNDS + ROUNDS / 4; round++) {
+                long start = System.nanoTime();
+                FamilyStore reopened = FamilyStore.open(file);
+                List<BlockedUrl> urls = reopened.getBlockedUrls();
+                long elapsed = System.nanoTime() - start;
+                reopened.close();
+                assertEquals(URLS, urls.size());
+                if (round >= ROUNDS / 4) best = Math.min(best, elapsed);
+            }
+            System.out.printf("FamilyStore: %d URLs opened and decoded in %.2f ms (best of %d)%n",
+                    URLS, best / 1e6, ROUNDS);
+        } finally {
+            file.delete();
+            new File(file.getPath() + ".tmp").delete();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package qn.app.kidsafe_android;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FamilyStoreTest {
+
+    private static final long T = 1_715_760_000_000L;
+
+    private File file;
+    private FamilyStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("family", ".store");
+        file.delete();
+        store = FamilyStore.open(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    private FamilyStore reopen() throws IOException {
+        store.close();
+        store = FamilyStore.open(file);
+        return store;
+    }
+
+    private static Map<String, Object> url(String url, Object addedAt) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("url", url);
+        data.put("addedAt", addedAt);
+        data.put("addedBy", "parent_android");
+        data.put("status", "active");
+        return data;
+    }
+
+    private static Map<String, Object> serverTimestamp() {
+        return Collections.singletonMap(".sv", "timestamp");
+    }
+
+    @Test
+    public void localWriteIsVisibleAtOnceAndSurvivesARestart() throws IOException {
+        long seq = store.write("blockedUrls/-N1", url("facebook.com", serverTimestamp()), T);
+
+        List<BlockedUrl> urls = store.getBlockedUrls();
+        assertEquals(1, urls.size());
+        assertEquals("-N1", urls.get(0).getId());
+        assertEquals(T, urls.get(0).getAddedAt());
+
+        reopen();
+        assertEquals("facebook.com", store.getBlockedUrls().get(0).getUrl());
+        List<FamilyStore.Op> pending = store.getPending();
+        assertEquals(1, pending.size());
+        assertEquals(seq, pending.get(0).getSeq());
+        // Sent to Firebase as written, placeholder included
+        assertEquals(serverTimestamp(), ((Map<?, ?>) pending.get(0).getValue()).get("addedAt"));
+    }
+
+    @Test
+    public void pendingWriteWinsOverRemoteUntilAcknowledged() throws IOException {
+        store.putRemote("blockedUrls/-N1", url("facebook.com", T));
+        long seq = store.write("blockedUrls/-N1", null, T + 1);
+        assertTrue(store.getBlockedUrls().isEmpty());
+        assertTrue(store.hasPending("blockedUrls/-N1"));
+
+        // The old value arrives again from a listener before the delete is committed
+        store.putRemote("blockedUrls/-N1", url("facebook.com", T));
+        assertTrue(store.getBlockedUrls().isEmpty());
+
+        store.acknowledge(seq);
+        assertTrue(store.getPending().isEmpty());
+        assertFalse(store.hasPending("blockedUrls/-N1"));
+        assertTrue(reopen().getBlockedUrls().isEmpty());
+        assertNull(store.get("blockedUrls/-N1"));
+    }
+
+    @Test
+    public void discardedWriteIsGoneAfterARestartAndTheOlderOneShowsAgain() throws IOException {
+        long first = store.write("blockedUrls/-N1", url("a.com", T), T);
+        long second = store.write("blockedUrls/-N1", url("b.com", T), T);
+        store.discard(second);
+        assertEquals("a.com", store.getBlockedUrls().get(0).getUrl());
+
+        reopen();
+        assertEquals(first, store.getLatestPending("blockedUrls/-N1").getSeq());
+        assertEquals(1, store.getPending().size());
+        store.discard(first);
+        assertFalse(store.hasPending("blockedUrls/-N1"));
+        assertTrue(reopen().getBlockedUrls().isEmpty());
+    }
+
+    @Test
+    public void sequenceNumbersContinueAfterARestart() throws IOException {
+        long first = store.write("timeRules/r1", null, T);
+        long second = reopen().write("timeRules/r2", null, T);
+        assertTrue(second > first);
+        store.acknowledge(first);
+        assertEquals(1, reopen().getPending().size());
+        assertEquals(second, store.getPending().get(0).getSeq());
+    }
+
+    @Test
+    public void replaceRemoteDropsChildrenRemovedOnTheServer() throws IOException {
+        TimeRule rule = TimeRule.createDailyLimit("Ngày thường", 120);
+        Map<String, Object> children = new HashMap<>();
+        children.put("r1", SnapshotMapper.writeTimeRule(rule));
+        children.put("r2", SnapshotMapper.writeTimeRule(rule));
+        store.replaceRemote(FamilyStore.TIME_RULES, children);
+        store.putRemote("blockedUrls/-N1", url("facebook.com", T));
+
+        children.remove("r1");
+        store.replaceRemote(FamilyStore.TIME_RULES, children);
+        store.flush();
+
+        reopen();
+        List<TimeRule> rules = store.getTimeRules();
+        assertEquals(1, rules.size());
+        assertEquals("r2", rules.get(0).getId());
+        assertEquals(120, rules.get(0).getDailyLimitMinutes());
+        assertEquals(1, store.getBlockedUrls().size());
+    }
+
+    @Test
+    public void unchangedRemoteValuesAreNotLoggedAgain() throws IOException {
+        TimeRule rule = TimeRule.createAccessSchedule("Giờ học", "08:00", "17:00", Arrays.asList(1, 2, 3));
+        // Integers in the model map, Longs from Firebase: the same value
+        store.putRemote("timeRules/r1", SnapshotMapper.writeTimeRule(rule));
+        int records = store.getRecordCount();
+        store.putRemote("timeRules/r1", FamilyStore.normalize(SnapshotMapper.writeTimeRule(rule), 0));
+        assertEquals(records, store.getRecordCount());
+    }
+
+    @Test
+    public void tornTailIsCutOffAndLaterWritesSurvive() throws IOException {
+        store.write("blockedUrls/-N1", url("a.com", T), T);
+        store.write("blockedUrls/-N2", url("b.com", T), T);
+        store.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        store = FamilyStore.open(file);
+        assertEquals(1, store.getBlockedUrls().size());
+        store.write("blockedUrls/-N3", url("c.com", T), T);
+
+        reopen();
+        assertEquals(2, store.getBlockedUrls().size());
+        assertEquals("c.com", store.getBlockedUrls().get(1).getUrl());
+    }
+
+    @Test
+    public void compactionKeepsBaseAndPendingWrites() throws IOException {
+        long seq = store.write("blockedUrls/-Pending", url("pending.com", T), T);
+        for (int i = 0; i < FamilyStore.MIN_COMPACT_RECORDS * 2; i++) {
+            store.putRemote("blockedUrls/-N1", url("v" + i + ".com", T));
+        }
+        assertTrue(store.getRecordCount() < FamilyStore.MIN_COMPACT_RECORDS);
+
+        reopen();
+        assertEquals(2, store.getBlockedUrls().size());
+        assertEquals(seq, store.getPending().get(0).getSeq());
+        assertEquals("v" + (FamilyStore.MIN_COMPACT_RECORDS * 2 - 1) + ".com",
+                SnapshotMapper.readBlockedUrl("-N1", store.get("blockedUrls/-N1")).getUrl());
+    }
+
+    @Test
+    public void newestBlockedUrlsFollowPendingWrites() throws IOException {
+        for (int i = 0; i < 200; i++) {
+            store.putRemote("blockedUrls/-N" + (1000 + i), url("blocked" + i + ".example", T + i));
+        }
+        // Same addedAt, the larger key first
+        store.putRemote("blockedUrls/-N0999", url("tie.example", T + 199));
+        store.write("blockedUrls/-N1000", null, T);
+        store.write("blockedUrls/-N2000", url("new.example", serverTimestamp()), T + 500);
+
+        List<BlockedUrl> newest = store.getNewestBlockedUrls(3);
+        assertEquals(3, newest.size());
+        assertEquals("-N2000", newest.get(0).getId());
+        assertEquals(T + 500, newest.get(0).getAddedAt());
+        assertEquals("-N1199", newest.get(1).getId());
+        assertEquals("-N0999", newest.get(2).getId());
+        assertEquals(201, store.getNewestBlockedUrls(1_000).size());
+    }
+
+    @Test
+    public void thousandsOfEntriesSurviveAReopen() throws IOException {
+        for (int i = 0; i < 5_000; i++) {
+            store.putRemote("blockedUrls/-N" + i, url("blocked" + i + ".example", T + i));
+        }
+        store.flush();
+
+        reopen();
+        List<BlockedUrl> urls = store.getBlockedUrls();
+        assertEquals(5_000, urls.size());
+        assertEquals("blocked4999.example",
+                SnapshotMapper.readBlockedUrl("-N4999", store.get("blockedUrls/-N4999")).getUrl());
+    }
+}
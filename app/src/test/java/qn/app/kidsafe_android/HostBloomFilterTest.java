@@ -0,0 +1,72 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class HostBloomFilterTest {
+
+    @Test
+    public void addedHostsAndSubdomainsAreNeverMissed() {
+        HostBloomFilter filter = new HostBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("site" + i + ".com");
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightBlock("site" + i + ".com"));
+            assertTrue(filter.mightBlock("www.site" + i + ".com"));
+        }
+    }
+
+    @Test
+    public void falsePositiveRateStaysNearTarget() {
+        HostBloomFilter filter = new HostBloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add("blocked" + i + ".net");
+        }
+
+        int positives = 0;
+        for (int i = 0; i < 20000; i++) {
+            if (filter.mightBlock("allowed" + i + ".org")) positives++;
+        }
+        // Two probes per host ("allowedN.org" and "org"), so allow a little over 2x the target
+        assertTrue("false positives: " + positives, positives < 20000 * 0.03);
+        assertEquals(20000 - positives, filter.getMissCount());
+        assertEquals(positives, filter.getHitCount());
+    }
+
+    @Test
+    public void removedHostsAreForgotten() {
+        HostBloomFilter filter = new HostBloomFilter(100, 0.001);
+        filter.add("facebook.com");
+        filter.add("facebook.com");
+        filter.remove("facebook.com");
+        assertTrue(filter.mightBlock("facebook.com"));
+
+        filter.remove("facebook.com");
+        assertFalse(filter.mightBlock("facebook.com"));
+        assertEquals(0, filter.size());
+    }
+
+    @Test
+    public void bytesHashLikeStringsIgnoringCase() {
+        HostBloomFilter filter = new HostBloomFilter(100, 0.001);
+        filter.add("youtube.com");
+        byte[] name = "..M.YouTube.COM".getBytes(StandardCharsets.US_ASCII);
+
+        assertTrue(filter.mightBlock(name, 2, name.length - 2));
+        assertFalse(filter.mightBlock(name, 2, 5));
+    }
+
+    @Test
+    public void reportsOverCapacity() {
+        HostBloomFilter filter = new HostBloomFilter(16, 0.01);
+        for (int i = 0; i <= 16; i++) {
+            filter.add("h" + i + ".com");
+        }
+        assertTrue(filter.isOverCapacity());
+    }
+}
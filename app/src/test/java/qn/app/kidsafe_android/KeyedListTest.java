@@ -0,0 +1,130 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KeyedListTest {
+
+    private final List<String> events = new ArrayList<>();
+
+    private KeyedList<String> newList() {
+        KeyedList<String> list = new KeyedList<>();
+        list.setListener(new KeyedList.Listener() {
+            @Override
+            public void onItemInserted(int position) {
+                events.add("insert " + position);
+            }
+
+            @Override
+            public void onItemChanged(int position) {
+                events.add("change " + position);
+            }
+
+            @Override
+            public void onItemRemoved(int position) {
+                events.add("remove " + position);
+            }
+
+            @Override
+            public void onReset() {
+                events.add("reset");
+            }
+        });
+        return list;
+    }
+
+    @Test
+    public void childEventsBecomeSingleItemNotifications() {
+        KeyedList<String> list = newList();
+        list.add("k1", null, "a");
+        list.add("k2", "k1", "b");
+        list.add("k3", "k2", "c");
+        list.set("k2", "B");
+        list.remove("k1");
+
+        assertEquals(Arrays.asList("B", "c"), list.getItems());
+        assertEquals(Arrays.asList("insert 0", "insert 1", "insert 2", "change 1", "remove 0"), events);
+    }
+
+    @Test
+    public void positionsStayCorrectAfterMiddleEdits() {
+        KeyedList<String> list = newList();
+        list.add("k1", null, "a");
+        list.add("k3", "k1", "c");
+        list.add("k2", "k1", "b");
+        list.add("k0", null, "z");
+
+        assertEquals(Arrays.asList("z", "a", "b", "c"), list.getItems());
+        assertEquals(3, list.indexOf("k3"));
+
+        list.remove("k1");
+        assertEquals(1, list.indexOf("k2"));
+        assertEquals(2, list.indexOf("k3"));
+        assertEquals(-1, list.indexOf("k1"));
+    }
+
+    @Test
+    public void duplicateAddIsAChange() {
+        KeyedList<String> list = newList();
+        list.add("k1", null, "a");
+        list.add("k1", null, "a2");
+
+        assertEquals(1, list.size());
+        assertEquals("a2", list.get("k1"));
+        assertEquals("change 0", events.get(1));
+    }
+
+    @Test
+    public void addSortedKeepsOrderAcrossPages() {
+        KeyedList<String> list = newList();
+        Comparator<String> descending = Comparator.reverseOrder();
+        assertTrue(list.addSorted("k5", "5", descending));
+        assertTrue(list.addSorted("k9", "9", descending));
+        assertTrue(list.addSorted("k1", "1", descending));
+        assertTrue(list.addSorted("k7", "7", descending));
+        assertFalse(list.addSorted("k7", "7", descending));
+
+        assertEquals(Arrays.asList("9", "7", "5", "1"), list.getItems());
+        assertEquals("1", list.getLast());
+        assertEquals(1, list.indexOf("k7"));
+    }
+
+    @Test
+    public void newestFirstInsertsAndRemovesAtTheTop() {
+        KeyedList<String> list = newList();
+        Comparator<String> descending = Comparator.reverseOrder();
+        for (int i = 1; i <= 5; i++) {
+            list.addSorted("k" + i, String.valueOf(i), descending);
+        }
+        list.remove("k5");
+        list.addSorted("k0", "0", descending);
+
+        assertEquals(Arrays.asList("4", "3", "2", "1", "0"), list.getItems());
+        assertEquals(Arrays.asList("insert 0", "insert 0", "insert 0", "insert 0", "insert 0",
+                "remove 0", "insert 4"), events);
+        assertEquals(0, list.indexOf("k4"));
+        assertEquals(3, list.indexOf("k1"));
+        assertEquals(4, list.indexOf("k0"));
+        assertEquals("0", list.getLast());
+    }
+
+    @Test
+    public void replaceAllIsOneReset() {
+        KeyedList<String> list = newList();
+        list.add("k1", null, "a");
+        list.replaceAll(Arrays.asList("x", "y", "z"), item -> "k" + item);
+
+        assertEquals(Arrays.asList("x", "y", "z"), list.getItems());
+        assertEquals(Arrays.asList("insert 0", "reset"), events);
+        assertEquals(-1, list.indexOf("k1"));
+        assertEquals(2, list.indexOf("kz"));
+        list.add("kw", null, "w");
+        assertEquals(3, list.indexOf("kz"));
+    }
+}
@@ -0,0 +1,235 @@
+package qn.app.kidsafe_android;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OutboxTest {
+
+    private static final class Send {
+        final String path;
+        final Object value;
+        final int attempt;
+        final Outbox.Callback callback;
+
+        Send(String path, Object value, int attempt, Outbox.Callback callback) {
+            this.path = path;
+            this.value = value;
+            this.attempt = attempt;
+            this.callback = callback;
+        }
+    }
+
+    private static final class FakeDelay implements SharedNode.Delay {
+        Runnable pending;
+        long delayMillis;
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            pending = task;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            if (pending == task) pending = null;
+        }
+
+        void elapse() {
+            Runnable task = pending;
+            pending = null;
+            if (task != null) task.run();
+        }
+    }
+
+    private final List<Send> sends = new ArrayList<>();
+    private final List<Long> committed = new ArrayList<>();
+    private final FakeDelay delay = new FakeDelay();
+    private long now = 1_000_000;
+    private File file;
+    private FamilyStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("outbox", ".store");
+        file.delete();
+        store = FamilyStore.open(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        file.delete();
+    }
+
+    private Outbox outbox(int window) {
+        return new Outbox(store, (path, value, attempt, callback) -> sends.add(new Send(path, value, attempt, callback)),
+                (op, latencyMillis) -> committed.add(latencyMillis), delay, () -> now, new Random(7), window);
+    }
+
+    @Test
+    public void failedSendIsRetriedWithJitteredExponentialBackoff() throws IOException {
+        Outbox outbox = outbox(4);
+        outbox.enqueue("blockedUrls/-N1", "facebook.com");
+        assertEquals(1, sends.size());
+
+        sends.get(0).callback.onFailure(new IOException("offline"));
+        assertTrue(delay.delayMillis >= 500 && delay.delayMillis <= 1_000);
+        // A write to another path does not resend the waiting op early
+        outbox.enqueue("blockedUrls/-N2", "youtube.com");
+        assertEquals(2, sends.size());
+        assertEquals("blockedUrls/-N2", sends.get(1).path);
+
+        now += delay.delayMillis;
+        delay.elapse();
+        assertEquals("blockedUrls/-N1", sends.get(2).path);
+        sends.get(2).callback.onFailure(new IOException("offline"));
+        assertTrue(delay.delayMillis >= 1_000 && delay.delayMillis <= 2_000);
+
+        outbox.retryNow();
+        sends.get(3).callback.onSuccess();
+        Outbox.Stats stats = outbox.getStats();
+        assertEquals(2, stats.getRetries());
+        assertEquals(1, stats.getCommitted());
+        assertEquals(1, stats.getQueueDepth());
+        assertFalse(store.hasPending("blockedUrls/-N1"));
+    }
+
+    @Test
+    public void rejectedWriteIsDroppedAndTheRemoteValueShowsAgain() throws IOException {
+        store.putRemote("blockedUrls/-N1", "facebook.com");
+        List<String> rejected = new ArrayList<>();
+        Outbox outbox = new Outbox(store, (path, value, attempt, callback) -> sends.add(new Send(path, value, attempt, callback)),
+                new Outbox.Listener() {
+                    @Override
+                    public void onCommitted(FamilyStore.Op op, long latencyMillis) {
+                        committed.add(latencyMillis);
+                    }
+
+                    @Override
+                    public void onRejected(FamilyStore.Op op, Exception e) {
+                        rejected.add(op.getPath());
+                    }
+                }, delay, () -> now, new Random(7), 4);
+        outbox.enqueue("blockedUrls/-N1", "youtube.com");
+        outbox.enqueue("blockedUrls/-N2", "tiktok.com");
+
+        // Refused together: both are retried, each on its own
+        sends.get(0).callback.onFailure(new IOException("permission denied"));
+        sends.get(1).callback.onFailure(new IOException("permission denied"));
+        now += 2_000;
+        delay.elapse();
+        assertEquals(2, sends.get(2).attempt);
+        assertEquals(2, sends.get(3).attempt);
+
+        sends.get(2).callback.onRejected(new IOException("permission denied"));
+        sends.get(3).callback.onSuccess();
+        assertEquals(Collections.singletonList("blockedUrls/-N1"), rejected);
+        assertEquals("facebook.com", store.get("blockedUrls/-N1"));
+        assertFalse(store.hasPending("blockedUrls/-N1"));
+        assertEquals(1, committed.size());
+        // Not sent again
+        now += Outbox.MAX_DELAY_MS;
+        delay.elapse();
+        outbox.retryNow();
+        assertEquals(4, sends.size());
+        assertEquals(0, outbox.getStats().getQueueDepth());
+    }
+
+    @Test
+    public void addThenDeleteOfAnUnsentEntrySendsNothing() throws IOException {
+        Outbox outbox = outbox(1);
+        outbox.enqueue("timeRules/r1", "busy");
+        outbox.enqueue("blockedUrls/-N1", "facebook.com");
+
+        assertEquals(Outbox.NO_OP, outbox.enqueue("blockedUrls/-N1", null));
+        assertNull(store.get("blockedUrls/-N1"));
+
+        sends.get(0).callback.onSuccess();
+        assertEquals(1, sends.size());
+        assertEquals(0, outbox.getStats().getQueueDepth());
+    }
+
+    @Test
+    public void deleteOfARemoteEntryIsStillSent() throws IOException {
+        store.putRemote("blockedUrls/-N1", "facebook.com");
+        Outbox outbox = outbox(1);
+        outbox.enqueue("timeRules/r1", "busy");
+        outbox.enqueue("blockedUrls/-N1", "facebook.com/edited");
+
+        assertNotEquals(Outbox.NO_OP, outbox.enqueue("blockedUrls/-N1", null));
+        sends.get(0).callback.onSuccess();
+        assertEquals(2, sends.size());
+        assertEquals("blockedUrls/-N1", sends.get(1).path);
+        assertNull(sends.get(1).value);
+    }
+
+    @Test
+    public void onlyTheLatestQueuedWriteToAPathIsSent() throws IOException {
+        Outbox outbox = outbox(1);
+        outbox.enqueue("timeRules/r0", "busy");
+        outbox.enqueue("timeRules/r1", "v1");
+        outbox.enqueue("timeRules/r1", "v2");
+        outbox.enqueue("timeRules/r1", "v3");
+
+        sends.get(0).callback.onSuccess();
+        assertEquals(2, sends.size());
+        assertEquals("v3", sends.get(1).value);
+        assertEquals(1, store.getPending().size());
+    }
+
+    @Test
+    public void windowBoundsSendsAndWritesToAPathStayInOrder() throws IOException {
+        Outbox outbox = outbox(2);
+        outbox.enqueue("blockedUrls/-N1", "a");
+        outbox.enqueue("blockedUrls/-N2", "b");
+        outbox.enqueue("blockedUrls/-N3", "c");
+        assertEquals(2, sends.size());
+        assertEquals(2, outbox.getStats().getInFlight());
+
+        // In flight already, so the later write waits for it instead of replacing it
+        outbox.enqueue("blockedUrls/-N1", "a2");
+        sends.get(1).callback.onSuccess();
+        assertEquals("blockedUrls/-N3", sends.get(2).path);
+        sends.get(0).callback.onSuccess();
+        assertEquals("a2", sends.get(3).value);
+    }
+
+    @Test
+    public void writesLeftInTheLogAreResentAfterARestart() throws IOException {
+        outbox(4).enqueue("blockedUrls/-N1", "facebook.com");
+        store.close();
+        sends.clear();
+
+        store = FamilyStore.open(file);
+        Outbox outbox = outbox(4);
+        outbox.drain();
+        assertEquals(1, sends.size());
+        // It may have reached Firebase before the restart, so a delete must be sent too
+        assertNotEquals(Outbox.NO_OP, outbox.enqueue("blockedUrls/-N1", null));
+
+        now += 250;
+        sends.get(0).callback.onSuccess();
+        assertEquals(Long.valueOf(250), committed.get(0));
+        assertNull(sends.get(1).value);
+    }
+
+    @Test
+    public void backoffIsCapped() {
+        Random random = new Random(1);
+        for (int attempts = 1; attempts < 64; attempts++) {
+            long wait = Outbox.backoff(attempts, random);
+            assertTrue(wait >= Math.min(Outbox.BASE_DELAY_MS << Math.min(attempts - 1, 20), Outbox.MAX_DELAY_MS) / 2);
+            assertTrue(wait <= Outbox.MAX_DELAY_MS);
+        }
+    }
+}
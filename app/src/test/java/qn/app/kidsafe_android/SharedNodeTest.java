@@ -0,0 +1,211 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SharedNodeTest {
+
+    private static final long LINGER = 30_000;
+
+    private static final class FakeSource implements SharedNode.Source<String> {
+        SharedNode<String> node;
+        int attaches;
+        int detaches;
+        int suspends;
+        int resumes;
+
+        @Override
+        public void attach(SharedNode<String> node) {
+            this.node = node;
+            attaches++;
+        }
+
+        @Override
+        public void detach() {
+            detaches++;
+        }
+
+        @Override
+        public void suspend() {
+            suspends++;
+        }
+
+        @Override
+        public void resume(SharedNode<String> node) {
+            resumes++;
+        }
+    }
+
+    /** Keeps at most one pending task, like Handler with a single Runnable */
+    private static final class FakeDelay implements SharedNode.Delay {
+        Runnable pending;
+        long delayMillis;
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            pending = task;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            if (pending == task) pending = null;
+        }
+
+        void elapse() {
+            Runnable task = pending;
+            pending = null;
+            if (task != null) task.run();
+        }
+    }
+
+    private final FakeSource source = new FakeSource();
+    private final FakeDelay delay = new FakeDelay();
+    private final SharedNode<String> node = new SharedNode<>(source, delay, LINGER);
+
+    private static SharedNode.Observer<String> recorder(List<String> seen) {
+        return (value, replayed) -> seen.add((replayed ? "replay:" : "") + value);
+    }
+
+    @Test
+    public void oneListenerForAllSubscribers() {
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        node.subscribe(recorder(first));
+        node.subscribe(recorder(second));
+        assertEquals(1, source.attaches);
+
+        source.node.publish("v1");
+        assertEquals("[v1]", first.toString());
+        assertEquals("[v1]", second.toString());
+    }
+
+    @Test
+    public void lateSubscriberGetsTheDecodedValueWithoutANewAttach() {
+        SharedNode.Subscription screen = node.subscribe(recorder(new ArrayList<>()));
+        source.node.publish("v1");
+        screen.close();
+
+        // Screen recreated within the linger window
+        List<String> seen = new ArrayList<>();
+        node.subscribe(recorder(seen));
+        delay.elapse();
+        assertEquals("[replay:v1]", seen.toString());
+        assertEquals(1, source.attaches);
+        assertEquals(0, source.detaches);
+    }
+
+    @Test
+    public void detachesOnceTheLastSubscriberLeftAndTheLingerPassed() {
+        SharedNode.Subscription a = node.subscribe(recorder(new ArrayList<>()));
+        SharedNode.Subscription b = node.subscribe(recorder(new ArrayList<>()));
+        source.node.publish("v1");
+
+        a.close();
+        assertNull(delay.pending);
+        b.close();
+        b.close();
+        assertEquals(LINGER, delay.delayMillis);
+        assertTrue(node.isAttached());
+
+        delay.elapse();
+        assertFalse(node.isAttached());
+        assertEquals(1, source.detaches);
+        assertNull(node.getValue());
+
+        // The stale value is not replayed after a real detach
+        List<String> seen = new ArrayList<>();
+        node.subscribe(recorder(seen));
+        assertEquals(2, source.attaches);
+        assertTrue(seen.isEmpty());
+    }
+
+    @Test
+    public void observerCanUnsubscribeFromItsCallback() {
+        List<String> seen = new ArrayList<>();
+        SharedNode.Subscription[] self = new SharedNode.Subscription[1];
+        self[0] = node.subscribe((value, replayed) -> {
+            seen.add(value);
+            self[0].close();
+        });
+        node.subscribe(recorder(seen));
+        source.node.publish("v1");
+        source.node.publish("v2");
+
+        assertEquals("[v1, v1, v2]", seen.toString());
+        assertEquals(1, node.getSubscriberCount());
+    }
+
+    @Test
+    public void errorsReachEverySubscriber() {
+        String[] errors = new String[2];
+        for (int i = 0; i < 2; i++) {
+            int index = i;
+            node.subscribe(new SharedNode.Observer<String>() {
+                @Override
+                public void onValue(String value, boolean replayed) {
+                }
+
+                @Override
+                public void onError(String message) {
+                    errors[index] = message;
+                }
+            });
+        }
+        source.node.fail("Permission denied");
+        assertEquals("Permission denied", errors[0]);
+        assertEquals("Permission denied", errors[1]);
+    }
+
+    @Test
+    public void suspendKeepsSubscribersAndValueForTheResume() {
+        List<String> seen = new ArrayList<>();
+        node.subscribe(recorder(seen));
+        source.node.publish("v1");
+
+        node.suspend();
+        assertFalse(node.isAttached());
+        assertTrue(node.isSuspended());
+        assertEquals("v1", node.getValue());
+        assertEquals(0, source.detaches);
+
+        node.resume();
+        assertTrue(node.isAttached());
+        assertEquals(1, source.resumes);
+        assertEquals(1, source.attaches);
+        source.node.publish("v2");
+        assertEquals("[v1, v2]", seen.toString());
+    }
+
+    @Test
+    public void subscribingToASuspendedNodeResumesIt() {
+        node.subscribe(recorder(new ArrayList<>()));
+        source.node.publish("v1");
+        node.suspend();
+
+        List<String> seen = new ArrayList<>();
+        node.subscribe(recorder(seen));
+        assertEquals(1, source.resumes);
+        assertEquals(1, source.attaches);
+        assertEquals("[replay:v1]", seen.toString());
+    }
+
+    @Test
+    public void suspendedNodeNobodyUsesIsReleased() {
+        SharedNode.Subscription screen = node.subscribe(recorder(new ArrayList<>()));
+        source.node.publish("v1");
+        node.suspend();
+        screen.close();
+
+        delay.elapse();
+        assertEquals(1, source.detaches);
+        assertFalse(node.isSuspended());
+        assertNull(node.getValue());
+        node.resume();
+        assertEquals(0, source.resumes);
+    }
+}
@@ -0,0 +1,147 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Parse time per 10k children for SnapshotMapper, next to a reflective bean mapper that
+ * works like getValue(Class) (setters looked up once per class, invoked per property).
+ * Runs with the unit tests; the times are printed, the assertion only guards against
+ * the hand-written mapper becoming slower than reflection.
+ */
+public class SnapshotMapperBenchmark {
+
+    private static final int CHILDREN = 10_000;
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void parsesTenThousandChildren() throws Exception {
+        List<Map<String, Object>> urls = new ArrayList<>();
+        List<Map<String, Object>> rules = new ArrayList<>();
+        for (int i = 0; i < CHILDREN; i++) {
+            Map<String, Object> url = new HashMap<>();
+            url.put("url", "blocked" + i + ".example");
+            url.put("addedAt", 1715760000000L + i);
+            url.put("addedBy", "parent_android");
+            url.put("status", "active");
+            urls.add(url);
+
+            Map<String, Object> rule = new HashMap<>();
+            rule.put("name", "Quy tắc " + i);
+            rule.put("description", "Lịch trình truy cập internet");
+            rule.put("ruleType", "access_schedule");
+            rule.put("startTime", "08:00");
+            rule.put("endTime", "17:00");
+            rule.put("days", Arrays.asList(1L, 2L, 3L, 4L, 5L));
+            rule.put("dailyLimitMinutes", 0L);
+            rule.put("breakIntervalMinutes", 0L);
+            rule.put("breakDurationMinutes", 0L);
+            rule.put("active", true);
+            rule.put("createdAt", 1715760000000L);
+            rule.put("updatedAt", 1715760000000L);
+            rules.add(rule);
+        }
+        ReflectiveMapper<BlockedUrl> reflectiveUrls = new ReflectiveMapper<>(BlockedUrl.class);
+        ReflectiveMapper<TimeRule> reflectiveRules = new ReflectiveMapper<>(TimeRule.class);
+
+        // Warm up
+        for (int round = 0; round < ROUNDS; round++) {
+            parseUrls(urls);
+            parseRules(rules);
+            reflectiveUrls.parseAll(urls);
+            reflectiveRules.parseAll(rules);
+        }
+
+        long mapperUrls = best(() -> parseUrls(urls));
+        long mapperRules = best(() -> parseRules(rules));
+        long reflectUrls = best(() -> reflectiveUrls.parseAll(urls));
+        long reflectRules = best(() -> reflectiveRules.parseAll(rules));
+
+        System.out.printf("SnapshotMapper per 10k children: BlockedUrl %.2f ms (reflective %.2f ms), "
+                        + "TimeRule %.2f ms (reflective %.2f ms)%n",
+                mapperUrls / 1e6, reflectUrls / 1e6, mapperRules / 1e6, reflectRules / 1e6);
+
+        assertEquals("blocked9999.example", SnapshotMapper.readBlockedUrl("k", urls.get(9_999)).getUrl());
+        assertTrue(mapperUrls < reflectUrls * 2);
+        assertTrue(mapperRules < reflectRules * 2);
+    }
+
+    private interface Run {
+        void run() throws Exception;
+    }
+
+    private static long best(Run run) throws Exception {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static int parseUrls(List<Map<String, Object>> children) {
+        int count = 0;
+        for (Map<String, Object> child : children) {
+            if (SnapshotMapper.readBlockedUrl("k", child) != null) count++;
+        }
+        return count;
+    }
+
+    private static int parseRules(List<Map<String, Object>> children) {
+        int count = 0;
+        for (Map<String, Object> child : children) {
+            if (SnapshotMapper.readTimeRule("k", child) != null) count++;
+        }
+        return count;
+    }
+
+    /** Baseline: setter lookup cached per class, Method.invoke with conversion per property */
+    private static final class ReflectiveMapper<T> {
+        private final Class<T> type;
+        private final Map<String, Method> setters = new HashMap<>();
+
+        ReflectiveMapper(Class<T> type) {
+            this.type = type;
+            for (Method method : type.getMethods()) {
+                String name = method.getName();
+                if (name.startsWith("set") && name.length() > 3 && method.getParameterCount() == 1) {
+                    setters.put(Character.toLowerCase(name.charAt(3)) + name.substring(4), method);
+                }
+            }
+        }
+
+        int parseAll(List<Map<String, Object>> children) throws Exception {
+            int count = 0;
+            for (Map<String, Object> child : children) {
+                T object = type.getDeclaredConstructor().newInstance();
+                for (Map.Entry<String, Object> entry : child.entrySet()) {
+                    Method setter = setters.get(entry.getKey());
+                    if (setter == null) continue;
+                    setter.invoke(object, convert(entry.getValue(), setter.getParameterTypes()[0]));
+                }
+                count++;
+            }
+            return count;
+        }
+
+        private static Object convert(Object value, Class<?> target) {
+            if (target == int.class) return ((Number) value).intValue();
+            if (target == long.class) return ((Number) value).longValue();
+            if (target == List.class) {
+                List<Integer> list = new ArrayList<>();
+                for (Object item : (List<?>) value) list.add(((Number) item).intValue());
+                return list;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SnapshotMapperTest {
+
+    @Test
+    public void readsBlockedUrl() {
+        Map<String, Object> value = new HashMap<>();
+        value.put("url", "youtube.com");
+        value.put("addedAt", 1715760000000L);
+        value.put("addedBy", "parent_android");
+        value.put("status", "active");
+        value.put("somethingNew", "ignored");
+
+        BlockedUrl blockedUrl = SnapshotMapper.readBlockedUrl("-Nabc", value);
+        assertEquals("-Nabc", blockedUrl.getId());
+        assertEquals("youtube.com", blockedUrl.getUrl());
+        assertNull(blockedUrl.getType());
+        assertFalse(blockedUrl.isPattern());
+        assertEquals(1715760000000L, blockedUrl.getAddedAt());
+        assertEquals("parent_android", blockedUrl.getAddedBy());
+        assertEquals("active", blockedUrl.getStatus());
+    }
+
+    @Test
+    public void notAnObjectIsNull() {
+        assertNull(SnapshotMapper.readBlockedUrl("k", "youtube.com"));
+        assertNull(SnapshotMapper.readTimeRule("k", null));
+    }
+
+    @Test
+    public void wrongTypesFallBackToDefaults() {
+        Map<String, Object> value = new HashMap<>();
+        value.put("url", "youtube.com");
+        value.put("addedAt", "yesterday");
+        value.put("dailyLimitMinutes", 90.0);
+        value.put("active", "yes");
+
+        assertEquals(0, SnapshotMapper.readBlockedUrl("k", value).getAddedAt());
+        TimeRule rule = SnapshotMapper.readTimeRule("k", value);
+        assertEquals(90, rule.getDailyLimitMinutes());
+        assertFalse(rule.isActive());
+    }
+
+    @Test
+    public void blockedUrlRoundTrip() {
+        BlockedUrl keyword = new BlockedUrl("casino", 42L, "parent_android", "active");
+        keyword.setType("keyword");
+        Map<String, Object> data = SnapshotMapper.writeBlockedUrl(keyword);
+        assertEquals("keyword", data.get("type"));
+
+        BlockedUrl back = SnapshotMapper.readBlockedUrl("k", data);
+        assertEquals("casino", back.getUrl());
+        assertTrue(back.isPattern());
+        assertEquals(42L, back.getAddedAt());
+
+        BlockedUrl plain = new BlockedUrl("youtube.com", 42L, "parent_android", "active");
+        plain.setType("url");
+        assertFalse(SnapshotMapper.writeBlockedUrl(plain).containsKey("type"));
+    }
+
+    @Test
+    public void timeRuleRoundTrip() {
+        TimeRule rule = TimeRule.createAccessSchedule("Học", "08:00", "17:30", Arrays.asList(1, 3, 5));
+        rule.setProfileId("an");
+        Map<String, Object> data = SnapshotMapper.writeTimeRule(rule);
+        assertEquals(Boolean.TRUE, data.get("active"));
+        assertFalse(data.containsKey("id"));
+
+        TimeRule back = SnapshotMapper.readTimeRule("-Nrule", data);
+        assertEquals("-Nrule", back.getId());
+        assertEquals("an", back.getProfileId());
+        assertEquals("Học", back.getName());
+        assertEquals("access_schedule", back.getRuleType());
+        assertEquals("08:00", back.getStartTime());
+        assertEquals("17:30", back.getEndTime());
+        assertEquals(Arrays.asList(1, 3, 5), back.getDays());
+        assertTrue(back.isActive());
+        assertEquals(rule.getCreatedAt(), back.getCreatedAt());
+    }
+
+    @Test
+    public void daysAsDatabaseArrays() {
+        // Firebase hands back whole numbers as Long, and arrays with holes as maps
+        Map<String, Object> value = new HashMap<>();
+        value.put("days", Arrays.asList(0L, null, 6L));
+        assertEquals(Arrays.asList(0, 6), SnapshotMapper.readTimeRule("k", value).getDays());
+
+        Map<String, Object> sparse = new HashMap<>();
+        sparse.put("6", 6L);
+        sparse.put("2", 2L);
+        value.put("days", sparse);
+        assertEquals(Arrays.asList(2, 6), SnapshotMapper.readTimeRule("k", value).getDays());
+    }
+}
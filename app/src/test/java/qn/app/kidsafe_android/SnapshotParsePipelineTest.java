@@ -0,0 +1,150 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SnapshotParsePipelineTest {
+
+    /** Runs queued tasks only when asked, so the test decides the interleaving */
+    private static final class QueueExecutor implements Executor {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runNext() {
+            tasks.poll().run();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) runNext();
+        }
+    }
+
+    private final QueueExecutor background = new QueueExecutor();
+    private final QueueExecutor main = new QueueExecutor();
+    private final List<List<String>> results = new ArrayList<>();
+    private final List<String> diffs = new ArrayList<>();
+    private int parsed;
+
+    private SnapshotParsePipeline<List<String>, String, String> pipeline(SnapshotParsePipeline.Parser<List<String>, String> parser) {
+        return new SnapshotParsePipeline<>(background, main, parser,
+                (previous, current) -> previous.size() + "->" + current.size(),
+                (items, diff) -> {
+                    results.add(items);
+                    diffs.add(diff);
+                });
+    }
+
+    private SnapshotParsePipeline<List<String>, String, String> pipeline() {
+        return pipeline((raw, sink) -> {
+            for (String child : raw) {
+                parsed++;
+                if (!sink.add(child.toUpperCase())) return;
+            }
+        });
+    }
+
+    @Test
+    public void onlyTheFinishedListIsPostedToMain() {
+        SnapshotParsePipeline<List<String>, String, String> pipeline = pipeline();
+        pipeline.submit(Arrays.asList("a", "b"));
+        assertEquals(0, parsed);
+
+        background.runAll();
+        assertEquals(2, parsed);
+        assertTrue(results.isEmpty());
+
+        main.runAll();
+        assertEquals(Arrays.asList("A", "B"), results.get(0));
+        assertEquals("0->2", diffs.get(0));
+        assertSame(results.get(0), pipeline.getItems());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void publishedListsAreImmutable() {
+        SnapshotParsePipeline<List<String>, String, String> pipeline = pipeline();
+        pipeline.submit(Arrays.asList("a"));
+        background.runAll();
+        main.runAll();
+        pipeline.getItems().add("B");
+    }
+
+    @Test
+    public void queuedStaleSnapshotsAreNeverParsed() {
+        SnapshotParsePipeline<List<String>, String, String> pipeline = pipeline();
+        pipeline.submit(Arrays.asList("a", "b", "c"));
+        pipeline.submit(Arrays.asList("a", "b"));
+        pipeline.submit(Arrays.asList("x"));
+        background.runAll();
+        main.runAll();
+
+        assertEquals(1, parsed);
+        assertEquals(1, results.size());
+        assertEquals(Arrays.asList("X"), results.get(0));
+    }
+
+    @Test
+    public void runningParseStopsWhenANewerSnapshotArrives() {
+        AtomicReference<SnapshotParsePipeline<List<String>, String, String>> holder = new AtomicReference<>();
+        holder.set(pipeline((raw, sink) -> {
+            for (String child : raw) {
+                parsed++;
+                // The newer snapshot arrives halfway through the first one
+                if (parsed == 2 && raw.size() > 1) holder.get().submit(Arrays.asList("new"));
+                if (!sink.add(child)) return;
+            }
+        }));
+        holder.get().submit(Arrays.asList("a", "b", "c", "d"));
+        background.runNext();
+        assertEquals(2, parsed);
+        assertTrue(main.tasks.isEmpty());
+
+        background.runAll();
+        main.runAll();
+        assertEquals(1, results.size());
+        assertEquals(Arrays.asList("new"), results.get(0));
+    }
+
+    @Test
+    public void resultPostedBeforeANewerSnapshotIsDropped() {
+        SnapshotParsePipeline<List<String>, String, String> pipeline = pipeline();
+        pipeline.submit(Arrays.asList("a"));
+        background.runAll();
+        pipeline.submit(Arrays.asList("a", "b"));
+        background.runAll();
+        main.runAll();
+
+        assertEquals(1, results.size());
+        assertEquals(Arrays.asList("A", "B"), results.get(0));
+        // Diffed against what the UI actually shows, not the dropped list
+        assertEquals("0->2", diffs.get(0));
+
+        pipeline.submit(Arrays.asList("c"));
+        background.runAll();
+        main.runAll();
+        assertEquals("2->1", diffs.get(1));
+    }
+
+    @Test
+    public void cancelDropsTheResultInFlight() {
+        SnapshotParsePipeline<List<String>, String, String> pipeline = pipeline();
+        pipeline.submit(Arrays.asList("a"));
+        background.runAll();
+        pipeline.cancel();
+        main.runAll();
+
+        assertTrue(results.isEmpty());
+        assertTrue(pipeline.getItems().isEmpty());
+    }
+}
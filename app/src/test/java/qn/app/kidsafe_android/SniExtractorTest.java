@@ -0,0 +1,186 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SniExtractorTest {
+
+    /**
+     * ClientHello shaped like a browser's: session id, a few cipher suites, and
+     * extensions before and after server_name
+     */
+    static byte[] clientHello(String host) {
+        ByteArrayOutputStream extensions = new ByteArrayOutputStream();
+        // supported_versions: TLS 1.3, 1.2
+        writeExtension(extensions, 0x002b, new byte[]{4, 0x03, 0x04, 0x03, 0x03});
+        if (host != null) {
+            byte[] name = host.getBytes(StandardCharsets.US_ASCII);
+            ByteArrayOutputStream sni = new ByteArrayOutputStream();
+            writeU16(sni, name.length + 3);
+            sni.write(0);
+            writeU16(sni, name.length);
+            sni.write(name, 0, name.length);
+            writeExtension(extensions, 0x0000, sni.toByteArray());
+        }
+        // ALPN: h2, http/1.1
+        writeExtension(extensions, 0x0010, new byte[]{0, 12, 2, 'h', '2', 8, 'h', 't', 't', 'p', '/', '1', '.', '1'});
+
+        ByteArrayOutputStream hello = new ByteArrayOutputStream();
+        hello.write(0x03);
+        hello.write(0x03);
+        for (int i = 0; i < 32; i++) hello.write(i);            // random
+        hello.write(32);
+        for (int i = 0; i < 32; i++) hello.write(0xA0 + i % 16); // session id
+        writeU16(hello, 6);
+        hello.write(new byte[]{0x13, 0x01, 0x13, 0x02, (byte) 0xc0, 0x2b}, 0, 6);
+        hello.write(1);
+        hello.write(0);                                          // null compression
+        writeU16(hello, extensions.size());
+        hello.write(extensions.toByteArray(), 0, extensions.size());
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        record.write(0x16);
+        record.write(0x03);
+        record.write(0x01);
+        writeU16(record, hello.size() + 4);
+        record.write(0x01);
+        record.write(0);
+        writeU16(record, hello.size());
+        record.write(hello.toByteArray(), 0, hello.size());
+        return record.toByteArray();
+    }
+
+    private static void writeExtension(ByteArrayOutputStream out, int type, byte[] data) {
+        writeU16(out, type);
+        writeU16(out, data.length);
+        out.write(data, 0, data.length);
+    }
+
+    private static void writeU16(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static String host(ByteBuffer buffer, SniExtractor extractor) {
+        byte[] bytes = new byte[extractor.getHostLength()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(extractor.getHostOffset() + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void findsServerNameInPlace() {
+        ByteBuffer buffer = ByteBuffer.wrap(clientHello("www.YouTube.com"));
+        SniExtractor extractor = new SniExtractor();
+
+        assertEquals(SniExtractor.FOUND, extractor.extract(buffer));
+        assertEquals("www.YouTube.com", host(buffer, extractor));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void worksAtAnOffsetAndInDirectBuffers() {
+        byte[] hello = clientHello("example.org");
+        ByteBuffer direct = ByteBuffer.allocateDirect(hello.length + 20);
+        direct.position(20);
+        direct.put(hello);
+        direct.position(20);
+        SniExtractor extractor = new SniExtractor();
+
+        assertEquals(SniExtractor.FOUND, extractor.extract(direct));
+        assertEquals("example.org", host(direct, extractor));
+    }
+
+    @Test
+    public void reportsMissingSniAndOtherTraffic() {
+        SniExtractor extractor = new SniExtractor();
+        assertEquals(SniExtractor.NO_SNI, extractor.extract(ByteBuffer.wrap(clientHello(null))));
+        assertEquals(SniExtractor.NOT_CLIENT_HELLO,
+                extractor.extract(ByteBuffer.wrap("GET / HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.US_ASCII))));
+        assertEquals(SniExtractor.MALFORMED, extractor.extract(ByteBuffer.wrap(clientHello("bad host.com"))));
+    }
+
+    @Test
+    public void everyTruncationIsIncompleteNeverAnException() {
+        byte[] hello = clientHello("www.youtube.com");
+        SniExtractor extractor = new SniExtractor();
+        // The SNI ends before ALPN (18 bytes), so later cuts still find it
+        int sniEnd = hello.length - 18;
+        for (int length = 0; length < hello.length; length++) {
+            int status = extractor.extract(ByteBuffer.wrap(hello, 0, length));
+            if (length >= sniEnd) {
+                assertEquals(SniExtractor.FOUND, status);
+            } else {
+                assertEquals("cut at " + length, SniExtractor.INCOMPLETE, status);
+            }
+        }
+    }
+
+    @Test
+    public void randomCorruptionNeverEscapesTheBuffer() {
+        byte[] original = clientHello("cdn.example.com");
+        SniExtractor extractor = new SniExtractor();
+        Random random = new Random(7);
+
+        for (int round = 0; round < 50_000; round++) {
+            byte[] mutated = original.clone();
+            int flips = 1 + random.nextInt(4);
+            for (int i = 0; i < flips; i++) {
+                mutated[random.nextInt(mutated.length)] = (byte) random.nextInt(256);
+            }
+            int length = random.nextInt(4) == 0 ? random.nextInt(mutated.length + 1) : mutated.length;
+            ByteBuffer buffer = ByteBuffer.wrap(mutated, 0, length);
+
+            int status = extractor.extract(buffer);
+            if (status == SniExtractor.FOUND) {
+                assertTrue(extractor.getHostOffset() >= 0);
+                assertTrue(extractor.getHostOffset() + extractor.getHostLength() <= length);
+                assertTrue(extractor.getHostLength() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void randomBytesAreRejected() {
+        SniExtractor extractor = new SniExtractor();
+        Random random = new Random(11);
+        for (int round = 0; round < 20_000; round++) {
+            byte[] noise = new byte[random.nextInt(600)];
+            random.nextBytes(noise);
+            if (noise.length > 1 && random.nextBoolean()) {
+                noise[0] = 0x16;
+                noise[1] = 0x03;
+            }
+            int status = extractor.extract(ByteBuffer.wrap(noise));
+            if (status == SniExtractor.FOUND) {
+                assertTrue(extractor.getHostOffset() + extractor.getHostLength() <= noise.length);
+            }
+        }
+    }
+
+    @Test
+    public void filterBlocksByServerName() {
+        BlocklistEngine engine = new BlocklistEngine();
+        BlockedUrl blockedUrl = new BlockedUrl("https://youtube.com", 0, "parent_android", "active");
+        blockedUrl.setId("y");
+        engine.put(blockedUrl);
+        SniFilter filter = new SniFilter(engine, new VerdictCache());
+
+        assertEquals(SniFilter.VERDICT_BLOCK, filter.check(ByteBuffer.wrap(clientHello("WWW.YOUTUBE.COM"))));
+        assertEquals(SniFilter.VERDICT_ALLOW, filter.check(ByteBuffer.wrap(clientHello("wikipedia.org"))));
+        assertEquals(SniFilter.VERDICT_UNKNOWN, filter.check(ByteBuffer.wrap(clientHello(null))));
+        assertEquals(SniExtractor.NO_SNI, filter.getLastStatus());
+
+        byte[] hello = clientHello("m.youtube.com");
+        ByteBuffer direct = ByteBuffer.allocateDirect(hello.length);
+        direct.put(hello).flip();
+        assertEquals(SniFilter.VERDICT_BLOCK, filter.check(direct));
+    }
+}
@@ -0,0 +1,46 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Per-ClientHello cost of SniFilter against 10,000 live entries, half of the hellos
+ * blocked. Runs with the unit tests; the time is printed, not asserted.
+ */
+public class SniFilterBenchmark {
+
+    private static final int ENTRIES = 10_000;
+    private static final int HELLOS = 256;
+    private static final int ROUNDS = 2000;
+
+    @Test
+    public void verdictTakesMicroseconds() {
+        BlocklistEngine engine = new BlocklistEngine();
+        for (int i = 0; i < ENTRIES; i++) {
+            BlockedUrl blockedUrl = new BlockedUrl("https://blocked" + i + ".com", 0, "parent_android", "active");
+            blockedUrl.setId("id" + i);
+            engine.put(blockedUrl);
+        }
+        SniFilter filter = new SniFilter(engine, new VerdictCache());
+        ByteBuffer[] hellos = new ByteBuffer[HELLOS];
+        for (int i = 0; i < hellos.length; i++) {
+            hellos[i] = ByteBuffer.wrap(SniExtractorTest.clientHello((i % 2 == 0 ? "blocked" : "allowed") + i + ".com"));
+        }
+
+        for (int i = 0; i < ROUNDS / 4 * hellos.length; i++) filter.check(hellos[i % hellos.length]);
+        int blocked = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (ByteBuffer hello : hellos) {
+                if (filter.check(hello) == SniFilter.VERDICT_BLOCK) blocked++;
+            }
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / (ROUNDS * hellos.length);
+        System.out.printf("SniFilter: %.2f us/ClientHello%n", micros);
+
+        assertEquals(ROUNDS * HELLOS / 2, blocked);
+    }
+}
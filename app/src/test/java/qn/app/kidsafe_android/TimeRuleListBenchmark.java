@@ -0,0 +1,149 @@
+package qn.app.kidsafe_android;
+
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import org.junit.Test;
+
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * A few thousand time rules updated in quick succession, as TimeRuleAdapter sees them:
+ * rows and diff are built off the UI thread, the main thread only dispatches the diff
+ * and rebinds what it reports. Views can't be measured here, so the main thread's share
+ * of a frame is the dispatch time plus the number of cards it rebinds, next to the
+ * whole list that notifyDataSetChanged() would rebind.
+ */
+public class TimeRuleListBenchmark {
+
+    private static final int RULES = 5_000;
+    private static final int UPDATES = 60;
+    private static final int EDITS_PER_UPDATE = 3;
+
+    private static final class Counter implements ListUpdateCallback {
+        int rebound;
+        int removed;
+
+        @Override
+        public void onInserted(int position, int count) {
+            rebound += count;
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            removed += count;
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            rebound++;
+        }
+
+        @Override
+        public void onChanged(int position, int count, @Nullable Object payload) {
+            rebound += count;
+        }
+    }
+
+    private static TimeRule rule(int key, int limit) {
+        TimeRule rule = TimeRule.createDailyLimit("Quy tắc " + key, limit);
+        rule.setId(String.format("-R%06d", key));
+        rule.setCreatedAt(1_715_760_000_000L + key);
+        return rule;
+    }
+
+    private static List<TimeRuleRow> rows(List<Integer> keys, int[] limits) {
+        DateTimeFormatter dateFormat = RowFormat.dateFormat();
+        List<TimeRuleRow> rows = new ArrayList<>(keys.size());
+        for (int key : keys) {
+            rows.add(TimeRuleRow.of(rule(key, limits[key]), dateFormat));
+        }
+        return rows;
+    }
+
+    private static DiffUtil.DiffResult diff(List<TimeRuleRow> oldRows, List<TimeRuleRow> newRows) {
+        // What AsyncListDiffer runs on its background executor
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldRows.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newRows.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return TimeRuleRow.DIFF_CALLBACK.areItemsTheSame(oldRows.get(oldPosition), newRows.get(newPosition));
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                return TimeRuleRow.DIFF_CALLBACK.areContentsTheSame(oldRows.get(oldPosition), newRows.get(newPosition));
+            }
+        });
+    }
+
+    @Test
+    public void rapidUpdatesOfFiveThousandRulesRebindOnlyWhatChanged() {
+        List<Integer> keys = new ArrayList<>();
+        int[] limits = new int[RULES + UPDATES];
+        for (int key = 0; key < RULES; key++) {
+            keys.add(key);
+            limits[key] = 60;
+        }
+        int nextKey = RULES;
+        List<TimeRuleRow> shown = rows(keys, limits);
+
+        long backgroundTotal = 0;
+        long backgroundMax = 0;
+        long mainTotal = 0;
+        long mainMax = 0;
+        int reboundTotal = 0;
+        for (int update = 0; update < UPDATES; update++) {
+            // A few edits, one rule added at the end and one removed from the middle
+            for (int edit = 0; edit < EDITS_PER_UPDATE; edit++) {
+                limits[keys.get((update * 997 + edit * 131) % keys.size())] += 5;
+            }
+            keys.add(nextKey);
+            limits[nextKey++] = 30;
+            keys.remove((update * 389) % keys.size());
+
+            long start = System.nanoTime();
+            List<TimeRuleRow> next = rows(keys, limits);
+            DiffUtil.DiffResult result = diff(shown, next);
+            long background = System.nanoTime() - start;
+
+            Counter counter = new Counter();
+            start = System.nanoTime();
+            result.dispatchUpdatesTo(counter);
+            long main = System.nanoTime() - start;
+            shown = next;
+
+            // The first updates warm up the JIT
+            if (update >= UPDATES / 4) {
+                backgroundTotal += background;
+                backgroundMax = Math.max(backgroundMax, background);
+                mainTotal += main;
+                mainMax = Math.max(mainMax, main);
+                reboundTotal += counter.rebound;
+            }
+            assertTrue(counter.rebound <= EDITS_PER_UPDATE + 1);
+            assertEquals(1, counter.removed);
+        }
+
+        int measured = UPDATES - UPDATES / 4;
+        System.out.printf("TimeRuleList: %d rules, %d updates: rows + diff off the UI thread %.2f ms (max %.2f ms), "
+                        + "main thread dispatch %.3f ms (max %.3f ms) of a 16.7 ms frame, "
+                        + "%.1f cards rebound per update instead of %d%n",
+                RULES, measured, backgroundTotal / 1e6 / measured, backgroundMax / 1e6,
+                mainTotal / 1e6 / measured, mainMax / 1e6, (double) reboundTotal / measured, RULES);
+    }
+}
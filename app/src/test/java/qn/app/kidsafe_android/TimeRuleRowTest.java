@@ -0,0 +1,89 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TimeRuleRowTest {
+
+    private final DateTimeFormatter dateFormat = RowFormat.dateFormat();
+
+    private static long at(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void scheduleRowHasDaysAndFormattedDate() {
+        TimeRule rule = TimeRule.createAccessSchedule("Giờ học", "08:00", "17:00", Arrays.asList(1, 2, 3));
+        rule.setId("-R1");
+        rule.setCreatedAt(at(2024, 5, 15, 9, 5));
+
+        TimeRuleRow row = TimeRuleRow.of(rule, dateFormat);
+        assertEquals("-R1", row.getId());
+        assertEquals("Giờ học", row.getName());
+        assertEquals("Lịch trình truy cập", row.getTypeText());
+        assertEquals("Từ 08:00 đến 17:00", row.getSummary());
+        assertEquals("📅 T2, T3, T4", row.getDaysText());
+        assertEquals("Tạo: 15/05/2024 09:05", row.getCreatedText());
+        assertEquals(TimeRuleRow.COLOR_ACCESS_SCHEDULE, row.getIndicatorColor());
+        assertEquals(4, row.getElevation());
+    }
+
+    @Test
+    public void inactiveRuleIsGreyAndHidesWhatItLacks() {
+        TimeRule rule = TimeRule.createDailyLimit("Ngày thường", 120);
+        rule.setId("-R2");
+        rule.setDescription("");
+        rule.setCreatedAt(0);
+        rule.setActive(false);
+
+        TimeRuleRow row = TimeRuleRow.of(rule, dateFormat);
+        assertNull(row.getDescription());
+        assertNull(row.getDaysText());
+        assertEquals("", row.getCreatedText());
+        assertEquals(TimeRuleRow.COLOR_INACTIVE, row.getIndicatorColor());
+        assertEquals(0.7f, row.getAlpha(), 0f);
+
+        // A later edit of the rule does not change a row already built
+        rule.setActive(true);
+        assertFalse(row.isActive());
+    }
+
+    @Test
+    public void stableIdFollowsTheKey() {
+        TimeRule rule = TimeRule.createDailyLimit("A", 60);
+        rule.setId("-R1");
+        TimeRule edited = TimeRule.createDailyLimit("B", 90);
+        edited.setId("-R1");
+        TimeRule other = TimeRule.createDailyLimit("A", 60);
+        other.setId("-R2");
+
+        long id = TimeRuleRow.of(rule, dateFormat).getStableId();
+        assertEquals(id, TimeRuleRow.of(edited, dateFormat).getStableId());
+        assertNotEquals(id, TimeRuleRow.of(other, dateFormat).getStableId());
+    }
+
+    @Test
+    public void sameContentComparesWhatTheCardShows() {
+        TimeRule rule = TimeRule.createDailyLimit("A", 60);
+        rule.setId("-R1");
+        TimeRule copy = TimeRule.createDailyLimit("A", 60);
+        copy.setId("-R1");
+        copy.setCreatedAt(rule.getCreatedAt());
+        copy.setUpdatedAt(rule.getUpdatedAt() + 1_000);
+        TimeRule edited = TimeRule.createDailyLimit("A", 90);
+        edited.setId("-R1");
+
+        TimeRuleRow row = TimeRuleRow.of(rule, dateFormat);
+        assertTrue(TimeRuleRow.DIFF_CALLBACK.areItemsTheSame(row, TimeRuleRow.of(edited, dateFormat)));
+        // updatedAt is not on the card
+        assertTrue(row.hasSameContent(TimeRuleRow.of(copy, dateFormat)));
+        assertFalse(row.hasSameContent(TimeRuleRow.of(edited, dateFormat)));
+    }
+}
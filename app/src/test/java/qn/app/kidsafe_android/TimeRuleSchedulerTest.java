@@ -0,0 +1,372 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TimeRuleSchedulerTest {
+
+    private static final long MINUTE = 60_000;
+    private static final ZoneId HANOI = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+
+    /** Clock that only moves when the test says so */
+    static final class FakeClock extends Clock {
+        long millis;
+        ZoneId zone;
+
+        FakeClock(ZonedDateTime start) {
+            millis = start.toInstant().toEpochMilli();
+            zone = start.getZone();
+        }
+
+        void advance(long delta) {
+            millis += delta;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return new FakeClock(ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), zone));
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    static final class FakeAlarm implements TimeRuleScheduler.Alarm {
+        long armedAt = -1;
+        int arms;
+        int cancels;
+
+        @Override
+        public void arm(long triggerAtMillis) {
+            armedAt = triggerAtMillis;
+            arms++;
+        }
+
+        @Override
+        public void cancel() {
+            armedAt = -1;
+            cancels++;
+        }
+    }
+
+    static final class FakeUsage implements TimeRuleScheduler.Usage {
+        long usedToday;
+        long sessionStart = -1;
+
+        @Override
+        public long getUsedTodayMillis(long nowMillis) {
+            return usedToday;
+        }
+
+        @Override
+        public long getSessionStartMillis() {
+            return sessionStart;
+        }
+    }
+
+    private final FakeAlarm alarm = new FakeAlarm();
+    private final List<Boolean> changes = new ArrayList<>();
+
+    private TimeRuleScheduler scheduler(FakeClock clock) {
+        TimeRuleScheduler scheduler = new TimeRuleScheduler(clock, alarm);
+        scheduler.addListener((allowed, next) -> changes.add(allowed));
+        return scheduler;
+    }
+
+    /** Move the clock to the armed alarm and fire it, like AlarmManager would */
+    private void fire(FakeClock clock, TimeRuleScheduler scheduler) {
+        assertTrue("no alarm armed", alarm.armedAt > clock.millis);
+        clock.millis = alarm.armedAt;
+        scheduler.onAlarm();
+    }
+
+    private static long millis(ZonedDateTime time) {
+        return time.toInstant().toEpochMilli();
+    }
+
+    private static TimeRule window(String start, String end) {
+        return TimeRule.createAccessSchedule("Giờ học", start, end, null);
+    }
+
+    @Test
+    public void armedAlarmIsLeftAloneUntilTheRulesAreKnown() {
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 5, 15, 10, 0, 0, 0, HANOI));
+        TimeRuleScheduler scheduler = scheduler(clock);
+        // A new process woken by the alarm, before the stored rules are read
+        scheduler.setUsage(new FakeUsage());
+        scheduler.onAlarm();
+        assertFalse(scheduler.hasRules());
+        assertEquals(0, alarm.cancels);
+
+        scheduler.setRules(Collections.singletonList(window("08:00", "17:00")));
+        assertTrue(scheduler.hasRules());
+        assertEquals(millis(ZonedDateTime.of(2024, 5, 15, 17, 0, 0, 0, HANOI)), alarm.armedAt);
+    }
+
+    @Test
+    public void noRulesMeansAllowedAndNoAlarm() {
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 5, 15, 10, 0, 0, 0, HANOI));
+        TimeRuleScheduler scheduler = scheduler(clock);
+        scheduler.setRules(Collections.emptyList());
+
+        assertTrue(scheduler.isAllowed());
+        assertEquals(-1, scheduler.getNextTransitionMillis());
+        assertEquals(0, alarm.arms);
+        assertEquals(1, alarm.cancels);
+    }
+
+    @Test
+    public void armsTheWindowEdgesOneAfterAnother() {
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 5, 15, 10, 0, 0, 0, HANOI));
+        TimeRuleScheduler scheduler = scheduler(clock);
+        scheduler.setRules(Collections.singletonList(window("08:00", "17:00")));
+
+        assertTrue(scheduler.isAllowed());
+        assertEquals(millis(ZonedDateTime.of(2024, 5, 15, 17, 0, 0, 0, HANOI)), alarm.armedAt);
+        assertTrue(changes.isEmpty());
+
+        fire(clock, scheduler);
+        assertFalse(scheduler.isAllowed());
+        assertEquals(millis(ZonedDateTime.of(2024, 5, 16, 8, 0, 0, 0, HANOI)), alarm.armedAt);
+
+        fire(clock, scheduler);
+        assertTrue(scheduler.isAllowed());
+        assertEquals(Arrays.asList(false, true), changes);
+    }
+
+    @Test
+    public void overnightWindow() {
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 5, 15, 21, 30, 0, 0, HANOI));
+        TimeRuleScheduler scheduler = scheduler(clock);
+        scheduler.setRules(Collections.singletonList(window("22:00", "06:00")));
+
+        assertFalse(scheduler.isAllowed());
+        assertEquals(millis(ZonedDateTime.of(2024, 5, 15, 22, 0, 0, 0, HANOI)), alarm.armedAt);
+        fire(clock, scheduler);
+        assertTrue(scheduler.isAllowed());
+        assertEquals(millis(ZonedDateTime.of(2024, 5, 16, 6, 0, 0, 0, HANOI)), alarm.armedAt);
+    }
+
+    @Test
+    public void recomputesOnlyOnRuleChangesAndAlarms() {
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 5, 15, 10, 0, 0, 0, HANOI));
+        TimeRuleScheduler scheduler = scheduler(clock);
+        scheduler.setRules(Collections.singletonList(window("08:00", "17:00")));
+        assertEquals(1, alarm.arms);
+
+        // Time passing on its own does nothing
+        clock.advance(3 * 60 * MINUTE);
+        assertEquals(1, alarm.arms);
+        assertTrue(scheduler.isAllowed());
+
+        // An early wake-up re-arms the same instant without a state change
+        long armed = alarm.armedAt;
+        scheduler.onAlarm();
+        assertEquals(2, alarm.arms);
+        assertEquals(armed, alarm.armedAt);
+        assertTrue(changes.isEmpty());
+
+        scheduler.setRules(Collections.singletonList(window("14:00", "15:00")));
+        assertEquals(3, alarm.arms);
+        assertFalse(scheduler.isAllowed());
+        assertEquals(Collections.singletonList(false), changes);
+    }
+
+    @Test
+    public void springForwardWindowStartingInTheSkippedHour() {
+        // Berlin 2024-03-31: 02:00 CET jumps to 03:00 CEST, 02:30 never happens
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 3, 31, 1, 30, 0, 0, BERLIN));
+        TimeRuleScheduler scheduler = scheduler(clock);
+        scheduler.setRules(Collections.singletonList(window("02:30", "23:00")));
+
+        assertFalse(scheduler.isAllowed());
+        // Woken at the jump (01:00 UTC), when the wall clock reads 03:00 and the window is open
+        assertEquals(Instant.parse("2024-03-31T01:00:00Z").toEpochMilli(), alarm.armedAt);
+        fire(clock, scheduler);
+        assertTrue(scheduler.isAllowed());
+        assertEquals(millis(ZonedDateTime.of(2024, 3, 31, 23, 0, 0, 0, BERLIN)), alarm.armedAt);
+    }
+
+    @Test
+    public void springForwardShortensTheRealWait() {
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 3, 31, 1, 30, 0, 0, BERLIN));
+        TimeRuleScheduler scheduler = scheduler(clock);
+        scheduler.setRules(Collections.singletonList(window("04:00", "23:00")));
+
+        fire(clock, scheduler);     // the DST jump itself
+        assertFalse(scheduler.isAllowed());
+        fire(clock, scheduler);
+        assertTrue(scheduler.isAllowed());
+        // 01:30 CET to 04:00 CEST is one and a half real hours
+        assertEquals(Instant.parse("2024-03-31T02:00:00Z").toEpochMilli(), clock.millis);
+    }
+
+    @Test
+    public void fallBackRepeatsTheEndOfTheWindow() {
+        // Berlin 2024-10-27: 03:00 CEST goes back to 02:00 CET, 02:00-03:00 happens twice
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 10, 27, 2, 0, 0, 0, BERLIN)
+                .withEarlierOffsetAtOverlap());
+        TimeRuleScheduler scheduler = scheduler(clock);
+        scheduler.setRules(Collections.singletonList(window("00:00", "02:30")));
+
+        assertTrue(scheduler.isAllowed());
+        fire(clock, scheduler);
+        assertFalse(scheduler.isAllowed());
+        assertEquals(Instant.parse("2024-10-27T00:30:00Z").toEpochMilli(), clock.millis);
+
+        // Back to 02:00 on the wall clock: the last half hour is open again
+        fire(clock, scheduler);
+        assertTrue(scheduler.isAllowed());
+        assertEquals(Instant.parse("2024-10-27T01:00:00Z").toEpochMilli(), clock.millis);
+
+        fire(clock, scheduler);
+        assertFalse(scheduler.isAllowed());
+        assertEquals(Instant.parse("2024-10-27T01:30:00Z").toEpochMilli(), clock.millis);
+        assertEquals(Arrays.asList(false, true, false), changes);
+    }
+
+    @Test
+    public void timeZoneChangeMovesTheWindow() {
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 5, 15, 16, 0, 0, 0, HANOI));
+        TimeRuleScheduler scheduler = scheduler(clock);
+        scheduler.setRules(Collections.singletonList(window("08:00", "17:00")));
+        assertTrue(scheduler.isAllowed());
+
+        // Same instant, 05:00 in New York
+        ZoneId newYork = ZoneId.of("America/New_York");
+        scheduler.setClock(clock.withZone(newYork));
+        assertFalse(scheduler.isAllowed());
+        assertEquals(millis(ZonedDateTime.of(2024, 5, 15, 8, 0, 0, 0, newYork)), alarm.armedAt);
+        assertEquals(Collections.singletonList(false), changes);
+    }
+
+    @Test
+    public void dailyLimitRunsOutAndResetsAtLocalMidnight() {
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 5, 15, 20, 0, 0, 0, HANOI));
+        FakeUsage usage = new FakeUsage();
+        usage.usedToday = 30 * MINUTE;
+        usage.sessionStart = clock.millis;
+        TimeRuleScheduler scheduler = scheduler(clock);
+        scheduler.setUsage(usage);
+        scheduler.setRules(Collections.singletonList(TimeRule.createDailyLimit("Giới hạn", 60)));
+
+        assertTrue(scheduler.isAllowed());
+        assertEquals(clock.millis + 30 * MINUTE, alarm.armedAt);
+
+        usage.usedToday = 60 * MINUTE;
+        fire(clock, scheduler);
+        assertFalse(scheduler.isAllowed());
+        assertEquals(millis(ZonedDateTime.of(2024, 5, 16, 0, 0, 0, 0, HANOI)), alarm.armedAt);
+
+        usage.usedToday = 0;
+        fire(clock, scheduler);
+        assertTrue(scheduler.isAllowed());
+        assertEquals(clock.millis + 60 * MINUTE, alarm.armedAt);
+    }
+
+    @Test
+    public void idleDeviceDoesNotArmForTheLimit() {
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 5, 15, 20, 0, 0, 0, HANOI));
+        FakeUsage usage = new FakeUsage();
+        usage.usedToday = 30 * MINUTE;
+        TimeRuleScheduler scheduler = scheduler(clock);
+        scheduler.setUsage(usage);
+        scheduler.setRules(Collections.singletonList(TimeRule.createDailyLimit("Giới hạn", 60)));
+
+        assertTrue(scheduler.isAllowed());
+        assertEquals(-1, scheduler.getNextTransitionMillis());
+
+        usage.sessionStart = clock.millis;
+        scheduler.onUsageChanged();
+        assertEquals(clock.millis + 30 * MINUTE, alarm.armedAt);
+    }
+
+    @Test
+    public void smallestDailyLimitWins() {
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 5, 15, 20, 0, 0, 0, HANOI));
+        FakeUsage usage = new FakeUsage();
+        usage.sessionStart = clock.millis;
+        TimeRuleScheduler scheduler = scheduler(clock);
+        scheduler.setUsage(usage);
+        TimeRule paused = TimeRule.createDailyLimit("Tắt", 10);
+        paused.setActive(false);
+        scheduler.setRules(Arrays.asList(TimeRule.createDailyLimit("A", 90),
+                TimeRule.createDailyLimit("B", 45), paused));
+
+        assertEquals(clock.millis + 45 * MINUTE, alarm.armedAt);
+    }
+
+    @Test
+    public void breakCycleDuringASession() {
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 5, 15, 15, 0, 0, 0, HANOI));
+        FakeUsage usage = new FakeUsage();
+        usage.sessionStart = clock.millis;
+        TimeRuleScheduler scheduler = scheduler(clock);
+        scheduler.setUsage(usage);
+        scheduler.setRules(Collections.singletonList(TimeRule.createBreakRule("Nghỉ", 45, 15)));
+
+        assertTrue(scheduler.isAllowed());
+        assertEquals(usage.sessionStart + 45 * MINUTE, alarm.armedAt);
+        fire(clock, scheduler);
+        assertFalse(scheduler.isAllowed());
+        assertEquals(usage.sessionStart + 60 * MINUTE, alarm.armedAt);
+        fire(clock, scheduler);
+        assertTrue(scheduler.isAllowed());
+        assertEquals(usage.sessionStart + 105 * MINUTE, alarm.armedAt);
+        assertEquals(Arrays.asList(false, true), changes);
+    }
+
+    @Test
+    public void earliestRuleDecidesTheAlarm() {
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 5, 15, 16, 0, 0, 0, HANOI));
+        FakeUsage usage = new FakeUsage();
+        usage.sessionStart = clock.millis;
+        TimeRuleScheduler scheduler = scheduler(clock);
+        scheduler.setUsage(usage);
+        scheduler.setRules(Arrays.asList(window("08:00", "17:00"),
+                TimeRule.createDailyLimit("Giới hạn", 120),
+                TimeRule.createBreakRule("Nghỉ", 90, 10)));
+
+        assertEquals(millis(ZonedDateTime.of(2024, 5, 15, 17, 0, 0, 0, HANOI)), alarm.armedAt);
+        fire(clock, scheduler);
+        assertFalse(scheduler.isAllowed());
+        // Limit and break keep counting while the window is closed; the break comes first
+        assertEquals(usage.sessionStart + 90 * MINUTE, alarm.armedAt);
+    }
+
+    @Test
+    public void neverArmsInThePast() {
+        FakeClock clock = new FakeClock(ZonedDateTime.of(2024, 5, 15, 20, 0, 0, 0, HANOI));
+        FakeUsage usage = new FakeUsage();
+        usage.sessionStart = clock.millis;
+        usage.usedToday = 60 * MINUTE - 1;
+        TimeRuleScheduler scheduler = scheduler(clock);
+        scheduler.setUsage(usage);
+        scheduler.setRules(Collections.singletonList(TimeRule.createDailyLimit("Giới hạn", 60)));
+
+        assertTrue(alarm.armedAt > clock.millis);
+    }
+}
@@ -0,0 +1,130 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TimerWheelTest {
+
+    private static final class Recorder extends TimerWheel.Timer {
+        final List<Long> fired;
+        final long id;
+
+        Recorder(List<Long> fired, long id) {
+            this.fired = fired;
+            this.id = id;
+        }
+
+        @Override
+        void onExpired(long tick) {
+            assertEquals("fired at the wrong tick", getDeadline(), tick);
+            fired.add(id);
+        }
+    }
+
+    @Test
+    public void firesAtTheDeadlineOnEveryLevel() {
+        List<Long> fired = new ArrayList<>();
+        TimerWheel wheel = new TimerWheel(1_000);
+        long[] delays = {0, 1, 63, 64, 65, 4095, 4096, 4097, 300_000, 16_000_000};
+        for (long delay : delays) {
+            wheel.schedule(new Recorder(fired, 1_000 + delay), 1_000 + delay);
+        }
+        assertEquals(delays.length, wheel.size());
+
+        for (long delay : delays) {
+            wheel.advance(1_000 + delay);
+            assertEquals(Long.valueOf(1_000 + delay), fired.get(fired.size() - 1));
+        }
+        assertEquals(delays.length, fired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void randomDeadlinesFireInOrder() {
+        Random random = new Random(42);
+        List<Long> fired = new ArrayList<>();
+        TimerWheel wheel = new TimerWheel(7);
+        for (int i = 0; i < 2_000; i++) {
+            long deadline = 7 + random.nextInt(100_000);
+            wheel.schedule(new Recorder(fired, deadline), deadline);
+        }
+        wheel.advance(100_007);
+
+        assertEquals(2_000, fired.size());
+        for (int i = 1; i < fired.size(); i++) {
+            assertTrue(fired.get(i - 1) <= fired.get(i));
+        }
+    }
+
+    @Test
+    public void cancelAndRescheduleAreConstantTime() {
+        List<Long> fired = new ArrayList<>();
+        TimerWheel wheel = new TimerWheel(0);
+        Recorder a = new Recorder(fired, 1);
+        Recorder b = new Recorder(fired, 2);
+        wheel.schedule(a, 100);
+        wheel.schedule(b, 5_000);
+        wheel.cancel(a);
+        assertFalse(a.isScheduled());
+        wheel.schedule(b, 50);
+
+        wheel.advance(10_000);
+        assertEquals(1, fired.size());
+        assertEquals(Long.valueOf(2), fired.get(0));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void overdueTimersFireOnTheNextAdvance() {
+        TimerWheel wheel = new TimerWheel(500);
+        long[] firedAt = {-1};
+        TimerWheel.Timer late = new TimerWheel.Timer() {
+            @Override
+            void onExpired(long tick) {
+                firedAt[0] = tick;
+            }
+        };
+        wheel.schedule(late, 10);
+        assertEquals(10, wheel.nextDeadline());
+        wheel.advance(500);
+        assertEquals(500, firedAt[0]);
+    }
+
+    @Test
+    public void timersCanRescheduleThemselves() {
+        TimerWheel wheel = new TimerWheel(0);
+        int[] count = {0};
+        TimerWheel.Timer periodic = new TimerWheel.Timer() {
+            @Override
+            void onExpired(long tick) {
+                count[0]++;
+                wheel.schedule(this, tick + 100);
+            }
+        };
+        wheel.schedule(periodic, 100);
+        wheel.advance(10_000);
+        assertEquals(100, count[0]);
+        assertEquals(10_100, wheel.nextDeadline());
+    }
+
+    @Test
+    public void nextDeadlineIsExact() {
+        List<Long> fired = new ArrayList<>();
+        TimerWheel wheel = new TimerWheel(10);
+        assertEquals(-1, wheel.nextDeadline());
+        wheel.schedule(new Recorder(fired, 1), 10 + 4_090);
+        wheel.schedule(new Recorder(fired, 2), 10 + 200_000);
+        assertEquals(4_100, wheel.nextDeadline());
+        wheel.schedule(new Recorder(fired, 3), 70);
+        assertEquals(70, wheel.nextDeadline());
+        wheel.advance(70);
+        assertEquals(4_100, wheel.nextDeadline());
+        wheel.advance(4_100);
+        assertEquals(200_010, wheel.nextDeadline());
+    }
+}
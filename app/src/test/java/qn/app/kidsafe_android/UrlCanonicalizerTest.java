@@ -0,0 +1,73 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UrlCanonicalizerTest {
+
+    private static String canonical(String input) {
+        UrlCanonicalizer.CanonicalUrl url = UrlCanonicalizer.canonicalize(input);
+        return url != null ? url.getUrl() : null;
+    }
+
+    @Test
+    public void stripsSchemeWwwAndCase() {
+        assertEquals("https://facebook.com", canonical("  HTTP://WWW.Facebook.com/  "));
+        assertEquals("https://facebook.com/gaming", canonical("facebook.com/Gaming"));
+        assertEquals("https://youtube.com/watch?v=abc", canonical("https://youtube.com/watch?v=abc#t=10"));
+    }
+
+    @Test
+    public void handlesTrailingDotsAndPorts() {
+        assertEquals("https://example.com", canonical("example.com."));
+        assertEquals("https://example.com", canonical("example.com:443"));
+        assertEquals("https://example.com:8080/a", canonical("example.com:8080/a"));
+        assertNull(canonical("example.com:99999"));
+        assertNull(canonical("example.com:"));
+    }
+
+    @Test
+    public void dropsUserInfo() {
+        assertEquals("https://host.com", canonical("user:pass@host.com"));
+        assertEquals("https://host.com:8080/a", canonical("https://user:p@ss@Host.com:8080/a"));
+        assertEquals("https://host.com/mail@example", canonical("host.com/mail@example"));
+        assertNull(canonical("user@"));
+    }
+
+    @Test
+    public void convertsIdnToPunycode() {
+        UrlCanonicalizer.CanonicalUrl url = UrlCanonicalizer.canonicalize("bücher.de");
+        assertNotNull(url);
+        assertEquals("xn--bcher-kva.de", url.getHost());
+        assertEquals("bücher.de", url.getDisplay());
+
+        UrlCanonicalizer.CanonicalUrl punycode = UrlCanonicalizer.canonicalize("xn--bcher-kva.de");
+        assertEquals("xn--bcher-kva.de", punycode.getHost());
+        assertEquals("bücher.de/shop", UrlCanonicalizer.toDisplay("https://xn--bcher-kva.de/shop"));
+    }
+
+    @Test
+    public void rejectsInvalidHosts() {
+        assertNull(canonical(""));
+        assertNull(canonical("localhost"));
+        assertNull(canonical("not a url"));
+        assertNull(canonical("a..com"));
+        assertNull(canonical("-bad.com"));
+        assertNull(canonical("bad-.com"));
+        assertNull(canonical("example.c"));
+        assertNull(canonical("example.123"));
+    }
+
+    @Test
+    public void acceptsIpv4Literals() {
+        assertEquals("https://192.168.1.1", canonical("192.168.1.1"));
+        assertNull(canonical("192.168.1.256"));
+    }
+
+    @Test
+    public void displayFormOfStoredUrls() {
+        assertEquals("facebook.com", UrlCanonicalizer.toDisplay("https://www.facebook.com/"));
+        assertEquals("example.com:8080/a", UrlCanonicalizer.toDisplay("https://example.com:8080/a"));
+    }
+}
@@ -0,0 +1,86 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class UrlPatternMatcherTest {
+
+    private static BlockedUrl pattern(String id, String type, String text) {
+        BlockedUrl entry = new BlockedUrl(text, 0, "parent_android", "active");
+        entry.setId(id);
+        entry.setType(type);
+        return entry;
+    }
+
+    @Test
+    public void keywordsMatchAnywhere() {
+        UrlPatternMatcher matcher = UrlPatternMatcher.compile(Arrays.asList(
+                pattern("k1", "keyword", "casino"),
+                pattern("k2", "keyword", "poker")));
+
+        assertTrue(matcher.matches("onlinecasino.net/play"));
+        assertEquals("k2", matcher.findMatchingId("example.com/videopoker"));
+        assertFalse(matcher.matches("example.com/cas/ino"));
+    }
+
+    @Test
+    public void wildcardsMatchWholeHostAndPath() {
+        UrlPatternMatcher matcher = UrlPatternMatcher.compile(Arrays.asList(
+                pattern("w1", "wildcard", "*.bet*"),
+                pattern("w2", "wildcard", "game?.example.com*")));
+
+        assertTrue(matcher.matches("sports.bet365.com/live"));
+        assertFalse(matcher.matches("bet365.com"));
+        assertTrue(matcher.matches("games.example.com/x"));
+        assertFalse(matcher.matches("gamesxx.example.com"));
+    }
+
+    @Test
+    public void overlappingLiteralsAreAllReported() {
+        UrlPatternMatcher matcher = UrlPatternMatcher.compile(Arrays.asList(
+                pattern("k1", "keyword", "xxx"),
+                pattern("k2", "keyword", "sexy"),
+                pattern("k3", "keyword", "ex")));
+
+        assertEquals("k3", matcher.findMatchingId("example.org"));
+        assertTrue(matcher.matches("asexyz.com"));
+    }
+
+    @Test
+    public void urlEntriesAndPausedPatternsAreIgnored() {
+        BlockedUrl paused = pattern("k1", "keyword", "casino");
+        paused.setStatus("paused");
+        BlockedUrl url = new BlockedUrl("https://casino.com", 0, "parent_android", "active");
+        url.setId("u1");
+
+        UrlPatternMatcher matcher = UrlPatternMatcher.compile(Arrays.asList(paused, url));
+
+        assertEquals(0, matcher.size());
+        assertFalse(matcher.matchesUrl("https://casino.com"));
+    }
+
+    @Test
+    public void literalFreeWildcardMatchesEverything() {
+        UrlPatternMatcher matcher = UrlPatternMatcher.compile(Arrays.asList(pattern("w", "wildcard", "*")));
+        assertTrue(matcher.matches("anything.com"));
+    }
+
+    @Test
+    public void thousandsOfPatternsStaySinglePass() {
+        List<BlockedUrl> entries = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            entries.add(pattern("k" + i, "keyword", "word" + i + "x"));
+        }
+        entries.add(pattern("w", "wildcard", "*.bet*"));
+        UrlPatternMatcher matcher = UrlPatternMatcher.compile(entries);
+
+        assertEquals("k4999", matcher.findMatchingId("site.com/word4999x"));
+        assertTrue(matcher.matchesUrl("https://m.bet365.com/"));
+        assertFalse(matcher.matches("site.com/word5000x"));
+    }
+}
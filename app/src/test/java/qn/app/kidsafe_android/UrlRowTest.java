@@ -0,0 +1,42 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.Assert.*;
+
+public class UrlRowTest {
+
+    private static BlockedUrl url(String id, String url, String type, long addedAt, String status) {
+        BlockedUrl blockedUrl = new BlockedUrl(url, addedAt, "parent_android", status);
+        blockedUrl.setId(id);
+        blockedUrl.setType(type);
+        return blockedUrl;
+    }
+
+    @Test
+    public void urlRowShowsReadableHostAndDate() {
+        long addedAt = LocalDateTime.of(2024, 5, 15, 21, 30).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        UrlRow row = UrlRow.of(url("-N1", "https://xn--bcher-kva.de/shop", "url", addedAt, "active"),
+                RowFormat.dateFormat());
+
+        assertEquals("bücher.de/shop", row.getText());
+        assertEquals("Thêm lúc: 15/05/2024 21:30", row.getDateText());
+        assertEquals("🛡️ Đang chặn", row.getStatusText());
+        assertTrue(row.isActive());
+        assertEquals("-N1", row.getId());
+        assertEquals(RowFormat.stableId("-N1"), row.getStableId());
+    }
+
+    @Test
+    public void patternsAreShownAsTypedAndMissingDatesAreUnknown() {
+        UrlRow row = UrlRow.of(url("-N2", "casino", "keyword", 0, "paused"), RowFormat.dateFormat());
+
+        assertEquals("🔤 casino", row.getText());
+        assertEquals("Thêm lúc: Không rõ", row.getDateText());
+        assertEquals("⏸️ Tạm dừng", row.getStatusText());
+        assertFalse(row.isActive());
+    }
+}
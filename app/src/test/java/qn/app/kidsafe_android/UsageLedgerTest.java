@@ -0,0 +1,260 @@
+package qn.app.kidsafe_android;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class UsageLedgerTest {
+
+    private static final long MINUTE = 60_000;
+    private static final ZoneId HANOI = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final LocalDate DAY = LocalDate.of(2024, 5, 15);
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("usage", ".log");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    private static long at(int hour, int minute) {
+        return at(DAY, hour, minute);
+    }
+
+    private static long at(LocalDate day, int hour, int minute) {
+        return ZonedDateTime.of(day.atTime(hour, minute), HANOI).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void sumsSessionsOfTheDay() throws IOException {
+        UsageLedger ledger = UsageLedger.open(file, HANOI);
+        ledger.start(at(8, 0));
+        ledger.stop(at(8, 40));
+        ledger.start(at(12, 0));
+
+        assertTrue(ledger.isInSession());
+        assertEquals(at(12, 0), ledger.getSessionStartMillis());
+        assertEquals(55 * MINUTE, ledger.getUsedTodayMillis(at(12, 15)));
+        assertEquals(5 * MINUTE, ledger.getRemainingMillis(60, at(12, 15)));
+        assertEquals(0, ledger.getRemainingMillis(60, at(13, 0)));
+
+        ledger.stop(at(12, 30));
+        assertFalse(ledger.isInSession());
+        assertEquals(-1, ledger.getSessionStartMillis());
+        assertEquals(70 * MINUTE, ledger.getUsedTodayMillis(at(20, 0)));
+        ledger.close();
+    }
+
+    @Test
+    public void repeatedEventsAreIgnored() throws IOException {
+        UsageLedger ledger = UsageLedger.open(file, HANOI);
+        ledger.stop(at(7, 0));
+        ledger.start(at(8, 0));
+        ledger.start(at(8, 30));
+        ledger.stop(at(9, 0));
+        ledger.stop(at(9, 30));
+
+        assertEquals(60 * MINUTE, ledger.getUsedTodayMillis(at(10, 0)));
+        ledger.close();
+        assertEquals(2 * 9, file.length());
+    }
+
+    @Test
+    public void sessionIsSplitAtLocalMidnight() throws IOException {
+        UsageLedger ledger = UsageLedger.open(file, HANOI);
+        ledger.start(at(23, 30));
+        LocalDate next = DAY.plusDays(1);
+
+        assertEquals(45 * MINUTE, ledger.getUsedTodayMillis(at(next, 0, 45)));
+        ledger.stop(at(next, 1, 0));
+        assertEquals(30 * MINUTE, ledger.getUsedMillis(DAY));
+        assertEquals(60 * MINUTE, ledger.getUsedMillis(next));
+        assertEquals(60 * MINUTE, ledger.getUsedTodayMillis(at(next, 2, 0)));
+        ledger.close();
+    }
+
+    @Test
+    public void newDayStartsFromZeroAndOldDaysFallOff() throws IOException {
+        UsageLedger ledger = UsageLedger.open(file, HANOI);
+        ledger.start(at(10, 0));
+        ledger.stop(at(11, 0));
+
+        LocalDate later = DAY.plusDays(3);
+        assertEquals(0, ledger.getUsedTodayMillis(at(later, 9, 0)));
+        assertEquals(60 * MINUTE, ledger.getUsedMillis(DAY));
+
+        LocalDate muchLater = DAY.plusDays(UsageLedger.DAYS_KEPT + 2);
+        assertEquals(0, ledger.getUsedTodayMillis(at(muchLater, 9, 0)));
+        assertEquals(0, ledger.getUsedMillis(DAY));
+        ledger.close();
+    }
+
+    @Test
+    public void replaysTheLogOnOpen() throws IOException {
+        UsageLedger ledger = UsageLedger.open(file, HANOI);
+        ledger.start(at(8, 0));
+        ledger.stop(at(8, 20));
+        ledger.start(at(9, 0));
+        ledger.stop(at(9, 10));
+        ledger.close();
+
+        UsageLedger reopened = UsageLedger.open(file, HANOI);
+        assertEquals(30 * MINUTE, reopened.getUsedTodayMillis(at(10, 0)));
+        assertFalse(reopened.isInSession());
+        reopened.close();
+    }
+
+    @Test
+    public void sessionOpenAtCrashCountsUpToItsLastCheckpoint() throws IOException {
+        UsageLedger ledger = UsageLedger.open(file, HANOI);
+        ledger.start(at(8, 0));
+        ledger.stop(at(8, 20));
+        ledger.checkpoint(at(8, 40));   // between sessions, ignored
+        ledger.start(at(9, 0));
+        ledger.checkpoint(at(9, 15));
+        ledger.checkpoint(at(9, 30));
+        ledger.close();
+
+        UsageLedger reopened = UsageLedger.open(file, HANOI);
+        assertFalse(reopened.isInSession());
+        assertEquals(50 * MINUTE, reopened.getUsedTodayMillis(at(15, 0)));
+        // A full session after the crash is counted on its own
+        reopened.start(at(10, 0));
+        reopened.stop(at(10, 30));
+        // Without a checkpoint a crashed session counts nothing
+        reopened.start(at(11, 0));
+        reopened.close();
+
+        UsageLedger again = UsageLedger.open(file, HANOI);
+        assertFalse(again.isInSession());
+        assertEquals(80 * MINUTE, again.getUsedTodayMillis(at(15, 0)));
+        again.close();
+    }
+
+    @Test
+    public void compactionKeepsTheLastCheckpoint() throws IOException {
+        UsageLedger ledger = UsageLedger.open(file, HANOI);
+        long t = at(6, 0);
+        ledger.start(t);
+        for (int i = 0; i < UsageLedger.MAX_RECORDS; i++) {
+            t += MINUTE / 10;
+            ledger.checkpoint(t);
+        }
+        ledger.close();
+        assertTrue(file.length() < 100);
+
+        UsageLedger reopened = UsageLedger.open(file, HANOI);
+        assertEquals(t - at(6, 0), reopened.getUsedTodayMillis(at(23, 0)));
+        reopened.close();
+    }
+
+    @Test
+    public void compactionKeepsTotals() throws IOException {
+        UsageLedger ledger = UsageLedger.open(file, HANOI);
+        long t = at(DAY.minusDays(2), 6, 0);
+        for (int i = 0; i < UsageLedger.MAX_RECORDS; i++) {
+            ledger.start(t);
+            ledger.stop(t + MINUTE / 10);
+            t += 5 * MINUTE;
+        }
+        long now = t;
+        long today = ledger.getUsedTodayMillis(now);
+        LocalDate first = DAY.minusDays(2);
+        long firstDay = ledger.getUsedMillis(first);
+        ledger.start(now);
+        ledger.close();
+
+        assertTrue("log not compacted: " + file.length(), file.length() < 9 * 64);
+
+        UsageLedger reopened = UsageLedger.open(file, HANOI);
+        assertEquals(firstDay, reopened.getUsedMillis(first));
+        assertEquals(today, reopened.getUsedTodayMillis(now));
+        reopened.close();
+    }
+
+    @Test
+    public void drainsOnlyChangedDays() throws IOException {
+        UsageLedger ledger = UsageLedger.open(file, HANOI);
+        ledger.start(at(23, 0));
+        LocalDate next = DAY.plusDays(1);
+        ledger.stop(at(next, 0, 30));
+
+        Map<LocalDate, Long> drained = new LinkedHashMap<>();
+        ledger.drainDirty(at(next, 1, 0), drained::put);
+        assertEquals(2, drained.size());
+        assertEquals(Long.valueOf(60 * MINUTE), drained.get(DAY));
+        assertEquals(Long.valueOf(30 * MINUTE), drained.get(next));
+
+        drained.clear();
+        ledger.drainDirty(at(next, 2, 0), drained::put);
+        assertTrue(drained.isEmpty());
+
+        // A total that could not be sent comes back in the next drain
+        ledger.markDirty(DAY);
+        ledger.drainDirty(at(next, 2, 10), drained::put);
+        assertEquals(Collections.singletonMap(DAY, 60 * MINUTE), drained);
+        drained.clear();
+
+        // An open session keeps today in every drain
+        ledger.start(at(next, 3, 0));
+        ledger.drainDirty(at(next, 3, 10), drained::put);
+        ledger.drainDirty(at(next, 3, 20), drained::put);
+        assertEquals(Long.valueOf(50 * MINUTE), drained.get(next));
+        ledger.close();
+    }
+
+    @Test
+    public void timeZoneChangeMovesMidnight() throws IOException {
+        UsageLedger ledger = UsageLedger.open(file, HANOI);
+        ledger.start(at(22, 0));
+        ledger.stop(at(22, 30));
+
+        // 22:30 in Hanoi is 00:30 the next day in Tokyo
+        ZoneId tokyo = ZoneId.of("Asia/Tokyo");
+        ledger.setZone(tokyo, at(22, 30));
+        assertEquals(0, ledger.getUsedTodayMillis(at(22, 31)));
+        assertEquals(30 * MINUTE, ledger.getUsedMillis(DAY));
+        ledger.close();
+    }
+
+    @Test
+    public void drivesTheScheduler() throws IOException {
+        UsageLedger ledger = UsageLedger.open(file, HANOI);
+        ledger.start(at(8, 0));
+        ledger.stop(at(8, 50));
+        TimeRuleSchedulerTest.FakeClock clock = new TimeRuleSchedulerTest.FakeClock(
+                ZonedDateTime.of(DAY.atTime(9, 0), HANOI));
+        TimeRuleSchedulerTest.FakeAlarm alarm = new TimeRuleSchedulerTest.FakeAlarm();
+        TimeRuleScheduler scheduler = new TimeRuleScheduler(clock, alarm);
+        scheduler.setUsage(ledger);
+        scheduler.setRules(java.util.Collections.singletonList(TimeRule.createDailyLimit("Giới hạn", 60)));
+
+        ledger.start(clock.millis());
+        scheduler.onUsageChanged();
+        assertTrue(scheduler.isAllowed());
+        assertEquals(at(9, 10), alarm.armedAt);
+
+        clock.millis = alarm.armedAt;
+        scheduler.onAlarm();
+        assertFalse(scheduler.isAllowed());
+        ledger.close();
+    }
+}
@@ -0,0 +1,103 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class VerdictCacheTest {
+
+    private long now = 1000;
+
+    private VerdictCache cache(int capacity, long ttl) {
+        return new VerdictCache(capacity, ttl, () -> now);
+    }
+
+    @Test
+    public void storesVerdictsCaseInsensitively() {
+        VerdictCache cache = cache(8, 1000);
+        cache.put("youtube.com", 1, true);
+        cache.put("wikipedia.org", 1, false);
+
+        byte[] name = "xYouTube.COM".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(VerdictCache.BLOCKED, cache.get(name, 1, name.length - 1, 1));
+        assertEquals(VerdictCache.ALLOWED, cache.get("wikipedia.org", 1));
+        assertEquals(VerdictCache.MISS, cache.get("example.com", 1));
+        assertEquals(2.0 / 3, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void newGenerationInvalidatesEverything() {
+        VerdictCache cache = cache(8, 1000);
+        cache.put("youtube.com", 1, false);
+
+        assertEquals(VerdictCache.MISS, cache.get("youtube.com", 2));
+        cache.put("youtube.com", 2, true);
+        assertEquals(VerdictCache.BLOCKED, cache.get("youtube.com", 2));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void entriesExpireAfterTheirTtl() {
+        VerdictCache cache = cache(8, 1000);
+        cache.put("youtube.com", 1, true);
+
+        now += 999;
+        assertEquals(VerdictCache.BLOCKED, cache.get("youtube.com", 1));
+        now += 1;
+        assertEquals(VerdictCache.MISS, cache.get("youtube.com", 1));
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        VerdictCache cache = cache(3, 1000);
+        cache.put("a.com", 1, true);
+        cache.put("b.com", 1, true);
+        cache.put("c.com", 1, true);
+        cache.get("a.com", 1);
+        cache.put("d.com", 1, true);
+
+        assertEquals(VerdictCache.MISS, cache.get("b.com", 1));
+        assertEquals(VerdictCache.BLOCKED, cache.get("a.com", 1));
+        assertEquals(VerdictCache.BLOCKED, cache.get("c.com", 1));
+        assertEquals(VerdictCache.BLOCKED, cache.get("d.com", 1));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void heavyChurnKeepsTheTableConsistent() {
+        VerdictCache cache = cache(64, 1000);
+        for (int i = 0; i < 10000; i++) {
+            cache.put("host" + i + ".com", 1, i % 2 == 0);
+            if (i % 100 == 99) {
+                // The last 64 hosts must all be found, the one before them evicted
+                for (int h = i - 63; h <= i; h++) {
+                    assertEquals(h % 2 == 0 ? VerdictCache.BLOCKED : VerdictCache.ALLOWED,
+                            cache.get("host" + h + ".com", 1));
+                }
+                assertEquals(VerdictCache.MISS, cache.get("host" + (i - 64) + ".com", 1));
+            }
+        }
+        assertEquals(64, cache.size());
+    }
+
+    @Test
+    public void engineGenerationTracksHostChangesOnly() {
+        BlocklistEngine engine = new BlocklistEngine();
+        BlockedUrl url = new BlockedUrl("https://a.com", 0, "parent_android", "active");
+        url.setId("a");
+        engine.put(url);
+        int generation = engine.getGeneration();
+
+        engine.put(url);
+        BlockedUrl keyword = new BlockedUrl("casino", 0, "parent_android", "active");
+        keyword.setId("k");
+        keyword.setType("keyword");
+        engine.put(keyword);
+        assertEquals(generation, engine.getGeneration());
+
+        engine.remove("a");
+        assertNotEquals(generation, engine.getGeneration());
+    }
+}
@@ -0,0 +1,122 @@
+package qn.app.kidsafe_android;
+
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class WeeklyScheduleTest {
+
+    private static final int DAY = WeeklySchedule.MINUTES_PER_DAY;
+
+    private static int at(int day, int hour, int minute) {
+        return day * DAY + hour * 60 + minute;
+    }
+
+    @Test
+    public void noScheduleRulesMeansAlwaysAllowed() {
+        WeeklySchedule schedule = WeeklySchedule.compile(Collections.singletonList(
+                TimeRule.createDailyLimit("Giới hạn", 120)));
+
+        assertFalse(schedule.hasSchedule());
+        assertTrue(schedule.isAllowedAt(at(3, 3, 0)));
+    }
+
+    @Test
+    public void daytimeWindowOnSelectedDays() {
+        WeeklySchedule schedule = WeeklySchedule.compile(Collections.singletonList(
+                TimeRule.createAccessSchedule("Học", "08:00", "17:30", Arrays.asList(1, 2, 3, 4, 5))));
+
+        assertTrue(schedule.isAllowedAt(at(1, 8, 0)));
+        assertTrue(schedule.isAllowedAt(at(5, 17, 29)));
+        assertFalse(schedule.isAllowedAt(at(5, 17, 30)));
+        assertFalse(schedule.isAllowedAt(at(1, 7, 59)));
+        assertFalse(schedule.isAllowedAt(at(0, 12, 0)));
+    }
+
+    @Test
+    public void overnightWindowRunsIntoTheNextDay() {
+        WeeklySchedule schedule = WeeklySchedule.compile(Collections.singletonList(
+                TimeRule.createAccessSchedule("Đêm", "22:00", "06:00", Collections.singletonList(6))));
+
+        assertTrue(schedule.isAllowedAt(at(6, 23, 0)));
+        // Saturday night wraps to Sunday morning
+        assertTrue(schedule.isAllowedAt(at(0, 5, 59)));
+        assertFalse(schedule.isAllowedAt(at(0, 6, 0)));
+        assertFalse(schedule.isAllowedAt(at(6, 5, 0)));
+    }
+
+    @Test
+    public void emptyDaysMeansEveryDayAndWindowsAreUnited() {
+        TimeRule morning = TimeRule.createAccessSchedule("Sáng", "07:00", "08:00", null);
+        TimeRule evening = TimeRule.createAccessSchedule("Tối", "19:00", "24:00", Collections.emptyList());
+        TimeRule paused = TimeRule.createAccessSchedule("Tắt", "00:00", "00:00", null);
+        paused.setActive(false);
+        WeeklySchedule schedule = WeeklySchedule.compile(Arrays.asList(morning, evening, paused));
+
+        for (int day = 0; day < 7; day++) {
+            assertTrue(schedule.isAllowedAt(at(day, 7, 30)));
+            assertTrue(schedule.isAllowedAt(at(day, 23, 59)));
+            assertFalse(schedule.isAllowedAt(at(day, 12, 0)));
+        }
+    }
+
+    @Test
+    public void equalStartAndEndIsTheWholeDay() {
+        WeeklySchedule schedule = WeeklySchedule.compile(Collections.singletonList(
+                TimeRule.createAccessSchedule("Cả ngày", "00:00", "00:00", Collections.singletonList(3))));
+
+        assertTrue(schedule.isAllowedAt(at(3, 0, 0)));
+        assertTrue(schedule.isAllowedAt(at(3, 23, 59)));
+        assertFalse(schedule.isAllowedAt(at(4, 0, 0)));
+    }
+
+    @Test
+    public void instantsAreMappedInLocalTime() {
+        ZoneId hanoi = ZoneId.of("Asia/Ho_Chi_Minh");
+        // Sunday 2024-06-02 09:15 in Hanoi
+        ZonedDateTime sunday = ZonedDateTime.of(2024, 6, 2, 9, 15, 0, 0, hanoi);
+        assertEquals(at(0, 9, 15), WeeklySchedule.minuteOfWeek(sunday));
+
+        WeeklySchedule schedule = WeeklySchedule.compile(Collections.singletonList(
+                TimeRule.createAccessSchedule("CN", "09:00", "10:00", Collections.singletonList(0))));
+        assertTrue(schedule.isAllowedAt(sunday.toInstant().toEpochMilli(), hanoi));
+        assertFalse(schedule.isAllowedAt(sunday.toInstant().toEpochMilli(), ZoneId.of("UTC")));
+    }
+
+    @Test
+    public void minutesUntilChangeWrapsAroundTheWeek() {
+        WeeklySchedule schedule = WeeklySchedule.compile(Collections.singletonList(
+                TimeRule.createAccessSchedule("T2", "08:00", "17:00", Collections.singletonList(1))));
+
+        assertEquals(60, schedule.minutesUntilChange(at(1, 7, 0)));
+        assertEquals(9 * 60, schedule.minutesUntilChange(at(1, 8, 0)));
+        // Saturday evening to Monday 08:00
+        assertEquals(6 * 60 + DAY + 8 * 60, schedule.minutesUntilChange(at(6, 18, 0)));
+        // Monday 17:00 to next Monday 08:00, across the end of the bitmap
+        assertEquals(7 * DAY - 9 * 60, schedule.minutesUntilChange(at(1, 17, 0)));
+    }
+
+    @Test
+    public void minutesUntilChangeIsMinusOneWhenNothingFlips() {
+        assertEquals(-1, WeeklySchedule.alwaysAllowed().minutesUntilChange(at(2, 12, 0)));
+        WeeklySchedule allWeek = WeeklySchedule.compile(Collections.singletonList(
+                TimeRule.createAccessSchedule("Luôn", "00:00", "00:00", null)));
+        assertEquals(-1, allWeek.minutesUntilChange(at(2, 12, 0)));
+    }
+
+    @Test
+    public void parsesTimes() {
+        assertEquals(0, WeeklySchedule.parseMinutes("00:00"));
+        assertEquals(8 * 60 + 5, WeeklySchedule.parseMinutes("8:05"));
+        assertEquals(0, WeeklySchedule.parseMinutes("24:00"));
+        assertEquals(-1, WeeklySchedule.parseMinutes("24:01"));
+        assertEquals(-1, WeeklySchedule.parseMinutes("12:60"));
+        assertEquals(-1, WeeklySchedule.parseMinutes("1230"));
+        assertEquals(-1, WeeklySchedule.parseMinutes(null));
+    }
+}